@@ -17,9 +17,8 @@ package org.jtalks.jcommune.model.dao;
 import org.jtalks.common.model.dao.Crud;
 import org.jtalks.jcommune.model.entity.Branch;
 import org.jtalks.jcommune.model.entity.JCUser;
-import org.jtalks.jcommune.model.entity.SubscriptionAwareEntity;
+import org.jtalks.jcommune.model.entity.Topic;
 
-import java.util.Collection;
 import java.util.List;
 
 /**
@@ -52,10 +51,40 @@ public interface BranchDao extends Crud<Branch> {
     int getCountPostsInBranch(Branch branch);
 
     /**
-     * Get subscribers for specified branch with allowed permission to read this branch.
+     * Checks whether the user is subscribed to the branch without loading all the subscribers of the branch.
      *
-     * @param entity the branch
-     * @return subscribers with allowed permission
+     * @param branch the branch
+     * @param user   the user
+     * @return {@code true} if the user is subscribed to the branch
+     */
+    boolean isSubscribed(Branch branch, JCUser user);
+
+    /**
+     * Subscribes the user to the branch by a single insert, the branch itself is neither loaded nor updated.
+     * If the user was subscribed to the branch by a concurrent request, nothing is changed.
+     *
+     * @param branch the branch
+     * @param user   the user to subscribe
+     */
+    void addSubscriber(Branch branch, JCUser user);
+
+    /**
+     * Unsubscribes the user from the branch by a single delete, the branch itself is neither loaded nor updated.
+     *
+     * @param branch the branch
+     * @param user   the user to unsubscribe
+     */
+    void removeSubscriber(Branch branch, JCUser user);
+
+    /**
+     * Gets a page of ids of the branch subscribers with allowed permission to read this branch. Pages are
+     * ordered by id, so all the subscribers are read by passing the last id of the previous page.
+     *
+     * @param branch        the branch
+     * @param excludedTopic subscribers of this topic are skipped, {@code null} to skip nobody
+     * @param lastId        only subscribers with greater ids are returned, 0 for the first page
+     * @param maxResults    max number of ids to return
+     * @return distinct ids of subscribers with allowed permission in ascending order
      */
-    Collection<JCUser> getAllowedSubscribers(SubscriptionAwareEntity entity);
+    List<Long> getAllowedSubscriberIds(Branch branch, Topic excludedTopic, long lastId, int maxResults);
 }
\ No newline at end of file
@@ -19,6 +19,9 @@ import org.jtalks.jcommune.model.entity.Branch;
 import org.jtalks.jcommune.model.entity.BranchReadedMarker;
 import org.jtalks.jcommune.model.entity.JCUser;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * DAO for {@link BranchReadedMarker}
  *
@@ -47,4 +50,15 @@ public interface BranchReadedMarkerDao extends Crud<BranchReadedMarker> {
      *          or null if marker not exist
      */
     BranchReadedMarker getMarkerFor(JCUser user, Branch branch);
+
+    /**
+     * Gets markers for specified user on all specified branches at once
+     *
+     * @param user user to find marks
+     * @param branches intrested branches
+     *
+     * @return markers for specified user on specified branches, branches
+     *          without markers are skipped
+     */
+    List<BranchReadedMarker> getMarkersFor(JCUser user, Collection<Branch> branches);
 }
@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.model.dao;
+
+import org.joda.time.DateTime;
+import org.jtalks.common.model.dao.Crud;
+import org.jtalks.jcommune.model.entity.ForumReadedMarker;
+import org.jtalks.jcommune.model.entity.JCUser;
+
+/**
+ * DAO for {@link ForumReadedMarker}
+ *
+ * @see {@link org.jtalks.jcommune.model.dao.hibernate.ForumReadedMarkerHibernateDao}
+ */
+public interface ForumReadedMarkerDao extends Crud<ForumReadedMarker> {
+
+    /**
+     * Mark the whole forum as read for specified user. Only the marker of the user is
+     * created or updated, the user itself stays untouched.
+     *
+     * @param forWhom  user for which forum will be marked
+     * @param markTime time of marking forum as read
+     */
+    void markForumAsRead(JCUser forWhom, DateTime markTime);
+
+    /**
+     * Gets time of marking the forum as read by specified user
+     *
+     * @param user user to find mark time
+     *
+     * @return time of marking the forum as read or null if user never marked forum as read
+     */
+    DateTime getMarkTime(JCUser user);
+}
@@ -14,6 +14,7 @@
  */
 package org.jtalks.jcommune.model.dao;
 
+import org.joda.time.DateTime;
 import org.jtalks.common.model.dao.Crud;
 import org.jtalks.jcommune.model.entity.JCUser;
 import org.jtalks.jcommune.model.entity.LastReadPost;
@@ -64,4 +65,16 @@ public interface LastReadPostDao extends Crud<LastReadPost> {
      *        an information about last read post
      */
     void deleteLastReadPostsFor(JCUser user);
+
+    /**
+     * Delete a chunk of last read post records of given user that are covered by
+     * marking the whole forum as read, i.e. records with posts created not later
+     * than the forum was marked.
+     *
+     * @param userId   for this user we delete records
+     * @param markTime the time the forum was marked as read
+     * @param maxCount maximum number of records to delete
+     * @return number of deleted records
+     */
+    int deleteLastReadPostsFor(long userId, DateTime markTime, int maxCount);
 }
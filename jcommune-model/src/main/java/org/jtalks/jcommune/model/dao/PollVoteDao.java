@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.model.dao;
+
+import org.jtalks.common.model.dao.Crud;
+import org.jtalks.jcommune.model.entity.JCUser;
+import org.jtalks.jcommune.model.entity.Poll;
+import org.jtalks.jcommune.model.entity.PollVote;
+
+import java.util.Collection;
+
+/**
+ * Interface allows to work with the ledger of poll votes ({@link PollVote})
+ * and with vote counters of poll options.
+ */
+public interface PollVoteDao extends Crud<PollVote> {
+
+    /**
+     * Checks whether user has already voted in the poll.
+     *
+     * @param poll poll to check
+     * @param user user to check
+     * @return true if user has already voted in the poll
+     */
+    boolean isVoted(Poll poll, JCUser user);
+
+    /**
+     * Atomically increases vote counters of the selected options of the poll
+     * on the database side, so concurrent votes don't overwrite each other.
+     * Options which don't belong to the poll are ignored.
+     *
+     * @param poll    poll options belong to
+     * @param itemIds identifiers of selected options
+     * @return number of updated options
+     */
+    int increaseVotesCount(Poll poll, Collection<Long> itemIds);
+}
@@ -58,9 +58,38 @@ public interface PostDao extends Crud<Post> {
      *         all posts) and information for pagination
      */
     Page<Post> getPosts(Topic topic, PageRequest pageRequest);
+
+    /**
+     * Get the first post of the topic without loading all posts of the topic.
+     *
+     * @param topic topic to get the first post of
+     * @return the first post of the topic
+     */
+    Post getFirstPost(Topic topic);
+
+    /**
+     * Get answers to the question, i.e. all posts of the question's topic except the question itself,
+     * ordered by rating and then by creation date, newest first. Only one page is fetched from database.
+     *
+     * @param question the first post of the topic
+     * @param pageRequest contains information for pagination: page number, page size
+     * @return object that contains answers for one page and information for pagination
+     */
+    Page<Post> getAnswers(Post question, PageRequest pageRequest);
+
+    /**
+     * Get number of answers to the question which are shown before specified answer
+     * in the order used by {@link #getAnswers(Post, PageRequest)}.
+     *
+     * @param question the first post of the topic
+     * @param answer answer to the question
+     * @return number of answers ranked above specified one
+     */
+    int getCountAnswersRankedAbove(Post question, Post answer);
     
     /**
-     * Get last post that was posted in a topic of branch.
+     * Get last post that was posted in a topic of branch. The post is looked up in the last modified
+     * topic of the branch, so only one topic and one post are read by indexes.
      * 
      * @param branch in this branch post was posted
      * @return last post that was posted in a topic of branch
@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.model.dao;
+
+import org.jtalks.common.model.dao.Crud;
+import org.jtalks.jcommune.model.entity.JCUser;
+import org.jtalks.jcommune.model.entity.PostVote;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Interface allows to work with votes for posts ({@link PostVote}) without
+ * loading the whole set of votes of the post.
+ */
+public interface PostVoteDao extends Crud<PostVote> {
+
+    /**
+     * Stores the vote of the user for the post. If user hasn't voted for the post yet
+     * the new vote is created, if user voted in opposite direction the stored vote is
+     * flipped, if user already voted in the same direction nothing is changed.
+     * Pair of post and user is unique, so of concurrent first votes of the same user only
+     * one is inserted, others are treated as following votes of the user.
+     *
+     * @param vote vote to store, should have user and post specified
+     * @return change of the post rating caused by the vote: 0 if vote wasn't changed,
+     *         +/- 1 if user votes first time in up/down direction,
+     *         +/- 2 if user changes vote to up/down direction
+     */
+    int saveOrFlipVote(PostVote vote);
+
+    /**
+     * Gets votes of the user for the posts with specified identifiers
+     * in a single query.
+     *
+     * @param user    user whose votes should be found
+     * @param postIds identifiers of the posts
+     * @return map where key is identifier of the post voted by the user and value
+     *         is true if user voted up and false if voted down. Posts which weren't
+     *         voted by the user are absent in the map
+     */
+    Map<Long, Boolean> getVotesOfUser(JCUser user, Collection<Long> postIds);
+}
@@ -20,6 +20,9 @@ import org.jtalks.jcommune.model.entity.JCUser;
 import org.jtalks.jcommune.model.entity.PrivateMessage;
 import org.springframework.data.domain.Page;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * DAO interface for private messaging. Except of basic CRUD operations from {@link Crud}
  * provides methods to get all messages from some user or to the user.
@@ -62,6 +65,96 @@ public interface PrivateMessageDao extends Crud<PrivateMessage> {
      */
     Page<PrivateMessage> getDraftsForUser(JCUser user, PageRequest pageRequest);
 
+    /**
+     * The same as {@link #getAllFromUser(JCUser, PageRequest)}, but doesn't count messages in the outbox, so a
+     * count known to the caller can be used.
+     *
+     * @param userFrom    the sender
+     * @param pageRequest pagination information.
+     * @param totalCount  count of messages in the outbox of the sender
+     * @return {@link Page} with messages.
+     */
+    Page<PrivateMessage> getAllFromUser(JCUser userFrom, PageRequest pageRequest, int totalCount);
+
+    /**
+     * The same as {@link #getAllForUser(JCUser, PageRequest)}, but doesn't count messages in the inbox, so a
+     * count known to the caller can be used.
+     *
+     * @param userTo      the recipient of the messages
+     * @param pageRequest pagination information.
+     * @param totalCount  count of messages in the inbox of the recipient
+     * @return {@link Page} with messages.
+     */
+    Page<PrivateMessage> getAllForUser(JCUser userTo, PageRequest pageRequest, int totalCount);
+
+    /**
+     * The same as {@link #getDraftsForUser(JCUser, PageRequest)}, but doesn't count drafts, so a count known to
+     * the caller can be used.
+     *
+     * @param user        drafts author
+     * @param pageRequest pagination information.
+     * @param totalCount  count of drafts of the user
+     * @return {@link Page} with messages.
+     */
+    Page<PrivateMessage> getDraftsForUser(JCUser user, PageRequest pageRequest, int totalCount);
+
+    /**
+     * Gets messages of the outbox which are older than the specified one. Unlike paging by offset, it's as fast
+     * for the last pages as for the first one, because messages are found by an index without skipping.
+     *
+     * @param userFrom  the sender
+     * @param messageId id of the last message of the previous page
+     * @param count     maximum number of messages to return
+     * @return messages ordered from the newest to the oldest
+     */
+    List<PrivateMessage> getAllFromUserOlderThan(JCUser userFrom, long messageId, int count);
+
+    /**
+     * Gets messages of the inbox which are older than the specified one. Unlike paging by offset, it's as fast
+     * for the last pages as for the first one, because messages are found by an index without skipping.
+     *
+     * @param userTo    the recipient of the messages
+     * @param messageId id of the last message of the previous page
+     * @param count     maximum number of messages to return
+     * @return messages ordered from the newest to the oldest
+     */
+    List<PrivateMessage> getAllForUserOlderThan(JCUser userTo, long messageId, int count);
+
+    /**
+     * Gets drafts which are older than the specified one. Unlike paging by offset, it's as fast for the last
+     * pages as for the first one, because drafts are found by an index without skipping.
+     *
+     * @param user      drafts author
+     * @param messageId id of the last draft of the previous page
+     * @param count     maximum number of drafts to return
+     * @return drafts ordered from the newest to the oldest
+     */
+    List<PrivateMessage> getDraftsForUserOlderThan(JCUser user, long messageId, int count);
+
+    /**
+     * Get count of messages in the outbox of the user.
+     *
+     * @param userFrom the sender
+     * @return count of messages
+     */
+    int getOutboxCount(JCUser userFrom);
+
+    /**
+     * Get count of messages in the inbox of the user.
+     *
+     * @param userTo the recipient
+     * @return count of messages
+     */
+    int getInboxCount(JCUser userTo);
+
+    /**
+     * Get count of drafts of the user.
+     *
+     * @param user drafts author
+     * @return count of drafts
+     */
+    int getDraftsCount(JCUser user);
+
     /**
      * Get count of new (unread) messages for user.
      *
@@ -69,4 +162,51 @@ public interface PrivateMessageDao extends Crud<PrivateMessage> {
      * @return count of new messages
      */
     int getNewMessagesCountFor(String username);
+
+    /**
+     * Get count of new (unread) messages among the specified ones in the inbox of the user.
+     *
+     * @param userTo the recipient
+     * @param ids    identifiers of messages
+     * @return count of new messages
+     */
+    int getNewMessagesCount(JCUser userTo, Collection<Long> ids);
+
+    /**
+     * Marks new messages of the inbox as read by one statement.
+     *
+     * @param userTo the recipient, messages of other users are not changed
+     * @param ids    identifiers of messages
+     * @return count of messages which were unread before
+     */
+    int markAsRead(JCUser userTo, Collection<Long> ids);
+
+    /**
+     * Deletes drafts of the user by one statement.
+     *
+     * @param user drafts author, drafts of other users are not deleted
+     * @param ids  identifiers of drafts
+     * @return count of deleted drafts
+     */
+    int deleteDrafts(JCUser user, Collection<Long> ids);
+
+    /**
+     * Removes messages from the outbox of the user. Messages already removed by the recipient are deleted, others
+     * are only marked as {@link org.jtalks.jcommune.model.entity.PrivateMessageStatus#DELETED_FROM_OUTBOX}.
+     *
+     * @param userFrom the sender, messages of other users are not changed
+     * @param ids      identifiers of messages
+     * @return count of messages removed from the outbox
+     */
+    int deleteFromOutbox(JCUser userFrom, Collection<Long> ids);
+
+    /**
+     * Removes messages from the inbox of the user. Messages already removed by the sender are deleted, others
+     * are only marked as {@link org.jtalks.jcommune.model.entity.PrivateMessageStatus#DELETED_FROM_INBOX}.
+     *
+     * @param userTo the recipient, messages of other users are not changed
+     * @param ids    identifiers of messages
+     * @return count of messages removed from the inbox
+     */
+    int deleteFromInbox(JCUser userTo, Collection<Long> ids);
 }
@@ -17,6 +17,7 @@ package org.jtalks.jcommune.model.dao;
 import org.jtalks.common.model.dao.Crud;
 import org.jtalks.common.model.entity.Branch;
 import org.jtalks.common.model.entity.Section;
+import org.jtalks.jcommune.model.dto.ForumStructure;
 import org.jtalks.jcommune.model.entity.JCUser;
 
 import java.util.List;
@@ -36,6 +37,13 @@ public interface SectionDao extends Crud<Section> {
      */
     List<Section> getAll();
 
+    /**
+     * Get ids and names of all sections and their branches without loading section and branch entities.
+     *
+     * @return snapshot of sections and branches in order of their positions
+     */
+    ForumStructure getForumStructure();
+
     /**
      * Get count branches with VIEW_TOPICS permission
      * @param user current user
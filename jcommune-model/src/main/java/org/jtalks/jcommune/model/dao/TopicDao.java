@@ -19,7 +19,6 @@ import org.jtalks.common.model.dao.Crud;
 import org.jtalks.common.model.entity.Branch;
 import org.jtalks.jcommune.model.dto.PageRequest;
 import org.jtalks.jcommune.model.entity.JCUser;
-import org.jtalks.jcommune.model.entity.SubscriptionAwareEntity;
 import org.jtalks.jcommune.model.entity.Topic;
 import org.springframework.data.domain.Page;
 
@@ -88,12 +87,42 @@ public interface TopicDao extends Crud<Topic> {
     int countTopics(Branch branch);
 
     /**
-     * Get subscribers for specified topic with allowed permission to read this topic.
+     * Checks whether the user is subscribed to the topic without loading all the subscribers of the topic.
      *
-     * @param entity the topic
-     * @return subscribers with allowed permission
+     * @param topic the topic
+     * @param user  the user
+     * @return {@code true} if the user is subscribed to the topic
      */
-    Collection<JCUser> getAllowedSubscribers(SubscriptionAwareEntity entity);
+    boolean isSubscribed(Topic topic, JCUser user);
+
+    /**
+     * Subscribes the user to the topic by a single insert, the topic itself is neither loaded nor updated.
+     * If the user was subscribed to the topic by a concurrent request, nothing is changed.
+     *
+     * @param topic the topic
+     * @param user  the user to subscribe
+     */
+    void addSubscriber(Topic topic, JCUser user);
+
+    /**
+     * Unsubscribes the user from the topic by a single delete, the topic itself is neither loaded nor updated.
+     *
+     * @param topic the topic
+     * @param user  the user to unsubscribe
+     */
+    void removeSubscriber(Topic topic, JCUser user);
+
+    /**
+     * Gets a page of ids of the topic subscribers with allowed permission to read this topic. Pages are
+     * ordered by id, so all the subscribers are read by passing the last id of the previous page.
+     *
+     * @param topic          the topic
+     * @param excludedBranch subscribers of this branch are skipped, {@code null} to skip nobody
+     * @param lastId         only subscribers with greater ids are returned, 0 for the first page
+     * @param maxResults     max number of ids to return
+     * @return distinct ids of subscribers with allowed permission in ascending order
+     */
+    List<Long> getAllowedSubscriberIds(Topic topic, Branch excludedBranch, long lastId, int maxResults);
 
     /**
      * Get forbidden branches id for permission VIEW_TOPICS only
@@ -110,4 +139,31 @@ public interface TopicDao extends Crud<Topic> {
      * @return
      */
     List<Long> getAllowedBranchesIds(JCUser user);
+
+    /**
+     * Gets ids of the first topics in the branch, used to delete topics of the branch by chunks
+     *
+     * @param branchId   id of the branch
+     * @param maxResults max number of ids to return
+     * @return ids of topics in the branch ordered by id
+     */
+    List<Long> getTopicIdsInBranch(long branchId, int maxResults);
+
+    /**
+     * Gets ids of users who wrote posts in specified topics
+     *
+     * @param topicIds ids of topics
+     * @return ids of authors of posts in the topics
+     */
+    List<Long> getAuthorIdsOfPosts(Collection<Long> topicIds);
+
+    /**
+     * Deletes topics with their posts, comments, votes, drafts, polls, subscriptions, attributes and
+     * read markers by set-based statements without loading them into the session. Branches lose their
+     * last post if it was in one of the topics. Post counts of users are not changed.
+     *
+     * @param topicIds ids of topics to delete
+     * @return number of deleted topics
+     */
+    int deleteTopics(Collection<Long> topicIds);
 }
@@ -14,6 +14,7 @@
  */
 package org.jtalks.jcommune.model.dao;
 
+import org.joda.time.DateTime;
 import org.jtalks.common.model.entity.User;
 import org.jtalks.jcommune.model.entity.JCUser;
 
@@ -63,12 +64,32 @@ public interface UserDao extends org.jtalks.common.model.dao.UserDao<JCUser> {
     JCUser getByUuid(String uuid);
 
     /**
-     * Returns all users, whose accounts are not enables. At the moment registration creates disabled accounts and user
-     * should activate them manually following the link in an e-mail.
+     * Returns ids of users, whose accounts are not enabled and were registered before the specified date. At the
+     * moment registration creates disabled accounts and user should activate them manually following the link in an
+     * e-mail.
      *
-     * @return list of non-activated user accounts
+     * @param registeredBefore only accounts registered before this date are returned
+     * @param maxResults       maximum number of ids to return
+     * @return ids of non-activated user accounts ordered by id
      */
-    Collection<JCUser> getNonActivatedUsers();
+    List<Long> getNonActivatedUserIds(DateTime registeredBefore, int maxResults);
+
+    /**
+     * Deletes users together with their contacts and group membership by bulk statements, without loading them into
+     * the session. Users are expected to have no posts, messages and other content, e.g. non-activated ones.
+     *
+     * @param userIds ids of users to delete
+     * @return number of deleted users
+     */
+    int deleteUsers(Collection<Long> userIds);
+
+    /**
+     * Deletes ACL entries granted to the users and their ACL sids unless they own some ACL object. ACL tables are not
+     * mapped by Hibernate, so this is kept apart from {@link #deleteUsers(Collection)}.
+     *
+     * @param userIds ids of users to delete ACL data of
+     */
+    void deleteAclOfUsers(Collection<Long> userIds);
 
     /**
      * Gets a common (not JCommune one) user from the database. This is done because there might be some users not
@@ -88,6 +109,16 @@ public interface UserDao extends org.jtalks.common.model.dao.UserDao<JCUser> {
      */
     List<JCUser> getByUsernames(Set<String> usernames);
 
+    /**
+     * Get users to send emails to by their ids. Only id, uuid, username, email and language of the users
+     * are read, and returned users are not attached to the session, so reading recipients page by page
+     * doesn't fill the session with all of them.
+     *
+     * @param ids ids of the users, must not be empty
+     * @return the list of found users ordered by id
+     */
+    List<JCUser> getRecipientsByIds(Collection<Long> ids);
+
     /**
      * Get user names by part of user name.
      * Also does some formatting to pattern.
@@ -106,4 +137,11 @@ public interface UserDao extends org.jtalks.common.model.dao.UserDao<JCUser> {
      * @return list of found users
      */
     List<JCUser> findByUsernameOrEmail(String pattern, int count);
+
+    /**
+     * Recalculates post counts of specified users by counting their posts in database
+     *
+     * @param userIds ids of users to recalculate post counts of
+     */
+    void recalculatePostCounts(Collection<Long> userIds);
 }
@@ -14,17 +14,16 @@
  */
 package org.jtalks.jcommune.model.dao.hibernate;
 
+import org.hibernate.Query;
 import org.hibernate.SessionFactory;
+import org.hibernate.exception.ConstraintViolationException;
 import org.jtalks.common.model.dao.hibernate.GenericDao;
 import org.jtalks.jcommune.model.dao.BranchDao;
 import org.jtalks.jcommune.model.entity.Branch;
 import org.jtalks.jcommune.model.entity.JCUser;
-import org.jtalks.jcommune.model.entity.SubscriptionAwareEntity;
+import org.jtalks.jcommune.model.entity.Topic;
 
-import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Hibernate DAO implementation for operations with a {@link Branch}.
@@ -37,6 +36,8 @@ import java.util.Set;
  */
 public class BranchHibernateDao extends GenericDao<Branch>
         implements BranchDao {
+    private static final String BRANCH_ID = "branchId";
+    private static final String USER_ID = "userId";
 
     /**
      * @param sessionFactory The SessionFactory.
@@ -73,13 +74,60 @@ public class BranchHibernateDao extends GenericDao<Branch>
      * {@inheritDoc}
      */
     @Override
-    public Collection<JCUser> getAllowedSubscribers(SubscriptionAwareEntity entity){
-        // use set for remove duplicates
-        @SuppressWarnings("unchecked")
-        Set<JCUser> foundUsers = new HashSet(session()
-                .getNamedQuery("getAllowedSubscribersForBranch")
-                .setParameter("branch", entity)
-                .list());
-        return foundUsers;
+    public boolean isSubscribed(Branch branch, JCUser user) {
+        Number count = (Number) session()
+                .getNamedQuery("isSubscribedToBranch")
+                .setLong(BRANCH_ID, branch.getId())
+                .setLong(USER_ID, user.getId())
+                .uniqueResult();
+        return count.intValue() > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addSubscriber(Branch branch, JCUser user) {
+        try {
+            session().getNamedQuery("addBranchSubscriber")
+                    .setLong(BRANCH_ID, branch.getId())
+                    .setLong(USER_ID, user.getId())
+                    .executeUpdate();
+        } catch (ConstraintViolationException e) {
+            //concurrent request, e.g. a double click on the subscription button, has subscribed the user already
+            if (!isSubscribed(branch, user)) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeSubscriber(Branch branch, JCUser user) {
+        session().getNamedQuery("removeBranchSubscriber")
+                .setLong(BRANCH_ID, branch.getId())
+                .setLong(USER_ID, user.getId())
+                .executeUpdate();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Long> getAllowedSubscriberIds(Branch branch, Topic excludedTopic, long lastId, int maxResults) {
+        Query query;
+        if (excludedTopic == null) {
+            query = session().getNamedQuery("getAllowedSubscriberIdsForBranch");
+        } else {
+            query = session().getNamedQuery("getAllowedSubscriberIdsForBranchExceptTopic")
+                    .setParameter("excludedTopic", excludedTopic);
+        }
+        return query.setParameter("branch", branch)
+                .setLong("lastId", lastId)
+                .setMaxResults(maxResults)
+                .list();
     }
-}
\ No newline at end of file
+}
@@ -22,6 +22,10 @@ import org.jtalks.jcommune.model.entity.Branch;
 import org.jtalks.jcommune.model.entity.BranchReadedMarker;
 import org.jtalks.jcommune.model.entity.JCUser;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * @author Mikhail Stryzhonok
  */
@@ -58,4 +62,19 @@ public class BranchReadedMarkerHibernateDao extends GenericDao<BranchReadedMarke
                 .setParameter("branch", branch)
                 .uniqueResult();
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<BranchReadedMarker> getMarkersFor(JCUser user, Collection<Branch> branches) {
+        if (branches.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return session().getNamedQuery("getMarksByUserAndBranches")
+                .setParameter("user", user)
+                .setParameterList("branches", branches)
+                .list();
+    }
 }
@@ -26,6 +26,8 @@ import java.util.List;
  */
 public class ExternalLinkHibernateDao extends GenericDao<ExternalLink>
         implements ExternalLinkDao {
+    /** Query cache region results of the cacheable queries are stored in */
+    private static final String CACHE_REGION = "query.externalLinks";
 
     /**
      * @param sessionFactory The SessionFactory.
@@ -40,7 +42,7 @@ public class ExternalLinkHibernateDao extends GenericDao<ExternalLink>
     @Override
     public List<ExternalLink> getAll() {
         //noinspection unchecked
-        return session().createQuery("from ExternalLink").setCacheable(true).list();
+        return session().createQuery("from ExternalLink").setCacheable(true).setCacheRegion(CACHE_REGION).list();
     }
 
 }
@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.model.dao.hibernate;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.jdbc.Work;
+import org.joda.time.DateTime;
+import org.jtalks.common.model.dao.hibernate.GenericDao;
+import org.jtalks.jcommune.model.dao.ForumReadedMarkerDao;
+import org.jtalks.jcommune.model.entity.ForumReadedMarker;
+import org.jtalks.jcommune.model.entity.JCUser;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Markers are identified by ids of their users, so they are read from the second level cache
+ * and marking updates only the row of the marker.
+ */
+public class ForumReadedMarkerHibernateDao extends GenericDao<ForumReadedMarker> implements ForumReadedMarkerDao {
+    private static final String INSERT_MARKER =
+            "INSERT INTO MARK_FORUM_AS_READ_TIME (USER_ID, UUID, MARKED_AS_READ_TIME) VALUES (?, ?, ?)";
+
+    /**
+     * @param sessionFactory The SessionFactory.
+     */
+    public ForumReadedMarkerHibernateDao(SessionFactory sessionFactory) {
+        super(sessionFactory, ForumReadedMarker.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * If concurrent request of the same user inserts the marker first, the marker it inserted is updated,
+     * so the later mark wins instead of failing on the primary key.
+     */
+    @Override
+    public void markForumAsRead(JCUser forWhom, DateTime markTime) {
+        ForumReadedMarker marker = get(forWhom.getId());
+        if (marker != null) {
+            marker.setMarkTime(markTime);
+            return;
+        }
+        try {
+            insert(new ForumReadedMarker(forWhom.getId(), markTime));
+        } catch (ConstraintViolationException e) {
+            marker = get(forWhom.getId());
+            if (marker == null) {
+                throw e;
+            }
+            marker.setMarkTime(markTime);
+        }
+    }
+
+    /**
+     * Inserts the marker by a plain statement. Unlike a flush of the session, a failed statement doesn't
+     * leave the insertion pending in the session, so the session can be used after the primary key violation.
+     *
+     * @param marker marker to insert
+     * @throws ConstraintViolationException if the marker of the user already exists
+     */
+    private void insert(final ForumReadedMarker marker) {
+        session().doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                try (PreparedStatement statement = connection.prepareStatement(INSERT_MARKER)) {
+                    statement.setLong(1, marker.getId());
+                    statement.setString(2, marker.getUuid());
+                    statement.setTimestamp(3, new Timestamp(marker.getMarkTime().getMillis()));
+                    statement.executeUpdate();
+                }
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DateTime getMarkTime(JCUser user) {
+        ForumReadedMarker marker = get(user.getId());
+        return marker == null ? null : marker.getMarkTime();
+    }
+}
@@ -24,6 +24,8 @@ import org.jtalks.jcommune.model.dao.ForumStatisticsDao;
  * @author Elena Lepaeva
  */
 public class ForumStatisticsHibernateDao implements ForumStatisticsDao {
+    /** Query cache region results of the cacheable queries are stored in */
+    private static final String CACHE_REGION = "query.forumStatistics";
 
     private SessionFactory sessionFactory;
 
@@ -44,6 +46,7 @@ public class ForumStatisticsHibernateDao implements ForumStatisticsDao {
         return ((Number) sessionFactory.getCurrentSession()
                 .createQuery("select count(*) from Post p")
                 .setCacheable(true)
+                .setCacheRegion(CACHE_REGION)
                 .uniqueResult())
                 .intValue();
     }
@@ -56,6 +59,7 @@ public class ForumStatisticsHibernateDao implements ForumStatisticsDao {
         return ((Number) sessionFactory
                 .getCurrentSession().getNamedQuery("getCountOfUsers")
                 .setCacheable(true)
+                .setCacheRegion(CACHE_REGION)
                 .uniqueResult())
                 .intValue();
     }
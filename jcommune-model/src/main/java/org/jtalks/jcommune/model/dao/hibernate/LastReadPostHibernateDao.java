@@ -15,6 +15,10 @@
 package org.jtalks.jcommune.model.dao.hibernate;
 
 import org.hibernate.SessionFactory;
+import org.hibernate.type.CustomType;
+import org.hibernate.type.Type;
+import org.joda.time.DateTime;
+import org.joda.time.contrib.hibernate.PersistentDateTime;
 import org.jtalks.common.model.dao.hibernate.GenericDao;
 import org.jtalks.jcommune.model.dao.LastReadPostDao;
 import org.jtalks.jcommune.model.entity.JCUser;
@@ -34,6 +38,7 @@ import java.util.List;
  */
 public class LastReadPostHibernateDao extends GenericDao<LastReadPost>
         implements LastReadPostDao {
+    private static final Type MARK_TIME_TYPE = new CustomType(new PersistentDateTime());
 
     /**
      * @param sessionFactory The SessionFactory.
@@ -88,4 +93,23 @@ public class LastReadPostHibernateDao extends GenericDao<LastReadPost>
                 .setParameter("user", user)
                 .executeUpdate();
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public int deleteLastReadPostsFor(long userId, DateTime markTime, int maxCount) {
+        List<Long> ids = session().getNamedQuery("getLastReadPostIdsOfUserReadBefore")
+                .setParameter("userId", userId)
+                .setParameter("markTime", markTime, MARK_TIME_TYPE)
+                .setMaxResults(maxCount)
+                .list();
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return session().getNamedQuery("deleteLastReadPostsByIds")
+                .setParameterList("ids", ids)
+                .executeUpdate();
+    }
 }
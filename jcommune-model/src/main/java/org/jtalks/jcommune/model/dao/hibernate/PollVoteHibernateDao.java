@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.model.dao.hibernate;
+
+import org.hibernate.SessionFactory;
+import org.jtalks.common.model.dao.hibernate.GenericDao;
+import org.jtalks.jcommune.model.dao.PollVoteDao;
+import org.jtalks.jcommune.model.entity.JCUser;
+import org.jtalks.jcommune.model.entity.Poll;
+import org.jtalks.jcommune.model.entity.PollItem;
+import org.jtalks.jcommune.model.entity.PollVote;
+
+import java.util.Collection;
+
+/**
+ * The implementation of {@link PollVoteDao} based on Hibernate ORM.
+ */
+public class PollVoteHibernateDao extends GenericDao<PollVote> implements PollVoteDao {
+
+    /**
+     * @param sessionFactory The SessionFactory.
+     */
+    public PollVoteHibernateDao(SessionFactory sessionFactory) {
+        super(sessionFactory, PollVote.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isVoted(Poll poll, JCUser user) {
+        Number count = (Number) session().getNamedQuery("getCountOfPollVotesOfUser")
+                .setParameter("poll", poll)
+                .setParameter("user", user)
+                .uniqueResult();
+        return count.intValue() > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int increaseVotesCount(Poll poll, Collection<Long> itemIds) {
+        if (itemIds.isEmpty()) {
+            return 0;
+        }
+        int updated = session().getNamedQuery("increasePollItemsVotesCount")
+                .setParameter("poll", poll)
+                .setParameterList("itemIds", itemIds)
+                .executeUpdate();
+        //bulk update bypasses the session, so loaded options should be re-read to show actual counters
+        for (PollItem item : poll.getPollItems()) {
+            if (itemIds.contains(item.getId()) && session().contains(item)) {
+                session().refresh(item);
+            }
+        }
+        return updated;
+    }
+}
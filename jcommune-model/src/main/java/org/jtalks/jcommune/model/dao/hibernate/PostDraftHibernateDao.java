@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.model.dao.hibernate;
+
+import org.hibernate.SessionFactory;
+import org.jtalks.common.model.dao.hibernate.GenericDao;
+import org.jtalks.jcommune.model.dao.PostDraftDao;
+import org.jtalks.jcommune.model.entity.JCUser;
+import org.jtalks.jcommune.model.entity.PostDraft;
+import org.jtalks.jcommune.model.entity.Topic;
+
+/**
+ * The implementation of {@link PostDraftDao} based on Hibernate ORM.
+ */
+public class PostDraftHibernateDao extends GenericDao<PostDraft> implements PostDraftDao {
+    private static final String TOPIC_DRAFTS_ROLE = Topic.class.getName() + ".drafts";
+
+    /**
+     * @param sessionFactory The SessionFactory.
+     */
+    public PostDraftHibernateDao(SessionFactory sessionFactory) {
+        super(sessionFactory, PostDraft.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PostDraft getForUser(JCUser user, Topic topic) {
+        return (PostDraft) session().getNamedQuery("getPostDraftOfUser")
+                .setParameter("user", user)
+                .setParameter("topic", topic)
+                .uniqueResult();
+    }
+
+    /**
+     * Saves draft and drops cached drafts collection of the topic if the draft is new
+     *
+     * @param draft draft to save
+     */
+    @Override
+    public void saveOrUpdate(PostDraft draft) {
+        boolean isNew = draft.getId() == 0;
+        super.saveOrUpdate(draft);
+        if (isNew) {
+            //drafts are stored bypassing the collection, so its cached state should be dropped
+            session().getSessionFactory().getCache().evictCollection(TOPIC_DRAFTS_ROLE, draft.getTopic().getId());
+        }
+    }
+}
@@ -39,6 +39,7 @@ import java.util.List;
  */
 public class PostHibernateDao extends GenericDao<Post> implements PostDao {
     private static final String TOPIC_PARAMETER_NAME = "topic";
+    private static final String QUESTION_ID_PARAMETER_NAME = "questionId";
 
     /**
      * @param sessionFactory The SessionFactory.
@@ -88,22 +89,80 @@ public class PostHibernateDao extends GenericDao<Post> implements PostDao {
         return new PageImpl<>(posts, pageRequest, totalCount.intValue());
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Post getFirstPost(Topic topic) {
+        return (Post) session()
+                .getNamedQuery("getPostsInTopic")
+                .setParameter(TOPIC_PARAMETER_NAME, topic)
+                .setMaxResults(1)
+                .uniqueResult();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Page<Post> getAnswers(Post question, PageRequest pageRequest) {
+        Number totalCount = (Number) session()
+                .getNamedQuery("getCountAnswersInTopic")
+                .setParameter(TOPIC_PARAMETER_NAME, question.getTopic())
+                .setParameter(QUESTION_ID_PARAMETER_NAME, question.getId())
+                .uniqueResult();
+        Query query = session()
+                .getNamedQuery("getAnswersInTopic")
+                .setParameter(TOPIC_PARAMETER_NAME, question.getTopic())
+                .setParameter(QUESTION_ID_PARAMETER_NAME, question.getId());
+        pageRequest.adjustPageNumber(totalCount.intValue());
+        query.setFirstResult(pageRequest.getOffset());
+        query.setMaxResults(pageRequest.getPageSize());
+        @SuppressWarnings("unchecked")
+        List<Post> answers = (List<Post>) query.list();
+        return new PageImpl<>(answers, pageRequest, totalCount.intValue());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getCountAnswersRankedAbove(Post question, Post answer) {
+        Number count = (Number) session()
+                .getNamedQuery("getCountAnswersRankedAbove")
+                .setParameter(TOPIC_PARAMETER_NAME, question.getTopic())
+                .setParameter(QUESTION_ID_PARAMETER_NAME, question.getId())
+                .setParameter("rating", answer.getRating())
+                .setParameter("creationDate", answer.getCreationDate())
+                .setParameter("answerId", answer.getId())
+                .uniqueResult();
+        return count.intValue();
+    }
+
     /**
      * Get last post that was posted in a topic of branch.
-     * Uses hibernate criteria instead of invoking {@link #getLastPostsFor} method that uses hql query.
-     * Done for better performance results. This solution can return only one last post so method
-     * {@link #getLastPostsFor} stay without changes.
+     * Modification date of topic is the creation date of its last post, so at first the last
+     * modified topic of the branch is found and then its last post. Both lookups are limited
+     * to one row, unlike the MAX over all posts of the branch they don't depend on branch size.
      *
      * @param branch in this branch post was posted
      * @return last post that was posted in a topic of branch
      */
     @Override
     public Post getLastPostFor(Branch branch) {
-        List<Post> posts = (List<Post>) session()
-                .getNamedQuery("getLastPostForBranch")
+        List<Long> topicIds = (List<Long>) session()
+                .getNamedQuery("getLastModifiedTopicIdsInBranch")
                 .setParameter("branchId", branch.getId())
                 .setMaxResults(1)
                 .list();
+        if (topicIds.isEmpty()) {
+            return null;
+        }
+        List<Post> posts = (List<Post>) session()
+                .getNamedQuery("getLastPostsInTopic")
+                .setParameter("topicId", topicIds.get(0))
+                .setMaxResults(1)
+                .list();
         if (!posts.isEmpty()) {
             return posts.get(0);
         }
@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.model.dao.hibernate;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.jdbc.Work;
+import org.hibernate.type.CustomType;
+import org.hibernate.type.Type;
+import org.joda.time.contrib.hibernate.PersistentDateTime;
+import org.jtalks.common.model.dao.hibernate.GenericDao;
+import org.jtalks.jcommune.model.dao.PostVoteDao;
+import org.jtalks.jcommune.model.entity.JCUser;
+import org.jtalks.jcommune.model.entity.Post;
+import org.jtalks.jcommune.model.entity.PostVote;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The implementation of {@link PostVoteDao} based on Hibernate ORM.
+ */
+public class PostVoteHibernateDao extends GenericDao<PostVote> implements PostVoteDao {
+    private static final String POST_VOTES_ROLE = Post.class.getName() + ".votes";
+    private static final Type VOTE_DATE_TYPE = new CustomType(new PersistentDateTime());
+    private static final String INSERT_VOTE = "INSERT INTO POST_VOTE (UUID, USER_ID, POST_ID, VOTE_DATE, IS_VOTED_UP)"
+            + " VALUES (?, ?, ?, ?, ?)";
+
+    /**
+     * @param sessionFactory The SessionFactory.
+     */
+    public PostVoteHibernateDao(SessionFactory sessionFactory) {
+        super(sessionFactory, PostVote.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * If a concurrent request of the same user inserts the vote first, the flip is retried against the vote it
+     * inserted instead of failing on the unique key.
+     */
+    @Override
+    public int saveOrFlipVote(PostVote vote) {
+        int sign = vote.isVotedUp() ? 1 : -1;
+        int ratingChanges;
+        if (flip(vote)) {
+            ratingChanges = 2 * sign;
+        } else if (isVoted(vote)) {
+            return 0;
+        } else {
+            try {
+                insert(vote);
+                ratingChanges = sign;
+            } catch (ConstraintViolationException e) {
+                if (flip(vote)) {
+                    ratingChanges = 2 * sign;
+                } else if (isVoted(vote)) {
+                    return 0;
+                } else {
+                    throw e;
+                }
+            }
+        }
+        //votes are stored bypassing the collection, so its cached state should be dropped
+        session().getSessionFactory().getCache().evictCollection(POST_VOTES_ROLE, vote.getPost().getId());
+        return ratingChanges;
+    }
+
+    /**
+     * Flips stored vote of the user for the post if it's in opposite direction.
+     *
+     * @param vote vote to flip the stored one to
+     * @return true if stored vote was flipped
+     */
+    private boolean flip(PostVote vote) {
+        return session().getNamedQuery("flipPostVote")
+                .setParameter("votedUp", vote.isVotedUp())
+                .setParameter("voteDate", vote.getVoteDate(), VOTE_DATE_TYPE)
+                .setParameter("post", vote.getPost())
+                .setParameter("user", vote.getUser())
+                .executeUpdate() > 0;
+    }
+
+    /**
+     * Inserts the vote by a plain statement. Unlike a flush of the session, a failed statement doesn't leave
+     * the insertion pending in the session, so the session can be used after the unique key violation.
+     *
+     * @param vote vote to insert
+     * @throws ConstraintViolationException if vote of the user for the post already exists
+     */
+    private void insert(final PostVote vote) {
+        session().doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                try (PreparedStatement statement = connection.prepareStatement(INSERT_VOTE)) {
+                    statement.setString(1, vote.getUuid());
+                    statement.setLong(2, vote.getUser().getId());
+                    statement.setLong(3, vote.getPost().getId());
+                    statement.setTimestamp(4, new Timestamp(vote.getVoteDate().getMillis()));
+                    statement.setBoolean(5, vote.isVotedUp());
+                    statement.executeUpdate();
+                }
+            }
+        });
+    }
+
+    /**
+     * Checks whether user of the vote has already voted for the post of the vote.
+     *
+     * @param vote vote to check
+     * @return true if vote of the user for the post exists
+     */
+    private boolean isVoted(PostVote vote) {
+        Number count = (Number) session().getNamedQuery("getCountOfPostVotesOfUser")
+                .setParameter("post", vote.getPost())
+                .setParameter("user", vote.getUser())
+                .uniqueResult();
+        return count.intValue() > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<Long, Boolean> getVotesOfUser(JCUser user, Collection<Long> postIds) {
+        Map<Long, Boolean> votes = new HashMap<>();
+        if (postIds.isEmpty()) {
+            return votes;
+        }
+        List<Object[]> rows = session().getNamedQuery("getPostVotesOfUser")
+                .setParameter("user", user)
+                .setParameterList("postIds", postIds)
+                .list();
+        for (Object[] row : rows) {
+            votes.put((Long) row[0], (Boolean) row[1]);
+        }
+        return votes;
+    }
+}
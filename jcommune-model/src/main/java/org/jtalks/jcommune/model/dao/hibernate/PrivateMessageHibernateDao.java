@@ -25,6 +25,8 @@ import org.jtalks.jcommune.model.entity.PrivateMessageStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -40,6 +42,9 @@ public class PrivateMessageHibernateDao extends GenericDao<PrivateMessage> imple
 
     private static final String STATUS = "status";
     private static final String STATUSES = "statuses";
+    private static final String USER = "user";
+    private static final String IDS = "ids";
+    private static final String MESSAGE_ID = "messageId";
     public static final int DEFAULT_MESSAGE_COUNT = 0;
 
     /**
@@ -52,16 +57,22 @@ public class PrivateMessageHibernateDao extends GenericDao<PrivateMessage> imple
     /**
      * {@inheritDoc}
      */
-    @SuppressWarnings("unchecked")
     @Override
     public Page<PrivateMessage> getAllFromUser(JCUser userFrom, PageRequest pageRequest) {
-        PrivateMessageStatus[] statuses = PrivateMessageStatus.getOutboxStatus();
-        int totalCount = getOutboxMessageCount(userFrom, statuses);
+        return getAllFromUser(userFrom, pageRequest, getOutboxCount(userFrom));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public Page<PrivateMessage> getAllFromUser(JCUser userFrom, PageRequest pageRequest, int totalCount) {
         pageRequest.adjustPageNumber(totalCount);
 
         Query query = session().getNamedQuery("getAllFromUser")
-                .setParameterList(STATUSES, statuses)
-                .setEntity("user", userFrom);
+                .setParameterList(STATUSES, PrivateMessageStatus.getOutboxStatus())
+                .setEntity(USER, userFrom);
 
         query.setFirstResult(pageRequest.getOffset());
         query.setMaxResults(pageRequest.getPageSize());
@@ -72,36 +83,34 @@ public class PrivateMessageHibernateDao extends GenericDao<PrivateMessage> imple
     }
 
     /**
-     * Return outbox message count for specified user (sender) and message statuses.
-     * @param userFrom Specified user (sender) for witch will be returned outbox message count.
-     * @param statuses The private message statuses for inbox page.
-     * @return The inbox message count.
+     * {@inheritDoc}
      */
-    private int getOutboxMessageCount(JCUser userFrom, PrivateMessageStatus[] statuses) {
-        int result = DEFAULT_MESSAGE_COUNT;
-        Number messageCount = (Number) session()
+    @Override
+    public int getOutboxCount(JCUser userFrom) {
+        return countMessages(session()
                 .getNamedQuery("getCountUserOutboxPm")
                 .setParameter("userFrom", userFrom)
-                .setParameterList(STATUSES, statuses)
-                .uniqueResult();
-        if (messageCount != null) {
-            result = messageCount.intValue();
-        }
-        return result;
+                .setParameterList(STATUSES, PrivateMessageStatus.getOutboxStatus()));
     }
 
     /**
      * {@inheritDoc}
      */
-    @SuppressWarnings("unchecked")
     @Override
     public Page<PrivateMessage> getAllForUser(JCUser userTo, PageRequest pageRequest) {
-        PrivateMessageStatus[] statuses = PrivateMessageStatus.getInboxStatus();
-        int totalCount = getInboxMessageCount(userTo, statuses);
+        return getAllForUser(userTo, pageRequest, getInboxCount(userTo));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public Page<PrivateMessage> getAllForUser(JCUser userTo, PageRequest pageRequest, int totalCount) {
         pageRequest.adjustPageNumber(totalCount);
         Query query = session().getNamedQuery("getAllToUser")
-                .setParameterList(STATUSES, statuses)
-                .setEntity("user", userTo);
+                .setParameterList(STATUSES, PrivateMessageStatus.getInboxStatus())
+                .setEntity(USER, userTo);
         query.setFirstResult(pageRequest.getOffset());
         query.setMaxResults(pageRequest.getPageSize());
         List<PrivateMessage> messages = (List<PrivateMessage>) query.list();
@@ -109,43 +118,91 @@ public class PrivateMessageHibernateDao extends GenericDao<PrivateMessage> imple
     }
 
     /**
-     * Return inbox message count for specified user and message statuses.
-     * @param user Specified user for witch will be returned inbox message count.
-     * @param statuses The private message statuses for inbox page.
-     * @return The inbox message count.
+     * {@inheritDoc}
      */
-    private int getInboxMessageCount(JCUser user, PrivateMessageStatus[] statuses) {
-        int result = DEFAULT_MESSAGE_COUNT;
-        Number messageCount = (Number) session()
+    @Override
+    public int getInboxCount(JCUser userTo) {
+        return countMessages(session()
                 .getNamedQuery("getCountUserInboxPm")
-                .setParameter("userTo", user)
-                .setParameterList(STATUSES, statuses)
-                .uniqueResult();
-        if (messageCount != null) {
-            result = messageCount.intValue();
-        }
-        return result;
+                .setParameter("userTo", userTo)
+                .setParameterList(STATUSES, PrivateMessageStatus.getInboxStatus()));
     }
 
     /**
      * {@inheritDoc}
      */
-    @SuppressWarnings("unchecked")
     @Override
     public Page<PrivateMessage> getDraftsForUser(JCUser user, PageRequest pageRequest) {
-        Number totalCount = (Number) session()
-                .getNamedQuery("getCountUserDraftPm")
-                .setParameter("userFrom", user)
-                .setParameter(STATUS, PrivateMessageStatus.DRAFT)
-                .uniqueResult();
-        pageRequest.adjustPageNumber(totalCount.intValue());
+        return getDraftsForUser(user, pageRequest, getDraftsCount(user));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public Page<PrivateMessage> getDraftsForUser(JCUser user, PageRequest pageRequest, int totalCount) {
+        pageRequest.adjustPageNumber(totalCount);
         Query query = session().getNamedQuery("getDraftsFromUser")
                 .setParameter(STATUS, PrivateMessageStatus.DRAFT)
-                .setParameter("user", user);
+                .setParameter(USER, user);
         query.setFirstResult(pageRequest.getOffset());
         query.setMaxResults(pageRequest.getPageSize());
         List<PrivateMessage> messages = (List<PrivateMessage>) query.list();
-        return new PageImpl<PrivateMessage>(messages, pageRequest, totalCount.intValue());
+        return new PageImpl<PrivateMessage>(messages, pageRequest, totalCount);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getDraftsCount(JCUser user) {
+        return countMessages(session()
+                .getNamedQuery("getCountUserDraftPm")
+                .setParameter("userFrom", user)
+                .setParameter(STATUS, PrivateMessageStatus.DRAFT));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<PrivateMessage> getAllFromUserOlderThan(JCUser userFrom, long messageId, int count) {
+        return session().getNamedQuery("getAllFromUserOlderThan")
+                .setParameterList(STATUSES, PrivateMessageStatus.getOutboxStatus())
+                .setEntity(USER, userFrom)
+                .setLong(MESSAGE_ID, messageId)
+                .setMaxResults(count)
+                .list();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<PrivateMessage> getAllForUserOlderThan(JCUser userTo, long messageId, int count) {
+        return session().getNamedQuery("getAllToUserOlderThan")
+                .setParameterList(STATUSES, PrivateMessageStatus.getInboxStatus())
+                .setEntity(USER, userTo)
+                .setLong(MESSAGE_ID, messageId)
+                .setMaxResults(count)
+                .list();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<PrivateMessage> getDraftsForUserOlderThan(JCUser user, long messageId, int count) {
+        return session().getNamedQuery("getDraftsFromUserOlderThan")
+                .setParameter(STATUS, PrivateMessageStatus.DRAFT)
+                .setEntity(USER, user)
+                .setLong(MESSAGE_ID, messageId)
+                .setMaxResults(count)
+                .list();
     }
 
     /**
@@ -161,4 +218,106 @@ public class PrivateMessageHibernateDao extends GenericDao<PrivateMessage> imple
                 .uniqueResult())
                 .intValue();
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNewMessagesCount(JCUser userTo, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return DEFAULT_MESSAGE_COUNT;
+        }
+        return countMessages(session().getNamedQuery("getNewMessagesCountAmongIds")
+                .setParameter("read", false)
+                .setEntity(USER, userTo)
+                .setParameterList(STATUSES, PrivateMessageStatus.getNewMessageStatus())
+                .setParameterList(IDS, ids));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int markAsRead(JCUser userTo, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return DEFAULT_MESSAGE_COUNT;
+        }
+        return session().getNamedQuery("markPrivateMessagesAsRead")
+                .setParameter("read", true)
+                .setParameter("wasRead", false)
+                .setEntity(USER, userTo)
+                .setParameterList(STATUSES, PrivateMessageStatus.getNewMessageStatus())
+                .setParameterList(IDS, ids)
+                .executeUpdate();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int deleteDrafts(JCUser user, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return DEFAULT_MESSAGE_COUNT;
+        }
+        return session().getNamedQuery("deletePrivateMessagesFromUser")
+                .setEntity(USER, user)
+                .setParameterList(STATUSES, Collections.singletonList(PrivateMessageStatus.DRAFT))
+                .setParameterList(IDS, ids)
+                .executeUpdate();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int deleteFromOutbox(JCUser userFrom, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return DEFAULT_MESSAGE_COUNT;
+        }
+        int deleted = session().getNamedQuery("deletePrivateMessagesFromUser")
+                .setEntity(USER, userFrom)
+                .setParameterList(STATUSES, Collections.singletonList(PrivateMessageStatus.DELETED_FROM_INBOX))
+                .setParameterList(IDS, ids)
+                .executeUpdate();
+        int hidden = session().getNamedQuery("changeStatusOfPrivateMessagesFromUser")
+                .setEntity(USER, userFrom)
+                .setParameter(STATUS, PrivateMessageStatus.DELETED_FROM_OUTBOX)
+                .setParameter("oldStatus", PrivateMessageStatus.SENT)
+                .setParameterList(IDS, ids)
+                .executeUpdate();
+        return deleted + hidden;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int deleteFromInbox(JCUser userTo, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return DEFAULT_MESSAGE_COUNT;
+        }
+        int deleted = session().getNamedQuery("deletePrivateMessagesToUser")
+                .setEntity(USER, userTo)
+                .setParameter(STATUS, PrivateMessageStatus.DELETED_FROM_OUTBOX)
+                .setParameterList(IDS, ids)
+                .executeUpdate();
+        int hidden = session().getNamedQuery("changeStatusOfPrivateMessagesToUser")
+                .setEntity(USER, userTo)
+                .setParameter(STATUS, PrivateMessageStatus.DELETED_FROM_INBOX)
+                .setParameter("oldStatus", PrivateMessageStatus.SENT)
+                .setParameterList(IDS, ids)
+                .executeUpdate();
+        return deleted + hidden;
+    }
+
+    /**
+     * Executes count query
+     *
+     * @param countQuery query returning count of messages
+     * @return count of messages or {@link #DEFAULT_MESSAGE_COUNT} if query returned nothing
+     */
+    private int countMessages(Query countQuery) {
+        Number messageCount = (Number) countQuery.uniqueResult();
+        return messageCount == null ? DEFAULT_MESSAGE_COUNT : messageCount.intValue();
+    }
 }
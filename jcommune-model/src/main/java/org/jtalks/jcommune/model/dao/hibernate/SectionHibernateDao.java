@@ -23,6 +23,7 @@ import org.jtalks.common.model.entity.Entity;
 import org.jtalks.common.model.entity.Group;
 import org.jtalks.common.model.entity.Section;
 import org.jtalks.jcommune.model.dao.SectionDao;
+import org.jtalks.jcommune.model.dto.ForumStructure;
 import org.jtalks.jcommune.model.entity.JCUser;
 
 import java.util.ArrayList;
@@ -35,6 +36,8 @@ import java.util.List;
  * @author Max Malakhov
  */
 public class SectionHibernateDao extends GenericDao<Section> implements SectionDao {
+    /** Query cache region results of the cacheable queries are stored in */
+    private static final String CACHE_REGION = "query.sections";
 
 
     /**
@@ -53,10 +56,41 @@ public class SectionHibernateDao extends GenericDao<Section> implements SectionD
         List<Section> sectionList = session()
                 .createCriteria(Section.class)
                 .addOrder(Order.asc("position"))
-                .setCacheable(true).list();
+                .setCacheable(true).setCacheRegion(CACHE_REGION).list();
         return sectionList;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public ForumStructure getForumStructure() {
+        List<Object[]> rows = session().getNamedQuery("getForumStructure").list();
+        List<ForumStructure.SectionNode> sections = new ArrayList<>();
+        Long sectionId = null;
+        String sectionName = null;
+        List<ForumStructure.BranchNode> branches = new ArrayList<>();
+        for (Object[] row : rows) {
+            Long rowSectionId = (Long) row[0];
+            if (!rowSectionId.equals(sectionId)) {
+                if (sectionId != null) {
+                    sections.add(new ForumStructure.SectionNode(sectionId, sectionName, branches));
+                }
+                sectionId = rowSectionId;
+                sectionName = (String) row[1];
+                branches = new ArrayList<>();
+            }
+            if (row[2] != null) {
+                branches.add(new ForumStructure.BranchNode((Long) row[2], (String) row[3]));
+            }
+        }
+        if (sectionId != null) {
+            sections.add(new ForumStructure.SectionNode(sectionId, sectionName, branches));
+        }
+        return new ForumStructure(sections);
+    }
+
     /**
      * {@inheritDoc}
      */
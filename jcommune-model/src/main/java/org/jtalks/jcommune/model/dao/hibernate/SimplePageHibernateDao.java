@@ -30,6 +30,8 @@ import org.springframework.security.acls.model.NotFoundException;
  * @author Alexander Gavrikov
  */
 public class SimplePageHibernateDao extends GenericDao<SimplePage> implements SimplePageDao {
+    /** Query cache region results of the cacheable queries are stored in */
+    private static final String CACHE_REGION = "query.simplePages";
 
     public SimplePageHibernateDao(SessionFactory sessionFactory) {
         super(sessionFactory, SimplePage.class);
@@ -47,7 +49,7 @@ public class SimplePageHibernateDao extends GenericDao<SimplePage> implements Si
      */
     public SimplePage getPageByPathName(String pathName) throws NotFoundException {
         return (SimplePage) (session().getNamedQuery("getPageByPathName").
-                setCacheable(true).setString("pathName", pathName).
+                setCacheable(true).setCacheRegion(CACHE_REGION).setString("pathName", pathName).
                 uniqueResult());
     }
 
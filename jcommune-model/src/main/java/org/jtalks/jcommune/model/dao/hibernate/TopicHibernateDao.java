@@ -21,6 +21,7 @@ import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Property;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.exception.ConstraintViolationException;
 import org.joda.time.DateTime;
 import org.jtalks.common.model.dao.hibernate.GenericDao;
 import org.jtalks.common.model.entity.Branch;
@@ -28,7 +29,6 @@ import org.jtalks.common.model.entity.Group;
 import org.jtalks.jcommune.model.dao.TopicDao;
 import org.jtalks.jcommune.model.dto.PageRequest;
 import org.jtalks.jcommune.model.entity.JCUser;
-import org.jtalks.jcommune.model.entity.SubscriptionAwareEntity;
 import org.jtalks.jcommune.model.entity.Topic;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
@@ -49,6 +49,17 @@ public class TopicHibernateDao extends GenericDao<Topic> implements TopicDao {
     private static final String MAX_MOD_DATE = "maxModDate";
     private static final String GROUP_IDS = "groupIds";
     private static final String UNCHECKED = "unchecked";
+    private static final String TOPIC_IDS = "topicIds";
+    private static final String POLL_IDS = "pollIds";
+    private static final String TOPIC_ID = "topicId";
+    private static final String USER_ID = "userId";
+    /** Deletes topic data in the order required by foreign keys, topics themselves are deleted last */
+    private static final String[] DELETE_TOPIC_DATA_QUERIES = {"deleteCommentAttributesOfTopics",
+            "deleteCommentsOfTopics", "deletePostVotesOfTopics", "deletePostDraftsOfTopics",
+            "deleteSubscriptionsOfTopics", "deleteLastReadPostsOfTopics", "deleteAttributesOfTopics",
+            "clearBranchLastPostInTopics", "deletePostsOfTopics"};
+    private static final String[] DELETE_POLL_QUERIES = {"deletePollVotesOfPolls", "deleteOptionsOfPolls",
+            "deletePollsByIds"};
 
     /**
      * @param sessionFactory The SessionFactory.
@@ -240,14 +251,61 @@ public class TopicHibernateDao extends GenericDao<Topic> implements TopicDao {
      * {@inheritDoc}
      */
     @Override
-    public Collection<JCUser> getAllowedSubscribers(SubscriptionAwareEntity entity) {
-        // use set for remove duplicates
-        @SuppressWarnings("unchecked")
-        Set<JCUser> foundUsers = new HashSet<JCUser>(session()
-                .getNamedQuery("getAllowedSubscribersForTopic")
-                .setParameter("topic", entity)
-                .list());
-        return foundUsers;
+    public boolean isSubscribed(Topic topic, JCUser user) {
+        Number count = (Number) session()
+                .getNamedQuery("isSubscribedToTopic")
+                .setLong(TOPIC_ID, topic.getId())
+                .setLong(USER_ID, user.getId())
+                .uniqueResult();
+        return count.intValue() > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addSubscriber(Topic topic, JCUser user) {
+        try {
+            session().getNamedQuery("addTopicSubscriber")
+                    .setLong(TOPIC_ID, topic.getId())
+                    .setLong(USER_ID, user.getId())
+                    .executeUpdate();
+        } catch (ConstraintViolationException e) {
+            //concurrent request, e.g. a double click on the subscription button, has subscribed the user already
+            if (!isSubscribed(topic, user)) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeSubscriber(Topic topic, JCUser user) {
+        session().getNamedQuery("removeTopicSubscriber")
+                .setLong(TOPIC_ID, topic.getId())
+                .setLong(USER_ID, user.getId())
+                .executeUpdate();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings(UNCHECKED)
+    public List<Long> getAllowedSubscriberIds(Topic topic, Branch excludedBranch, long lastId, int maxResults) {
+        Query query;
+        if (excludedBranch == null) {
+            query = session().getNamedQuery("getAllowedSubscriberIdsForTopic");
+        } else {
+            query = session().getNamedQuery("getAllowedSubscriberIdsForTopicExceptBranch")
+                    .setParameter("excludedBranch", excludedBranch);
+        }
+        return query.setParameter("topic", topic)
+                .setLong("lastId", lastId)
+                .setMaxResults(maxResults)
+                .list();
     }
 
     /**
@@ -297,4 +355,56 @@ public class TopicHibernateDao extends GenericDao<Topic> implements TopicDao {
         }
         return result;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings(UNCHECKED)
+    public List<Long> getTopicIdsInBranch(long branchId, int maxResults) {
+        return session().getNamedQuery("getTopicIdsInBranch")
+                .setLong("branchId", branchId)
+                .setMaxResults(maxResults)
+                .list();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings(UNCHECKED)
+    public List<Long> getAuthorIdsOfPosts(Collection<Long> topicIds) {
+        if (topicIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return session().getNamedQuery("getAuthorIdsOfPostsInTopics")
+                .setParameterList(TOPIC_IDS, topicIds)
+                .list();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings(UNCHECKED)
+    public int deleteTopics(Collection<Long> topicIds) {
+        if (topicIds.isEmpty()) {
+            return 0;
+        }
+        List<Long> pollIds = session().getNamedQuery("getPollIdsOfTopics")
+                .setParameterList(TOPIC_IDS, topicIds)
+                .list();
+        for (String queryName : DELETE_TOPIC_DATA_QUERIES) {
+            session().getNamedQuery(queryName).setParameterList(TOPIC_IDS, topicIds).executeUpdate();
+        }
+        int deletedTopics = session().getNamedQuery("deleteTopicsByIds")
+                .setParameterList(TOPIC_IDS, topicIds)
+                .executeUpdate();
+        if (!pollIds.isEmpty()) {
+            for (String queryName : DELETE_POLL_QUERIES) {
+                session().getNamedQuery(queryName).setParameterList(POLL_IDS, pollIds).executeUpdate();
+            }
+        }
+        return deletedTopics;
+    }
 }
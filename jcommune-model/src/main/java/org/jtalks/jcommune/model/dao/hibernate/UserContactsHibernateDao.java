@@ -31,6 +31,8 @@ import java.util.List;
  */
 public class UserContactsHibernateDao extends GenericDao<UserContactType>
         implements UserContactsDao {
+    /** Query cache region results of the cacheable queries are stored in */
+    private static final String CACHE_REGION = "query.contacts";
 
 
     /**
@@ -48,6 +50,7 @@ public class UserContactsHibernateDao extends GenericDao<UserContactType>
         return session()
                 .createQuery("from UserContactType")
                 .setCacheable(true)
+                .setCacheRegion(CACHE_REGION)
                 .list();
     }
 
@@ -59,6 +62,7 @@ public class UserContactsHibernateDao extends GenericDao<UserContactType>
         return (UserContact) session()
                 .createQuery("from UserContact u where u.id = ?")
                 .setCacheable(true)
+                .setCacheRegion(CACHE_REGION)
                 .setLong(0, id)
                 .uniqueResult();
     }
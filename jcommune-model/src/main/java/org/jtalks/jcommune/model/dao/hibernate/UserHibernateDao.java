@@ -16,12 +16,15 @@ package org.jtalks.jcommune.model.dao.hibernate;
 
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Restrictions;
+import org.joda.time.DateTime;
 import org.jtalks.common.model.dao.hibernate.GenericDao;
 import org.jtalks.common.model.entity.User;
 import org.jtalks.jcommune.model.dao.UserDao;
 import org.jtalks.jcommune.model.dao.utils.SqlLikeEscaper;
 import org.jtalks.jcommune.model.entity.JCUser;
+import org.jtalks.jcommune.model.entity.Language;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
@@ -37,6 +40,13 @@ import java.util.Set;
  */
 public class UserHibernateDao extends GenericDao<JCUser>
         implements UserDao {
+    private static final String USER_IDS = "userIds";
+    private static final String SIDS = "sids";
+    /** The same format as the one of {@code UserSid} from jtalks-common security */
+    private static final String USER_SID_PREFIX = "user:";
+    /** Deletes data of users in the order required by foreign keys, users themselves are deleted last */
+    private static final String[] DELETE_USER_DATA_QUERIES = {"deleteGroupMembershipOfUsers",
+            "deleteContactsOfUsers", "deleteDetailsOfUsers"};
 
     /**
      * @param sessionFactory The SessionFactory.
@@ -90,12 +100,45 @@ public class UserHibernateDao extends GenericDao<JCUser>
      */
     @SuppressWarnings("unchecked")
     @Override
-    public Collection<JCUser> getNonActivatedUsers() {
-        return session().createCriteria(JCUser.class)
-                .add(Restrictions.eq("enabled", false))
+    public List<Long> getNonActivatedUserIds(DateTime registeredBefore, int maxResults) {
+        return session().getNamedQuery("getNonActivatedUserIds")
+                .setParameter("registeredBefore", registeredBefore)
+                .setMaxResults(maxResults)
                 .list();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int deleteUsers(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+        for (String queryName : DELETE_USER_DATA_QUERIES) {
+            session().getNamedQuery(queryName).setParameterList(USER_IDS, userIds).executeUpdate();
+        }
+        return session().getNamedQuery("deleteUsersByIds")
+                .setParameterList(USER_IDS, userIds)
+                .executeUpdate();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteAclOfUsers(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        List<String> sids = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            sids.add(USER_SID_PREFIX + userId);
+        }
+        session().getNamedQuery("deleteAclEntriesOfSids").setParameterList(SIDS, sids).executeUpdate();
+        session().getNamedQuery("deleteAclSids").setParameterList(SIDS, sids).executeUpdate();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -117,6 +160,26 @@ public class UserHibernateDao extends GenericDao<JCUser>
                 .list();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<JCUser> getRecipientsByIds(Collection<Long> ids) {
+        //noinspection unchecked
+        List<Object[]> rows = session().getNamedQuery("getRecipientsByIds")
+                .setParameterList("ids", ids)
+                .list();
+        List<JCUser> recipients = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            JCUser recipient = new JCUser((String) row[2], (String) row[3], null);
+            recipient.setId((Long) row[0]);
+            recipient.setUuid((String) row[1]);
+            recipient.setLanguage((Language) row[4]);
+            recipients.add(recipient);
+        }
+        return recipients;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -143,4 +206,17 @@ public class UserHibernateDao extends GenericDao<JCUser>
                 .setMaxResults(count)
                 .list();
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recalculatePostCounts(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        session().getNamedQuery("recalculatePostCounts")
+                .setParameterList(USER_IDS, userIds)
+                .executeUpdate();
+    }
 }
@@ -29,6 +29,8 @@ import org.jtalks.jcommune.model.dao.ValidatorDao;
  * @author Evgeniy Naumenko
  */
 public class ValidatorHibernateDao implements ValidatorDao<String> {
+    /** Query cache region results of the cacheable queries are stored in */
+    private static final String CACHE_REGION = "query.validation";
 
     private SessionFactory sessionFactory;
 
@@ -66,6 +68,7 @@ public class ValidatorHibernateDao implements ValidatorDao<String> {
                 .createCriteria(entity)
                 .add(Restrictions.eq(field, param))
                 .setCacheable(true)
+                .setCacheRegion(CACHE_REGION)
                 .list()
                 .isEmpty();
         }
@@ -82,6 +85,7 @@ public class ValidatorHibernateDao implements ValidatorDao<String> {
             .createCriteria(entity)
             .add(fieldRestriction)
             .setCacheable(true)
+            .setCacheRegion(CACHE_REGION)
             .list();
     }
 }
@@ -18,6 +18,7 @@ import org.jtalks.jcommune.model.dto.PageRequest;
 import org.jtalks.jcommune.model.entity.Topic;
 import org.springframework.data.domain.Page;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -47,4 +48,12 @@ public interface TopicSearchDao {
      * but the index doesn't contain this data or the index is re-created.
      */
     void rebuildIndex();
+
+    /**
+     * Removes topics from the index. Required when topics are deleted by bulk statements
+     * which are not tracked by the index. Changes are applied when current transaction is committed.
+     *
+     * @param topicIds ids of deleted topics
+     */
+    void removeFromIndex(Collection<Long> topicIds);
 }
@@ -14,6 +14,7 @@
  */
 package org.jtalks.jcommune.model.dao.search.hibernate;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import org.apache.commons.lang.StringUtils;
@@ -176,4 +177,15 @@ public class TopicHibernateSearchDao extends AbstractHibernateSearchDao
     public void rebuildIndex() {
         getFullTextSession().createIndexer(Topic.class).start();
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeFromIndex(Collection<Long> topicIds) {
+        FullTextSession fullTextSession = getFullTextSession();
+        for (Long topicId : topicIds) {
+            fullTextSession.purge(Topic.class, topicId);
+        }
+    }
 }
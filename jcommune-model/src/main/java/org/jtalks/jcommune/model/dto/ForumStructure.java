@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.model.dto;
+
+import com.google.common.collect.ImmutableList;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable snapshot of sections and their branches with ids, names and order only. It's used where the
+ * structure of the forum is shown without any other data of sections and branches, e.g. in Move Topic
+ * dialog, so these places don't need to load section and branch entities.
+ */
+public class ForumStructure implements Serializable {
+    private final List<SectionNode> sections;
+    private final List<BranchNode> branches;
+
+    /**
+     * @param sections sections in order of their positions, each with branches in order of their positions
+     */
+    public ForumStructure(List<SectionNode> sections) {
+        this.sections = ImmutableList.copyOf(sections);
+        List<BranchNode> allBranches = new ArrayList<>();
+        for (SectionNode section : sections) {
+            allBranches.addAll(section.getBranches());
+        }
+        this.branches = ImmutableList.copyOf(allBranches);
+    }
+
+    /**
+     * @return unmodifiable list of sections in order of their positions
+     */
+    public List<SectionNode> getSections() {
+        return sections;
+    }
+
+    /**
+     * @return unmodifiable list of branches of all sections, in order of sections and then branches positions
+     */
+    public List<BranchNode> getBranches() {
+        return branches;
+    }
+
+    /**
+     * Gets section with specified id.
+     *
+     * @param sectionId id of section
+     * @return section with specified id or {@code null} if there is no such section
+     */
+    public SectionNode getSection(long sectionId) {
+        for (SectionNode section : sections) {
+            if (section.getId() == sectionId) {
+                return section;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Section of the forum structure.
+     */
+    public static class SectionNode implements Serializable {
+        private final long id;
+        private final String name;
+        private final List<BranchNode> branches;
+
+        /**
+         * @param id       section id
+         * @param name     section name
+         * @param branches branches of the section in order of their positions
+         */
+        public SectionNode(long id, String name, List<BranchNode> branches) {
+            this.id = id;
+            this.name = name;
+            this.branches = ImmutableList.copyOf(branches);
+        }
+
+        /**
+         * @return section id
+         */
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * @return section name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return unmodifiable list of branches of the section in order of their positions
+         */
+        public List<BranchNode> getBranches() {
+            return branches;
+        }
+    }
+
+    /**
+     * Branch of the forum structure.
+     */
+    public static class BranchNode implements Serializable {
+        private final long id;
+        private final String name;
+
+        /**
+         * @param id   branch id
+         * @param name branch name
+         */
+        public BranchNode(long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        /**
+         * @return branch id
+         */
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * @return branch name
+         */
+        public String getName() {
+            return name;
+        }
+    }
+}
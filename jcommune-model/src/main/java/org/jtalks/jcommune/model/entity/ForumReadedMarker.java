@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.model.entity;
+
+import org.joda.time.DateTime;
+import org.jtalks.common.model.entity.Entity;
+
+/**
+ * Stores time of marking the whole forum as read by the user. Topics modified before this time are
+ * considered read. It's kept apart from the user, so marking forum as read doesn't update the user
+ * and evict it from the cache. Identifier of the marker is the identifier of its user.
+ * @see org.jtalks.jcommune.model.entity.BranchReadedMarker
+ */
+public class ForumReadedMarker extends Entity {
+
+    private DateTime markTime;
+
+    /**
+     * Needed for hibernate usage
+     */
+    public ForumReadedMarker() {
+    }
+
+    /**
+     * Constructs marker of the user
+     *
+     * @param userId   id of the user which marks forum as read
+     * @param markTime time of marking forum as read
+     */
+    public ForumReadedMarker(long userId, DateTime markTime) {
+        setId(userId);
+        this.markTime = markTime;
+    }
+
+    /**
+     * Gets time of marking the forum as read
+     *
+     * @return time of marking the forum as read
+     */
+    public DateTime getMarkTime() {
+        return markTime;
+    }
+
+    /**
+     * Sets time of marking forum as read
+     *
+     * @param markTime time to be set
+     */
+    public void setMarkTime(DateTime markTime) {
+        this.markTime = markTime;
+    }
+}
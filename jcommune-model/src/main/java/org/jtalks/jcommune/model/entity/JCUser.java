@@ -71,8 +71,6 @@ public class JCUser extends User {
 
     private DateTime avatarLastModificationTime = new DateTime(System.currentTimeMillis());
 
-    private DateTime allForumMarkedAsReadTime;
-
     /**
      * Only for hibernate usage.
      */
@@ -321,25 +319,6 @@ public class JCUser extends User {
         this.avatarLastModificationTime = avatarLastModificationTime;
     }
 
-    /**
-     * Get the time when forum was marked as all read for this user.
-     *
-     * @return if forum was marked as all read for this user it returns time of this action,
-     *         if forum was never marked as all read it returns null
-     */
-    public DateTime getAllForumMarkedAsReadTime() {
-        return allForumMarkedAsReadTime;
-    }
-
-    /**
-     * Set the time when forum was marked as all read for this user.
-     *
-     * @param forumMarkedAsAllReadTime the time when forum was marked as all read for this user
-     */
-    public void setAllForumMarkedAsReadTime(DateTime forumMarkedAsAllReadTime) {
-        this.allForumMarkedAsReadTime = forumMarkedAsAllReadTime;
-    }
-
     /**
      * Adds a user to the group and adds group to the user. No checks whether there are such records present here,
      * that's what Hibernate will do for us anyway.
@@ -415,7 +394,6 @@ public class JCUser extends User {
             copy.getContacts().add(copyUserContact(contact, copy));
         }
         copy.setAvatarLastModificationTime(user.getAvatarLastModificationTime());
-        copy.setAllForumMarkedAsReadTime(user.getAllForumMarkedAsReadTime());
         copy.setUuid(user.getUuid());
         return copy;
     }
@@ -72,7 +72,6 @@ public final class ObjectsFactory {
         user.setSendPmNotification(true);
         user.getContacts().add(ObjectsFactory.getDefaultUserContact());
         user.setAvatarLastModificationTime(dateTime);
-        user.setAllForumMarkedAsReadTime(dateTime);
         user.setAvatar(new byte[]{1});
         user.setVersion(1L);
         user.setBanReason("Ban Reason");
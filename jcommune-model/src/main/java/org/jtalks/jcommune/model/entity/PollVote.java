@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.model.entity;
+
+import org.joda.time.DateTime;
+import org.jtalks.common.model.entity.Entity;
+
+/**
+ * Records the fact that user has participated in the poll. There can be only one
+ * such record for each pair of poll and user, that's how re-voting is prohibited.
+ * Selected options aren't tracked here, they are counted in {@link PollItem}.
+ */
+public class PollVote extends Entity {
+    private Poll poll;
+    private JCUser user;
+    private DateTime voteDate = new DateTime();
+
+    /**
+     * Used only by Hibernate.
+     */
+    protected PollVote() {
+    }
+
+    /**
+     * Creates a record about participation of the user in the poll.
+     *
+     * @param poll poll the user has voted in
+     * @param user voted user
+     */
+    public PollVote(Poll poll, JCUser user) {
+        this.poll = poll;
+        this.user = user;
+    }
+
+    /**
+     * Gets the poll the user has voted in
+     *
+     * @return poll the user has voted in
+     */
+    public Poll getPoll() {
+        return poll;
+    }
+
+    /**
+     * Sets the poll the user has voted in
+     *
+     * @param poll poll to be set
+     */
+    public void setPoll(Poll poll) {
+        this.poll = poll;
+    }
+
+    /**
+     * Gets the voted user
+     *
+     * @return voted user
+     */
+    public JCUser getUser() {
+        return user;
+    }
+
+    /**
+     * Sets specified user as voter
+     *
+     * @param user user to be set
+     */
+    public void setUser(JCUser user) {
+        this.user = user;
+    }
+
+    /**
+     * Gets vote date
+     *
+     * @return vote date
+     */
+    public DateTime getVoteDate() {
+        return voteDate;
+    }
+
+    /**
+     * Sets specified date as vote date
+     *
+     * @param voteDate date to set
+     */
+    public void setVoteDate(DateTime voteDate) {
+        this.voteDate = voteDate;
+    }
+}
@@ -66,7 +66,7 @@ public class PostDraft extends Entity {
         return lastSaved;
     }
 
-    protected void setLastSaved(DateTime lastSaved) {
+    public void setLastSaved(DateTime lastSaved) {
         this.lastSaved = lastSaved;
     }
 
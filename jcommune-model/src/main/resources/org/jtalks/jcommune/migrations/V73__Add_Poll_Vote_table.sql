@@ -0,0 +1,31 @@
+create table POLL_VOTE (
+  ID bigint(20) not null auto_increment,
+  UUID varchar(255) not null,
+  POLL_ID bigint(20) not null,
+  USER_ID bigint(20) not null,
+  VOTE_DATE datetime not null,
+  primary key(ID),
+  unique key (POLL_ID, USER_ID),
+  constraint FK_VOTE_POLL foreign key (POLL_ID) references POLLS (POLL_ID) on delete cascade,
+  constraint FK_POLL_VOTED_USER foreign key (USER_ID) references USERS (ID) on delete cascade
+)engine=InnoDb default charset='utf8' collate='utf8_bin';
+
+-- Votes used to be recorded as restricting WRITE entries in the ACL of a poll, one per voted user
+set @poll_acl_class := 'POLL';
+set @write_mask := 2;
+
+insert ignore into POLL_VOTE (UUID, POLL_ID, USER_ID, VOTE_DATE)
+  select (select UUID() from dual), aoi.object_id_identity, u.ID, NOW()
+  from acl_entry ae
+    join acl_object_identity aoi on aoi.id = ae.acl_object_identity
+    join acl_class ac on ac.id = aoi.object_id_class
+    join acl_sid sid on sid.id = ae.sid
+    join USERS u on sid.sid = CONCAT('user:', CONVERT(u.ID, char(19)))
+    join POLLS p on p.POLL_ID = aoi.object_id_identity
+  where ac.class = @poll_acl_class and ae.mask = @write_mask and ae.granting = 0 and sid.principal = 1;
+
+delete ae from acl_entry ae
+  join acl_object_identity aoi on aoi.id = ae.acl_object_identity
+  join acl_class ac on ac.id = aoi.object_id_class
+  join acl_sid sid on sid.id = ae.sid
+  where ac.class = @poll_acl_class and ae.mask = @write_mask and ae.granting = 0 and sid.principal = 1;
@@ -0,0 +1,10 @@
+-- Rights to edit own posts and topics are now decided by authorship and branch permissions,
+-- so the per-post and per-topic WRITE entries granted to authors are not needed anymore
+delete ae from acl_entry ae
+  join acl_object_identity aoi on aoi.id = ae.acl_object_identity
+  join acl_class ac on ac.id = aoi.object_id_class
+  where ac.class in ('POST', 'TOPIC');
+
+delete aoi from acl_object_identity aoi
+  join acl_class ac on ac.id = aoi.object_id_class
+  where ac.class in ('POST', 'TOPIC');
@@ -0,0 +1,3 @@
+-- Non-activated accounts are removed by timer with a query bounded by activation status and registration date
+create index USERS_ENABLED_INDEX on USERS (ENABLED);
+create index REGISTRATION_DATE_INDEX on JC_USER_DETAILS (REGISTRATION_DATE);
@@ -0,0 +1,3 @@
+-- Folders of private messages are filtered by recipient or sender and status and ordered by creation date
+create index PM_USER_TO_STATUS_DATE_INDEX on PRIVATE_MESSAGE (USER_TO, STATUS, CREATION_DATE);
+create index PM_USER_FROM_STATUS_DATE_INDEX on PRIVATE_MESSAGE (USER_FROM, STATUS, CREATION_DATE);
@@ -0,0 +1,13 @@
+-- Subscriptions are inserted and deleted by key, so duplicates are removed and keys are made unique.
+-- The unique keys also serve lookups of a subscription and reading of subscribers ordered by user id.
+CREATE TABLE TOPIC_SUBSCRIPTIONS_DISTINCT AS SELECT DISTINCT TOPIC_ID, USER_ID FROM TOPIC_SUBSCRIPTIONS;
+DELETE FROM TOPIC_SUBSCRIPTIONS;
+INSERT INTO TOPIC_SUBSCRIPTIONS (TOPIC_ID, USER_ID) SELECT TOPIC_ID, USER_ID FROM TOPIC_SUBSCRIPTIONS_DISTINCT;
+DROP TABLE TOPIC_SUBSCRIPTIONS_DISTINCT;
+ALTER TABLE TOPIC_SUBSCRIPTIONS ADD UNIQUE INDEX `UNIQUE_TOPIC_ID_USER_ID` (TOPIC_ID, USER_ID);
+
+CREATE TABLE BRANCH_SUBSCRIPTIONS_DISTINCT AS SELECT DISTINCT BRANCH_ID, USER_ID FROM BRANCH_SUBSCRIPTIONS;
+DELETE FROM BRANCH_SUBSCRIPTIONS;
+INSERT INTO BRANCH_SUBSCRIPTIONS (BRANCH_ID, USER_ID) SELECT BRANCH_ID, USER_ID FROM BRANCH_SUBSCRIPTIONS_DISTINCT;
+DROP TABLE BRANCH_SUBSCRIPTIONS_DISTINCT;
+ALTER TABLE BRANCH_SUBSCRIPTIONS ADD UNIQUE INDEX `UNIQUE_BRANCH_ID_USER_ID` (BRANCH_ID, USER_ID);
@@ -0,0 +1,2 @@
+-- Answers of a question are paged in order of their rating and creation date
+create index POST_TOPIC_RATING_DATE_INDEX on POST (TOPIC_ID, RATING, POST_DATE);
@@ -0,0 +1,3 @@
+-- The last post of branch is looked up in the last modified topic of the branch
+create index TOPIC_BRANCH_MODIFICATION_DATE_INDEX on TOPIC (BRANCH_ID, MODIFICATION_DATE);
+create index POST_TOPIC_DATE_INDEX on POST (TOPIC_ID, POST_DATE);
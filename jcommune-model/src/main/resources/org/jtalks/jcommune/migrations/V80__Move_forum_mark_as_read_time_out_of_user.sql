@@ -0,0 +1,15 @@
+-- Time of marking the whole forum as read is kept apart from the user, so marking doesn't update the user row
+CREATE TABLE `MARK_FORUM_AS_READ_TIME` (
+  `USER_ID` bigint(20) NOT NULL,
+  `UUID` varchar(255) COLLATE utf8_bin NOT NULL,
+  `MARKED_AS_READ_TIME` DATETIME NOT NULL,
+  PRIMARY KEY (`USER_ID`),
+  UNIQUE KEY `UUID` (`UUID`),
+  CONSTRAINT `FK_FORUM_READER` FOREIGN KEY (`USER_ID`) REFERENCES `USERS` (`ID`) ON DELETE CASCADE
+) ENGINE=INNODB DEFAULT CHARSET=utf8 COLLATE=utf8_bin;
+
+INSERT INTO MARK_FORUM_AS_READ_TIME (USER_ID, UUID, MARKED_AS_READ_TIME)
+  SELECT USER_ID, UUID(), ALL_FORUM_MARKED_AS_READ_TIME FROM JC_USER_DETAILS
+  WHERE ALL_FORUM_MARKED_AS_READ_TIME IS NOT NULL;
+
+ALTER TABLE JC_USER_DETAILS DROP COLUMN ALL_FORUM_MARKED_AS_READ_TIME;
@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.model.dao.hibernate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Creates ACL tables in the test database. In production they are created by migrations of jtalks-common, but
+ * migrations are disabled in tests and the tables are not mapped by Hibernate, so hbm2ddl doesn't create them.
+ * Columns are the same as in MySQL, flags are numbers as queries compare them with numbers.
+ */
+final class AclTables {
+    private static final String[] DDL = {
+            "CREATE TABLE acl_sid (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+                    + " principal TINYINT NOT NULL, sid VARCHAR(100) NOT NULL, UNIQUE (sid, principal))",
+            "CREATE TABLE acl_class (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+                    + " class VARCHAR(100) NOT NULL, UNIQUE (class))",
+            "CREATE TABLE acl_object_identity (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+                    + " object_id_class BIGINT NOT NULL, object_id_identity BIGINT NOT NULL, parent_object BIGINT,"
+                    + " owner_sid BIGINT, entries_inheriting TINYINT NOT NULL,"
+                    + " UNIQUE (object_id_class, object_id_identity),"
+                    + " FOREIGN KEY (parent_object) REFERENCES acl_object_identity (id),"
+                    + " FOREIGN KEY (object_id_class) REFERENCES acl_class (id),"
+                    + " FOREIGN KEY (owner_sid) REFERENCES acl_sid (id))",
+            "CREATE TABLE acl_entry (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+                    + " acl_object_identity BIGINT NOT NULL, ace_order INT NOT NULL, sid BIGINT NOT NULL,"
+                    + " mask INT NOT NULL, granting TINYINT NOT NULL, audit_success TINYINT NOT NULL,"
+                    + " audit_failure TINYINT NOT NULL, UNIQUE (acl_object_identity, ace_order),"
+                    + " FOREIGN KEY (acl_object_identity) REFERENCES acl_object_identity (id),"
+                    + " FOREIGN KEY (sid) REFERENCES acl_sid (id))"
+    };
+
+    private AclTables() {
+    }
+
+    /**
+     * Creates ACL tables unless they were created by another test sharing the same in-memory database. Must be
+     * called outside of test transactions as DDL statements commit the current transaction.
+     *
+     * @param dataSource data source of the test database
+     * @throws SQLException if tables can't be created
+     */
+    static void createIfAbsent(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            try (ResultSet tables = connection.getMetaData().getTables(null, null, "ACL_ENTRY", null)) {
+                if (tables.next()) {
+                    return;
+                }
+            }
+            try (Statement statement = connection.createStatement()) {
+                for (String ddl : DDL) {
+                    statement.execute(ddl);
+                }
+            }
+        }
+    }
+}
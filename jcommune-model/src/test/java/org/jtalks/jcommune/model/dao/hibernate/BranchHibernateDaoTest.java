@@ -30,6 +30,7 @@ import org.testng.annotations.Test;
 
 import javax.validation.ConstraintViolationException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.testng.Assert.*;
@@ -225,7 +226,7 @@ public class BranchHibernateDaoTest extends AbstractTransactionalTestNGSpringCon
         session.save(branch);
         PersistedObjectsFactory.createAndSaveViewTopicsBranchesEntity(
                 branch.getId(), String.valueOf(subscriber.getGroups().get(0).getId()), true);
-        assertEquals(dao.getAllowedSubscribers(branch).size(), 1,
+        assertEquals(dao.getAllowedSubscriberIds(branch, null, 0, 10).size(), 1,
                 "Should return subscribers which are contained in some group with VIEW_TOPIC permission.");
     }
 
@@ -237,7 +238,7 @@ public class BranchHibernateDaoTest extends AbstractTransactionalTestNGSpringCon
         PersistedObjectsFactory.createAndSaveViewTopicsBranchesEntity(
                 branch.getId(), String.valueOf(subscriber.getGroups().get(0).getId()), false);
 
-        assertEquals(dao.getAllowedSubscribers(branch).size(), 0,
+        assertEquals(dao.getAllowedSubscriberIds(branch, null, 0, 10).size(), 0,
                 "Should not return subscribers which are contained in any group with disallowed VIEW_TOPIC permission.");
     }
 
@@ -251,7 +252,7 @@ public class BranchHibernateDaoTest extends AbstractTransactionalTestNGSpringCon
         PersistedObjectsFactory.createAndSaveViewTopicsBranchesEntity(
                 branch.getId(), String.valueOf(subscriber.getGroups().get(1).getId()), true);
 
-        assertEquals(dao.getAllowedSubscribers(branch).size(), 0,
+        assertEquals(dao.getAllowedSubscriberIds(branch, null, 0, 10).size(), 0,
                 "Should not return subscribers which are contained in any group with disallowed VIEW_TOPIC permission.");
     }
 
@@ -261,7 +262,90 @@ public class BranchHibernateDaoTest extends AbstractTransactionalTestNGSpringCon
         branch.getSubscribers().add(subscriber);
         session.save(branch);
 
-        assertEquals(dao.getAllowedSubscribers(branch).size(), 0,
+        assertEquals(dao.getAllowedSubscriberIds(branch, null, 0, 10).size(), 0,
                 "Should not return subscribers which are not contained in any group with allowed VIEW_TOPIC permission.");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getAllowedSubscriberIdsShouldReturnPageAfterLastId() {
+        JCUser first = PersistedObjectsFactory.getDefaultUserWithGroups();
+        JCUser second = anotherSubscriberInGroupsOf(first);
+        branch.getSubscribers().add(first);
+        branch.getSubscribers().add(second);
+        session.save(branch);
+        PersistedObjectsFactory.createAndSaveViewTopicsBranchesEntity(
+                branch.getId(), String.valueOf(first.getGroups().get(0).getId()), true);
+
+        assertEquals(dao.getAllowedSubscriberIds(branch, null, 0, 1), Arrays.asList(first.getId()));
+        assertEquals(dao.getAllowedSubscriberIds(branch, null, first.getId(), 1), Arrays.asList(second.getId()));
+        assertTrue(dao.getAllowedSubscriberIds(branch, null, second.getId(), 1).isEmpty());
+    }
+
+    @Test
+    public void getAllowedSubscriberIdsShouldSkipSubscribersOfExcludedTopic() {
+        JCUser topicSubscriber = PersistedObjectsFactory.getDefaultUserWithGroups();
+        JCUser branchSubscriber = anotherSubscriberInGroupsOf(topicSubscriber);
+        Topic topic = ObjectsFactory.getTopic(topicSubscriber, 1);
+        topic.getSubscribers().add(topicSubscriber);
+        branch.addTopic(topic);
+        branch.getSubscribers().add(topicSubscriber);
+        branch.getSubscribers().add(branchSubscriber);
+        session.save(branch);
+        PersistedObjectsFactory.createAndSaveViewTopicsBranchesEntity(
+                branch.getId(), String.valueOf(topicSubscriber.getGroups().get(0).getId()), true);
+
+        assertEquals(dao.getAllowedSubscriberIds(branch, topic, 0, 10), Arrays.asList(branchSubscriber.getId()));
+    }
+
+    @Test
+    public void addSubscriberShouldSubscribeUserWithoutUpdatingBranch() {
+        JCUser user = PersistedObjectsFactory.getDefaultUser();
+        session.save(branch);
+
+        dao.addSubscriber(branch, user);
+
+        assertTrue(dao.isSubscribed(branch, user));
+        session.clear();
+        assertTrue(((Branch) session.get(Branch.class, branch.getId())).getSubscribers().contains(user));
+    }
+
+    @Test
+    public void addSubscriberShouldIgnoreSubscriptionMadeByConcurrentRequest() {
+        JCUser user = PersistedObjectsFactory.getDefaultUser();
+        session.save(branch);
+        dao.addSubscriber(branch, user);
+
+        dao.addSubscriber(branch, user);
+
+        assertTrue(dao.isSubscribed(branch, user));
+    }
+
+    @Test
+    public void removeSubscriberShouldUnsubscribeUserWithoutUpdatingBranch() {
+        JCUser user = PersistedObjectsFactory.getDefaultUser();
+        branch.getSubscribers().add(user);
+        session.save(branch);
+        session.flush();
+
+        dao.removeSubscriber(branch, user);
+
+        assertFalse(dao.isSubscribed(branch, user));
+        session.clear();
+        assertFalse(((Branch) session.get(Branch.class, branch.getId())).getSubscribers().contains(user));
+    }
+
+    @Test
+    public void isSubscribedShouldBeFalseForUserNotSubscribed() {
+        JCUser user = PersistedObjectsFactory.getDefaultUser();
+        session.save(branch);
+
+        assertFalse(dao.isSubscribed(branch, user));
+    }
+
+    private JCUser anotherSubscriberInGroupsOf(JCUser user) {
+        JCUser another = ObjectsFactory.getUser("another", "another@mail.com");
+        another.setGroups(new ArrayList<>(user.getGroups()));
+        session.save(another);
+        return another;
+    }
+}
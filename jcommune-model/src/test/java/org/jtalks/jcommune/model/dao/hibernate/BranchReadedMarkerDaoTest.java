@@ -30,8 +30,14 @@ import org.springframework.transaction.annotation.Transactional;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotSame;
 import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
 import static org.unitils.reflectionassert.ReflectionAssert.assertReflectionEquals;
 
 /**
@@ -97,4 +103,25 @@ public class BranchReadedMarkerDaoTest extends AbstractTransactionalTestNGSpring
         assertNull(result);
     }
 
+    @Test
+    public void getMarkersForShouldReturnMarkersOfAllBranches() {
+        Branch anotherBranch = ObjectsFactory.getDefaultBranch();
+        Branch notMarkedBranch = ObjectsFactory.getDefaultBranch();
+        session.save(user);
+        session.save(branch);
+        session.save(anotherBranch);
+        session.save(notMarkedBranch);
+        session.save(new BranchReadedMarker(user, branch));
+        session.save(new BranchReadedMarker(user, anotherBranch));
+
+        List<BranchReadedMarker> result = dao.getMarkersFor(user,
+                Arrays.asList(branch, anotherBranch, notMarkedBranch));
+
+        assertEquals(2, result.size());
+    }
+
+    @Test
+    public void getMarkersForShouldReturnEmptyListForEmptyListOfBranches() {
+        assertTrue(dao.getMarkersFor(user, Collections.<Branch>emptyList()).isEmpty());
+    }
 }
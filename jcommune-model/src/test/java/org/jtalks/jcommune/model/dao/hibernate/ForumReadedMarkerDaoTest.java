@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.model.dao.hibernate;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.joda.time.DateTime;
+import org.jtalks.jcommune.model.dao.ForumReadedMarkerDao;
+import org.jtalks.jcommune.model.entity.ForumReadedMarker;
+import org.jtalks.jcommune.model.entity.JCUser;
+import org.jtalks.jcommune.model.entity.ObjectsFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTransactionalTestNGSpringContextTests;
+import org.springframework.test.context.transaction.TransactionConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+@ContextConfiguration(locations = {"classpath:/org/jtalks/jcommune/model/entity/applicationContext-dao.xml"})
+@TransactionConfiguration(transactionManager = "transactionManager", defaultRollback = true)
+@Transactional
+public class ForumReadedMarkerDaoTest extends AbstractTransactionalTestNGSpringContextTests {
+
+    @Autowired
+    private ForumReadedMarkerDao dao;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    private JCUser user;
+    private Session session;
+
+    @BeforeMethod
+    public void init() {
+        session = sessionFactory.getCurrentSession();
+        user = ObjectsFactory.getDefaultUser();
+        session.save(user);
+        session.flush();
+    }
+
+    @Test
+    public void markForumAsReadShouldCreateMarkerOfUser() {
+        DateTime markTime = new DateTime(2014, 1, 1, 0, 0, 0, 0);
+
+        dao.markForumAsRead(user, markTime);
+        session.flush();
+        session.clear();
+
+        ForumReadedMarker result = (ForumReadedMarker) session.get(ForumReadedMarker.class, user.getId());
+        assertEquals(result.getMarkTime().getMillis(), markTime.getMillis());
+    }
+
+    @Test
+    public void markForumAsReadShouldUpdateExistingMarker() {
+        session.save(new ForumReadedMarker(user.getId(), new DateTime(2014, 1, 1, 0, 0, 0, 0)));
+        session.flush();
+        session.clear();
+        DateTime markTime = new DateTime(2014, 2, 1, 0, 0, 0, 0);
+
+        dao.markForumAsRead(user, markTime);
+        session.flush();
+        session.clear();
+
+        assertEquals(dao.getMarkTime(user).getMillis(), markTime.getMillis());
+    }
+
+    @Test
+    public void markForumAsReadShouldUpdateMarkerInsertedByConcurrentRequest() {
+        session.save(new ForumReadedMarker(user.getId(), new DateTime(2014, 1, 1, 0, 0, 0, 0)));
+        session.flush();
+        session.clear();
+        DateTime markTime = new DateTime(2014, 2, 1, 0, 0, 0, 0);
+
+        new MarkerNotFoundFirstTimeDao(sessionFactory).markForumAsRead(user, markTime);
+        session.flush();
+        session.clear();
+
+        assertEquals(dao.getMarkTime(user).getMillis(), markTime.getMillis());
+    }
+
+    @Test
+    public void markForumAsReadShouldNotUpdateUser() {
+        session.flush();
+        Long version = user.getVersion();
+
+        dao.markForumAsRead(user, new DateTime());
+        session.flush();
+        session.clear();
+
+        JCUser result = (JCUser) session.get(JCUser.class, user.getId());
+        assertEquals(result.getVersion(), version);
+    }
+
+    @Test
+    public void getMarkTimeShouldReturnNullIfForumWasNotMarked() {
+        assertNull(dao.getMarkTime(user));
+    }
+
+    /**
+     * Doesn't find the marker on the first lookup as if it was inserted by a concurrent request right after it
+     */
+    private static class MarkerNotFoundFirstTimeDao extends ForumReadedMarkerHibernateDao {
+        private boolean found;
+
+        MarkerNotFoundFirstTimeDao(SessionFactory sessionFactory) {
+            super(sessionFactory);
+        }
+
+        @Override
+        public ForumReadedMarker get(Long id) {
+            if (!found) {
+                found = true;
+                return null;
+            }
+            return super.get(id);
+        }
+    }
+}
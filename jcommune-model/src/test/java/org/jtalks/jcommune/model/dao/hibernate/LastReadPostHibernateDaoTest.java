@@ -218,6 +218,41 @@ public class LastReadPostHibernateDaoTest extends AbstractTransactionalTestNGSpr
 
     }
 
+    @Test
+    public void deleteLastReadPostsForUserShouldDeleteOnlyPostsReadBeforeMarkTime() {
+        JCUser user = PersistedObjectsFactory.getDefaultUser();
+        List<Topic> topics = PersistedObjectsFactory.createAndSaveTopicListWithPosts(3);
+        DateTime markTime = new DateTime(2014, 1, 1, 0, 0, 0, 0);
+        session.save(new LastReadPost(user, topics.get(0), markTime.minusDays(1)));
+        session.save(new LastReadPost(user, topics.get(1), markTime));
+        LastReadPost readAfterMark = new LastReadPost(user, topics.get(2), markTime.plusDays(1));
+        session.save(readAfterMark);
+        session.flush();
+
+        int deleted = lastReadPostDao.deleteLastReadPostsFor(user.getId(), markTime, 10);
+        session.clear();
+
+        assertEquals(deleted, 2);
+        List<LastReadPost> lastReadPosts = lastReadPostDao.getLastReadPosts(user, topics);
+        assertEquals(lastReadPosts.size(), 1);
+        assertEquals(lastReadPosts.get(0).getId(), readAfterMark.getId());
+    }
+
+    @Test
+    public void deleteLastReadPostsForUserShouldDeleteNotMoreThanMaxCount() {
+        JCUser user = PersistedObjectsFactory.getDefaultUser();
+        List<Topic> topics = PersistedObjectsFactory.createAndSaveTopicListWithPosts(3);
+        DateTime markTime = new DateTime(2014, 1, 1, 0, 0, 0, 0);
+        for (Topic topic : topics) {
+            session.save(new LastReadPost(user, topic, markTime.minusDays(1)));
+        }
+        session.flush();
+
+        assertEquals(lastReadPostDao.deleteLastReadPostsFor(user.getId(), markTime, 2), 2);
+        assertEquals(lastReadPostDao.deleteLastReadPostsFor(user.getId(), markTime, 2), 1);
+        assertEquals(lastReadPostDao.deleteLastReadPostsFor(user.getId(), markTime, 2), 0);
+    }
+
     /**
      * Method marks topics as read to user
      *
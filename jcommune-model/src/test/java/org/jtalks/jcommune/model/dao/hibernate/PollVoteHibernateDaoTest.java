@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.model.dao.hibernate;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.jtalks.jcommune.model.dao.PollVoteDao;
+import org.jtalks.jcommune.model.entity.JCUser;
+import org.jtalks.jcommune.model.entity.PersistedObjectsFactory;
+import org.jtalks.jcommune.model.entity.Poll;
+import org.jtalks.jcommune.model.entity.PollItem;
+import org.jtalks.jcommune.model.entity.PollVote;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTransactionalTestNGSpringContextTests;
+import org.springframework.test.context.transaction.TransactionConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@ContextConfiguration(locations = {"classpath:/org/jtalks/jcommune/model/entity/applicationContext-dao.xml"})
+@TransactionConfiguration(transactionManager = "transactionManager", defaultRollback = true)
+@Transactional
+public class PollVoteHibernateDaoTest extends AbstractTransactionalTestNGSpringContextTests {
+    @Autowired
+    private SessionFactory sessionFactory;
+    @Autowired
+    private PollVoteDao pollVoteDao;
+    private Session session;
+
+    @BeforeMethod
+    public void setUp() {
+        session = sessionFactory.getCurrentSession();
+        PersistedObjectsFactory.setSession(session);
+    }
+
+    @Test
+    public void isVotedShouldReturnTrueForVotedUser() {
+        Poll poll = PersistedObjectsFactory.createDefaultVoting();
+        JCUser user = PersistedObjectsFactory.getDefaultUser();
+        pollVoteDao.saveOrUpdate(new PollVote(poll, user));
+        session.flush();
+
+        assertTrue(pollVoteDao.isVoted(poll, user));
+    }
+
+    @Test
+    public void isVotedShouldReturnFalseForUserWhoHasNotVoted() {
+        Poll poll = PersistedObjectsFactory.createDefaultVoting();
+        JCUser voted = PersistedObjectsFactory.getUser("voted", "voted@example.org");
+        JCUser notVoted = PersistedObjectsFactory.getUser("notVoted", "notVoted@example.org");
+        pollVoteDao.saveOrUpdate(new PollVote(poll, voted));
+        session.flush();
+
+        assertFalse(pollVoteDao.isVoted(poll, notVoted));
+    }
+
+    @Test(expectedExceptions = DataIntegrityViolationException.class)
+    public void secondVoteOfTheSameUserShouldViolateUniqueKey() {
+        Poll poll = PersistedObjectsFactory.createDefaultVoting();
+        JCUser user = PersistedObjectsFactory.getDefaultUser();
+        pollVoteDao.saveOrUpdate(new PollVote(poll, user));
+        session.flush();
+
+        pollVoteDao.saveOrUpdate(new PollVote(poll, user));
+        session.flush();
+    }
+
+    @Test
+    public void increaseVotesCountShouldUpdateOnlySelectedItems() {
+        Poll poll = PersistedObjectsFactory.createDefaultVoting();
+        session.flush();
+        PollItem selected = poll.getPollItems().get(0);
+        PollItem notSelected = poll.getPollItems().get(1);
+
+        int updated = pollVoteDao.increaseVotesCount(poll, Arrays.asList(selected.getId()));
+        pollVoteDao.increaseVotesCount(poll, Arrays.asList(selected.getId()));
+
+        assertEquals(updated, 1);
+        assertEquals(selected.getVotesCount(), 2);
+        assertEquals(notSelected.getVotesCount(), 0);
+    }
+
+    @Test
+    public void increaseVotesCountShouldIgnoreItemsNotFromThePoll() {
+        Poll poll = PersistedObjectsFactory.createDefaultVoting();
+        session.flush();
+
+        int updated = pollVoteDao.increaseVotesCount(poll, Arrays.asList(-1L));
+
+        assertEquals(updated, 0);
+    }
+
+    @Test
+    public void increaseVotesCountShouldDoNothingWithoutSelectedItems() {
+        Poll poll = PersistedObjectsFactory.createDefaultVoting();
+
+        assertEquals(pollVoteDao.increaseVotesCount(poll, Collections.<Long>emptyList()), 0);
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.model.dao.hibernate;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.jtalks.jcommune.model.dao.PostDraftDao;
+import org.jtalks.jcommune.model.entity.JCUser;
+import org.jtalks.jcommune.model.entity.PersistedObjectsFactory;
+import org.jtalks.jcommune.model.entity.PostDraft;
+import org.jtalks.jcommune.model.entity.Topic;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTransactionalTestNGSpringContextTests;
+import org.springframework.test.context.transaction.TransactionConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+@ContextConfiguration(locations = {"classpath:/org/jtalks/jcommune/model/entity/applicationContext-dao.xml"})
+@TransactionConfiguration(transactionManager = "transactionManager", defaultRollback = true)
+@Transactional
+public class PostDraftHibernateDaoTest extends AbstractTransactionalTestNGSpringContextTests {
+    @Autowired
+    private SessionFactory sessionFactory;
+    @Autowired
+    private PostDraftDao postDraftDao;
+    private Session session;
+
+    @BeforeMethod
+    public void setUp() {
+        session = sessionFactory.getCurrentSession();
+        PersistedObjectsFactory.setSession(session);
+    }
+
+    @Test
+    public void getForUserShouldReturnDraftOfUserInTopic() {
+        Topic topic = PersistedObjectsFactory.getDefaultTopic();
+        JCUser author = topic.getTopicStarter();
+        PostDraft draft = new PostDraft("content", author);
+        draft.setTopic(topic);
+        postDraftDao.saveOrUpdate(draft);
+        session.flush();
+        session.clear();
+
+        PostDraft result = postDraftDao.getForUser(author, topic);
+
+        assertEquals(result.getId(), draft.getId());
+        assertEquals(result.getContent(), "content");
+    }
+
+    @Test
+    public void getForUserShouldReturnNullIfUserHasNoDraftInTopic() {
+        Topic topic = PersistedObjectsFactory.getDefaultTopic();
+
+        assertNull(postDraftDao.getForUser(topic.getTopicStarter(), topic));
+    }
+
+    @Test
+    public void savedDraftShouldBeVisibleInDraftsOfTopic() {
+        Topic topic = PersistedObjectsFactory.getDefaultTopic();
+        PostDraft draft = new PostDraft("content", topic.getTopicStarter());
+        draft.setTopic(topic);
+        postDraftDao.saveOrUpdate(draft);
+        session.flush();
+        session.clear();
+
+        Topic loaded = (Topic) session.get(Topic.class, topic.getId());
+
+        assertEquals(loaded.getDrafts().size(), 1);
+        assertEquals(loaded.getDrafts().get(0).getId(), draft.getId());
+    }
+}
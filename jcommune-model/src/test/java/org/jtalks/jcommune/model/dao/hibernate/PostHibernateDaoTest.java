@@ -271,6 +271,97 @@ public class PostHibernateDaoTest extends AbstractTransactionalTestNGSpringConte
         assertEquals(postsPage.getNumber(), pageCount, "Incorrect number of page");
     }
 
+    @Test
+    public void getFirstPostShouldReturnQuestionOfTopic() {
+        List<Post> answers = PersistedObjectsFactory.createAndSavePostList(3);
+        Topic topic = answers.get(0).getTopic();
+        flushAndClearSession();
+
+        Post firstPost = dao.getFirstPost(topic);
+
+        assertEquals(firstPost.getId(), topic.getFirstPost().getId());
+    }
+
+    @Test
+    public void getAnswersShouldExcludeQuestionAndOrderAnswersByRatingAndDate() {
+        List<Post> answers = PersistedObjectsFactory.createAndSavePostList(4);
+        Topic topic = answers.get(0).getTopic();
+        Post question = topic.getFirstPost();
+        question.setRating(10);
+        answers.get(0).setRating(1);
+        setCreationDate(answers.get(1), new DateTime().minusDays(1));
+        answers.get(1).setRating(2);
+        setCreationDate(answers.get(2), new DateTime());
+        answers.get(2).setRating(2);
+        flushAndClearSession();
+
+        Page<Post> answersPage = dao.getAnswers(question, new PageRequest("1", 10));
+
+        assertEquals(answersPage.getTotalElements(), 3);
+        assertEquals(answersPage.getContent().get(0).getId(), answers.get(2).getId());
+        assertEquals(answersPage.getContent().get(1).getId(), answers.get(1).getId());
+        assertEquals(answersPage.getContent().get(2).getId(), answers.get(0).getId());
+    }
+
+    /**
+     * Benchmark: a popular question with 1000 answers should be rendered with a single page of
+     * answers fetched from database instead of all of them.
+     */
+    @Test
+    public void getAnswersOfQuestionWithThousandAnswersShouldFetchOnlyRequestedPage() {
+        int answersCount = 1000;
+        int pageSize = 25;
+        List<Post> answers = PersistedObjectsFactory.createAndSavePostList(answersCount + 1);
+        for (int i = 0; i < answers.size(); i++) {
+            answers.get(i).setRating(i % 7);
+        }
+        Post question = answers.get(0).getTopic().getFirstPost();
+        flushAndClearSession();
+
+        Page<Post> answersPage = dao.getAnswers(question, new PageRequest("3", pageSize));
+
+        assertEquals(answersPage.getContent().size(), pageSize);
+        assertEquals(answersPage.getTotalElements(), answersCount);
+        assertEquals(answersPage.getNumber(), 3);
+        for (int i = 1; i < answersPage.getContent().size(); i++) {
+            assertTrue(answersPage.getContent().get(i - 1).getRating() >= answersPage.getContent().get(i).getRating());
+        }
+    }
+
+    @Test
+    public void getCountAnswersRankedAboveShouldCountAnswersWithHigherRatingOrNewerWithSameRating() {
+        List<Post> answers = PersistedObjectsFactory.createAndSavePostList(5);
+        Post question = answers.get(0).getTopic().getFirstPost();
+        question.setRating(10);
+        answers.get(0).setRating(3);
+        setCreationDate(answers.get(1), new DateTime().minusDays(2));
+        answers.get(1).setRating(1);
+        setCreationDate(answers.get(2), new DateTime().minusDays(1));
+        answers.get(2).setRating(1);
+        answers.get(3).setRating(0);
+        flushAndClearSession();
+
+        assertEquals(dao.getCountAnswersRankedAbove(question, answers.get(0)), 0);
+        assertEquals(dao.getCountAnswersRankedAbove(question, answers.get(1)), 2);
+        assertEquals(dao.getCountAnswersRankedAbove(question, answers.get(3)), 3);
+    }
+
+    @Test
+    public void answersCreatedAtSameMomentShouldBeRankedById() {
+        List<Post> answers = PersistedObjectsFactory.createAndSavePostList(4);
+        Post question = answers.get(0).getTopic().getFirstPost();
+        DateTime creationDate = new DateTime().minusDays(1);
+        setCreationDate(answers.get(1), creationDate);
+        setCreationDate(answers.get(2), creationDate);
+        flushAndClearSession();
+
+        List<Post> ranked = dao.getAnswers(question, new PageRequest("1", 10)).getContent();
+        assertEquals(ranked.get(1).getId(), answers.get(2).getId());
+        assertEquals(ranked.get(2).getId(), answers.get(1).getId());
+        assertEquals(dao.getCountAnswersRankedAbove(question, answers.get(2)), 1);
+        assertEquals(dao.getCountAnswersRankedAbove(question, answers.get(1)), 2);
+    }
+
     @Test
     public void testGetLastPostForBranch() {
         int size = 2;
@@ -291,6 +382,29 @@ public class PostHibernateDaoTest extends AbstractTransactionalTestNGSpringConte
                 "The last post in the branch is the wrong.");
     }
 
+    @Test
+    public void getLastPostForBranchShouldReturnLastPostOfLastModifiedTopic() {
+        List<Post> posts = PersistedObjectsFactory.createAndSavePostList(3);
+        Topic oldTopic = posts.get(0).getTopic();
+        Branch branch = oldTopic.getBranch();
+        JCUser author = oldTopic.getTopicStarter();
+        Topic newTopic = new Topic(author, "new topic");
+        Post firstPost = new Post(author, "first");
+        ReflectionTestUtils.setField(firstPost, "creationDate", new DateTime(2100, 12, 25, 0, 0, 0, 0));
+        Post lastPost = new Post(author, "last");
+        ReflectionTestUtils.setField(lastPost, "creationDate", new DateTime(2101, 12, 25, 0, 0, 0, 0));
+        newTopic.addPost(firstPost);
+        newTopic.addPost(lastPost);
+        branch.addTopic(newTopic);
+        session.save(newTopic);
+        flushAndClearSession();
+
+        Post actualLastPost = dao.getLastPostFor(branch);
+
+        assertNotNull(actualLastPost, "Last post in the branch is not found.");
+        assertEquals(actualLastPost.getId(), lastPost.getId(), "The last post in the branch is the wrong.");
+    }
+
     @Test
     public void getLastPostsForBranchShouldReturnLatestCreatedPosts() {
         int size = 42;
@@ -483,6 +597,10 @@ public class PostHibernateDaoTest extends AbstractTransactionalTestNGSpringConte
         return result;
     }
 
+    private void setCreationDate(Post post, DateTime creationDate) {
+        ReflectionTestUtils.setField(post, "creationDate", creationDate);
+    }
+
     private void flushAndClearSession() {
         session.flush();
         session.clear();
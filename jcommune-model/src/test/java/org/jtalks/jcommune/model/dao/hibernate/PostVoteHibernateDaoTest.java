@@ -0,0 +1,140 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.model.dao.hibernate;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.jtalks.jcommune.model.dao.PostVoteDao;
+import org.jtalks.jcommune.model.entity.JCUser;
+import org.jtalks.jcommune.model.entity.PersistedObjectsFactory;
+import org.jtalks.jcommune.model.entity.Post;
+import org.jtalks.jcommune.model.entity.PostVote;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTransactionalTestNGSpringContextTests;
+import org.springframework.test.context.transaction.TransactionConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@ContextConfiguration(locations = {"classpath:/org/jtalks/jcommune/model/entity/applicationContext-dao.xml"})
+@TransactionConfiguration(transactionManager = "transactionManager", defaultRollback = true)
+@Transactional
+public class PostVoteHibernateDaoTest extends AbstractTransactionalTestNGSpringContextTests {
+    @Autowired
+    private SessionFactory sessionFactory;
+    @Autowired
+    private PostVoteDao postVoteDao;
+    private Session session;
+
+    @BeforeMethod
+    public void setUp() {
+        session = sessionFactory.getCurrentSession();
+        PersistedObjectsFactory.setSession(session);
+    }
+
+    @Test
+    public void firstVoteShouldBeStored() {
+        Post post = PersistedObjectsFactory.getDefaultPost();
+        JCUser user = PersistedObjectsFactory.getDefaultUser();
+
+        int upChanges = postVoteDao.saveOrFlipVote(vote(post, user, true));
+
+        assertEquals(upChanges, 1);
+        assertEquals(postVoteDao.getVotesOfUser(user, Arrays.asList(post.getId())).get(post.getId()), Boolean.TRUE);
+    }
+
+    @Test
+    public void firstVoteDownShouldDecreaseRatingByOne() {
+        Post post = PersistedObjectsFactory.getDefaultPost();
+        JCUser user = PersistedObjectsFactory.getDefaultUser();
+
+        assertEquals(postVoteDao.saveOrFlipVote(vote(post, user, false)), -1);
+    }
+
+    @Test
+    public void voteInSameDirectionShouldNotChangeAnything() {
+        Post post = PersistedObjectsFactory.getDefaultPost();
+        JCUser user = PersistedObjectsFactory.getDefaultUser();
+        postVoteDao.saveOrFlipVote(vote(post, user, true));
+
+        int changes = postVoteDao.saveOrFlipVote(vote(post, user, true));
+
+        assertEquals(changes, 0);
+        assertEquals(countVotes(post), 1);
+    }
+
+    @Test
+    public void voteInOppositeDirectionShouldFlipStoredVote() {
+        Post post = PersistedObjectsFactory.getDefaultPost();
+        JCUser user = PersistedObjectsFactory.getDefaultUser();
+        postVoteDao.saveOrFlipVote(vote(post, user, true));
+
+        int changes = postVoteDao.saveOrFlipVote(vote(post, user, false));
+        session.clear();
+
+        assertEquals(changes, -2);
+        assertEquals(countVotes(post), 1);
+        assertFalse(postVoteDao.getVotesOfUser(user, Arrays.asList(post.getId())).get(post.getId()));
+    }
+
+    @Test
+    public void getVotesOfUserShouldReturnOnlyVotesOfSpecifiedUserForSpecifiedPosts() {
+        Post votedUp = PersistedObjectsFactory.getDefaultPost();
+        Post votedDown = PersistedObjectsFactory.getDefaultPost();
+        Post notVoted = PersistedObjectsFactory.getDefaultPost();
+        Post notRequested = PersistedObjectsFactory.getDefaultPost();
+        JCUser user = PersistedObjectsFactory.getUser("voter", "voter@example.org");
+        JCUser anotherUser = PersistedObjectsFactory.getUser("another", "another@example.org");
+        postVoteDao.saveOrFlipVote(vote(votedUp, user, true));
+        postVoteDao.saveOrFlipVote(vote(votedDown, user, false));
+        postVoteDao.saveOrFlipVote(vote(notVoted, anotherUser, true));
+        postVoteDao.saveOrFlipVote(vote(notRequested, user, true));
+
+        Map<Long, Boolean> votes = postVoteDao.getVotesOfUser(user,
+                Arrays.asList(votedUp.getId(), votedDown.getId(), notVoted.getId()));
+
+        assertEquals(votes.size(), 2);
+        assertTrue(votes.get(votedUp.getId()));
+        assertFalse(votes.get(votedDown.getId()));
+    }
+
+    @Test
+    public void getVotesOfUserShouldReturnEmptyMapForEmptyListOfPosts() {
+        JCUser user = PersistedObjectsFactory.getDefaultUser();
+
+        assertTrue(postVoteDao.getVotesOfUser(user, Collections.<Long>emptyList()).isEmpty());
+    }
+
+    private PostVote vote(Post post, JCUser user, boolean votedUp) {
+        PostVote vote = new PostVote(user);
+        vote.setPost(post);
+        vote.setVotedUp(votedUp);
+        return vote;
+    }
+
+    private int countVotes(Post post) {
+        return ((Number) session.createQuery("select count(*) from PostVote v where v.post = :post")
+                .setParameter("post", post).uniqueResult()).intValue();
+    }
+}
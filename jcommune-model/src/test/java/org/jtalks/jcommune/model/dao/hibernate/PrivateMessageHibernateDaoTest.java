@@ -34,6 +34,10 @@ import org.springframework.transaction.annotation.Transactional;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
@@ -721,6 +725,132 @@ public class PrivateMessageHibernateDaoTest extends AbstractTransactionalTestNGS
         assertEquals(count, 1);
     }
 
+    @Test
+    public void keysetPageOfInboxShouldBeTheSameAsPageGotByNumber() {
+        JCUser userTo = PersistedObjectsFactory.getUser("UserTo", "mail2@mail.com");
+        JCUser userFrom = PersistedObjectsFactory.getUser("UserFrom", "mail1@mail.com");
+        PersistedObjectsFactory.preparePrivateMessages(5, userTo, userFrom);
+        int totalCount = dao.getInboxCount(userTo);
+
+        List<PrivateMessage> firstPage = dao.getAllForUser(userTo, new PageRequest("1", 4), totalCount).getContent();
+        List<PrivateMessage> secondPage = dao.getAllForUser(userTo, new PageRequest("2", 4), totalCount).getContent();
+        long lastId = firstPage.get(firstPage.size() - 1).getId();
+
+        assertEquals(dao.getAllForUserOlderThan(userTo, lastId, 4), secondPage);
+    }
+
+    @Test
+    public void keysetPageOfOutboxShouldBeTheSameAsPageGotByNumber() {
+        JCUser userTo = PersistedObjectsFactory.getUser("UserTo", "mail2@mail.com");
+        JCUser userFrom = PersistedObjectsFactory.getUser("UserFrom", "mail1@mail.com");
+        PersistedObjectsFactory.preparePrivateMessages(5, userTo, userFrom);
+        int totalCount = dao.getOutboxCount(userFrom);
+
+        List<PrivateMessage> firstPage = dao.getAllFromUser(userFrom, new PageRequest("1", 4), totalCount)
+                .getContent();
+        List<PrivateMessage> secondPage = dao.getAllFromUser(userFrom, new PageRequest("2", 4), totalCount)
+                .getContent();
+        long lastId = firstPage.get(firstPage.size() - 1).getId();
+
+        assertEquals(dao.getAllFromUserOlderThan(userFrom, lastId, 4), secondPage);
+    }
+
+    @Test
+    public void keysetPageOfDraftsShouldBeTheSameAsPageGotByNumber() {
+        JCUser userTo = PersistedObjectsFactory.getUser("UserTo", "mail2@mail.com");
+        JCUser userFrom = PersistedObjectsFactory.getUser("UserFrom", "mail1@mail.com");
+        PersistedObjectsFactory.preparePrivateMessages(5, userTo, userFrom);
+        int totalCount = dao.getDraftsCount(userFrom);
+
+        List<PrivateMessage> firstPage = dao.getDraftsForUser(userFrom, new PageRequest("1", 2), totalCount)
+                .getContent();
+        List<PrivateMessage> secondPage = dao.getDraftsForUser(userFrom, new PageRequest("2", 2), totalCount)
+                .getContent();
+        long lastId = firstPage.get(firstPage.size() - 1).getId();
+
+        assertEquals(dao.getDraftsForUserOlderThan(userFrom, lastId, 2), secondPage);
+    }
+
+    @Test
+    public void keysetPageShouldBeEmptyIfMessageDoesNotExist() {
+        JCUser userTo = PersistedObjectsFactory.getUser("UserTo", "mail2@mail.com");
+        JCUser userFrom = PersistedObjectsFactory.getUser("UserFrom", "mail1@mail.com");
+        PersistedObjectsFactory.preparePrivateMessages(5, userTo, userFrom);
+
+        assertTrue(dao.getAllForUserOlderThan(userTo, -100500L, 4).isEmpty());
+    }
+
+    @Test
+    public void markAsReadShouldMarkOnlyNewMessagesOfRecipient() {
+        saveMessagesWithDifferentStatus();
+        List<Long> ids = Arrays.asList(notReadPm.getId(), readPm.getId(), draftPm.getId());
+
+        assertEquals(dao.getNewMessagesCount(recipient, ids), 1);
+        assertEquals(dao.markAsRead(author, ids), 0);
+        assertEquals(dao.markAsRead(recipient, ids), 1);
+
+        session.clear();
+        assertTrue(dao.get(notReadPm.getId()).isRead());
+        assertFalse(dao.get(draftPm.getId()).isRead());
+        assertEquals(dao.getNewMessagesCountFor(recipient.getUsername()), 0);
+    }
+
+    @Test
+    public void deleteFromInboxShouldHideSentMessagesAndRemoveMessagesDeletedByAuthor() {
+        saveMessagesWithDifferentStatus();
+        readPm.setStatus(PrivateMessageStatus.DELETED_FROM_OUTBOX);
+        session.flush();
+        List<Long> ids = Arrays.asList(notReadPm.getId(), readPm.getId(), draftPm.getId());
+
+        int deleted = dao.deleteFromInbox(recipient, ids);
+
+        session.clear();
+        assertEquals(deleted, 2);
+        assertEquals(dao.get(notReadPm.getId()).getStatus(), PrivateMessageStatus.DELETED_FROM_INBOX);
+        assertNull(dao.get(readPm.getId()));
+        assertEquals(dao.get(draftPm.getId()).getStatus(), PrivateMessageStatus.DRAFT);
+    }
+
+    @Test
+    public void deleteFromOutboxShouldHideSentMessagesAndRemoveMessagesDeletedByRecipient() {
+        saveMessagesWithDifferentStatus();
+        readPm.setStatus(PrivateMessageStatus.DELETED_FROM_INBOX);
+        session.flush();
+        List<Long> ids = Arrays.asList(notReadPm.getId(), readPm.getId(), draftPm.getId());
+
+        assertEquals(dao.deleteFromOutbox(recipient, ids), 0);
+        int deleted = dao.deleteFromOutbox(author, ids);
+
+        session.clear();
+        assertEquals(deleted, 2);
+        assertEquals(dao.get(notReadPm.getId()).getStatus(), PrivateMessageStatus.DELETED_FROM_OUTBOX);
+        assertNull(dao.get(readPm.getId()));
+        assertEquals(dao.get(draftPm.getId()).getStatus(), PrivateMessageStatus.DRAFT);
+    }
+
+    @Test
+    public void deleteDraftsShouldRemoveOnlyDrafts() {
+        saveMessagesWithDifferentStatus();
+        List<Long> ids = Arrays.asList(notReadPm.getId(), readPm.getId(), draftPm.getId());
+
+        int deleted = dao.deleteDrafts(author, ids);
+
+        session.clear();
+        assertEquals(deleted, 1);
+        assertNull(dao.get(draftPm.getId()));
+        assertNotNull(dao.get(notReadPm.getId()));
+    }
+
+    @Test
+    public void bulkOperationsShouldDoNothingForEmptyListOfIds() {
+        saveMessagesWithDifferentStatus();
+
+        assertEquals(dao.markAsRead(recipient, Collections.<Long>emptyList()), 0);
+        assertEquals(dao.deleteDrafts(author, Collections.<Long>emptyList()), 0);
+        assertEquals(dao.deleteFromInbox(recipient, Collections.<Long>emptyList()), 0);
+        assertEquals(dao.deleteFromOutbox(author, Collections.<Long>emptyList()), 0);
+    }
+
     private void saveMessagesWithDifferentStatus() {
         author = ObjectsFactory.getUser("author", "author@aaa.com");
         recipient = ObjectsFactory.getUser("recipient", "recipient@aaa.com");
@@ -0,0 +1,175 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.model.dao.hibernate;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.jdbc.Work;
+import org.jtalks.jcommune.model.entity.JCUser;
+import org.jtalks.jcommune.model.entity.PersistedObjectsFactory;
+import org.jtalks.jcommune.model.entity.Post;
+import org.jtalks.jcommune.model.entity.Topic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTransactionalTestNGSpringContextTests;
+import org.springframework.test.context.transaction.TransactionConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Measures how many replies per second are stored with and without the ACL rows which used to be created for
+ * every post to let its author edit it. ACL rows are written by the same statements the ACL service issues for
+ * a new object identity with one entry, lookups of the ACL service are left out, so the difference is a lower
+ * bound of the saved work.
+ * <p/>
+ * The test belongs to the performance group which is not run by default, use performance-tests profile to run it.
+ */
+@ContextConfiguration(locations = {"classpath:/org/jtalks/jcommune/model/entity/applicationContext-dao.xml"})
+@TransactionConfiguration(transactionManager = "transactionManager", defaultRollback = true)
+@Transactional
+public class ReplyThroughputTest extends AbstractTransactionalTestNGSpringContextTests {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplyThroughputTest.class);
+    private static final int REPLIES = 1000;
+    private static final int WRITE_MASK = 2;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+    @Autowired
+    private DataSource dataSource;
+    private Session session;
+
+    @BeforeClass(alwaysRun = true)
+    public void createAclTables() throws SQLException {
+        AclTables.createIfAbsent(dataSource);
+    }
+
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() {
+        session = sessionFactory.getCurrentSession();
+        PersistedObjectsFactory.setSession(session);
+    }
+
+    @Test(groups = "performance")
+    public void replyWithoutAclRows() {
+        Topic topic = PersistedObjectsFactory.getDefaultTopic();
+        session.flush();
+
+        long started = System.nanoTime();
+        for (int i = 0; i < REPLIES; i++) {
+            reply(topic);
+        }
+        long tookMillis = Math.max(1, (System.nanoTime() - started) / 1000000);
+
+        assertEquals(countRows("acl_object_identity"), 0);
+        LOGGER.info("Replies without ACL rows: {} replies in {} ms, {} replies/s",
+                new Object[]{REPLIES, tookMillis, REPLIES * 1000L / tookMillis});
+    }
+
+    @Test(groups = "performance")
+    public void replyWithAclRowsPerPost() {
+        Topic topic = PersistedObjectsFactory.getDefaultTopic();
+        session.flush();
+        insertRow("INSERT INTO acl_class (class) VALUES ('POST')");
+        insertRow("INSERT INTO acl_sid (principal, sid) VALUES (1, 'user:" + topic.getTopicStarter().getId() + "')");
+
+        long started = System.nanoTime();
+        for (int i = 0; i < REPLIES; i++) {
+            Post post = reply(topic);
+            grantWriteToAuthor(post);
+        }
+        long tookMillis = Math.max(1, (System.nanoTime() - started) / 1000000);
+
+        assertEquals(countRows("acl_object_identity"), REPLIES);
+        assertEquals(countRows("acl_entry"), REPLIES);
+        LOGGER.info("Replies with ACL rows per post: {} replies in {} ms, {} replies/s",
+                new Object[]{REPLIES, tookMillis, REPLIES * 1000L / tookMillis});
+    }
+
+    /**
+     * Adds a post to the topic and flushes it as the end of the request does.
+     */
+    private Post reply(Topic topic) {
+        JCUser author = topic.getTopicStarter();
+        Post post = new Post(author, "reply content");
+        topic.addPost(post);
+        session.save(post);
+        session.flush();
+        return post;
+    }
+
+    /**
+     * Issues statements of creating an ACL object identity for the post and granting WRITE to its author.
+     */
+    private void grantWriteToAuthor(final Post post) {
+        session.doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                long classId = selectId(connection, "SELECT id FROM acl_class WHERE class = 'POST'");
+                long sidId = selectId(connection, "SELECT id FROM acl_sid WHERE principal = 1 AND sid = 'user:"
+                        + post.getUserCreated().getId() + "'");
+                executeUpdate(connection, "INSERT INTO acl_object_identity (object_id_class, object_id_identity, "
+                        + "owner_sid, entries_inheriting) VALUES (" + classId + ", " + post.getId() + ", "
+                        + sidId + ", 1)");
+                long objectIdentityId = selectId(connection, "SELECT id FROM acl_object_identity WHERE "
+                        + "object_id_class = " + classId + " AND object_id_identity = " + post.getId());
+                executeUpdate(connection, "DELETE FROM acl_entry WHERE acl_object_identity = " + objectIdentityId);
+                executeUpdate(connection, "INSERT INTO acl_entry (acl_object_identity, ace_order, sid, mask, granting, "
+                        + "audit_success, audit_failure) VALUES (" + objectIdentityId + ", 0, " + sidId + ", "
+                        + WRITE_MASK + ", 1, 0, 0)");
+                executeUpdate(connection, "UPDATE acl_object_identity SET parent_object = NULL, owner_sid = " + sidId
+                        + ", entries_inheriting = 1 WHERE id = " + objectIdentityId);
+            }
+        });
+    }
+
+    private void insertRow(final String sql) {
+        session.doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                executeUpdate(connection, sql);
+            }
+        });
+    }
+
+    private int countRows(String table) {
+        return ((Number) session.createSQLQuery("SELECT COUNT(*) FROM " + table).uniqueResult()).intValue();
+    }
+
+    private static long selectId(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql);
+             ResultSet resultSet = statement.executeQuery()) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static void executeUpdate(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.executeUpdate();
+        }
+    }
+}
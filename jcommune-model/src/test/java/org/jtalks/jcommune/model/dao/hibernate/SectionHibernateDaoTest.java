@@ -21,6 +21,7 @@ import org.jtalks.common.model.entity.Section;
 import org.jtalks.jcommune.model.entity.PersistedObjectsFactory;
 import org.jtalks.jcommune.model.dao.BranchDao;
 import org.jtalks.jcommune.model.dao.SectionDao;
+import org.jtalks.jcommune.model.dto.ForumStructure;
 import org.jtalks.jcommune.model.entity.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
@@ -177,6 +178,32 @@ public class SectionHibernateDaoTest extends AbstractTransactionalTestNGSpringCo
         assertEquals(sectiones.size(), 2);
     }
 
+    @Test
+    public void getForumStructureShouldReturnSectionsWithBranchesInOrderOfPositions() {
+        Section section = ObjectsFactory.getDefaultSection();
+        Branch first = ObjectsFactory.getDefaultBranch();
+        Branch second = ObjectsFactory.getDefaultBranch();
+        section.addOrUpdateBranch(first);
+        section.addOrUpdateBranch(second);
+        session.save(section);
+        Section emptySection = ObjectsFactory.getDefaultSection();
+        session.save(emptySection);
+        session.flush();
+        session.clear();
+
+        ForumStructure structure = dao.getForumStructure();
+
+        assertEquals(structure.getSections().size(), 2);
+        ForumStructure.SectionNode sectionNode = structure.getSection(section.getId());
+        assertEquals(sectionNode.getName(), section.getName());
+        assertEquals(sectionNode.getBranches().size(), 2);
+        assertEquals(sectionNode.getBranches().get(0).getId(), first.getId());
+        assertEquals(sectionNode.getBranches().get(1).getId(), second.getId());
+        assertEquals(sectionNode.getBranches().get(1).getName(), second.getName());
+        assertTrue(structure.getSection(emptySection.getId()).getBranches().isEmpty());
+        assertEquals(structure.getBranches().size(), 2);
+    }
+
     @Test
     public void testGetAllWithEmptyTable() {
         List<Section> sectiones = dao.getAll();
@@ -32,6 +32,7 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -438,7 +439,7 @@ public class TopicHibernateDaoTest extends AbstractTransactionalTestNGSpringCont
         JCUser subscriber = topic.getTopicStarter();
         PersistedObjectsFactory.createAndSaveViewTopicsBranchesEntity(
                 topic.getBranch().getId(), String.valueOf(subscriber.getGroups().get(0).getId()), true);
-        assertEquals(dao.getAllowedSubscribers(topic).size(), 1,
+        assertEquals(dao.getAllowedSubscriberIds(topic, null, 0, 10).size(), 1,
                 "Should return subscribers which are contained in some group with VIEW_TOPIC permission and not contained in any group with disallowed VIEW_TOPIC permission.");
     }
 
@@ -449,7 +450,7 @@ public class TopicHibernateDaoTest extends AbstractTransactionalTestNGSpringCont
         PersistedObjectsFactory.createAndSaveViewTopicsBranchesEntity(
                 topic.getBranch().getId(), String.valueOf(subscriber.getGroups().get(0).getId()), false);
 
-        assertEquals(dao.getAllowedSubscribers(topic).size(), 0,
+        assertEquals(dao.getAllowedSubscriberIds(topic, null, 0, 10).size(), 0,
                 "Should not return subscribers which are contained in any group with disallowed VIEW_TOPIC permission.");
     }
 
@@ -462,7 +463,7 @@ public class TopicHibernateDaoTest extends AbstractTransactionalTestNGSpringCont
         PersistedObjectsFactory.createAndSaveViewTopicsBranchesEntity(
                 topic.getBranch().getId(), String.valueOf(subscriber.getGroups().get(1).getId()), true);
 
-        assertEquals(dao.getAllowedSubscribers(topic).size(), 0,
+        assertEquals(dao.getAllowedSubscriberIds(topic, null, 0, 10).size(), 0,
                 "Should not return subscribers which are contained in any group with disallowed VIEW_TOPIC permission.");
     }
 
@@ -470,10 +471,60 @@ public class TopicHibernateDaoTest extends AbstractTransactionalTestNGSpringCont
     public void testGetSubscribersWithoutAllowedAndDisallowedPermission() {
         Topic topic = createAndSaveTopicWithSubscribers();
 
-        assertEquals(dao.getAllowedSubscribers(topic).size(), 0,
+        assertEquals(dao.getAllowedSubscriberIds(topic, null, 0, 10).size(), 0,
                 "Should not return subscribers which are not contained in any group with VIEW_TOPIC permission.");
     }
 
+    @Test
+    public void getAllowedSubscriberIdsShouldSkipSubscribersOfExcludedBranch() {
+        Topic topic = createAndSaveTopicWithSubscribers();
+        JCUser subscriber = topic.getTopicStarter();
+        topic.getBranch().getSubscribers().add(subscriber);
+        session.save(topic.getBranch());
+        PersistedObjectsFactory.createAndSaveViewTopicsBranchesEntity(
+                topic.getBranch().getId(), String.valueOf(subscriber.getGroups().get(0).getId()), true);
+
+        assertEquals(dao.getAllowedSubscriberIds(topic, null, 0, 10), Arrays.asList(subscriber.getId()));
+        assertTrue(dao.getAllowedSubscriberIds(topic, topic.getBranch(), 0, 10).isEmpty());
+        assertTrue(dao.getAllowedSubscriberIds(topic, null, subscriber.getId(), 10).isEmpty());
+    }
+
+    @Test
+    public void addSubscriberShouldSubscribeUserWithoutUpdatingTopic() {
+        Topic topic = PersistedObjectsFactory.getDefaultTopic();
+        JCUser user = PersistedObjectsFactory.getUser("subscriber", "subscriber@mail.com");
+
+        dao.addSubscriber(topic, user);
+
+        assertTrue(dao.isSubscribed(topic, user));
+        session.clear();
+        assertTrue(((Topic) session.get(Topic.class, topic.getId())).getSubscribers().contains(user));
+    }
+
+    @Test
+    public void addSubscriberShouldIgnoreSubscriptionMadeByConcurrentRequest() {
+        Topic topic = PersistedObjectsFactory.getDefaultTopic();
+        JCUser user = PersistedObjectsFactory.getUser("subscriber", "subscriber@mail.com");
+        dao.addSubscriber(topic, user);
+
+        dao.addSubscriber(topic, user);
+
+        assertTrue(dao.isSubscribed(topic, user));
+    }
+
+    @Test
+    public void removeSubscriberShouldUnsubscribeUserWithoutUpdatingTopic() {
+        Topic topic = createAndSaveTopicWithSubscribers();
+        JCUser subscriber = topic.getTopicStarter();
+        session.flush();
+
+        dao.removeSubscriber(topic, subscriber);
+
+        assertFalse(dao.isSubscribed(topic, subscriber));
+        session.clear();
+        assertTrue(((Topic) session.get(Topic.class, topic.getId())).getSubscribers().isEmpty());
+    }
+
     private Topic createAndSaveTopicWithSubscribers() {
         JCUser subscriber = PersistedObjectsFactory.getDefaultUserWithGroups();
         Branch branch = ObjectsFactory.getDefaultBranch();
@@ -650,6 +701,51 @@ public class TopicHibernateDaoTest extends AbstractTransactionalTestNGSpringCont
         assertNull(result);
     }
 
+    @Test
+    public void getTopicIdsInBranchShouldReturnNotMoreThanMaxResults() {
+        List<Topic> topics = createAndSaveTopicList(3);
+        long branchId = topics.get(0).getBranch().getId();
+
+        List<Long> result = dao.getTopicIdsInBranch(branchId, 2);
+
+        assertEquals(result.size(), 2);
+    }
+
+    @Test
+    public void getAuthorIdsOfPostsShouldReturnEveryAuthorOnce() {
+        List<Topic> topics = createAndSaveTopicList(2);
+        List<Long> topicIds = new ArrayList<>();
+        for (Topic topic : topics) {
+            topicIds.add(topic.getId());
+        }
+
+        List<Long> result = dao.getAuthorIdsOfPosts(topicIds);
+
+        assertEquals(result.size(), 1);
+        assertEquals(result.get(0), Long.valueOf(topics.get(0).getTopicStarter().getId()));
+    }
+
+    @Test
+    public void deleteTopicsShouldDeleteTopicsWithTheirPosts() {
+        List<Topic> topics = createAndSaveTopicList(3);
+        Topic remainingTopic = topics.get(2);
+        long deletedPostId = topics.get(0).getFirstPost().getId();
+        flushAndClearSession();
+
+        int result = dao.deleteTopics(Arrays.asList(topics.get(0).getId(), topics.get(1).getId()));
+
+        assertEquals(result, 2);
+        assertNull(session.get(Topic.class, topics.get(0).getId()));
+        assertNull(session.get(Topic.class, topics.get(1).getId()));
+        assertNull(session.get(Post.class, deletedPostId));
+        assertNotNull(session.get(Topic.class, remainingTopic.getId()));
+    }
+
+    @Test
+    public void deleteTopicsShouldDoNothingForEmptyList() {
+        assertEquals(dao.deleteTopics(new ArrayList<Long>()), 0);
+    }
+
     private void flushAndClearSession() {
         session.flush();
         session.clear();
@@ -16,23 +16,32 @@ package org.jtalks.jcommune.model.dao.hibernate;
 
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.jdbc.Work;
+import org.joda.time.DateTime;
 import org.jtalks.common.model.dao.GroupDao;
 import org.jtalks.common.model.entity.Group;
 import org.jtalks.common.model.entity.User;
 import org.jtalks.jcommune.model.entity.PersistedObjectsFactory;
 import org.jtalks.jcommune.model.dao.UserDao;
 import org.jtalks.jcommune.model.entity.JCUser;
+import org.jtalks.jcommune.model.entity.Language;
 import org.jtalks.jcommune.model.entity.ObjectsFactory;
+import org.jtalks.jcommune.model.entity.Post;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.testng.AbstractTransactionalTestNGSpringContextTests;
 import org.springframework.test.context.transaction.TransactionConfiguration;
 import org.springframework.transaction.annotation.Transactional;
+import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
-import java.util.Collection;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -55,8 +64,15 @@ public class UserHibernateDaoTest extends AbstractTransactionalTestNGSpringConte
     private GroupDao groupDao;
     @Autowired
     private SessionFactory sessionFactory;
+    @Autowired
+    private DataSource dataSource;
     private Session session;
 
+    @BeforeClass
+    public void createAclTables() throws SQLException {
+        AclTables.createIfAbsent(dataSource);
+    }
+
     @BeforeMethod
     public void setUp() throws Exception {
         session = sessionFactory.getCurrentSession();
@@ -255,17 +271,80 @@ public class UserHibernateDaoTest extends AbstractTransactionalTestNGSpringConte
     }
 
     @Test
-    public void testFetchNonActivatedAccounts() {
-        JCUser activated = new JCUser("login", "email@mail.com", "password");
-        activated.setEnabled(true);
-        JCUser nonActivated = ObjectsFactory.getDefaultUser();
-        session.save(activated);
-        session.save(nonActivated);
+    public void getNonActivatedUserIdsShouldReturnOnlyExpiredNonActivatedAccounts() {
+        DateTime registeredBefore = new DateTime().minusDays(1);
+        JCUser activated = createUserRegisteredAt("activated", true, registeredBefore.minusHours(1));
+        JCUser expired = createUserRegisteredAt("expired", false, registeredBefore.minusHours(1));
+        JCUser fresh = createUserRegisteredAt("fresh", false, registeredBefore.plusHours(1));
+
+        List<Long> userIds = dao.getNonActivatedUserIds(registeredBefore, 10);
+
+        assertEquals(userIds, asList(expired.getId()));
+        assertFalse(userIds.contains(activated.getId()));
+        assertFalse(userIds.contains(fresh.getId()));
+    }
+
+    @Test
+    public void getNonActivatedUserIdsShouldReturnNotMoreThanMaxResults() {
+        DateTime registeredAt = new DateTime().minusDays(2);
+        createUserRegisteredAt("first", false, registeredAt);
+        createUserRegisteredAt("second", false, registeredAt);
 
-        Collection<JCUser> users = dao.getNonActivatedUsers();
+        List<Long> userIds = dao.getNonActivatedUserIds(new DateTime(), 1);
 
-        assertTrue(users.contains(nonActivated));
-        assertEquals(users.size(), 1);
+        assertEquals(userIds.size(), 1);
+    }
+
+    @Test
+    public void deleteUsersShouldDeleteUsersWithGroupMembership() {
+        Group group = PersistedObjectsFactory.group("group");
+        JCUser deleted = createUserRegisteredAt("deleted", false, new DateTime());
+        deleted.addGroup(group);
+        JCUser remaining = createUserRegisteredAt("remaining", false, new DateTime());
+        remaining.addGroup(group);
+        flushAndClearSession(session);
+
+        int result = dao.deleteUsers(asList(deleted.getId()));
+
+        assertEquals(result, 1);
+        assertNull(session.get(JCUser.class, deleted.getId()));
+        assertNull(session.get(User.class, deleted.getId()));
+        JCUser remainingFromDb = (JCUser) session.get(JCUser.class, remaining.getId());
+        assertEquals(remainingFromDb.getGroups().size(), 1);
+    }
+
+    @Test
+    public void deleteUsersShouldDoNothingForEmptyList() {
+        assertEquals(dao.deleteUsers(new HashSet<Long>()), 0);
+    }
+
+    @Test
+    public void deleteAclOfUsersShouldDeleteEntriesAndSidsOfTheUsersOnly() {
+        JCUser deleted = createUser("deleted", false);
+        JCUser remaining = createUser("remaining", false);
+        insertAclObject(100, null);
+        insertUserSidWithEntry(101, deleted, 100);
+        insertUserSidWithEntry(102, remaining, 100);
+
+        dao.deleteAclOfUsers(asList(deleted.getId()));
+
+        assertEquals(countRows("SELECT COUNT(*) FROM acl_entry WHERE sid = 101"), 0);
+        assertEquals(countRows("SELECT COUNT(*) FROM acl_sid WHERE id = 101"), 0);
+        assertEquals(countRows("SELECT COUNT(*) FROM acl_entry WHERE sid = 102"), 1);
+        assertEquals(countRows("SELECT COUNT(*) FROM acl_sid WHERE id = 102"), 1);
+    }
+
+    @Test
+    public void deleteAclOfUsersShouldKeepSidOwningAclObject() {
+        JCUser deleted = createUser("deleted", false);
+        insertAclObject(100, null);
+        insertUserSidWithEntry(101, deleted, 100);
+        insertAclObject(103, 101L);
+
+        dao.deleteAclOfUsers(asList(deleted.getId()));
+
+        assertEquals(countRows("SELECT COUNT(*) FROM acl_entry WHERE sid = 101"), 0);
+        assertEquals(countRows("SELECT COUNT(*) FROM acl_sid WHERE id = 101"), 1);
     }
 
     /**
@@ -302,6 +381,34 @@ public class UserHibernateDaoTest extends AbstractTransactionalTestNGSpringConte
         assertTrue(foundByUsernames.contains(firstExistsUser), firstExistsUser.getUsername() + "should be found by his name.");
     }
 
+    @Test
+    public void getRecipientsByIdsShouldReturnUsersOrderedById() {
+        JCUser first = givenJCUserWithUsernameStoredInDb("first");
+        JCUser second = givenJCUserWithUsernameStoredInDb("second");
+        givenJCUserWithUsernameStoredInDb("third");
+
+        List<JCUser> found = dao.getRecipientsByIds(asList(second.getId(), first.getId()));
+
+        assertEquals(found, asList(first, second));
+    }
+
+    @Test
+    public void getRecipientsByIdsShouldReadDetailsNeededToSendEmailsWithoutAttachingUsersToSession() {
+        JCUser user = new JCUser("recipient", "recipient@mail.com", "pass");
+        user.setLanguage(Language.RUSSIAN);
+        session.save(user);
+        session.clear();
+
+        JCUser found = dao.getRecipientsByIds(asList(user.getId())).get(0);
+
+        assertEquals(found.getId(), user.getId());
+        assertEquals(found.getUuid(), user.getUuid());
+        assertEquals(found.getUsername(), "recipient");
+        assertEquals(found.getEmail(), "recipient@mail.com");
+        assertEquals(found.getLanguage(), Language.RUSSIAN);
+        assertFalse(session.contains(found));
+    }
+
     @Test
     public void addingValidUserToValidGroupShouldSucceed() {
         JCUser user = givenJCUserWithUsernameStoredInDb("test-user");
@@ -632,6 +739,20 @@ public class UserHibernateDaoTest extends AbstractTransactionalTestNGSpringConte
         return expected;
     }
 
+    @Test
+    public void recalculatePostCountsShouldSetNumberOfPostsOfUser() {
+        List<Post> posts = PersistedObjectsFactory.createAndSavePostList(3);
+        JCUser author = posts.get(0).getUserCreated();
+        author.setPostCount(100);
+        flushAndClearSession(session);
+
+        dao.recalculatePostCounts(asList(author.getId()));
+        flushAndClearSession(session);
+
+        JCUser result = (JCUser) session.get(JCUser.class, author.getId());
+        assertEquals(result.getPostCount(), 3);
+    }
+
     private JCUser createUserWithMail(String username, String email, boolean enabled) {
         JCUser user = new JCUser(username, email, username + "pass");
         user.setEnabled(enabled);
@@ -639,6 +760,57 @@ public class UserHibernateDaoTest extends AbstractTransactionalTestNGSpringConte
         return user;
     }
 
+    private JCUser createUserRegisteredAt(String username, boolean enabled, DateTime registrationDate) {
+        JCUser user = createUser(username, enabled);
+        user.setRegistrationDate(registrationDate);
+        return user;
+    }
+
+    private void insertAclObject(long id, Long ownerSid) {
+        executeSql("INSERT INTO acl_class (id, class) VALUES (" + id + ", 'class" + id + "')",
+                "INSERT INTO acl_object_identity (id, object_id_class, object_id_identity, owner_sid,"
+                        + " entries_inheriting) VALUES (" + id + ", " + id + ", 1, " + ownerSid + ", 1)");
+    }
+
+    private void insertUserSidWithEntry(long sidId, JCUser user, long aclObjectId) {
+        executeSql("INSERT INTO acl_sid (id, principal, sid) VALUES (" + sidId + ", 1, 'user:" + user.getId() + "')",
+                "INSERT INTO acl_entry (id, acl_object_identity, ace_order, sid, mask, granting, audit_success,"
+                        + " audit_failure) VALUES (" + sidId + ", " + aclObjectId + ", " + sidId + ", " + sidId
+                        + ", 1, 1, 0, 0)");
+    }
+
+    /**
+     * Executes SQL in the session connection, ACL tables are not mapped so they are filled by plain statements.
+     */
+    private void executeSql(final String... statements) {
+        session.flush();
+        session.doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                try (Statement statement = connection.createStatement()) {
+                    for (String sql : statements) {
+                        statement.executeUpdate(sql);
+                    }
+                }
+            }
+        });
+    }
+
+    private long countRows(final String sql) {
+        final long[] count = new long[1];
+        session.doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                try (Statement statement = connection.createStatement();
+                     ResultSet resultSet = statement.executeQuery(sql)) {
+                    resultSet.next();
+                    count[0] = resultSet.getLong(1);
+                }
+            }
+        });
+        return count[0];
+    }
+
     private JCUser createUser(String username, boolean enabled) {
         return createUserWithMail(username, username + "@mail.com", enabled);
     }
@@ -111,7 +111,6 @@ public class JCUserTest {
         contact.setOwner(user);
         user.setContacts(Sets.newHashSet(contact));
         user.setAvatarLastModificationTime(new DateTime());
-        user.setAllForumMarkedAsReadTime(new DateTime());
         user.setUuid("uuid");
 
         JCUser copy = JCUser.copyUser(user);
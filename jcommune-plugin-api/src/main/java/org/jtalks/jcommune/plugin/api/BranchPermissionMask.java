@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.plugin.api;
+
+import org.springframework.security.acls.model.Permission;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * Immutable set of branch permissions granted to some user in some branch. Every permission
+ * is represented by one bit, the index of the bit is the mask of the permission (masks of
+ * all the branch permissions including ones provided by plugins are unique), so checking a
+ * permission is a single bit test.
+ */
+public final class BranchPermissionMask {
+    private final BitSet granted = new BitSet();
+
+    /**
+     * @param grantedPermissions permissions granted to user in the branch
+     */
+    public BranchPermissionMask(Collection<? extends Permission> grantedPermissions) {
+        for (Permission permission : grantedPermissions) {
+            if (permission.getMask() >= 0) {
+                granted.set(permission.getMask());
+            }
+        }
+    }
+
+    /**
+     * Checks if specified permission is granted
+     *
+     * @param permission permission to check
+     * @return true if permission is granted, false otherwise
+     */
+    public boolean isGranted(Permission permission) {
+        return permission.getMask() >= 0 && granted.get(permission.getMask());
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.plugin.api;
+
+import org.jtalks.common.model.permissions.JtalksPermission;
+import org.springframework.security.access.PermissionEvaluator;
+import org.springframework.security.core.Authentication;
+
+/**
+ * Permission evaluator which is able to evaluate all branch permissions of the user at once,
+ * so pages with lots of permission checks for the same branch need only one evaluation.
+ */
+public interface BulkPermissionEvaluator extends PermissionEvaluator {
+
+    /**
+     * Evaluates all the branch permissions including ones provided by enabled plugins
+     * for specified user in specified branch in one pass.
+     *
+     * @param authentication authentication of the user to check permissions for
+     * @param branchId       identifier of the branch
+     * @return permissions granted to the user in the branch
+     */
+    BranchPermissionMask getBranchPermissions(Authentication authentication, long branchId);
+
+    /**
+     * Resolves name of a branch permission like "BranchPermission.CREATE_POSTS" or name of a branch
+     * permission provided by enabled plugin like "QuestionsPluginBranchPermission.CREATE_QUESTIONS".
+     *
+     * @param permissionName name of the permission prefixed with simple name of its class
+     * @return branch permission or null if there is no branch permission with such name
+     */
+    JtalksPermission findBranchPermission(String permissionName);
+}
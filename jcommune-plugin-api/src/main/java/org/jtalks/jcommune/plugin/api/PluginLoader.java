@@ -25,6 +25,7 @@ import org.jtalks.jcommune.plugin.api.core.Plugin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.net.URLClassLoader;
 import java.nio.file.*;
@@ -39,6 +40,9 @@ import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
 /**
  * Load plugins from path and save configuration for them.
  * Also load plugin for class name.
+ * <p/>
+ * Plugins implementing {@link Closeable} are closed when they are reloaded and when the loader is destroyed,
+ * so they can stop their threads and release other resources.
  *
  * @author Anuar_Nurmakanov
  * @author Evgeny Naumenko
@@ -126,6 +130,7 @@ public class PluginLoader {
         List events = watchKey.pollEvents();
         if (!events.isEmpty()) {
             watchKey.reset();
+            closePlugins();
             try {
                 classLoader.close();
             } catch (IOException e) {
@@ -184,6 +189,7 @@ public class PluginLoader {
      * Will be called by container to release resource before bean destroying.
      */
     public void destroy() {
+        closePlugins();
         try {
             classLoader.close();
             watchService.close();
@@ -192,4 +198,19 @@ public class PluginLoader {
         }
     }
 
+    private void closePlugins() {
+        if (plugins == null) {
+            return;
+        }
+        for (Plugin plugin : plugins) {
+            if (plugin instanceof Closeable) {
+                try {
+                    ((Closeable) plugin).close();
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.error("Failed to close plugin " + plugin.getName(), e);
+                }
+            }
+        }
+    }
+
 }
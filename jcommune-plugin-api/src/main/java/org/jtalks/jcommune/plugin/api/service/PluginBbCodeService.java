@@ -14,6 +14,8 @@
  */
 package org.jtalks.jcommune.plugin.api.service;
 
+import org.jtalks.jcommune.model.entity.JCUser;
+
 /**
  * @author Mikhail Stryzhonok
  */
@@ -39,4 +41,14 @@ public interface PluginBbCodeService {
      * @return the same text with HTML markup to be shown
      */
     String convertBbToHtml(String bbEncodedText);
+
+    /**
+     * Converts signature of the user into HTML. Rendered signatures are cached until the profile of the
+     * user is changed, so it's preferable to use this method instead of {@link #convertBbToHtml(String)}
+     * for signatures.
+     *
+     * @param user user whose signature should be converted
+     * @return signature with HTML markup or empty string if user has no signature
+     */
+    String convertSignatureToHtml(JCUser user);
 }
@@ -16,8 +16,12 @@ package org.jtalks.jcommune.plugin.api.service;
 
 import org.jtalks.jcommune.model.entity.Post;
 import org.jtalks.jcommune.model.entity.PostComment;
+import org.jtalks.jcommune.model.entity.PostDraft;
+import org.jtalks.jcommune.model.entity.Topic;
 import org.jtalks.jcommune.plugin.api.exceptions.NotFoundException;
+import org.springframework.data.domain.Page;
 
+import java.util.Collection;
 import java.util.Map;
 
 /**
@@ -65,4 +69,55 @@ public interface PluginPostService {
      */
     PostComment addComment(Long postId, Map<String, String> attributes, String body) throws NotFoundException;
 
+    /**
+     * Gets votes of current user for specified posts in a single query, so pages with
+     * posts can be rendered without loading all votes of every post
+     *
+     * @param posts posts to get votes for
+     *
+     * @return map where key is id of the post voted by current user and value is true if
+     *         user voted up and false if voted down. Empty map for anonymous user
+     */
+    Map<Long, Boolean> getVotesOfCurrentUser(Collection<Post> posts);
+
+    /**
+     * Gets the first post of specified topic without loading all posts of the topic
+     *
+     * @param topic topic to get the first post of
+     *
+     * @return the first post of the topic
+     */
+    Post getFirstPost(Topic topic);
+
+    /**
+     * Gets one page of answers to the question ordered by rating and creation date. Page size
+     * is taken from the settings of current user
+     *
+     * @param question the first post of the topic
+     * @param page number of the page to get
+     *
+     * @return page with answers to the question
+     */
+    Page<Post> getAnswers(Post question, String page);
+
+    /**
+     * Calculates number of the page with answers where specified post is shown. The question
+     * itself is shown on every page, so the first page is returned for it
+     *
+     * @param post post to find a page for
+     *
+     * @return number of the page where the post will actually be
+     */
+    int calculatePageForAnswer(Post post);
+
+    /**
+     * Gets draft of current user in specified topic including autosaved content
+     * which is not written to the database yet
+     *
+     * @param topic topic to get draft in
+     *
+     * @return draft of current user or null if user has no draft in the topic
+     */
+    PostDraft getDraftOfCurrentUser(Topic topic);
+
 }
@@ -17,9 +17,13 @@ package org.jtalks.jcommune.plugin.api.service.transactional;
 
 import org.jtalks.jcommune.model.entity.Post;
 import org.jtalks.jcommune.model.entity.PostComment;
+import org.jtalks.jcommune.model.entity.PostDraft;
+import org.jtalks.jcommune.model.entity.Topic;
 import org.jtalks.jcommune.plugin.api.exceptions.NotFoundException;
 import org.jtalks.jcommune.plugin.api.service.PluginPostService;
+import org.springframework.data.domain.Page;
 
+import java.util.Collection;
 import java.util.Map;
 
 /**
@@ -76,6 +80,46 @@ public class TransactionalPluginPostService implements PluginPostService {
         return postService.addComment(postId, attributes, body);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<Long, Boolean> getVotesOfCurrentUser(Collection<Post> posts) {
+        return postService.getVotesOfCurrentUser(posts);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Post getFirstPost(Topic topic) {
+        return postService.getFirstPost(topic);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Page<Post> getAnswers(Post question, String page) {
+        return postService.getAnswers(question, page);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int calculatePageForAnswer(Post post) {
+        return postService.calculatePageForAnswer(post);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PostDraft getDraftOfCurrentUser(Topic topic) {
+        return postService.getDraftOfCurrentUser(topic);
+    }
+
     /**
      * Sets specified post service. Should be used once, during initialization
      *
@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.plugin.api.web.util;
+
+import org.jtalks.common.model.permissions.JtalksPermission;
+import org.jtalks.jcommune.plugin.api.BranchPermissionMask;
+import org.jtalks.jcommune.plugin.api.BulkPermissionEvaluator;
+import org.springframework.security.access.PermissionEvaluator;
+import org.springframework.security.core.Authentication;
+
+import javax.servlet.ServletRequest;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Checks permissions for views (JSP tags, velocity tools) caching branch permissions of the current
+ * user in request attribute, so every branch is evaluated once per request no matter how many
+ * permission checks the page contains. Checks which can't be answered from the branch permissions
+ * are delegated to the permission evaluator as is. Both common branch permissions and branch permissions
+ * provided by plugins are answered from the cache.
+ */
+public final class BranchPermissionsCache {
+    /** Name of request attribute which holds masks of branch permissions by branch id */
+    public static final String ATTRIBUTE_NAME = BranchPermissionsCache.class.getName() + ".masks";
+    private static final String BRANCH_TARGET_TYPE = "BRANCH";
+
+    private BranchPermissionsCache() {
+    }
+
+    /**
+     * Checks if user has specified permission on specified target
+     *
+     * @param request        current request, masks of branch permissions are stored in its attribute
+     * @param evaluator      evaluator to check permissions
+     * @param authentication authentication of the user
+     * @param targetId       id of the target
+     * @param targetType     type of the target. Example - "BRANCH"
+     * @param permission     permission to be checked. Example - "BranchPermission.CREATE_POSTS"
+     * @return true if user has specified permission, false otherwise
+     */
+    public static boolean hasPermission(ServletRequest request, PermissionEvaluator evaluator,
+                                        Authentication authentication, Long targetId, String targetType,
+                                        String permission) {
+        if (request == null || !BRANCH_TARGET_TYPE.equals(targetType)
+                || !(evaluator instanceof BulkPermissionEvaluator)) {
+            return evaluator.hasPermission(authentication, targetId, targetType, permission);
+        }
+        BulkPermissionEvaluator bulkEvaluator = (BulkPermissionEvaluator) evaluator;
+        JtalksPermission branchPermission = bulkEvaluator.findBranchPermission(permission);
+        if (branchPermission == null) {
+            return evaluator.hasPermission(authentication, targetId, targetType, permission);
+        }
+        return getBranchPermissions(request, bulkEvaluator, authentication, targetId).isGranted(branchPermission);
+    }
+
+    /**
+     * Gets permissions of the user in the branch evaluating them only if they aren't cached in the request yet
+     *
+     * @param request        current request
+     * @param evaluator      evaluator to check permissions
+     * @param authentication authentication of the user
+     * @param branchId       id of the branch
+     * @return permissions granted to the user in the branch
+     */
+    @SuppressWarnings("unchecked")
+    public static BranchPermissionMask getBranchPermissions(ServletRequest request, BulkPermissionEvaluator evaluator,
+                                                            Authentication authentication, long branchId) {
+        Map<Long, BranchPermissionMask> masks = (Map<Long, BranchPermissionMask>) request.getAttribute(ATTRIBUTE_NAME);
+        if (masks == null) {
+            masks = new HashMap<>();
+            request.setAttribute(ATTRIBUTE_NAME, masks);
+        }
+        BranchPermissionMask mask = masks.get(branchId);
+        if (mask == null) {
+            mask = evaluator.getBranchPermissions(authentication, branchId);
+            masks.put(branchId, mask);
+        }
+        return mask;
+    }
+}
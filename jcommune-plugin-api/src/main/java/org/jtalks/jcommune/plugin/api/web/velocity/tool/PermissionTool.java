@@ -15,22 +15,32 @@
 package org.jtalks.jcommune.plugin.api.web.velocity.tool;
 
 import org.jtalks.common.service.security.SecurityContextFacade;
+import org.jtalks.jcommune.plugin.api.web.util.BranchPermissionsCache;
 import org.springframework.context.ApplicationContext;
 import org.springframework.security.access.PermissionEvaluator;
 import org.springframework.security.core.Authentication;
 
+import javax.servlet.http.HttpServletRequest;
+
 /**
- * Custom tool to check if user have any permission inside velocity template
+ * Custom tool to check if user have any permission inside velocity template.
+ * Branch permissions are evaluated once per branch and request, see {@link BranchPermissionsCache}
  *
  * @author Mikhail Stryzhonok
  */
 public class PermissionTool {
     private PermissionEvaluator aclEvaluator;
     private SecurityContextFacade securityContextFacade;
+    private HttpServletRequest request;
 
-    public PermissionTool(ApplicationContext ctx) {
+    /**
+     * @param ctx     application context to get permission evaluator from
+     * @param request current request to cache evaluated branch permissions in
+     */
+    public PermissionTool(ApplicationContext ctx, HttpServletRequest request) {
         aclEvaluator = ctx.getBean(PermissionEvaluator.class);
         securityContextFacade = ctx.getBean(SecurityContextFacade.class);
+        this.request = request;
     }
 
 
@@ -47,7 +57,8 @@ public class PermissionTool {
         if (authentication == null) {
             return false;
         } else {
-            return aclEvaluator.hasPermission(authentication, targetId, targetType, permission);
+            return BranchPermissionsCache.hasPermission(request, aclEvaluator, authentication,
+                    targetId, targetType, permission);
         }
     }
 }
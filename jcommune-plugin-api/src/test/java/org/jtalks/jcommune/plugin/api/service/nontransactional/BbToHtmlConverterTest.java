@@ -14,6 +14,7 @@
  */
 package org.jtalks.jcommune.plugin.api.service.nontransactional;
 
+import org.jtalks.jcommune.model.entity.JCUser;
 import org.jtalks.jcommune.plugin.api.service.PluginBbCodeService;
 import org.mockito.Mock;
 import org.testng.annotations.BeforeMethod;
@@ -59,4 +60,15 @@ public class BbToHtmlConverterTest {
 
         assertEquals(result, out);
     }
+
+    @Test
+    public void testConvertSignatureToHtml() {
+        JCUser user = new JCUser("username", "email", "password");
+        String out = "<span style=\"font-weight:bold;\" data-original-title=\"\">signature</span>";
+        when(bbCodeService.convertSignatureToHtml(user)).thenReturn(out);
+
+        String result = BbToHtmlConverter.getInstance().convertSignatureToHtml(user);
+
+        assertEquals(result, out);
+    }
 }
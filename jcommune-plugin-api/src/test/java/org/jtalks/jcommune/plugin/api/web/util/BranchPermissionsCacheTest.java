@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.plugin.api.web.util;
+
+import org.jtalks.common.model.permissions.BranchPermission;
+import org.jtalks.common.model.permissions.JtalksPermission;
+import org.jtalks.jcommune.plugin.api.BranchPermissionMask;
+import org.jtalks.jcommune.plugin.api.BulkPermissionEvaluator;
+import org.mockito.Mock;
+import org.springframework.security.access.PermissionEvaluator;
+import org.springframework.security.core.Authentication;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.servlet.ServletRequest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class BranchPermissionsCacheTest {
+    private static final Long BRANCH_ID = 1L;
+    private static final String PLUGIN_PERMISSION_NAME = "QuestionsPluginBranchPermission.CREATE_QUESTIONS";
+
+    @Mock
+    private BulkPermissionEvaluator evaluator;
+    @Mock
+    private ServletRequest request;
+    @Mock
+    private Authentication authentication;
+    @Mock
+    private JtalksPermission pluginPermission;
+
+    private Map<Long, BranchPermissionMask> masks;
+
+    @BeforeMethod
+    public void init() {
+        initMocks(this);
+        masks = new HashMap<>();
+        when(request.getAttribute(BranchPermissionsCache.ATTRIBUTE_NAME)).thenReturn(masks);
+        when(pluginPermission.getMask()).thenReturn(Integer.parseInt("11111", 2));
+        when(evaluator.findBranchPermission("BranchPermission.CREATE_POSTS")).thenReturn(BranchPermission.CREATE_POSTS);
+        when(evaluator.findBranchPermission("BranchPermission.CLOSE_TOPICS")).thenReturn(BranchPermission.CLOSE_TOPICS);
+        when(evaluator.findBranchPermission(PLUGIN_PERMISSION_NAME)).thenReturn(pluginPermission);
+        when(evaluator.getBranchPermissions(authentication, BRANCH_ID)).thenReturn(
+                new BranchPermissionMask(Arrays.asList(BranchPermission.CREATE_POSTS)));
+    }
+
+    @Test
+    public void branchPermissionsShouldBeEvaluatedOncePerBranch() {
+        assertTrue(BranchPermissionsCache.hasPermission(request, evaluator, authentication,
+                BRANCH_ID, "BRANCH", "BranchPermission.CREATE_POSTS"));
+        assertFalse(BranchPermissionsCache.hasPermission(request, evaluator, authentication,
+                BRANCH_ID, "BRANCH", "BranchPermission.CLOSE_TOPICS"));
+
+        verify(evaluator, times(1)).getBranchPermissions(authentication, BRANCH_ID);
+        verify(evaluator, never()).hasPermission(any(Authentication.class), any(Long.class),
+                anyString(), any());
+    }
+
+    @Test
+    public void pluginBranchPermissionsShouldBeAnsweredFromTheSameMask() {
+        when(evaluator.getBranchPermissions(authentication, BRANCH_ID)).thenReturn(
+                new BranchPermissionMask(Arrays.asList(BranchPermission.CREATE_POSTS, pluginPermission)));
+
+        assertTrue(BranchPermissionsCache.hasPermission(request, evaluator, authentication,
+                BRANCH_ID, "BRANCH", PLUGIN_PERMISSION_NAME));
+        assertTrue(BranchPermissionsCache.hasPermission(request, evaluator, authentication,
+                BRANCH_ID, "BRANCH", "BranchPermission.CREATE_POSTS"));
+
+        verify(evaluator, times(1)).getBranchPermissions(authentication, BRANCH_ID);
+        verify(evaluator, never()).hasPermission(any(Authentication.class), any(Long.class),
+                anyString(), any());
+    }
+
+    @Test
+    public void checksOfUnknownBranchPermissionsShouldBeDelegatedToEvaluator() {
+        when(evaluator.hasPermission(authentication, BRANCH_ID, "BRANCH", "UnknownPermission.SOME")).thenReturn(true);
+
+        assertTrue(BranchPermissionsCache.hasPermission(request, evaluator, authentication,
+                BRANCH_ID, "BRANCH", "UnknownPermission.SOME"));
+        verify(evaluator, never()).getBranchPermissions(any(Authentication.class), anyLong());
+    }
+
+    @Test
+    public void masksShouldBeStoredInRequestIfAbsent() {
+        when(request.getAttribute(BranchPermissionsCache.ATTRIBUTE_NAME)).thenReturn(null);
+
+        BranchPermissionsCache.hasPermission(request, evaluator, authentication,
+                BRANCH_ID, "BRANCH", "BranchPermission.CREATE_POSTS");
+
+        verify(request).setAttribute(eq(BranchPermissionsCache.ATTRIBUTE_NAME), any(Map.class));
+    }
+
+    @Test
+    public void checksOfOtherTargetsShouldBeDelegatedToEvaluator() {
+        when(evaluator.hasPermission(authentication, 1L, "USER", "ProfilePermission.EDIT_OWN_PROFILE"))
+                .thenReturn(true);
+
+        assertTrue(BranchPermissionsCache.hasPermission(request, evaluator, authentication,
+                1L, "USER", "ProfilePermission.EDIT_OWN_PROFILE"));
+        verify(evaluator, never()).getBranchPermissions(any(Authentication.class), anyLong());
+    }
+
+    @Test
+    public void checksShouldBeDelegatedIfEvaluatorCantEvaluateInBulk() {
+        PermissionEvaluator simpleEvaluator = mock(PermissionEvaluator.class);
+        when(simpleEvaluator.hasPermission(authentication, BRANCH_ID, "BRANCH", "BranchPermission.CREATE_POSTS"))
+                .thenReturn(true);
+
+        assertTrue(BranchPermissionsCache.hasPermission(request, simpleEvaluator, authentication,
+                BRANCH_ID, "BRANCH", "BranchPermission.CREATE_POSTS"));
+    }
+}
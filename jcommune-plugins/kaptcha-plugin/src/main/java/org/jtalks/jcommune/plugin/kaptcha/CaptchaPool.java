@@ -0,0 +1,197 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.plugin.kaptcha;
+
+import com.google.code.kaptcha.Producer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of pre-rendered captchas. Rendering of a captcha distorts its text and encodes the image, which
+ * is expensive, so captchas are rendered in advance by a background worker with the lowest priority, and requests
+ * of the registration page just take the next one from the pool. Captcha is rendered in the request thread only
+ * if the pool is empty. Every captcha is handed out only once.
+ * <p/>
+ * Worker is started when the first captcha is requested, so idle forums don't render captchas nobody needs.
+ * It waits while the pool is full and stops when the pool is closed.
+ */
+public class CaptchaPool implements CaptchaPoolMXBean {
+    static final String IMAGE_FORMAT = "jpg";
+    private static final Logger LOGGER = LoggerFactory.getLogger(CaptchaPool.class);
+
+    private final Producer producer;
+    private final int capacity;
+    private final BlockingQueue<Captcha> captchas;
+    private final AtomicBoolean workerStarted = new AtomicBoolean();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile Thread worker;
+    private volatile boolean closed;
+
+    /**
+     * @param producer renders text and images of captchas
+     * @param capacity max count of pre-rendered captchas
+     */
+    public CaptchaPool(Producer producer, int capacity) {
+        this.producer = producer;
+        this.capacity = capacity;
+        this.captchas = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Takes pre-rendered captcha from the pool or renders new one if the pool is empty.
+     *
+     * @return captcha which was not handed out before
+     * @throws IOException if captcha image can't be encoded
+     */
+    public Captcha take() throws IOException {
+        Captcha captcha = captchas.poll();
+        startWorker();
+        if (captcha != null) {
+            hits.incrementAndGet();
+            return captcha;
+        }
+        misses.incrementAndGet();
+        return render();
+    }
+
+    /**
+     * Stops the worker and doesn't let it start again, captchas are rendered in request threads after it.
+     */
+    public void close() {
+        closed = true;
+        workerStarted.set(true);
+        Thread currentWorker = worker;
+        if (currentWorker != null) {
+            currentWorker.interrupt();
+        }
+        captchas.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getSize() {
+        return captchas.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getHitRate() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    private void startWorker() {
+        if (!workerStarted.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                fill();
+            }
+        }, "captcha-pool");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        worker = thread;
+        thread.start();
+    }
+
+    /**
+     * Renders captchas till the pool is closed or the worker is interrupted, waits while the pool is full.
+     */
+    private void fill() {
+        try {
+            while (!closed && !Thread.currentThread().isInterrupted()) {
+                captchas.put(render());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Captcha pool worker stopped, captchas will be rendered in request threads", e);
+        }
+    }
+
+    private Captcha render() throws IOException {
+        String text = producer.createText();
+        ByteArrayOutputStream image = new ByteArrayOutputStream();
+        ImageIO.write(producer.createImage(text), IMAGE_FORMAT, image);
+        return new Captcha(text, image.toByteArray());
+    }
+
+    /**
+     * Text of captcha and its encoded image.
+     */
+    public static class Captcha {
+        private final String text;
+        private final byte[] image;
+
+        Captcha(String text, byte[] image) {
+            this.text = text;
+            this.image = image;
+        }
+
+        /**
+         * @return text user should enter
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return encoded image showing the text
+         */
+        public byte[] getImage() {
+            return image;
+        }
+    }
+}
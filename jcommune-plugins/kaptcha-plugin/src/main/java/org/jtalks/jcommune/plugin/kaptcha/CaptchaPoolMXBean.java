@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.plugin.kaptcha;
+
+/**
+ * Exposes statistics of the {@link CaptchaPool} via JMX, so it's possible to see whether the pool is big
+ * enough for the current load of the registration page.
+ */
+public interface CaptchaPoolMXBean {
+    /**
+     * @return max count of pre-rendered captchas kept in the pool
+     */
+    int getCapacity();
+
+    /**
+     * @return count of pre-rendered captchas currently waiting in the pool
+     */
+    int getSize();
+
+    /**
+     * @return count of captchas taken from the pool
+     */
+    long getHits();
+
+    /**
+     * @return count of captchas rendered in the request thread because the pool was empty
+     */
+    long getMisses();
+
+    /**
+     * @return share of captchas taken from the pool, from 0 to 1, or 0 if no captchas were requested
+     */
+    double getHitRate();
+}
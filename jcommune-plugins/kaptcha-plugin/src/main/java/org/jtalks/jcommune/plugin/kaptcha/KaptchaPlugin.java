@@ -26,9 +26,15 @@ import org.jtalks.jcommune.plugin.api.exceptions.UnexpectedErrorException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.Closeable;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.*;
 
 import static org.jtalks.jcommune.model.entity.PluginProperty.Type.INT;
@@ -36,11 +42,13 @@ import static org.jtalks.jcommune.model.entity.PluginProperty.Type.STRING;
 
 /**
  * Provides refresh, validating captcha, and obtaining captcha as html for registration form.
- * Uses {@link com.google.code.kaptcha} for captcha functionality.
+ * Uses {@link com.google.code.kaptcha} for captcha functionality. Statistics of the captcha pool are exposed
+ * via JMX under the name unique for the plugin instance, the pool and its MBean are released when the plugin
+ * is closed by the plugin loader.
  *
  * @author Andrey Pogorelov
  */
-public class KaptchaPlugin extends StatefullPlugin implements RegistrationPlugin, ExtendedPlugin {
+public class KaptchaPlugin extends StatefullPlugin implements RegistrationPlugin, ExtendedPlugin, Closeable {
     protected static final Logger LOGGER = LoggerFactory.getLogger(KaptchaPlugin.class);
     protected static final String WIDTH_PROPERTY = "Width";
     protected static final String HEIGHT_PROPERTY = "Height";
@@ -48,6 +56,7 @@ public class KaptchaPlugin extends StatefullPlugin implements RegistrationPlugin
     protected static final String POSSIBLE_SYMBOLS_PROPERTY = "Possible Symbols";
     private static final String MESSAGE_PATH = "org.jtalks.jcommune.plugin.kaptcha.messages";
     private static final String DEFAULT_LOCALE_CODE = "en";
+    private static final String CAPTCHA_POOL_MBEAN_NAME = "jcommune:type=captchaPool,plugin=";
 
     private List<PluginProperty> pluginProperties;
     private KaptchaPluginService service;
@@ -84,11 +93,27 @@ public class KaptchaPlugin extends StatefullPlugin implements RegistrationPlugin
             throw new PluginConfigurationException(
                     "Can't apply configuration: Width, height, length and possible symbols properties should not be empty.");
         }
+        KaptchaPluginService previousService = service;
         service = new KaptchaPluginService(width, height, length, possibleSymbols);
+        if (previousService != null) {
+            previousService.close();
+        }
+        registerCaptchaPoolMBean(service.getCaptchaPool());
         pluginProperties = properties;
         return new HashMap<>();
     }
 
+    /**
+     * Stops rendering of captchas and removes statistics of the captcha pool from JMX.
+     */
+    @Override
+    public void close() {
+        unregisterCaptchaPoolMBean();
+        if (service != null) {
+            service.close();
+        }
+    }
+
     @Override
     public boolean supportsJCommuneVersion(String version) {
         return true;
@@ -160,4 +185,41 @@ public class KaptchaPlugin extends StatefullPlugin implements RegistrationPlugin
     protected KaptchaPluginService getService() {
         return this.service;
     }
+
+    /**
+     * Name of the captcha pool MBean is unique for the plugin instance, so instances loaded by
+     * other applications or by the previous class loader of plugins don't replace each other.
+     *
+     * @return name of the MBean of the captcha pool of this plugin
+     * @throws MalformedObjectNameException never, the name is always valid
+     */
+    ObjectName getCaptchaPoolMBeanName() throws MalformedObjectNameException {
+        return new ObjectName(CAPTCHA_POOL_MBEAN_NAME + Integer.toHexString(System.identityHashCode(this)));
+    }
+
+    /**
+     * Exposes statistics of the captcha pool via JMX, pool of the previous configuration is replaced.
+     *
+     * @param pool pool of captchas of the current configuration
+     */
+    private void registerCaptchaPoolMBean(CaptchaPool pool) {
+        try {
+            unregisterCaptchaPoolMBean();
+            ManagementFactory.getPlatformMBeanServer().registerMBean(pool, getCaptchaPoolMBeanName());
+        } catch (JMException e) {
+            LOGGER.warn("Can't expose statistics of captcha pool via JMX", e);
+        }
+    }
+
+    private void unregisterCaptchaPoolMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = getCaptchaPoolMBeanName();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            LOGGER.warn("Can't remove statistics of captcha pool from JMX", e);
+        }
+    }
 }
@@ -30,17 +30,17 @@ import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
-import javax.imageio.ImageIO;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
-import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.*;
 
 /**
  * Serves for processing basic captcha functionality, such as refresh captcha, validate captcha and get captcha as html.
+ * Captcha images are taken from the pool of pre-rendered captchas, so bots requesting the registration page
+ * again and again don't make request threads render images.
  *
  * @author Andrey Pogorelov
  */
@@ -54,11 +54,15 @@ public class KaptchaPluginService {
     private static final String FORM_ELEMENT_ID = "formElementId";
     private static final String PLUGIN_PREFIX = "plugin-";
     private static final String DATE = "date";
+    static final int CAPTCHA_POOL_CAPACITY = 50;
 
     private Producer captchaProducer;
+    private CaptchaPool captchaPool;
+    private volatile VelocityEngine velocityEngine;
 
     public KaptchaPluginService(int width, int height, int length, String possibleSymbols) {
         captchaProducer = createCaptchaProducer(width, height, length, possibleSymbols);
+        captchaPool = new CaptchaPool(captchaProducer, CAPTCHA_POOL_CAPACITY);
     }
 
     /**
@@ -125,8 +129,7 @@ public class KaptchaPluginService {
         SecurityContextHolder.getContext();
         ResourceBundle resourceBundle = ResourceBundle.getBundle("org.jtalks.jcommune.plugin.kaptcha.messages", locale);
 
-        VelocityEngine engine = new VelocityEngine(getProperties());
-        engine.init();
+        VelocityEngine engine = getVelocityEngine();
         Map<String, Object> model = new HashMap<>();
         model.put(CAPTCHA_LABEL, resourceBundle.getObject("label.tip.captcha"));
         model.put(ALT_CAPTCHA, resourceBundle.getObject("alt.captcha.image"));
@@ -139,6 +142,27 @@ public class KaptchaPluginService {
                 engine, "org/jtalks/jcommune/plugin/kaptcha/template/captcha.vm", "UTF-8", model);
     }
 
+    /**
+     * Gets velocity engine, it's created and initialized only once since it's thread safe
+     * and its initialization is expensive.
+     *
+     * @return initialized velocity engine
+     */
+    private VelocityEngine getVelocityEngine() {
+        VelocityEngine engine = velocityEngine;
+        if (engine == null) {
+            synchronized (this) {
+                engine = velocityEngine;
+                if (engine == null) {
+                    engine = new VelocityEngine(getProperties());
+                    engine.init();
+                    velocityEngine = engine;
+                }
+            }
+        }
+        return engine;
+    }
+
     private Producer createCaptchaProducer(int width, int height, int length, String possibleSymbols) {
         Properties props = new Properties();
         props.setProperty("kaptcha.textproducer.char.string", possibleSymbols);
@@ -155,6 +179,17 @@ public class KaptchaPluginService {
         return this.captchaProducer;
     }
 
+    protected CaptchaPool getCaptchaPool() {
+        return this.captchaPool;
+    }
+
+    /**
+     * Stops rendering of captchas in background, should be called when the service is not used anymore.
+     */
+    public void close() {
+        captchaPool.close();
+    }
+
     /**
      * Refresh captcha image on registration form.
      *
@@ -164,12 +199,12 @@ public class KaptchaPluginService {
      */
     public void refreshCaptchaImage(HttpServletRequest request, HttpServletResponse response)
             throws IOException {
-        ServletOutputStream out = response.getOutputStream();
+        CaptchaPool.Captcha captcha = getCaptchaPool().take();
+        request.getSession().setAttribute(Constants.KAPTCHA_SESSION_KEY, captcha.getText());
         response.setContentType("image/jpeg");
-        String capText = getCaptchaProducer().createText();
-        request.getSession().setAttribute(Constants.KAPTCHA_SESSION_KEY, capText);
-        BufferedImage bi = getCaptchaProducer().createImage(capText);
-        ImageIO.write(bi, "jpg", out);
+        response.setContentLength(captcha.getImage().length);
+        ServletOutputStream out = response.getOutputStream();
+        out.write(captcha.getImage());
         out.flush();
     }
 
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.plugin.kaptcha;
+
+import com.google.code.kaptcha.impl.DefaultKaptcha;
+import com.google.code.kaptcha.util.Config;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.util.Properties;
+
+import static org.testng.Assert.*;
+
+public class CaptchaPoolTest {
+    private static final int CAPACITY = 2;
+    private static final long FILL_TIMEOUT = 10000;
+
+    private CaptchaPool pool;
+
+    @BeforeMethod
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.setProperty("kaptcha.textproducer.char.string", "0123456789");
+        properties.setProperty("kaptcha.textproducer.char.length", "4");
+        DefaultKaptcha producer = new DefaultKaptcha();
+        producer.setConfig(new Config(properties));
+        pool = new CaptchaPool(producer, CAPACITY);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void emptyPoolShouldRenderCaptchaInRequestThread() throws Exception {
+        CaptchaPool.Captcha captcha = pool.take();
+
+        assertEquals(captcha.getText().length(), 4);
+        assertNotNull(ImageIO.read(new ByteArrayInputStream(captcha.getImage())));
+        assertEquals(pool.getMisses(), 1);
+        assertEquals(pool.getHits(), 0);
+    }
+
+    @Test
+    public void poolShouldBeRefilledInBackground() throws Exception {
+        pool.take();
+
+        waitTillPoolIsFull();
+        CaptchaPool.Captcha captcha = pool.take();
+
+        assertNotNull(captcha);
+        assertEquals(pool.getHits(), 1);
+        assertEquals(pool.getHitRate(), 0.5);
+    }
+
+    @Test
+    public void poolShouldNotGrowOverCapacity() throws Exception {
+        pool.take();
+
+        waitTillPoolIsFull();
+        Thread.sleep(500);
+
+        assertEquals(pool.getSize(), CAPACITY);
+    }
+
+    @Test
+    public void pooledCaptchasShouldBeHandedOutOnlyOnce() throws Exception {
+        pool.take();
+        waitTillPoolIsFull();
+
+        CaptchaPool.Captcha first = pool.take();
+        CaptchaPool.Captcha second = pool.take();
+
+        assertNotSame(first, second);
+        assertEquals(pool.getHits(), 2);
+    }
+
+    @Test
+    public void closedPoolShouldNotBeRefilled() throws Exception {
+        pool.take();
+        waitTillPoolIsFull();
+
+        pool.close();
+        pool.take();
+        Thread.sleep(200);
+
+        assertEquals(pool.getSize(), 0);
+        assertEquals(pool.getMisses(), 2);
+    }
+
+    @Test
+    public void hitRateShouldBeZeroIfNoCaptchasWereRequested() {
+        assertEquals(pool.getHitRate(), 0.0);
+    }
+
+    private void waitTillPoolIsFull() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + FILL_TIMEOUT;
+        while (pool.getSize() < CAPACITY && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(pool.getSize(), CAPACITY, "Pool wasn't filled in time");
+    }
+}
@@ -16,7 +16,6 @@
 package org.jtalks.jcommune.plugin.kaptcha;
 
 import com.google.code.kaptcha.Constants;
-import com.google.code.kaptcha.Producer;
 import org.jtalks.jcommune.model.dto.UserDto;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpSession;
@@ -28,7 +27,6 @@ import org.testng.annotations.Test;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
-import java.awt.image.BufferedImage;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
@@ -132,19 +130,28 @@ public class KaptchaPluginServiceTest {
         session = mock(HttpSession.class);
         request.setSession(session);
         ServletOutputStream out = mock(ServletOutputStream.class);
-        Producer captchaProducer = mock(Producer.class);
-
-        int imageType = 1;
+        CaptchaPool captchaPool = mock(CaptchaPool.class);
+        byte[] image = new byte[]{1, 2, 3};
 
         when(response.getOutputStream()).thenReturn(out);
-        when(service.getCaptchaProducer()).thenReturn(captchaProducer);
-        when(captchaProducer.createText()).thenReturn(GENERATED_CAPTCHA_TEXT);
-        when(captchaProducer.createImage(GENERATED_CAPTCHA_TEXT)).
-                thenReturn(new BufferedImage(IMAGE_WIDTH, IMAGE_HEIGHT, imageType));
+        when(service.getCaptchaPool()).thenReturn(captchaPool);
+        when(captchaPool.take()).thenReturn(new CaptchaPool.Captcha(GENERATED_CAPTCHA_TEXT, image));
 
         service.refreshCaptchaImage(request, response);
 
         verify(response).setContentType("image/jpeg");
         verify(session).setAttribute(Constants.KAPTCHA_SESSION_KEY, GENERATED_CAPTCHA_TEXT);
+        verify(out).write(image);
+    }
+
+    @Test
+    public void velocityEngineShouldBeCreatedOnlyOnce() throws Exception {
+        Properties properties = createProperties();
+        when(service.getProperties()).thenReturn(properties);
+
+        service.getHtml(request, "1", Locale.ENGLISH);
+        service.getHtml(request, "2", Locale.ENGLISH);
+
+        verify(service, times(1)).getProperties();
     }
 }
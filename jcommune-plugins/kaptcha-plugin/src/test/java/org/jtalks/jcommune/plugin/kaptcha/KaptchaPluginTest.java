@@ -24,13 +24,17 @@ import org.jtalks.jcommune.plugin.api.exceptions.UnexpectedErrorException;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import javax.management.MBeanServer;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.*;
 
 import static org.mockito.Mockito.*;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 
 /**
  * @author Andrey Pogorelov
@@ -166,6 +170,32 @@ public class KaptchaPluginTest {
         assertEquals(errors.size(), 0);
     }
 
+    @Test
+    public void captchaPoolShouldBeExposedViaJmxTillPluginIsClosed() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        kaptchaPlugin.applyConfiguration(kaptchaPlugin.getDefaultConfiguration());
+
+        assertTrue(server.isRegistered(kaptchaPlugin.getCaptchaPoolMBeanName()));
+        kaptchaPlugin.close();
+        assertFalse(server.isRegistered(kaptchaPlugin.getCaptchaPoolMBeanName()));
+    }
+
+    @Test
+    public void captchaPoolsOfDifferentPluginInstancesShouldBeExposedSeparately() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        KaptchaPlugin otherPlugin = new KaptchaPlugin();
+        kaptchaPlugin.applyConfiguration(kaptchaPlugin.getDefaultConfiguration());
+        otherPlugin.applyConfiguration(otherPlugin.getDefaultConfiguration());
+        try {
+            assertFalse(otherPlugin.getCaptchaPoolMBeanName().equals(kaptchaPlugin.getCaptchaPoolMBeanName()));
+            assertTrue(server.isRegistered(otherPlugin.getCaptchaPoolMBeanName()));
+            assertTrue(server.isRegistered(kaptchaPlugin.getCaptchaPoolMBeanName()));
+        } finally {
+            otherPlugin.close();
+            kaptchaPlugin.close();
+        }
+    }
+
     @Test(expectedExceptions = PluginConfigurationException.class)
     public void applyConfigurationWithInvalidPropertiesShouldBeFailed() throws PluginConfigurationException {
         List<PluginProperty> properties = new ArrayList<>();
@@ -161,7 +161,11 @@ public class PoulpeAuthPlugin extends StatefullPlugin
         } else if (!validateUrl(url)) {
             throw new PluginConfigurationException("Can't apply configuration: Incorrect format for Url value.");
         }
+        PoulpeAuthService previousService = service;
         service = new PoulpeAuthService(url, login, password);
+        if (previousService != null) {
+            previousService.close();
+        }
         pluginProperties = properties;
         return new HashMap<>();
     }
@@ -21,8 +21,12 @@ import org.jtalks.jcommune.plugin.api.exceptions.UnexpectedErrorException;
 import org.jtalks.jcommune.plugin.auth.poulpe.dto.Authentication;
 import org.jtalks.jcommune.plugin.auth.poulpe.dto.Errors;
 import org.jtalks.jcommune.plugin.auth.poulpe.dto.User;
+import org.restlet.Client;
 import org.restlet.Context;
 import org.restlet.data.ChallengeScheme;
+import org.restlet.data.Parameter;
+import org.restlet.data.Protocol;
+import org.restlet.data.Reference;
 import org.restlet.data.Status;
 import org.restlet.engine.header.Header;
 import org.restlet.engine.header.HeaderConstants;
@@ -38,20 +42,44 @@ import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class contains method needed for communicate with Poulpe rest service.
+ * <p/>
+ * All the requests are sent by the single HTTP client connector, so connections to Poulpe are kept alive
+ * and reused instead of opening new one for every login attempt. Results of authentication are cached
+ * for a short time by username and password hash. Concurrent login attempts with the same credentials wait
+ * for the request already sent by one of them, so a burst of attempts sends only one request to Poulpe.
+ * Failed attempts are cached for a shorter time than successful ones, so users registered in Poulpe
+ * in the meantime can log in soon.
  *
  * @author Andrey Pogorelov
  */
 public class PoulpeAuthService {
 
     private static final int CONNECTION_TIMEOUT = 5000;
+    private static final int READ_TIMEOUT = 10000;
+    static final long AUTH_RESULT_TTL = TimeUnit.SECONDS.toMillis(60);
+    static final long FAILED_AUTH_RESULT_TTL = TimeUnit.SECONDS.toMillis(10);
+    static final int AUTH_CACHE_MAX_SIZE = 10000;
     public static final String DRY_RUN_PARAM = "dryRun";
     public static final String TRUE = "true";
+    /** JAXB contexts are thread safe and expensive to create, unmarshallers are cheap but not thread safe */
+    private static final JAXBContext AUTHENTICATION_CONTEXT = createJaxbContext(Authentication.class);
+    private static final JAXBContext ERRORS_CONTEXT = createJaxbContext(Errors.class);
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final Client client;
+    private final ConcurrentMap<String, CachedAuthResult> authCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, FutureTask<Map<String, String>>> authRequests = new ConcurrentHashMap<>();
+    private final AtomicLong nextEvictionTime = new AtomicLong();
     private String regUrl;
     private String authUrl;
     private String login;
@@ -62,6 +90,7 @@ public class PoulpeAuthService {
         this.authUrl = url + "/rest/authenticate";
         this.login = login;
         this.password = password;
+        this.client = createClient(url);
     }
 
     /**
@@ -76,8 +105,15 @@ public class PoulpeAuthService {
             throws IOException, NoConnectionException, JAXBException, UnexpectedErrorException {
         User user = createUser(userDto.getUsername(), userDto.getPassword(), userDto.getEmail());
         ClientResource clientResource = sendRegistrationRequest(user, dryRun);
-        Map<String, String> result = getRegistrationResult(clientResource, userDto.getLanguage().getLocale());
-        closeRestletConnection(clientResource);
+        Map<String, String> result;
+        try {
+            result = getRegistrationResult(clientResource, userDto.getLanguage().getLocale());
+        } finally {
+            closeRestletConnection(clientResource);
+        }
+        if (!dryRun && result.isEmpty()) {
+            evictAuthResults(user.getUsername());
+        }
         return result;
     }
 
@@ -89,19 +125,164 @@ public class PoulpeAuthService {
      * @param passwordHash password hash
      * @return map with user details
      */
-    public Map<String, String> authenticate(String username, String passwordHash)
+    public Map<String, String> authenticate(final String username, final String passwordHash)
+            throws JAXBException, IOException, NoConnectionException {
+        final String key = passwordHash + ":" + username;
+        Map<String, String> cachedResult = getCachedAuthResult(key);
+        if (cachedResult != null) {
+            return cachedResult;
+        }
+        FutureTask<Map<String, String>> request = new FutureTask<>(new Callable<Map<String, String>>() {
+            @Override
+            public Map<String, String> call() throws Exception {
+                return requestAuthResult(key, username, passwordHash);
+            }
+        });
+        FutureTask<Map<String, String>> sentRequest = authRequests.putIfAbsent(key, request);
+        if (sentRequest == null) {
+            sentRequest = request;
+            try {
+                request.run();
+            } finally {
+                authRequests.remove(key, request);
+            }
+        }
+        return getAuthRequestResult(sentRequest);
+    }
+
+    /**
+     * Stops HTTP client of the service, should be called when the service is not used anymore.
+     */
+    public void close() {
+        try {
+            client.stop();
+        } catch (Exception e) {
+            logger.warn("Error stopping Poulpe client: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Sends authentication request to Poulpe and caches its result. The cache is checked once more,
+     * because the result could be cached by the previous request with the same credentials after
+     * the caller checked it.
+     *
+     * @param key          password hash and username
+     * @param username     username
+     * @param passwordHash password hash
+     * @return map with user details, empty if credentials are wrong
+     */
+    private Map<String, String> requestAuthResult(String key, String username, String passwordHash)
             throws JAXBException, IOException, NoConnectionException {
+        Map<String, String> cachedResult = getCachedAuthResult(key);
+        if (cachedResult != null) {
+            return cachedResult;
+        }
         ClientResource clientResource = sendAuthRequest(username, passwordHash);
-        Map<String, String> result = getAuthResult(clientResource);
-        closeRestletConnection(clientResource);
+        Map<String, String> result;
+        try {
+            result = Collections.unmodifiableMap(getAuthResult(clientResource));
+        } finally {
+            closeRestletConnection(clientResource);
+        }
+        cacheAuthResult(key, username, result);
         return result;
     }
 
+    /**
+     * Waits for the authentication request and rethrows its exception if it failed.
+     *
+     * @param request authentication request sent by this or another thread
+     * @return map with user details, empty if credentials are wrong
+     */
+    private Map<String, String> getAuthRequestResult(FutureTask<Map<String, String>> request)
+            throws JAXBException, IOException, NoConnectionException {
+        try {
+            return request.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NoConnectionException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof JAXBException) {
+                throw (JAXBException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof NoConnectionException) {
+                throw (NoConnectionException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * @param key password hash and username
+     * @return cached result of authentication or null if there is no result or it is expired
+     */
+    private Map<String, String> getCachedAuthResult(String key) {
+        CachedAuthResult cachedResult = authCache.get(key);
+        if (cachedResult != null && !cachedResult.isExpired(System.currentTimeMillis())) {
+            return cachedResult.getResult();
+        }
+        return null;
+    }
+
+    /**
+     * Caches result of authentication unless the cache is full. Expired results are removed
+     * at most once per TTL of failed results, so the whole cache isn't scanned on every login.
+     *
+     * @param key      password hash and username
+     * @param username username
+     * @param result   result of authentication, empty if credentials are wrong
+     */
+    private void cacheAuthResult(String key, String username, Map<String, String> result) {
+        long now = System.currentTimeMillis();
+        evictExpiredAuthResults(now);
+        if (authCache.size() < AUTH_CACHE_MAX_SIZE) {
+            long ttl = result.isEmpty() ? FAILED_AUTH_RESULT_TTL : AUTH_RESULT_TTL;
+            authCache.put(key, new CachedAuthResult(username, result, now + ttl));
+        }
+    }
+
+    private void evictExpiredAuthResults(long now) {
+        long evictionTime = nextEvictionTime.get();
+        if (now < evictionTime || !nextEvictionTime.compareAndSet(evictionTime, now + FAILED_AUTH_RESULT_TTL)) {
+            return;
+        }
+        for (Iterator<CachedAuthResult> iterator = authCache.values().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().isExpired(now)) {
+                iterator.remove();
+            }
+        }
+    }
 
+    /**
+     * Removes cached results of authentication of the user, so just registered user isn't rejected
+     * because of failed attempt made before registration.
+     *
+     * @param username username
+     */
+    private void evictAuthResults(String username) {
+        for (Iterator<CachedAuthResult> iterator = authCache.values().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().getUsername().equals(username)) {
+                iterator.remove();
+            }
+        }
+    }
 
+    /**
+     * Reads the rest of response entity, otherwise connection can't be reused for the next request.
+     */
     private void closeRestletConnection(ClientResource clientResource) {
+        Representation entity = clientResource.getResponseEntity();
+        if (entity == null) {
+            return;
+        }
         try {
-            clientResource.getResponseEntity().exhaust();
+            entity.exhaust();
         } catch (IOException e) {
             logger.warn("Error closing connection: {}", e.getMessage() );
         }
@@ -128,8 +309,7 @@ public class PoulpeAuthService {
     }
 
     private Map<String, String> parseUserDetails(Representation repr) throws JAXBException, IOException {
-        JAXBContext context = JAXBContext.newInstance(Authentication.class);
-        Unmarshaller unmarshaller = context.createUnmarshaller();
+        Unmarshaller unmarshaller = AUTHENTICATION_CONTEXT.createUnmarshaller();
         Authentication auth = (Authentication) unmarshaller.unmarshal(repr.getStream());
 
         Map<String, String> authInfo = new HashMap<>();
@@ -174,8 +354,7 @@ public class PoulpeAuthService {
      * @throws java.io.IOException
      */
     private Map<String, String> parseErrors(Representation repr, Locale locale) throws IOException, JAXBException {
-        JAXBContext context = JAXBContext.newInstance(Errors.class);
-        Unmarshaller unmarshaller = context.createUnmarshaller();
+        Unmarshaller unmarshaller = ERRORS_CONTEXT.createUnmarshaller();
         Errors errorsRepr = (Errors) unmarshaller.unmarshal(repr.getStream());
 
         Map<String, String> errors = new HashMap<>();
@@ -282,8 +461,10 @@ public class PoulpeAuthService {
      * @return ClientResource result
      */
     protected ClientResource sendAuthRequest(String username, String passwordHash) {
-        String url = authUrl + "?username=" + username + "&passwordHash=" + passwordHash;
-        ClientResource clientResource = createClientResource(url, false);
+        Reference url = new Reference(authUrl)
+                .addQueryParameter("username", username)
+                .addQueryParameter("passwordHash", passwordHash);
+        ClientResource clientResource = createClientResource(url.toString(), false);
         if (login != null && !login.isEmpty() && password != null && !password.isEmpty()) {
             clientResource.setChallengeResponse(ChallengeScheme.HTTP_BASIC, login, password);
         }
@@ -306,11 +487,68 @@ public class PoulpeAuthService {
                 new Object[]{clientResource.getRequest().getResourceRef(), headers, clientResource.getRequest()});
     }
 
+    /**
+     * @return HTTP client connector shared by all the requests to Poulpe
+     */
+    Client getClient() {
+        return client;
+    }
+
     private ClientResource createClientResource(String url, boolean buffering) {
         ClientResource clientResource = new ClientResource(new Context(), url);
-        clientResource.getContext().getParameters().add("socketConnectTimeoutMs", String.valueOf(CONNECTION_TIMEOUT));
-        clientResource.getContext().getParameters().add("maxIoIdleTimeMs", String.valueOf(CONNECTION_TIMEOUT));
+        clientResource.setNext(client);
         clientResource.setEntityBuffering(buffering);
         return clientResource;
     }
+
+    /**
+     * Creates HTTP client connector shared by all the requests to Poulpe.
+     *
+     * @param url Poulpe url, used to choose between HTTP and HTTPS
+     * @return client connector
+     */
+    private static Client createClient(String url) {
+        Protocol protocol = url.startsWith("https") ? Protocol.HTTPS : Protocol.HTTP;
+        Client client = new Client(new Context(), protocol);
+        Series<Parameter> parameters = client.getContext().getParameters();
+        parameters.add("socketConnectTimeoutMs", String.valueOf(CONNECTION_TIMEOUT));
+        parameters.add("maxIoIdleTimeMs", String.valueOf(CONNECTION_TIMEOUT));
+        parameters.add("readTimeout", String.valueOf(READ_TIMEOUT));
+        return client;
+    }
+
+    private static JAXBContext createJaxbContext(Class<?> type) {
+        try {
+            return JAXBContext.newInstance(type);
+        } catch (JAXBException e) {
+            throw new IllegalStateException("Can't create JAXB context for " + type.getName(), e);
+        }
+    }
+
+    /**
+     * Result of authentication kept in cache till its expiration time.
+     */
+    private static class CachedAuthResult {
+        private final String username;
+        private final Map<String, String> result;
+        private final long expirationTime;
+
+        CachedAuthResult(String username, Map<String, String> result, long expirationTime) {
+            this.username = username;
+            this.result = result;
+            this.expirationTime = expirationTime;
+        }
+
+        String getUsername() {
+            return username;
+        }
+
+        Map<String, String> getResult() {
+            return result;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expirationTime;
+        }
+    }
 }
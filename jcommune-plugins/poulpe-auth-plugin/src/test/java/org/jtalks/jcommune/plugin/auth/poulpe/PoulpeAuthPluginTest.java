@@ -31,6 +31,7 @@ import java.io.IOException;
 import java.util.*;
 
 import static org.jtalks.jcommune.model.entity.PluginProperty.Type.STRING;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 import static org.testng.Assert.assertEquals;
@@ -61,6 +62,13 @@ public class PoulpeAuthPluginTest {
                 "Plugin with correct parameters should be configured properly.");
     }
 
+    @Test
+    public void reconfigurationShouldCloseClientOfPreviousService() throws Exception {
+        plugin.configure(createConfiguration("http://localhost", "user", "1234"));
+
+        verify(service).close();
+    }
+
     @Test
     public void pluginWithIncorrectParametersShouldNotBeConfigured() throws Exception {
         PluginConfiguration configuration = createConfiguration(null, "user", "1234");
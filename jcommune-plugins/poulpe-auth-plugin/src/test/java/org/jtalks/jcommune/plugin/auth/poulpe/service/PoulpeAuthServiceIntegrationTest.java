@@ -57,6 +57,7 @@ public class PoulpeAuthServiceIntegrationTest {
      */
     @AfterClass
     public void afterTest() {
+        service.close();
         server.stop();
     }
 
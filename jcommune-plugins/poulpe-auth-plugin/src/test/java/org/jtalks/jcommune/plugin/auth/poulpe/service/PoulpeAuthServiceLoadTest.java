@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.plugin.auth.poulpe.service;
+
+import org.restlet.Uniform;
+import org.restlet.resource.ClientResource;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Runs bursts of login attempts against the embedded Poulpe stand-in.
+ */
+public class PoulpeAuthServiceLoadTest {
+    private static final int USERS = 10;
+    private static final int ATTEMPTS_PER_USER = 20;
+
+    private PoulpeStandInServer poulpe;
+    private PoulpeAuthService service;
+    private Set<Uniform> usedClients;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        poulpe = new PoulpeStandInServer().start();
+        for (int i = 0; i < USERS; i++) {
+            poulpe.addUser("user" + i, "hash" + i, "user" + i + "@jtalks.org");
+        }
+        usedClients = Collections.newSetFromMap(new ConcurrentHashMap<Uniform, Boolean>());
+        service = new PoulpeAuthService(poulpe.getUrl(), "user", "1234") {
+            @Override
+            protected ClientResource sendAuthRequest(String username, String passwordHash) {
+                ClientResource clientResource = super.sendAuthRequest(username, passwordHash);
+                usedClients.add(clientResource.getNext());
+                return clientResource;
+            }
+        };
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        service.close();
+        poulpe.stop();
+    }
+
+    @Test
+    public void authenticationShouldReturnUserDetailsFromPoulpe() throws Exception {
+        Map<String, String> result = service.authenticate("user1", "hash1");
+
+        assertEquals(result.get("username"), "user1");
+        assertEquals(result.get("email"), "user1@jtalks.org");
+        assertEquals(result.get("enabled"), "true");
+    }
+
+    @Test
+    public void authenticationWithWrongPasswordShouldFail() throws Exception {
+        assertTrue(service.authenticate("user1", "hash2").isEmpty());
+    }
+
+    @Test
+    public void burstOfLoginsWithSameCredentialsShouldSendSingleRequest() throws Exception {
+        for (int i = 0; i < ATTEMPTS_PER_USER; i++) {
+            assertEquals(service.authenticate("user1", "hash1").get("username"), "user1");
+        }
+
+        poulpe.verifyAuthenticationRequests(1);
+    }
+
+    @Test
+    public void parallelLoginsShouldSendSingleRequestPerUserThroughSharedClient() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(USERS);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < USERS * ATTEMPTS_PER_USER; i++) {
+                final int user = i % USERS;
+                results.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return service.authenticate("user" + user, "hash" + user).get("username");
+                    }
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(results.get(i).get(), "user" + i % USERS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        poulpe.verifyAuthenticationRequests(USERS);
+        assertEquals(usedClients, Collections.<Uniform>singleton(service.getClient()));
+    }
+}
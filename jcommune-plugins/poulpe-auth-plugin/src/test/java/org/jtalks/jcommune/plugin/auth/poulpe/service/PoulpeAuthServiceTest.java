@@ -36,9 +36,12 @@ import java.util.List;
 import java.util.Map;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.MockitoAnnotations.initMocks;
 import static org.testng.Assert.*;
 
@@ -142,6 +145,73 @@ public class PoulpeAuthServiceTest {
         service.authenticate("user", "password");
     }
 
+    @Test
+    public void repeatedAuthenticationWithSameCredentialsShouldUseCachedResult() throws Exception {
+        Authentication auth = createAuth("username", "password", "email");
+        ClientResource clientResource = createClientResource(Status.SUCCESS_OK, new JaxbRepresentation<>(auth));
+        doReturn(clientResource).when(service).sendAuthRequest("username", "password");
+
+        Map<String, String> first = service.authenticate("username", "password");
+        Map<String, String> second = service.authenticate("username", "password");
+
+        assertEquals(second, first);
+        verify(service, times(1)).sendAuthRequest("username", "password");
+    }
+
+    @Test
+    public void failedAuthenticationShouldBeCachedToo() throws Exception {
+        ClientResource clientResource = createClientResource(Status.CLIENT_ERROR_NOT_FOUND, null);
+        doReturn(clientResource).when(service).sendAuthRequest("username", "wrong");
+
+        service.authenticate("username", "wrong");
+        Map<String, String> result = service.authenticate("username", "wrong");
+
+        assertTrue(result.isEmpty());
+        verify(service, times(1)).sendAuthRequest("username", "wrong");
+    }
+
+    @Test
+    public void authenticationWithDifferentPasswordShouldNotUseCachedResult() throws Exception {
+        doReturn(createClientResource(Status.CLIENT_ERROR_NOT_FOUND, null))
+                .when(service).sendAuthRequest(eq("username"), anyString());
+
+        service.authenticate("username", "wrong");
+        service.authenticate("username", "other");
+
+        verify(service).sendAuthRequest("username", "wrong");
+        verify(service).sendAuthRequest("username", "other");
+    }
+
+    @Test
+    public void connectionErrorShouldNotBeCached() throws Exception {
+        doReturn(createClientResource(Status.CLIENT_ERROR_REQUEST_TIMEOUT, null))
+                .when(service).sendAuthRequest("user", "password");
+        try {
+            service.authenticate("user", "password");
+        } catch (NoConnectionException e) {
+        }
+        doReturn(createClientResource(Status.CLIENT_ERROR_NOT_FOUND, null))
+                .when(service).sendAuthRequest("user", "password");
+
+        service.authenticate("user", "password");
+
+        verify(service, times(2)).sendAuthRequest("user", "password");
+    }
+
+    @Test
+    public void registrationShouldEvictFailedAuthenticationOfTheUser() throws Exception {
+        doReturn(createClientResource(Status.CLIENT_ERROR_NOT_FOUND, null))
+                .when(service).sendAuthRequest("username", "password");
+        service.authenticate("username", "password");
+        doReturn(createClientResource(Status.SUCCESS_OK, new StringRepresentation("")))
+                .when(service).sendRegistrationRequest(any(User.class), eq(false));
+
+        service.registerUser(createUserDto("username", "password", "email@email.ru"), false);
+        service.authenticate("username", "password");
+
+        verify(service, times(2)).sendAuthRequest("username", "password");
+    }
+
     private Authentication createAuth(String username, String password, String email) {
         Authentication auth = new Authentication();
         auth.setProfile(new Profile(new PoulpeUser(username, email, password, null)));
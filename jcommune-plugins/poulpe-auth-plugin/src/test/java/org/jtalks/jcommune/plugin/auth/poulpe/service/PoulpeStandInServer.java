@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.plugin.auth.poulpe.service;
+
+import com.xebialabs.restito.server.StubServer;
+import org.glassfish.grizzly.http.util.HttpStatus;
+import org.jtalks.jcommune.plugin.auth.poulpe.dto.Authentication;
+import org.jtalks.jcommune.plugin.auth.poulpe.dto.Credentials;
+import org.jtalks.jcommune.plugin.auth.poulpe.dto.PoulpeUser;
+import org.jtalks.jcommune.plugin.auth.poulpe.dto.Profile;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import java.io.StringWriter;
+
+import static com.xebialabs.restito.builder.stub.StubHttp.whenHttp;
+import static com.xebialabs.restito.builder.verify.VerifyHttp.verifyHttp;
+import static com.xebialabs.restito.semantics.Action.contentType;
+import static com.xebialabs.restito.semantics.Action.status;
+import static com.xebialabs.restito.semantics.Action.stringContent;
+import static com.xebialabs.restito.semantics.Condition.get;
+import static com.xebialabs.restito.semantics.Condition.parameter;
+import static com.xebialabs.restito.semantics.Condition.post;
+
+/**
+ * Embedded stand-in of Poulpe for integration and load tests of the plugin. It accepts all the
+ * registration requests and authenticates users added to it, other credentials are rejected with
+ * "404 Not Found" like the real Poulpe does.
+ */
+public class PoulpeStandInServer {
+    static final String REGISTRATION_URL = "/rest/private/user";
+    static final String AUTHENTICATION_URL = "/rest/authenticate";
+
+    private StubServer server;
+
+    /**
+     * Starts the server on a free port.
+     *
+     * @return this server
+     */
+    public PoulpeStandInServer start() {
+        server = new StubServer().run();
+        whenHttp(server).match(post(REGISTRATION_URL)).then(status(HttpStatus.OK_200));
+        return this;
+    }
+
+    /**
+     * Stops the server.
+     */
+    public void stop() {
+        server.stop();
+    }
+
+    /**
+     * @return URL of the server to configure the plugin with
+     */
+    public String getUrl() {
+        return "http://localhost:" + server.getPort();
+    }
+
+    /**
+     * Adds user who can be authenticated by the server.
+     *
+     * @param username     username
+     * @param passwordHash password hash
+     * @param email        email
+     * @throws JAXBException if response can't be serialized
+     */
+    public void addUser(String username, String passwordHash, String email) throws JAXBException {
+        Authentication authentication = new Authentication();
+        authentication.setCredintals(new Credentials(username));
+        authentication.setStatus("success");
+        Profile profile = new Profile(new PoulpeUser(username, email, passwordHash, null));
+        profile.setEnabled(true);
+        authentication.setProfile(profile);
+
+        StringWriter xml = new StringWriter();
+        JAXBContext.newInstance(Authentication.class).createMarshaller().marshal(authentication, xml);
+        whenHttp(server).match(get(AUTHENTICATION_URL),
+                parameter("username", username),
+                parameter("passwordHash", passwordHash))
+                .then(status(HttpStatus.OK_200), contentType("application/xml"), stringContent(xml.toString()));
+    }
+
+    /**
+     * Verifies count of authentication requests received by the server.
+     *
+     * @param times expected count of requests
+     */
+    public void verifyAuthenticationRequests(int times) {
+        verifyHttp(server).times(times, get(AUTHENTICATION_URL));
+    }
+}
@@ -14,7 +14,6 @@
  */
 package org.jtalks.jcommune.plugin.questionsandanswers.controller;
 
-import com.google.common.annotations.VisibleForTesting;
 import com.google.common.io.ByteStreams;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang.time.DateFormatUtils;
@@ -40,7 +39,7 @@ import org.jtalks.jcommune.plugin.questionsandanswers.QuestionsAndAnswersPlugin;
 import org.jtalks.jcommune.plugin.questionsandanswers.dto.CommentDto;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.ui.velocity.VelocityEngineUtils;
@@ -80,10 +79,14 @@ public class QuestionsAndAnswersController implements ApplicationContextAware, P
     private static final String RESULT = "result";
     private static final String QUESTION = "question";
     private static final String POST_PAGE = "postPage";
+    private static final String QUESTION_POST = "questionPost";
+    private static final String PAGE = "page";
+    private static final String FIRST_PAGE = "1";
     private static final String SUBSCRIBED = "subscribed";
     private static final String CONVERTER = "converter";
     private static final String VIEW_LIST = "viewList";
     private static final String LIMIT_OF_POSTS_ATTRIBUTE = "postLimit";
+    private static final String VOTES = "votes";
     public static final int LIMIT_OF_POSTS_VALUE = 50;
     public static final String PLUGIN_VIEW_NAME = "plugin/plugin";
     public static final String BRANCH_ID = "branchId";
@@ -97,6 +100,7 @@ public class QuestionsAndAnswersController implements ApplicationContextAware, P
 
     private String apiPath;
     private ApplicationContext applicationContext;
+    private VelocityEngine velocityEngine;
 
     /**
      * Shows question creation page
@@ -111,8 +115,7 @@ public class QuestionsAndAnswersController implements ApplicationContextAware, P
     @RequestMapping(value = "new", method = RequestMethod.GET)
     public String showNewQuestionPage(@RequestParam(BRANCH_ID) Long branchId, Model model, HttpServletRequest request)
             throws NotFoundException {
-        VelocityEngine engine = new VelocityEngine(getProperties());
-        engine.init();
+        VelocityEngine engine = getVelocityEngine();
 
         TopicDraft draft = ObjectUtils.defaultIfNull(
                 getPluginTopicDraftService().getDraft(), new TopicDraft());
@@ -149,8 +152,7 @@ public class QuestionsAndAnswersController implements ApplicationContextAware, P
     public String createQuestion(@Valid @ModelAttribute TopicDto topicDto, BindingResult result, Model model,
                                  @RequestParam(BRANCH_ID) Long branchId, HttpServletRequest request)
             throws NotFoundException{
-        VelocityEngine engine = new VelocityEngine(getProperties());
-        engine.init();
+        VelocityEngine engine = getVelocityEngine();
         Branch  branch = getPluginBranchService().get(branchId);
         Map<String, Object> data = getDefaultModel(request);
         topicDto.getTopic().setBranch(branch);
@@ -189,26 +191,27 @@ public class QuestionsAndAnswersController implements ApplicationContextAware, P
      * @param request HttpServletRequest
      * @param model model for transferring to jsp
      * @param id id of question
+     * @param page number of the page with answers
      *
      * @return plugin view name
      * @throws NotFoundException if question with specified id not found
      */
     @RequestMapping(value = "{id}", method = RequestMethod.GET)
-    public String showQuestion(HttpServletRequest request, Model model, @PathVariable("id") Long id)
+    public String showQuestion(HttpServletRequest request, Model model, @PathVariable("id") Long id,
+                               @RequestParam(value = PAGE, defaultValue = "1", required = false) String page)
             throws NotFoundException {
         Topic topic = getTypeAwarePluginTopicService().get(id, QuestionsAndAnswersPlugin.TOPIC_TYPE);
         getTypeAwarePluginTopicService().checkViewTopicPermission(topic.getBranch().getId());
 
-        JCUser currentUser = getUserReader().getCurrentUser();
         PostDto postDto = new PostDto();
-        PostDraft draft = topic.getDraftForUser(currentUser);
+        PostDraft draft = getPluginPostService().getDraftOfCurrentUser(topic);
         if (draft != null) {
             postDto = PostDto.getDtoFor(draft);
         }
 
         Map<String, Object> data = getDefaultModel(request);
         data.put(QUESTION, topic);
-        data.put(POST_PAGE, new PageImpl<>(getSortedPosts(topic.getPosts())));
+        putPostsIntoModel(data, topic, page);
         data.put(BREADCRUMB_LIST, breadcrumbBuilder.getForumBreadcrumb(topic));
         data.put(SUBSCRIBED, false);
         data.put(CONVERTER, BbToHtmlConverter.getInstance());
@@ -216,8 +219,7 @@ public class QuestionsAndAnswersController implements ApplicationContextAware, P
         data.put(POST_DTO, postDto);
         data.put(LIMIT_OF_POSTS_ATTRIBUTE, LIMIT_OF_POSTS_VALUE);
         getPluginLastReadPostService().markTopicAsRead(topic);
-        VelocityEngine engine = new VelocityEngine(getProperties());
-        engine.init();
+        VelocityEngine engine = getVelocityEngine();
         model.addAttribute(CONTENT, getMergedTemplate(engine, QUESTION_TEMPLATE_PATH, "UTF-8", data));
         return PLUGIN_VIEW_NAME;
     }
@@ -248,10 +250,12 @@ public class QuestionsAndAnswersController implements ApplicationContextAware, P
      * @param answerId id of the answer
      *
      * @return redirect to the answer url
+     * @throws NotFoundException if answer with specified id not found
      */
     @RequestMapping(value = "{questionId}/post/{answerId}", method = RequestMethod.GET)
-    public String showAnswer(@PathVariable Long questionId, @PathVariable Long answerId) {
-        return "redirect:" + QuestionsAndAnswersPlugin.CONTEXT + "/" + questionId + "#" + answerId;
+    public String showAnswer(@PathVariable Long questionId, @PathVariable Long answerId) throws NotFoundException {
+        Post answer = getPluginPostService().get(answerId);
+        return "redirect:" + getAnswerUrl(answer);
     }
 
     /**
@@ -269,8 +273,7 @@ public class QuestionsAndAnswersController implements ApplicationContextAware, P
             throws NotFoundException{
         Topic topic = getTypeAwarePluginTopicService().get(id, QuestionsAndAnswersPlugin.TOPIC_TYPE);
         TopicDto topicDto = new TopicDto(topic);
-        VelocityEngine engine = new VelocityEngine(getProperties());
-        engine.init();
+        VelocityEngine engine = getVelocityEngine();
         Map<String, Object> data = getDefaultModel(request);
         data.put(BREADCRUMB_LIST, breadcrumbBuilder.getForumBreadcrumb(topic));
         data.put(TOPIC_DTO, topicDto);
@@ -301,8 +304,7 @@ public class QuestionsAndAnswersController implements ApplicationContextAware, P
         if (result.hasErrors()) {
             topicDto.getTopic().setId(topic.getId());
             topicDto.getTopic().setBranch(topic.getBranch());
-            VelocityEngine engine = new VelocityEngine(getProperties());
-            engine.init();
+            VelocityEngine engine = getVelocityEngine();
             data.put(BREADCRUMB_LIST, breadcrumbBuilder.getForumBreadcrumb(topic));
             data.put(TOPIC_DTO, topicDto);
             data.put(EDIT_MODE, true);
@@ -331,8 +333,7 @@ public class QuestionsAndAnswersController implements ApplicationContextAware, P
             throws NotFoundException{
         Post answer = getPluginPostService().get(id);
         PostDto answerDto = PostDto.getDtoFor(answer);
-        VelocityEngine engine = new VelocityEngine(getProperties());
-        engine.init();
+        VelocityEngine engine = getVelocityEngine();
         Map<String, Object> data = getDefaultModel(request);
         data.put(QEUSTION_TITLE, answer.getTopic().getTitle());
         data.put(POST_DTO, answerDto);
@@ -359,8 +360,7 @@ public class QuestionsAndAnswersController implements ApplicationContextAware, P
         Post answer = getPluginPostService().get(id);
         Map<String, Object> data = getDefaultModel(request);
         if (result.hasErrors()) {
-            VelocityEngine engine = new VelocityEngine(getProperties());
-            engine.init();
+            VelocityEngine engine = getVelocityEngine();
             data.put(QEUSTION_TITLE, answer.getTopic().getTitle());
             data.put(POST_DTO, postDto);
             data.put(RESULT, result);
@@ -369,7 +369,7 @@ public class QuestionsAndAnswersController implements ApplicationContextAware, P
 
         }
         getPluginPostService().updatePost(answer, postDto.getBodyText());
-        return "redirect:" + QuestionsAndAnswersPlugin.CONTEXT + "/" + answer.getTopic().getId() + "#" + id;
+        return "redirect:" + getAnswerUrl(answer);
     }
 
     /**
@@ -392,8 +392,7 @@ public class QuestionsAndAnswersController implements ApplicationContextAware, P
         Topic topic = getTypeAwarePluginTopicService().get(questionId, QuestionsAndAnswersPlugin.TOPIC_TYPE);
         //We can't provide limitation properly without database-level locking
         if (result.hasErrors() || LIMIT_OF_POSTS_VALUE <= topic.getPostCount() - 1) {
-            JCUser currentUser = getUserReader().getCurrentUser();
-            PostDraft draft = topic.getDraftForUser(currentUser);
+            PostDraft draft = getPluginPostService().getDraftOfCurrentUser(topic);
             if (draft != null) {
                 // If we create new dto object instead of using already existing
                 // we lose error messages linked with it
@@ -401,10 +400,9 @@ public class QuestionsAndAnswersController implements ApplicationContextAware, P
             }
 
             Map<String, Object> data = getDefaultModel(request);
-            VelocityEngine engine = new VelocityEngine(getProperties());
-            engine.init();
+            VelocityEngine engine = getVelocityEngine();
             data.put(QUESTION, topic);
-            data.put(POST_PAGE, new PageImpl<>(getSortedPosts(topic.getPosts())));
+            putPostsIntoModel(data, topic, FIRST_PAGE);
             data.put(BREADCRUMB_LIST, breadcrumbBuilder.getForumBreadcrumb(topic));
             data.put(SUBSCRIBED, false);
             data.put(RESULT, result);
@@ -419,7 +417,7 @@ public class QuestionsAndAnswersController implements ApplicationContextAware, P
         Post newbie = getTypeAwarePluginTopicService().replyToTopic(questionId,
                 postDto.getBodyText(), topic.getBranch().getId());
         getPluginLastReadPostService().markTopicAsRead(newbie.getTopic());
-        return "redirect:" + QuestionsAndAnswersPlugin.CONTEXT + "/" + questionId + "#" + newbie.getId();
+        return "redirect:" + getAnswerUrl(newbie);
     }
 
     /**
@@ -463,10 +461,11 @@ public class QuestionsAndAnswersController implements ApplicationContextAware, P
     public String deleteAnswer(@PathVariable Long answerId)
             throws NotFoundException {
         Post answer = getPluginPostService().get(answerId);
-        Post neighborAnswer = answer.getTopic().getNeighborPost(answer);
+        long questionId = answer.getTopic().getId();
+        // answer ranked next takes the place of the deleted one, so it's shown on the same page
+        int page = getPluginPostService().calculatePageForAnswer(answer);
         getPluginPostService().deletePost(answer);
-        return "redirect:" + QuestionsAndAnswersPlugin.CONTEXT + "/" + answer.getTopic().getId()
-                + "#" + neighborAnswer.getId();
+        return "redirect:" + QuestionsAndAnswersPlugin.CONTEXT + "/" + questionId + "?" + PAGE + "=" + page;
     }
 
     /**
@@ -548,19 +547,35 @@ public class QuestionsAndAnswersController implements ApplicationContextAware, P
     }
 
     /**
-     * Gets copy of specified collection of posts sorted by rating and creation date
+     * Puts the first post of the question and one page of its answers ordered by rating and
+     * creation date into the model together with votes of current user for these posts
      *
-     * @param posts collection of posts to sort
+     * @param data model for transferring to template
+     * @param topic question to get posts of
+     * @param page number of the page with answers
+     */
+    private void putPostsIntoModel(Map<String, Object> data, Topic topic, String page) {
+        Post questionPost = getPluginPostService().getFirstPost(topic);
+        Page<Post> answers = getPluginPostService().getAnswers(questionPost, page);
+        List<Post> shownPosts = new ArrayList<>(answers.getContent().size() + 1);
+        shownPosts.add(questionPost);
+        shownPosts.addAll(answers.getContent());
+        data.put(QUESTION_POST, questionPost);
+        data.put(POST_PAGE, answers);
+        data.put(VOTES, getPluginPostService().getVotesOfCurrentUser(shownPosts));
+    }
+
+    /**
+     * Gets url of the page of the question where specified post is shown
      *
-     * @return collection of posts sorted by rating and creation date
+     * @param post question or answer to get url for
+     *
+     * @return url of the post relative to the application context
      */
-    @VisibleForTesting
-    List<Post> getSortedPosts(List<Post> posts) {
-        List<Post> result = new ArrayList<>(posts);
-        Post question = result.remove(0);
-        Collections.sort(result, new PostComparator());
-        result.add(0, question);
-        return result;
+    private String getAnswerUrl(Post post) {
+        int page = getPluginPostService().calculatePageForAnswer(post);
+        return QuestionsAndAnswersPlugin.CONTEXT + "/" + post.getTopic().getId() + "?" + PAGE + "=" + page
+                + "#" + post.getId();
     }
 
     /**
@@ -612,6 +627,21 @@ public class QuestionsAndAnswersController implements ApplicationContextAware, P
         this.applicationContext = applicationContext;
     }
 
+    /**
+     * Gets velocity engine shared by all requests. Engine is initialized on first use because
+     * path to the API jar is set after the controller is created
+     *
+     * @return initialized velocity engine
+     */
+    private synchronized VelocityEngine getVelocityEngine() {
+        if (velocityEngine == null) {
+            VelocityEngine engine = new VelocityEngine(getProperties());
+            engine.init();
+            velocityEngine = engine;
+        }
+        return velocityEngine;
+    }
+
     /**
      * Gets properties of velocity engine
      *
@@ -642,7 +672,7 @@ public class QuestionsAndAnswersController implements ApplicationContextAware, P
         model.put("dateTool", new JodaDateTimeTool(request));
         model.put("esc", new EscapeTool());
         JCUser currentUser = getUserReader().getCurrentUser();
-        PermissionTool tool = new PermissionTool(applicationContext);
+        PermissionTool tool = new PermissionTool(applicationContext, request);
         model.put("currentUser", currentUser);
         model.put("messages", getLocalizedMessagesBundle(request));
         model.put("permissionTool", tool);
@@ -765,12 +795,4 @@ public class QuestionsAndAnswersController implements ApplicationContextAware, P
     void setBreadcrumbBuilder(BreadcrumbBuilder breadcrumbBuilder) {
         this.breadcrumbBuilder = breadcrumbBuilder;
     }
-
-    private static class PostComparator implements Comparator<Post> {
-        @Override
-        public int compare(Post o1, Post o2) {
-            return o1.getRating() == o2.getRating() ? o2.getCreationDate().compareTo(o1.getCreationDate()) :
-                    o2.getRating() - o1.getRating();
-        }
-    }
 }
@@ -31,6 +31,7 @@ import org.jtalks.jcommune.plugin.questionsandanswers.dto.CommentDto;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.ui.ExtendedModelMap;
@@ -45,6 +46,7 @@ import javax.servlet.http.HttpServletResponse;
 import java.util.*;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.anyString;
@@ -110,6 +112,8 @@ public class QuestionsAndAnswersControllerTest {
         controller.setBreadcrumbBuilder(breadcrumbBuilder);
         when(breadcrumbBuilder.getForumBreadcrumb()).thenReturn(Collections.<Breadcrumb>emptyList());
         when(locationService.getUsersViewing(any(Entity.class))).thenReturn(Collections.<JCUser>emptyList());
+        when(postService.getAnswers(any(Post.class), anyString()))
+                .thenReturn(new PageImpl<>(Collections.<Post>emptyList()));
         doReturn(content).when(controller).getMergedTemplate(any(VelocityEngine.class), anyString(),
                 anyString(), anyMap());
         when(userReader.getCurrentUser()).thenReturn(new JCUser("name", "example@mail.ru", "pwd"));
@@ -191,18 +195,46 @@ public class QuestionsAndAnswersControllerTest {
 
         when(topicService.get(anyLong(), anyString())).thenReturn(topic);
 
-        String result = controller.showQuestion(request, model, 1L);
+        String result = controller.showQuestion(request, model, 1L, "1");
 
         assertEquals(result, QuestionsAndAnswersController.PLUGIN_VIEW_NAME);
         assertEquals(model.asMap().get(QuestionsAndAnswersController.CONTENT), content);
         verify(topicService).get(1L, QuestionsAndAnswersPlugin.TOPIC_TYPE);
+        verify(postService).getVotesOfCurrentUser(anyCollectionOf(Post.class));
+    }
+
+    @Test
+    public void showQuestionShouldRenderQuestionAndRequestedPageOfAnswers() throws Exception {
+        Topic topic = createTopic();
+        Post question = topic.getFirstPost();
+        Post answer = createAnswer();
+        when(topicService.get(anyLong(), anyString())).thenReturn(topic);
+        when(postService.getFirstPost(topic)).thenReturn(question);
+        when(postService.getAnswers(question, "2")).thenReturn(new PageImpl<>(Arrays.asList(answer)));
+
+        controller.showQuestion(request, new ExtendedModelMap(), 1L, "2");
+
+        verify(postService).getAnswers(question, "2");
+        verify(postService).getVotesOfCurrentUser(Arrays.asList(question, answer));
+    }
+
+    @Test
+    public void showAnswerShouldRedirectToPageWithAnswer() throws Exception {
+        Post answer = createAnswer();
+        when(postService.get(answer.getId())).thenReturn(answer);
+        when(postService.calculatePageForAnswer(answer)).thenReturn(3);
+
+        String result = controller.showAnswer(answer.getTopic().getId(), answer.getId());
+
+        assertEquals(result, "redirect:" + QuestionsAndAnswersPlugin.CONTEXT + "/"
+                + answer.getTopic().getId() + "?page=3#" + answer.getId());
     }
 
     @Test(expectedExceptions = NotFoundException.class)
     public void showQuestionShouldThrowExceptionIfQuestionNotFound() throws NotFoundException {
         when(topicService.get(anyLong(), anyString())).thenThrow(new NotFoundException());
 
-        controller.showQuestion(request, new ExtendedModelMap(), 1L);
+        controller.showQuestion(request, new ExtendedModelMap(), 1L, "1");
     }
 
     @Test(expectedExceptions = AccessDeniedException.class)
@@ -215,7 +247,7 @@ public class QuestionsAndAnswersControllerTest {
         when(topicService.get(anyLong(), anyString())).thenReturn(topic);
         doThrow(new AccessDeniedException("")).when(topicService).checkViewTopicPermission(branch.getId());
 
-        controller.showQuestion(request, new ExtendedModelMap(), 1L);
+        controller.showQuestion(request, new ExtendedModelMap(), 1L, "1");
     }
 
     @Test
@@ -406,6 +438,7 @@ public class QuestionsAndAnswersControllerTest {
     public void updateAnswerShouldUpdateAnswerIfValidationSuccess() throws Exception {
         Post answer = createAnswer();
         when(postService.get(anyLong())).thenReturn(answer);
+        when(postService.calculatePageForAnswer(answer)).thenReturn(2);
         when(result.hasErrors()).thenReturn(false);
 
         Model model = new ExtendedModelMap();
@@ -414,7 +447,7 @@ public class QuestionsAndAnswersControllerTest {
         String methodResult = controller.updateAnswer(postDto, result, model, answer.getId(), request);
 
         String redirectedResult = "redirect:" + QuestionsAndAnswersPlugin.CONTEXT + "/"
-                + answer.getTopic().getId() + "#" + answer.getId();
+                + answer.getTopic().getId() + "?page=2#" + answer.getId();
         assertEquals(methodResult, redirectedResult);
         verify(postService).updatePost(answer, answerContent);
     }
@@ -448,6 +481,7 @@ public class QuestionsAndAnswersControllerTest {
 
         when(topicService.get(anyLong(), anyString())).thenReturn(topic);
         when(topicService.replyToTopic(anyLong(), anyString(), anyLong())).thenReturn(answer);
+        when(postService.calculatePageForAnswer(answer)).thenReturn(1);
 
         Model model = new ExtendedModelMap();
         PostDto postDto = new PostDto();
@@ -455,7 +489,7 @@ public class QuestionsAndAnswersControllerTest {
         String methodResult = controller.create(42L, postDto, result, model, request);
 
         String redirectedResult = "redirect:" + QuestionsAndAnswersPlugin.CONTEXT + "/"
-                + 42L + "#" + answer.getId();
+                + answer.getTopic().getId() + "?page=1#" + answer.getId();
         assertEquals(methodResult, redirectedResult);
         verify(topicService).replyToTopic(42L, answerContent, topic.getBranch().getId());
     }
@@ -464,7 +498,7 @@ public class QuestionsAndAnswersControllerTest {
     @Test
     public void createAnswerMustReturnDraft_ifValidationFails() throws Exception {
         Topic topic = createTopic();
-        topic.addDraft(new PostDraft("blah", userReader.getCurrentUser()));
+        when(postService.getDraftOfCurrentUser(topic)).thenReturn(new PostDraft("blah", userReader.getCurrentUser()));
         when(topicService.get(anyLong(), anyString())).thenReturn(topic);
         when(result.hasErrors()).thenReturn(true);
 
@@ -492,22 +526,19 @@ public class QuestionsAndAnswersControllerTest {
     }
 
     @Test
-    public void deleteAnswerPageShouldRedirectToNeighborAnswer() throws Exception {
+    public void deleteAnswerShouldRedirectToPageOfDeletedAnswer() throws Exception {
         Post answer = createAnswer();
-        Post neighborAnswer = createAnswer();
-        final long neighborPostId = 24L;
-        neighborAnswer.setId(neighborPostId);
-
         Topic topic = mock(Topic.class);
         when(topic.getId()).thenReturn(42L);
-        when(topic.getNeighborPost(answer)).thenReturn(neighborAnswer);
         answer.setTopic(topic);
 
         when(postService.get(answer.getId())).thenReturn(answer);
+        when(postService.calculatePageForAnswer(answer)).thenReturn(2);
 
         String result = controller.deleteAnswer(answer.getId());
-        assertEquals(result, "redirect:" + QuestionsAndAnswersPlugin.CONTEXT + "/" + answer.getTopic().getId()
-                + "#" + neighborPostId);
+        assertEquals(result, "redirect:" + QuestionsAndAnswersPlugin.CONTEXT + "/42?page=2");
+        verify(postService).deletePost(answer);
+        verify(topic, never()).getNeighborPost(any(Post.class));
     }
 
     @Test
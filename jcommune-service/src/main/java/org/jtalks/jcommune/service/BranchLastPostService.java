@@ -15,6 +15,7 @@
 package org.jtalks.jcommune.service;
 
 import org.jtalks.jcommune.model.entity.Branch;
+import org.jtalks.jcommune.model.entity.Post;
 
 /**
  * Provides an ability to find and refresh the last post in the branch.
@@ -30,4 +31,14 @@ public interface BranchLastPostService {
      * @param branch for this branch it determine the last post
      */
     void refreshLastPostInBranch(Branch branch);
+
+    /**
+     * Sets the post as the last post in the branch if it was posted later than
+     * the current last post. Doesn't query the database, so it's used when posts
+     * appear in the branch.
+     *
+     * @param branch branch the post appeared in
+     * @param post   new post of the branch
+     */
+    void updateLastPostInBranch(Branch branch, Post post);
 }
@@ -16,12 +16,14 @@ package org.jtalks.jcommune.service;
 
 import org.jtalks.common.model.entity.Group;
 import org.jtalks.common.model.permissions.JtalksPermission;
+import org.jtalks.jcommune.model.dto.ForumStructure;
 import org.jtalks.jcommune.model.dto.GroupsPermissions;
 import org.jtalks.jcommune.model.dto.PermissionChanges;
 import org.jtalks.jcommune.model.entity.Branch;
 import org.jtalks.jcommune.plugin.api.exceptions.NotFoundException;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * The interface to manipulate with branches
@@ -49,20 +51,37 @@ public interface BranchService extends EntityService<Branch> {
      * Get all available for move topic branches.
      *
      * @param currentTopicId topic id that we want to move
-     * @return list of {@code Branch} objects
+     * @return branches of the forum structure visible to current user except the branch of the topic
      */
-    List<Branch> getAllAvailableBranches(long currentTopicId);
+    List<ForumStructure.BranchNode> getAllAvailableBranches(long currentTopicId);
 
     /**
      * Get available for move topic branches in section.
      *
      * @param sectionId section id from which we obtain branches
      * @param currentTopicId topic id that we want to move
-     * @return list of {@code Branch} objects
+     * @return branches of the section visible to current user except the branch of the topic
      * @throws org.jtalks.jcommune.plugin.api.exceptions.NotFoundException
      *          when section not found
      */
-    List<Branch> getAvailableBranchesInSection(long sectionId, long currentTopicId) throws NotFoundException;
+    List<ForumStructure.BranchNode> getAvailableBranchesInSection(long sectionId, long currentTopicId)
+            throws NotFoundException;
+
+    /**
+     * Gets snapshot of sections and branches with their ids and names. The snapshot is cached and is
+     * rebuilt after changes of sections or branches.
+     *
+     * @return snapshot of forum structure
+     */
+    ForumStructure getForumStructure();
+
+    /**
+     * Gets ids of the branches current user can view topics in. Ids are computed in bulk once for all
+     * users of the same groups and are cached until branches or their permissions are changed.
+     *
+     * @return unmodifiable set of ids of visible branches
+     */
+    Set<Long> getVisibleBranchIds();
     
     /**
      * Fills the statistical information for each branch from the list:
@@ -73,15 +92,6 @@ public interface BranchService extends EntityService<Branch> {
      */
     void fillStatisticInfo(List<org.jtalks.common.model.entity.Branch> branches);
     
-    /**
-     * Deletes all topics in this branch and recalculates user posts.
-     *
-     * @param branchId branch id
-     * @throws NotFoundException when branch not found
-     * @return branch for the id given
-     */
-    Branch deleteAllTopics(long branchId) throws NotFoundException;
-
     /**
      * Sets new title and description for the branch with specified ID
      * @param componentId ID of the component of the branch
@@ -16,6 +16,7 @@ package org.jtalks.jcommune.service;
 
 import org.jtalks.common.model.entity.Component;
 import org.jtalks.jcommune.model.entity.ComponentInformation;
+import org.jtalks.jcommune.service.dto.ForumImages;
 
 import java.util.Date;
 
@@ -46,6 +47,14 @@ public interface ComponentService {
      */
     Date getComponentModificationTime();
 
+    /**
+     * Gets decoded forum logo and fav icons. Snapshot is kept in cache, the component is read only
+     * when there is no snapshot in cache, e.g. after forum information was changed.
+     *
+     * @return snapshot of the forum images, default images are used for the ones not set by administrator
+     */
+    ForumImages getForumImages();
+
     /**
      * Check if currently logged user has permissions for administrative
      * functions for given component by its id
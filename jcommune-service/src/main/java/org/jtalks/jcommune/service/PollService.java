@@ -36,6 +36,15 @@ public interface PollService extends EntityService<Poll> {
      */
     Poll vote(Long pollId, List<Long> selectedOptionsIds);
 
+    /**
+     * Checks whether the current user has already voted in the poll.
+     *
+     * @param poll poll to check
+     * @return true if the current user has already voted, false if he hasn't
+     *         or if he is anonymous
+     */
+    boolean isVotedByCurrentUser(Poll poll);
+
     /**
      * Save {@link org.jtalks.jcommune.model.entity.Poll} to database.
      * @param poll poll to save.
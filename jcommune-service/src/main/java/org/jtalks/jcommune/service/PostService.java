@@ -145,4 +145,14 @@ public interface PostService extends EntityService<Post> {
      *                                                                   th draft
      */
     void deleteDraft(Long draftId) throws NotFoundException;
+
+    /**
+     * Gets draft of current user in specified topic including autosaved content
+     * which is not written to the database yet
+     *
+     * @param topic topic to get draft in
+     *
+     * @return draft of current user or null if user has no draft in the topic
+     */
+    PostDraft getDraftOfCurrentUser(Topic topic);
 }
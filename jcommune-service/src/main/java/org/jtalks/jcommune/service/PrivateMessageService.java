@@ -33,19 +33,23 @@ public interface PrivateMessageService extends EntityService<PrivateMessage> {
     /**
      * Get all inbox messages for the current user.
      *
-     * @param page page number for needed messages.
+     * @param page       page number for needed messages.
+     * @param olderThan  id of the last message of the previous page, if it's known, the page is found by it
+     *                   instead of skipping messages of previous pages, {@code null} otherwise
      * @return object with messages for one page and pagination information.
      */
-    Page<PrivateMessage> getInboxForCurrentUser(String page);
+    Page<PrivateMessage> getInboxForCurrentUser(String page, Long olderThan);
 
     /**
      * Get all outgoing messages from the current user.
      *
-     * @param page page number for needed messages.
+     * @param page       page number for needed messages.
+     * @param olderThan  id of the last message of the previous page, if it's known, the page is found by it
+     *                   instead of skipping messages of previous pages, {@code null} otherwise
      * @return object with messages for one page and pagination information.
      *         Note that may be all messages for current user.
      */
-    Page<PrivateMessage> getOutboxForCurrentUser(String page);
+    Page<PrivateMessage> getOutboxForCurrentUser(String page, Long olderThan);
 
     /**
      * Send the private message to the user.
@@ -62,11 +66,13 @@ public interface PrivateMessageService extends EntityService<PrivateMessage> {
     /**
      * Get current user's drafts
      *
-     * @param page page number for needed messages.
+     * @param page       page number for needed messages.
+     * @param olderThan  id of the last draft of the previous page, if it's known, the page is found by it
+     *                   instead of skipping drafts of previous pages, {@code null} otherwise
      * @return object with messages for one page and pagination information.
      *         Note that may be all messages for current user.
      */
-    Page<PrivateMessage> getDraftsForCurrentUser(String page);
+    Page<PrivateMessage> getDraftsForCurrentUser(String page, Long olderThan);
 
     /**
      * Save message as draft. If message exist it will be updated.
@@ -106,14 +112,24 @@ public interface PrivateMessageService extends EntityService<PrivateMessage> {
      * For messages with SENT status this method change status to
      * DELETED_FROM_INBOX or DELETED_FROM_OUTBOX.
      * Messages with status DELETED_FROM_INBOX, DELETED_FROM_OUTBOX
-     * or DRAFT will be removed.
+     * or DRAFT will be removed. Messages are changed by several bulk
+     * statements, messages of other users are ignored.
      *
      * @param ids Identifiers of messages for deletion
      * @return URL for redirection.
-     * @throws NotFoundException if one or more messages specified are missing
+     * @throws NotFoundException if none of the messages specified was found in folders of the current user
      */
     String delete(List<Long> ids) throws NotFoundException;
 
+    /**
+     * Marks unread messages of the current user's inbox as read by one statement.
+     * Messages of other users are ignored.
+     *
+     * @param ids identifiers of messages
+     * @return count of messages which were unread before
+     */
+    int markAsRead(List<Long> ids);
+
     /**
      * This methods checks a permissions of user to send
      * private message.
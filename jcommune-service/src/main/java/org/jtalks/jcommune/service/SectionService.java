@@ -15,8 +15,8 @@
 package org.jtalks.jcommune.service;
 
 import org.jtalks.common.model.entity.Section;
+import org.jtalks.jcommune.model.dto.ForumStructure;
 import org.jtalks.jcommune.model.entity.Post;
-import org.jtalks.jcommune.plugin.api.exceptions.NotFoundException;
 import org.springframework.security.access.AccessDeniedException;
 
 import java.util.List;
@@ -44,21 +44,6 @@ public interface SectionService extends EntityService<Section> {
      */
     void prepareSectionsForView(List<Section> sections);
 
-    /**
-     * Deletes all topics in the session given, causing post count updates.
-     *
-     * @param sectionId section id
-     * @return section without branches
-     * @throws NotFoundException when section not found
-     */
-    Section deleteAllTopicsInSection(long sectionId) throws NotFoundException;
-
-    /**
-     *  Deletes all topics in all the sections, causing post count updates.
-     *
-     * @throws org.jtalks.jcommune.plugin.api.exceptions.NotFoundException if object for deletion has not been found
-     */
-    void deleteAllTopicsInForum() throws NotFoundException;
 
     /**
      * Checks permission VIEW_TOPICS for access
@@ -71,8 +56,10 @@ public interface SectionService extends EntityService<Section> {
      * Get all available for move topic sections.
      *
      * @param currentTopicId topic id that we want to move
+     * @return sections of the forum structure which contain at least one branch visible to current user
+     *         except the branch of the topic
      */
-    List<Section> getAllAvailableSections(long currentTopicId);
+    List<ForumStructure.SectionNode> getAllAvailableSections(long currentTopicId);
 
     /**
      * Gets last posts created in the section
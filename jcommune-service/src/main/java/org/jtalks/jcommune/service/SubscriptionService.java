@@ -19,7 +19,7 @@ import org.jtalks.jcommune.model.entity.JCUser;
 import org.jtalks.jcommune.model.entity.SubscriptionAwareEntity;
 import org.jtalks.jcommune.model.entity.Topic;
 
-import java.util.Collection;
+import java.util.List;
 
 /**
  * This service enables or disables updates subscription by email.
@@ -71,14 +71,21 @@ public interface SubscriptionService {
     void toggleSubscription(SubscriptionAwareEntity entityToSubscribe);
 
     /**
-     * Get subscribers for specified entity with allowed permission to read.
+     * Get a page of subscribers for specified entity with allowed permission to read. Subscribers are
+     * ordered by id, so all of them are read page by page passing id of the last subscriber of the previous
+     * page, and large branches and topics never have all their subscribers loaded at once. Only details needed
+     * to send emails are read, and subscribers are not attached to the session, so pages read earlier
+     * are not kept in memory till the end of the transaction.
      *
-     *
-     *
-     * @param entity the Topic or Branch or CodeReview
-     * @return subscribers with allowed permission
+     * @param entity     the Topic or Branch or Post (only its author is returned, if subscribed to the topic)
+     * @param excluded   Branch of the Topic or Topic of the Branch whose subscribers are notified separately and
+     *                   should be skipped, {@code null} to skip nobody
+     * @param lastId     id of the last subscriber of the previous page, 0 for the first page
+     * @param maxResults max number of subscribers to return
+     * @return subscribers with allowed permission ordered by id
      */
-    Collection<JCUser> getAllowedSubscribers(SubscriptionAwareEntity entity);
+    List<JCUser> getAllowedSubscribers(SubscriptionAwareEntity entity, SubscriptionAwareEntity excluded,
+                                       long lastId, int maxResults);
 
     /**
      * Subscribe subscription state for the {@link SubscriptionAwareEntity} given.
@@ -133,13 +133,6 @@ public interface UserService extends EntityService<JCUser> {
      */
     JCUser getByUuid(String uuid) throws NotFoundException;
 
-    /**
-     * This method will be called automatically every hour to check
-     * if there are expired user accounts to be deleted. User account
-     * is expired if it's created, but not activated for a day or more.
-     */
-    void deleteUnactivatedAccountsByTimer();
-
     /**
      * This methods checks a permissions of user to edit profiles.
      *
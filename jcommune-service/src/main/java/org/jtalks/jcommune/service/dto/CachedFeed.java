@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.dto;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.Serializable;
+
+/**
+ * Serialized RSS feed kept in cache together with the values of its validators. Feed readers poll
+ * feeds much more often than forum posts are added, so the same feed is sent to them again and again
+ * and most of the requests can be answered with "304 Not Modified" at all.
+ * <p/>
+ * Body array is shared by all requests and must not be modified by the callers.
+ */
+public final class CachedFeed implements Serializable {
+
+    private final byte[] body;
+    private final String contentType;
+    private final long lastModified;
+    private final String eTag;
+
+    /**
+     * Creates feed and calculates its strong ETag.
+     *
+     * @param body         serialized XML of the feed
+     * @param contentType  content type the feed is sent with
+     * @param lastModified time of the newest item of the feed in milliseconds
+     */
+    public CachedFeed(byte[] body, String contentType, long lastModified) {
+        this.body = body;
+        this.contentType = contentType;
+        this.lastModified = lastModified;
+        this.eTag = "\"" + DigestUtils.md5Hex(body) + "\"";
+    }
+
+    /**
+     * @return serialized XML of the feed
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * @return content type the feed is sent with
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return time of the newest item of the feed in milliseconds
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return quoted strong ETag of the feed
+     */
+    public String getETag() {
+        return eTag;
+    }
+}
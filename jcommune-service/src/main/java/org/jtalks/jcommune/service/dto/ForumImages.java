@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.dto;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the decoded forum logo and fav icons. It's created when forum information
+ * is loaded or changed and then is shared by all requests, so images are served without touching
+ * the database and decoding Base64 component properties again.
+ * <p/>
+ * Image arrays are shared too and must not be modified by the callers.
+ */
+public final class ForumImages {
+
+    private final Date modificationTime;
+    private final Map<String, byte[]> images;
+    private final Map<String, String> eTags;
+
+    /**
+     * Creates snapshot and calculates strong ETags of the images.
+     *
+     * @param modificationTime last time when forum information was modified, may be null if it was never set
+     * @param images           image bytes by the name of the component property they were taken from
+     */
+    public ForumImages(Date modificationTime, Map<String, byte[]> images) {
+        this.modificationTime = modificationTime == null ? null : new Date(modificationTime.getTime());
+        Map<String, String> tags = new HashMap<>();
+        for (Map.Entry<String, byte[]> image : images.entrySet()) {
+            tags.put(image.getKey(), "\"" + DigestUtils.md5Hex(image.getValue()) + "\"");
+        }
+        this.images = Collections.unmodifiableMap(new HashMap<>(images));
+        this.eTags = Collections.unmodifiableMap(tags);
+    }
+
+    /**
+     * @return last time when forum information was modified or null if it was never set
+     */
+    public Date getModificationTime() {
+        return modificationTime == null ? null : new Date(modificationTime.getTime());
+    }
+
+    /**
+     * @param propertyName name of the component property image was taken from
+     * @return image bytes or null if there is no such image
+     */
+    public byte[] getImage(String propertyName) {
+        return images.get(propertyName);
+    }
+
+    /**
+     * @param propertyName name of the component property image was taken from
+     * @return quoted strong ETag of the image or null if there is no such image
+     */
+    public String getETag(String propertyName) {
+        return eTags.get(propertyName);
+    }
+}
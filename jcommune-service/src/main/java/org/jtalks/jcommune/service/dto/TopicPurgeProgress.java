@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.dto;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress of the bulk deletion of topics. It's updated by the thread performing deletion after every
+ * deleted chunk of topics and read by the administration UI.
+ */
+public class TopicPurgeProgress {
+    private final int totalTopics;
+    private final AtomicInteger deletedTopics = new AtomicInteger();
+    private volatile boolean finished;
+
+    /**
+     * @param totalTopics number of topics to delete, known before the deletion is started
+     */
+    public TopicPurgeProgress(int totalTopics) {
+        this.totalTopics = totalTopics;
+    }
+
+    /**
+     * @return number of topics to delete
+     */
+    public int getTotalTopics() {
+        return totalTopics;
+    }
+
+    /**
+     * @return number of topics deleted so far, may exceed total number if topics were created during deletion
+     */
+    public int getDeletedTopics() {
+        return deletedTopics.get();
+    }
+
+    /**
+     * @return whether deletion is finished
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Adds deleted chunk of topics
+     *
+     * @param count number of topics in the chunk
+     */
+    public void addDeletedTopics(int count) {
+        deletedTopics.addAndGet(count);
+    }
+
+    /**
+     * Marks deletion as finished
+     */
+    public void finish() {
+        finished = true;
+    }
+}
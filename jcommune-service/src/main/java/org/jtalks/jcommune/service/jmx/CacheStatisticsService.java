@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.jmx;
+
+import net.sf.ehcache.Ehcache;
+import org.hibernate.jmx.StatisticsService;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hibernate statistics MBean which also reports the caches of the services. Query cache regions of Hibernate are
+ * reported by Hibernate itself, caches of the services are reported by Ehcache, so they should be configured with
+ * {@code statistics="true"}.
+ */
+public class CacheStatisticsService extends StatisticsService implements CacheStatisticsServiceMBean {
+    private Map<String, Ehcache> applicationCaches = Collections.emptyMap();
+
+    /**
+     * @param applicationCaches caches filled and evicted by the services rather than by Hibernate
+     */
+    public void setApplicationCaches(List<Ehcache> applicationCaches) {
+        Map<String, Ehcache> caches = new LinkedHashMap<>();
+        for (Ehcache cache : applicationCaches) {
+            caches.put(cache.getName(), cache);
+        }
+        this.applicationCaches = caches;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String[] getCacheRegionNames() {
+        List<String> names = new ArrayList<>(Arrays.asList(getSecondLevelCacheRegionNames()));
+        names.addAll(applicationCaches.keySet());
+        return names.toArray(new String[names.size()]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCacheRegionHitCount(String regionName) {
+        Ehcache cache = applicationCaches.get(regionName);
+        if (cache != null) {
+            return cache.getStatistics().getCacheHits();
+        }
+        SecondLevelCacheStatistics statistics = getSecondLevelCacheStatistics(regionName);
+        return statistics == null ? 0 : statistics.getHitCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCacheRegionMissCount(String regionName) {
+        Ehcache cache = applicationCaches.get(regionName);
+        if (cache != null) {
+            return cache.getStatistics().getCacheMisses();
+        }
+        SecondLevelCacheStatistics statistics = getSecondLevelCacheStatistics(regionName);
+        return statistics == null ? 0 : statistics.getMissCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCacheRegionElementCount(String regionName) {
+        Ehcache cache = applicationCaches.get(regionName);
+        if (cache != null) {
+            return cache.getStatistics().getObjectCount();
+        }
+        SecondLevelCacheStatistics statistics = getSecondLevelCacheStatistics(regionName);
+        return statistics == null ? 0 : statistics.getElementCountInMemory();
+    }
+}
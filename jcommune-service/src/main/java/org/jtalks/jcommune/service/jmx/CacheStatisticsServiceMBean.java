@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.jmx;
+
+import org.hibernate.jmx.StatisticsServiceMBean;
+
+/**
+ * Hibernate statistics extended with the hits and misses of the cache regions, so that they can be watched via JMX
+ * without knowing whether a region is a Hibernate query/entity cache region or a cache kept by the services (like
+ * topic and post counts of the branches).
+ */
+public interface CacheStatisticsServiceMBean extends StatisticsServiceMBean {
+    /**
+     * Lists the regions statistics is available for: second level and query cache regions of Hibernate which were
+     * used at least once and the caches of the services.
+     *
+     * @return names of the cache regions
+     */
+    String[] getCacheRegionNames();
+
+    /**
+     * @param regionName the name of the region from {@link #getCacheRegionNames()}
+     * @return how many times the data was found in the region or 0 if there is no such region
+     */
+    long getCacheRegionHitCount(String regionName);
+
+    /**
+     * @param regionName the name of the region from {@link #getCacheRegionNames()}
+     * @return how many times the data was not found in the region and was loaded from the database or 0 if there is
+     *         no such region
+     */
+    long getCacheRegionMissCount(String regionName);
+
+    /**
+     * @param regionName the name of the region from {@link #getCacheRegionNames()}
+     * @return how many elements the region holds in memory or 0 if there is no such region
+     */
+    long getCacheRegionElementCount(String regionName);
+}
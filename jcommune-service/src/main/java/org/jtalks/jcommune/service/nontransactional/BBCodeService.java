@@ -45,6 +45,8 @@ public class BBCodeService implements PluginBbCodeService {
      * codes has been processed.
      */
     private final List<TextPostProcessor> postprocessors = new ArrayList<>();
+    /** Cache of already rendered signatures, signatures are rendered every time if it's not set */
+    private SignatureCacheService signatureCache;
 
     /**
      * Quotes text given as a valid BB-coded quote. Such a quotes are rendered automatically in posts or forum messages.
@@ -85,6 +87,29 @@ public class BBCodeService implements PluginBbCodeService {
         return bbEncodedText;
     }
 
+    /**
+     * Converts signature of the user into HTML the same way as {@link #convertBbToHtml(String)} does,
+     * but takes the result from signature cache if signature of the user has already been rendered.
+     *
+     * @param user user whose signature should be converted
+     * @return signature with HTML markup or empty string if user has no signature
+     */
+    public String convertSignatureToHtml(JCUser user) {
+        String signature = user.getSignature();
+        if (StringUtils.isEmpty(signature)) {
+            return StringUtils.EMPTY;
+        }
+        if (signatureCache == null) {
+            return convertBbToHtml(signature);
+        }
+        String html = signatureCache.getSignatureHtml(user);
+        if (html == null) {
+            html = convertBbToHtml(signature);
+            signatureCache.putSignatureHtml(user, html);
+        }
+        return html;
+    }
+
     /**
      * if it's [user]-tag processing, use method
      * "processUserbbCode"
@@ -109,6 +134,13 @@ public class BBCodeService implements PluginBbCodeService {
         this.postprocessors.addAll(postprocessors);
     }
 
+    /**
+     * @param signatureCache cache to store signatures of users already converted to HTML
+     */
+    public void setSignatureCache(SignatureCacheService signatureCache) {
+        this.signatureCache = signatureCache;
+    }
+
     /**
      * Remove bb-codes from the specified string.
      * It remove ONLY VALID bb-codes. So, something like [zzz][/zzz] is unchanged.
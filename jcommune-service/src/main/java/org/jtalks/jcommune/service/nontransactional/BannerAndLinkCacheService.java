@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import net.sf.ehcache.Ehcache;
+import org.jtalks.jcommune.model.entity.Banner;
+import org.jtalks.jcommune.model.entity.ExternalLink;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Operations above cache of banners and external links. Both are shown on every page of the forum,
+ * but are changed only by administrators, so pages are rendered from snapshots of them instead of
+ * querying the database again and again.
+ * <p/>
+ * Snapshots are unmodifiable and are never changed in place: a change of banners or links evicts the
+ * snapshot after commit and the next reader loads a new one. The cache replicates evictions to the other
+ * nodes of the cluster, so they load changed data too. Every eviction increases the version of the cache,
+ * a snapshot loaded before the last eviction is stale and is not kept in cache.
+ */
+public class BannerAndLinkCacheService {
+    static final String BANNERS = "banners";
+    static final String EXTERNAL_LINKS = "externalLinks";
+
+    private final VersionedCache cache;
+
+    /**
+     * Instantiate bean.
+     *
+     * @param cache cache replicating removals to the other nodes
+     */
+    public BannerAndLinkCacheService(Ehcache cache) {
+        this.cache = new VersionedCache(cache);
+    }
+
+    /**
+     * Gets version of the cache, it should be taken before loading of the data for a snapshot.
+     *
+     * @return current version of the cache
+     */
+    public long getVersion() {
+        return cache.getVersion();
+    }
+
+    /**
+     * Gets snapshot of banners.
+     *
+     * @return unmodifiable map of banners by names of their positions or {@code null} if it's not cached
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Banner> getBanners() {
+        return (Map<String, Banner>) cache.get(BANNERS);
+    }
+
+    /**
+     * Puts snapshot of banners to cache.
+     *
+     * @param banners banners by names of their positions
+     * @param version version of the cache the banners were loaded at
+     * @return unmodifiable snapshot of the banners
+     */
+    public Map<String, Banner> putBanners(Map<String, Banner> banners, long version) {
+        Map<String, Banner> snapshot = Collections.unmodifiableMap(new HashMap<>(banners));
+        cache.put(BANNERS, snapshot, version);
+        return snapshot;
+    }
+
+    /**
+     * Gets snapshot of external links.
+     *
+     * @return unmodifiable list of links or {@code null} if it's not cached
+     */
+    @SuppressWarnings("unchecked")
+    public List<ExternalLink> getExternalLinks() {
+        return (List<ExternalLink>) cache.get(EXTERNAL_LINKS);
+    }
+
+    /**
+     * Puts snapshot of external links to cache.
+     *
+     * @param links   external links
+     * @param version version of the cache the links were loaded at
+     * @return unmodifiable snapshot of the links
+     */
+    public List<ExternalLink> putExternalLinks(List<ExternalLink> links, long version) {
+        List<ExternalLink> snapshot = Collections.unmodifiableList(new ArrayList<>(links));
+        cache.put(EXTERNAL_LINKS, snapshot, version);
+        return snapshot;
+    }
+
+    /**
+     * Evicts snapshot of banners, should be called when banners are changed.
+     */
+    public void evictBanners() {
+        cache.evict(BANNERS);
+    }
+
+    /**
+     * Evicts snapshot of external links, should be called when links are changed.
+     */
+    public void evictExternalLinks() {
+        cache.evict(EXTERNAL_LINKS);
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import net.sf.ehcache.Ehcache;
+
+/**
+ * Operations above cache of numbers of topics and posts in branches, which are shown for every branch on the
+ * main page. Hibernate query cache isn't used for them as it drops all cached counts whenever any post of the
+ * forum is saved. Instead counts of a branch are evicted from the service layer when topics or posts of that
+ * branch are added, moved or removed. Eviction is replicated to the other nodes of the cluster.
+ * <p/>
+ * Every eviction increases the version of the cache, a count loaded before the last eviction may be stale
+ * and is not kept in cache.
+ */
+public class BranchStatisticsCacheService {
+    private static final String POSTS_COUNT_KEY = "posts:";
+    private static final String TOPICS_COUNT_KEY = "topics:";
+    private final VersionedCache cache;
+
+    /**
+     * Instantiate bean.
+     *
+     * @param cache cache replicating removals to the other nodes
+     */
+    public BranchStatisticsCacheService(Ehcache cache) {
+        this.cache = new VersionedCache(cache);
+    }
+
+    /**
+     * Gets version of the cache, it should be taken before loading of the counts from the database.
+     *
+     * @return current version of the cache
+     */
+    public long getVersion() {
+        return cache.getVersion();
+    }
+
+    /**
+     * @param branchId id of the branch
+     * @return cached number of posts in the branch or {@code null} if it's not cached
+     */
+    public Integer getPostsCount(long branchId) {
+        return (Integer) cache.get(POSTS_COUNT_KEY + branchId);
+    }
+
+    /**
+     * Caches number of posts in the branch if the cache wasn't evicted since the number started loading.
+     *
+     * @param branchId   id of the branch
+     * @param postsCount number of posts in the branch
+     * @param version    version of the cache the number was loaded at
+     */
+    public void putPostsCount(long branchId, int postsCount, long version) {
+        cache.put(POSTS_COUNT_KEY + branchId, postsCount, version);
+    }
+
+    /**
+     * @param branchId id of the branch
+     * @return cached number of topics in the branch or {@code null} if it's not cached
+     */
+    public Integer getTopicsCount(long branchId) {
+        return (Integer) cache.get(TOPICS_COUNT_KEY + branchId);
+    }
+
+    /**
+     * Caches number of topics in the branch if the cache wasn't evicted since the number started loading.
+     *
+     * @param branchId    id of the branch
+     * @param topicsCount number of topics in the branch
+     * @param version     version of the cache the number was loaded at
+     */
+    public void putTopicsCount(long branchId, int topicsCount, long version) {
+        cache.put(TOPICS_COUNT_KEY + branchId, topicsCount, version);
+    }
+
+    /**
+     * Evicts counts of the branches, should be called when topics or posts are added to the branches or
+     * removed from them. Counts are evicted after commit if there is a transaction, otherwise readers could
+     * cache old counts again before the change is committed.
+     *
+     * @param branchIds ids of the changed branches
+     */
+    public void evict(long... branchIds) {
+        String[] keys = new String[branchIds.length * 2];
+        for (int i = 0; i < branchIds.length; i++) {
+            keys[2 * i] = POSTS_COUNT_KEY + branchIds[i];
+            keys[2 * i + 1] = TOPICS_COUNT_KEY + branchIds[i];
+        }
+        cache.evict(keys);
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import org.jtalks.common.model.entity.Section;
+import org.jtalks.jcommune.model.entity.Branch;
+import org.jtalks.jcommune.service.dto.CachedFeed;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Operations above cache of serialized RSS feeds. There are feeds of the whole forum, of sections and of branches,
+ * they are cached by their URL and by the visibility signature of the reader, because different users may see
+ * different branches and so different posts.
+ * <p/>
+ * Every feed has a generation kept in the same cache, feed is cached under the generation which was current when
+ * the feed started loading. When posts of a branch are added, changed or removed, or permissions of the branch
+ * are changed, generations of the feeds showing the branch (the branch itself, its section and the whole forum)
+ * are removed and the removals are replicated to the other nodes of the cluster. Feeds cached under a removed
+ * generation, including the ones loaded concurrently with the change, are not read anymore and just expire.
+ */
+public class FeedCacheService {
+    /** Key of the feed of the whole forum */
+    public static final String FORUM_FEED = "forum";
+    private static final String BRANCH_FEED_PREFIX = "branch:";
+    private static final String SECTION_FEED_PREFIX = "section:";
+    private static final String GENERATION_PREFIX = "generation:";
+
+    private final Ehcache cache;
+
+    /**
+     * Instantiate bean.
+     *
+     * @param cache cache replicating removals to the other nodes
+     */
+    public FeedCacheService(Ehcache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Gets key of the feed of the branch
+     *
+     * @param branchId id of the branch
+     * @return key of the feed
+     */
+    public static String getBranchFeed(long branchId) {
+        return BRANCH_FEED_PREFIX + branchId;
+    }
+
+    /**
+     * Gets key of the feed of the section
+     *
+     * @param sectionId id of the section
+     * @return key of the feed
+     */
+    public static String getSectionFeed(long sectionId) {
+        return SECTION_FEED_PREFIX + sectionId;
+    }
+
+    /**
+     * Gets current generation of the feed, it should be taken before loading of the data for the feed.
+     * New generation is started if the feed was evicted.
+     *
+     * @param feedKey key of the feed, see {@link #FORUM_FEED}, {@link #getBranchFeed(long)} and
+     *                {@link #getSectionFeed(long)}
+     * @return current generation of the feed
+     */
+    public String getGeneration(String feedKey) {
+        String generationKey = GENERATION_PREFIX + feedKey;
+        Element generation = cache.get(generationKey);
+        if (generation == null) {
+            Element started = new Element(generationKey, feedKey + "#" + UUID.randomUUID());
+            generation = cache.putIfAbsent(started);
+            if (generation == null) {
+                generation = started;
+            }
+        }
+        return (String) generation.getObjectValue();
+    }
+
+    /**
+     * Gets serialized feed.
+     *
+     * @param generation current generation of the feed
+     * @param url        full URL of the feed including query string
+     * @param visibility signature of the things the reader is allowed to see
+     * @return cached feed or {@code null} if it's not cached
+     */
+    public CachedFeed getFeed(String generation, String url, String visibility) {
+        Element element = cache.get(getKey(generation, url, visibility));
+        return element == null ? null : (CachedFeed) element.getObjectValue();
+    }
+
+    /**
+     * Puts serialized feed to cache. If the feed was evicted since it started loading, it's put under
+     * the outdated generation and so is never read.
+     *
+     * @param generation generation of the feed taken before the feed started loading
+     * @param url        full URL of the feed including query string
+     * @param visibility signature of the things the reader is allowed to see
+     * @param feed       serialized feed
+     */
+    public void putFeed(String generation, String url, String visibility, CachedFeed feed) {
+        cache.put(new Element(getKey(generation, url, visibility), feed));
+    }
+
+    /**
+     * Evicts feeds showing posts of the branch, should be called when posts of the branch are added, changed
+     * or removed and when permissions of the branch are changed. Feeds are evicted after commit if there is
+     * a transaction, otherwise readers could cache old posts again before the change is committed.
+     *
+     * @param branch branch which posts or permissions were changed
+     */
+    public void evict(Branch branch) {
+        final List<String> feedKeys = new ArrayList<>();
+        feedKeys.add(FORUM_FEED);
+        feedKeys.add(getBranchFeed(branch.getId()));
+        Section section = branch.getSection();
+        if (section != null) {
+            feedKeys.add(getSectionFeed(section.getId()));
+        }
+        AfterCommit.run(new Runnable() {
+            @Override
+            public void run() {
+                removeGenerations(feedKeys);
+            }
+        });
+    }
+
+    private void removeGenerations(List<String> feedKeys) {
+        for (String feedKey : feedKeys) {
+            cache.remove(GENERATION_PREFIX + feedKey);
+        }
+    }
+
+    private String getKey(String generation, String url, String visibility) {
+        return generation + " " + visibility + " " + url;
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import net.sf.ehcache.Ehcache;
+import org.jtalks.common.model.entity.Component;
+import org.jtalks.jcommune.service.dto.ForumImages;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps {@link ForumImages} snapshot of the forum logo and fav icons. Logo and icons are requested with
+ * every page by every new visitor, so they are decoded once and served from the snapshot without reading
+ * the forum component.
+ * <p/>
+ * A change of forum information evicts the snapshot after commit and the next reader loads a new one. The
+ * cache replicates evictions to the other nodes of the cluster, and its entries expire, so changes made by
+ * the administration application, which doesn't evict them, are picked up too.
+ * <p/>
+ * This service is not transactional on purpose: getting the snapshot mustn't open a transaction. It's
+ * filled by {@link org.jtalks.jcommune.service.ComponentService} which reads the component.
+ */
+public class ForumImagesCacheService {
+    static final String IMAGES = "forumImages";
+
+    private final VersionedCache cache;
+    private final Map<String, ImageService> defaultImageServices;
+    private final Base64Wrapper base64Wrapper = new Base64Wrapper();
+
+    /**
+     * @param cache                cache replicating removals to the other nodes
+     * @param defaultImageServices services providing default images by the name of the component property
+     *                             image is stored in, images absent in component are taken from them
+     */
+    public ForumImagesCacheService(Ehcache cache, Map<String, ImageService> defaultImageServices) {
+        this.cache = new VersionedCache(cache);
+        this.defaultImageServices = new HashMap<>(defaultImageServices);
+    }
+
+    /**
+     * Gets version of the cache, it should be taken before reading of the component for a snapshot.
+     *
+     * @return current version of the cache
+     */
+    public long getVersion() {
+        return cache.getVersion();
+    }
+
+    /**
+     * @return current snapshot or {@code null} if it's not cached
+     */
+    public ForumImages getImages() {
+        return (ForumImages) cache.get(IMAGES);
+    }
+
+    /**
+     * Puts snapshot with images of the given component to cache.
+     *
+     * @param component        forum component, may be null
+     * @param modificationTime last time when forum information was modified, may be null
+     * @param version          version of the cache the component was read at
+     * @return snapshot of the images
+     */
+    public ForumImages putImages(Component component, Date modificationTime, long version) {
+        ForumImages snapshot = createSnapshot(component, modificationTime);
+        cache.put(IMAGES, snapshot, version);
+        return snapshot;
+    }
+
+    /**
+     * Evicts the snapshot, should be called when forum information is changed. If there is a transaction,
+     * the snapshot is evicted only after it's committed, so images which were not saved are never served.
+     */
+    public void evict() {
+        cache.evict(IMAGES);
+    }
+
+    private ForumImages createSnapshot(Component component, Date modificationTime) {
+        Map<String, byte[]> imageBytes = new HashMap<>();
+        for (Map.Entry<String, ImageService> defaultImage : defaultImageServices.entrySet()) {
+            String propertyName = defaultImage.getKey();
+            String property = component == null ? null : component.getProperty(propertyName);
+            if (property == null || property.isEmpty()) {
+                imageBytes.put(propertyName, defaultImage.getValue().getDefaultImage());
+            } else {
+                imageBytes.put(propertyName, base64Wrapper.decodeB64Bytes(property));
+            }
+        }
+        return new ForumImages(modificationTime, imageBytes);
+    }
+}
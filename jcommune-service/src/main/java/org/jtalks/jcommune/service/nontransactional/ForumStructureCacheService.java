@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import com.google.common.collect.ImmutableSet;
+import net.sf.ehcache.Ehcache;
+import org.jtalks.jcommune.model.dto.ForumStructure;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Operations above cache of the forum structure: snapshot of sections and branches and sets of ids of
+ * branches visible to users. Visibility of branches depends only on the groups user belongs to, so the sets
+ * are cached by the signature of these groups and are shared by all users of the same groups.
+ * <p/>
+ * Both are evicted together after commit of any change of sections, branches or branch permissions and the
+ * next reader loads them again. Every eviction increases the version of the cache, data loaded before the
+ * last eviction is stale and is not kept in cache.
+ */
+public class ForumStructureCacheService {
+    static final String STRUCTURE = "structure";
+    static final String VISIBLE_BRANCHES_PREFIX = "visibleBranches:";
+
+    private final VersionedCache cache;
+
+    /**
+     * Instantiate bean.
+     *
+     * @param cache cache replicating removals to the other nodes
+     */
+    public ForumStructureCacheService(Ehcache cache) {
+        this.cache = new VersionedCache(cache);
+    }
+
+    /**
+     * Gets version of the cache, it should be taken before loading of the data.
+     *
+     * @return current version of the cache
+     */
+    public long getVersion() {
+        return cache.getVersion();
+    }
+
+    /**
+     * Gets snapshot of sections and branches.
+     *
+     * @return snapshot of forum structure or {@code null} if it's not cached
+     */
+    public ForumStructure getStructure() {
+        return (ForumStructure) cache.get(STRUCTURE);
+    }
+
+    /**
+     * Puts snapshot of sections and branches to cache.
+     *
+     * @param structure snapshot of forum structure
+     * @param version   version of the cache the structure was loaded at
+     */
+    public void putStructure(ForumStructure structure, long version) {
+        cache.put(STRUCTURE, structure, version);
+    }
+
+    /**
+     * Gets ids of branches visible to the users with specified signature of groups.
+     *
+     * @param groupsSignature signature of groups of user
+     * @return unmodifiable set of ids of visible branches or {@code null} if it's not cached
+     */
+    @SuppressWarnings("unchecked")
+    public Set<Long> getVisibleBranchIds(String groupsSignature) {
+        return (Set<Long>) cache.get(VISIBLE_BRANCHES_PREFIX + groupsSignature);
+    }
+
+    /**
+     * Puts ids of branches visible to the users with specified signature of groups to cache.
+     *
+     * @param groupsSignature signature of groups of user
+     * @param branchIds       ids of visible branches
+     * @param version         version of the cache the ids were loaded at
+     * @return unmodifiable set of ids of visible branches
+     */
+    public Set<Long> putVisibleBranchIds(String groupsSignature, Collection<Long> branchIds, long version) {
+        Set<Long> snapshot = ImmutableSet.copyOf(branchIds);
+        cache.put(VISIBLE_BRANCHES_PREFIX + groupsSignature, snapshot, version);
+        return snapshot;
+    }
+
+    /**
+     * Evicts forum structure and visibility of branches after commit if there is a transaction, otherwise
+     * readers could cache old data again before the change is committed. Should be called when sections,
+     * branches or permissions of branches are changed.
+     */
+    public void evict() {
+        cache.evictAll();
+    }
+}
@@ -22,9 +22,15 @@ import org.apache.tika.Tika;
 import org.jtalks.jcommune.service.exceptions.ImageProcessException;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Class for converting image and saving it in the target format in the byte array.
@@ -56,12 +62,22 @@ public class ImageConverter {
     */
     static final int MINIMUM_ICO_WIDTH = 8;
 
+    /**
+     * Scaled images having less pixels than this are processed in the calling thread, bigger ones are split
+     * into row stripes and scaled in the scaling pool if it's set
+     */
+    static final int PARALLEL_SCALING_THRESHOLD = 256 * 256;
+
+    /** Tika instances are thread safe, and creating one parses the whole MIME types registry */
+    private static final Tika TIKA = new Tika();
+
     private final Base64Wrapper base64Wrapper = new Base64Wrapper();
 
     private final int maxImageWidth;
     private final int maxImageHeight;
     private final String format;
     private final int imageType;
+    private ForkJoinPool scalingPool;
 
     /**
      * @param format format of the target image
@@ -76,6 +92,16 @@ public class ImageConverter {
         this.maxImageHeight = maxImageHeight;
     }
 
+    /**
+     * Sets pool to scale big images in, its lifecycle is managed by the container. Without the pool
+     * all the images are scaled in the calling thread.
+     *
+     * @param scalingPool pool to split scaling of big images in
+     */
+    public void setScalingPool(ForkJoinPool scalingPool) {
+        this.scalingPool = scalingPool;
+    }
+
     /**
      * Gets target format of this converter
      * @return target image format
@@ -141,31 +167,77 @@ public class ImageConverter {
     }
 
     /**
-     * Perform byte data conversion to BufferedImage.
+     * Perform byte data conversion to BufferedImage. Image dimensions are read from the image header first,
+     * and if the image is several times bigger than the maximum size of this converter, it's decoded with
+     * source subsampling, so the full-size image is never kept in memory. Subsampled image is still not
+     * smaller than the maximum size, so the final resizing is made by {@link #resizeImage(BufferedImage, int)}.
      *
      * @param bytes for conversion.
-     * @return image result.
+     * @return image result or null if there is no reader for the image format
      * @throws ImageProcessException image conversion problem.
      */
     public BufferedImage convertByteArrayToImage(byte[] bytes) throws ImageProcessException {
         BufferedImage result;
-        BufferedInputStream bis = new BufferedInputStream(new ByteArrayInputStream(bytes));
-        Tika tika = new Tika();
+        InputStream is = new ByteArrayInputStream(bytes);
         try {
-            String type = tika.detect(bis);
+            String type = TIKA.detect(is);
             if (type.contains(ImageService.ICO_TYPE)) {
-                result = ICODecoder.read(bis).get(0);
+                result = ICODecoder.read(is).get(0);
             } else {
-                result = ImageIO.read(bis);
+                result = readSubsampled(is);
             }
         } catch (IOException | IndexOutOfBoundsException e) {
             throw new ImageProcessException(e);
         } finally {
-            IOUtils.closeQuietly(bis);
+            IOUtils.closeQuietly(is);
         }
         return result;
     }
 
+    /**
+     * Decodes the image reading only every n-th pixel of every n-th row where n is the largest factor
+     * which keeps the image not smaller than the maximum size of this converter.
+     *
+     * @param is stream with image data
+     * @return decoded image or null if there is no reader for the image format
+     * @throws IOException if image can't be read
+     */
+    private BufferedImage readSubsampled(InputStream is) throws IOException {
+        ImageInputStream iis = ImageIO.createImageInputStream(is);
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = getSubsampling(reader.getWidth(0), reader.getHeight(0));
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            iis.close();
+        }
+    }
+
+    /**
+     * Calculates subsampling factor for the image of the given size
+     *
+     * @param width  image width from the image header
+     * @param height image height from the image header
+     * @return factor not less than 1
+     */
+    int getSubsampling(int width, int height) {
+        int factor = Math.max(width / maxImageWidth, height / maxImageHeight);
+        return Math.max(1, factor);
+    }
+
     /**
      * Resizes an image if its width or height is bigger than maximum value specified in the constructor or
      * smaller then minimum width value.
@@ -248,45 +320,82 @@ public class ImageConverter {
      * @return bufferedImage The resized image
      */
     private BufferedImage createBufferedImage(BufferedImage source, int imageType, int width, int height) {
-        BufferedImage bufferedImage = new BufferedImage(width, height, imageType);
-
-        int sourceX;
-        int sourceY;
-
-        double scaleX = (double) width / source.getWidth();
-        double scaleY = (double) height / source.getHeight();
-
-        int x1;
-        int y1;
-
-        double xDiff;
-        double yDiff;
-
-        int rgb;
-        int rgb1;
-        int rgb2;
-
-        for (int y = 0; y < height; y++) {
-            sourceY = y * source.getHeight() / bufferedImage.getHeight();
-            yDiff = y / scaleY - sourceY;
-
-            for (int x = 0; x < width; x++) {
-                sourceX = x * source.getWidth() / bufferedImage.getWidth();
-                xDiff = x / scaleX - sourceX;
-
-                x1 = Math.min(source.getWidth() - 1, sourceX + 1);
-                y1 = Math.min(source.getHeight() - 1, sourceY + 1);
+        int sourceWidth = source.getWidth();
+        int sourceHeight = source.getHeight();
+        int[] sourcePixels = source.getRGB(0, 0, sourceWidth, sourceHeight, null, 0, sourceWidth);
+        int[] pixels = new int[width * height];
+
+        ScalingTask task = new ScalingTask(sourcePixels, sourceWidth, sourceHeight, pixels, width, height, 0, height);
+        if (scalingPool == null || width * height < PARALLEL_SCALING_THRESHOLD) {
+            task.compute();
+        } else {
+            scalingPool.invoke(task);
+        }
 
-                rgb1 = getRGBInterpolation(source.getRGB(sourceX, sourceY), source.getRGB(x1, sourceY), xDiff);
-                rgb2 = getRGBInterpolation(source.getRGB(sourceX, y1), source.getRGB(x1, y1), xDiff);
+        BufferedImage bufferedImage = new BufferedImage(width, height, imageType);
+        if (imageType == BufferedImage.TYPE_INT_ARGB || imageType == BufferedImage.TYPE_INT_RGB) {
+            bufferedImage.getRaster().setDataElements(0, 0, width, height, pixels);
+        } else {
+            bufferedImage.setRGB(0, 0, width, height, pixels, 0, width);
+        }
+        return bufferedImage;
+    }
 
-                rgb = getRGBInterpolation(rgb1, rgb2, yDiff);
+    /**
+     * Bilinear scaling of the rows stripe of the ARGB pixels array. Stripes having more pixels than
+     * {@link #PARALLEL_SCALING_THRESHOLD} are split in halves when the task runs in the scaling pool.
+     */
+    private class ScalingTask extends RecursiveAction {
+        private final int[] source;
+        private final int sourceWidth;
+        private final int sourceHeight;
+        private final int[] target;
+        private final int width;
+        private final int height;
+        private final int fromRow;
+        private final int toRow;
+
+        ScalingTask(int[] source, int sourceWidth, int sourceHeight,
+                    int[] target, int width, int height, int fromRow, int toRow) {
+            this.source = source;
+            this.sourceWidth = sourceWidth;
+            this.sourceHeight = sourceHeight;
+            this.target = target;
+            this.width = width;
+            this.height = height;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
 
-                bufferedImage.setRGB(x, y, rgb);
+        @Override
+        protected void compute() {
+            int rows = toRow - fromRow;
+            if (inForkJoinPool() && rows > 1 && rows * width > PARALLEL_SCALING_THRESHOLD) {
+                int middle = fromRow + rows / 2;
+                invokeAll(new ScalingTask(source, sourceWidth, sourceHeight, target, width, height, fromRow, middle),
+                        new ScalingTask(source, sourceWidth, sourceHeight, target, width, height, middle, toRow));
+                return;
+            }
+            double scaleX = (double) width / sourceWidth;
+            double scaleY = (double) height / sourceHeight;
+            for (int y = fromRow; y < toRow; y++) {
+                int sourceY = y * sourceHeight / height;
+                double yDiff = y / scaleY - sourceY;
+                int row = sourceY * sourceWidth;
+                int nextRow = Math.min(sourceHeight - 1, sourceY + 1) * sourceWidth;
+
+                for (int x = 0; x < width; x++) {
+                    int sourceX = x * sourceWidth / width;
+                    double xDiff = x / scaleX - sourceX;
+                    int x1 = Math.min(sourceWidth - 1, sourceX + 1);
+
+                    int rgb1 = getRGBInterpolation(source[row + sourceX], source[row + x1], xDiff);
+                    int rgb2 = getRGBInterpolation(source[nextRow + sourceX], source[nextRow + x1], xDiff);
+
+                    target[y * width + x] = getRGBInterpolation(rgb1, rgb2, yDiff);
+                }
             }
         }
-
-        return bufferedImage;
     }
 
     /**
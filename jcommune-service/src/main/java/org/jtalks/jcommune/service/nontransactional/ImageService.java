@@ -54,6 +54,7 @@ public class ImageService {
     private JCommuneProperty imageSizeProperty;
     private String defaultImagePath;
     private static final Logger LOGGER = LoggerFactory.getLogger(ImageService.class);
+    private static final Tika TIKA = new Tika();
 
     /**
      * Create ImageService instance
@@ -132,10 +133,9 @@ public class ImageService {
      */
     public void validateImageFormat(byte[] bytes) throws ImageFormatException {
         Validate.notNull(bytes, "Incoming byte array cannot be null");
-        Tika tika = new Tika();
         InputStream input = new ByteArrayInputStream(bytes);
         try {
-            String type = tika.detect(input);
+            String type = TIKA.detect(input);
             if (!VALID_IMAGE_TYPES.contains(type)) {
                 LOGGER.debug("Wrong file extension. May be only {}", VALID_IMAGE_EXTENSIONS);
                 throw new ImageFormatException(VALID_IMAGE_EXTENSIONS);
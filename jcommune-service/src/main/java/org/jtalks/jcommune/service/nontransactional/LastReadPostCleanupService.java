@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import org.joda.time.DateTime;
+import org.jtalks.jcommune.model.dao.LastReadPostDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Deletes last read posts of the user which became useless after the user marked the whole forum as read.
+ * Records are deleted in a separate thread chunk by chunk, every chunk in its own transaction, so marking
+ * forum as read doesn't wait for deletion and doesn't lock all the records of the user at once.
+ * <p/>
+ * The service is not transactional itself, otherwise all chunks would be deleted in one transaction.
+ */
+public class LastReadPostCleanupService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LastReadPostCleanupService.class);
+
+    private final LastReadPostDao lastReadPostDao;
+    private final TaskExecutor taskExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    /**
+     * @param lastReadPostDao    to delete last read posts
+     * @param taskExecutor       to delete last read posts in a separate thread
+     * @param transactionManager to delete every chunk in its own transaction
+     * @param chunkSize          number of last read posts deleted in one transaction
+     */
+    public LastReadPostCleanupService(LastReadPostDao lastReadPostDao, TaskExecutor taskExecutor,
+                                      PlatformTransactionManager transactionManager, int chunkSize) {
+        this.lastReadPostDao = lastReadPostDao;
+        this.taskExecutor = taskExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Schedules deletion of last read posts of the user created not later than the forum was marked as read.
+     * If there is a transaction, deletion starts after it's committed, so records are never deleted
+     * while marking forum as read may still be rolled back.
+     *
+     * @param userId   id of the user marked forum as read
+     * @param markTime time of marking forum as read
+     */
+    public void deleteLastReadPostsCoveredByMark(final long userId, final DateTime markTime) {
+        final Runnable cleanup = new Runnable() {
+            @Override
+            public void run() {
+                deleteByChunks(userId, markTime);
+            }
+        };
+        AfterCommit.run(new Runnable() {
+            @Override
+            public void run() {
+                taskExecutor.execute(cleanup);
+            }
+        });
+    }
+
+    /**
+     * Deletes last read posts of the user chunk by chunk. Errors are logged only as deletion is asynchronous,
+     * not deleted records don't break anything and are deleted when forum is marked as read next time.
+     *
+     * @param userId   id of the user
+     * @param markTime time of marking forum as read
+     */
+    private void deleteByChunks(long userId, DateTime markTime) {
+        try {
+            int total = 0;
+            int deleted;
+            do {
+                deleted = deleteChunk(userId, markTime);
+                total += deleted;
+            } while (deleted == chunkSize);
+            LOGGER.debug("{} last read posts were deleted for user with id={}", total, userId);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Couldn't delete last read posts of user with id=" + userId, e);
+        }
+    }
+
+    /**
+     * Deletes next chunk of last read posts of the user in its own transaction
+     *
+     * @param userId   id of the user
+     * @param markTime time of marking forum as read
+     * @return number of deleted records
+     */
+    private int deleteChunk(final long userId, final DateTime markTime) {
+        return transactionTemplate.execute(new TransactionCallback<Integer>() {
+            @Override
+            public Integer doInTransaction(TransactionStatus status) {
+                return lastReadPostDao.deleteLastReadPostsFor(userId, markTime, chunkSize);
+            }
+        });
+    }
+}
@@ -22,12 +22,16 @@ import org.springframework.mail.javamail.JavaMailSenderImpl;
 import org.springframework.scheduling.annotation.Async;
 
 import javax.mail.Address;
+import javax.mail.MessagingException;
 import javax.mail.internet.MimeMessage;
 
 /**
  * Object sends email in a separate thread.
  * Amount of thread depends on parameter "pool-size" in spring task.
  * See http://docs.spring.io/spring/docs/3.0.x/spring-framework-reference/html/scheduling.html
+ * <p/>
+ * Several messages passed at once (e.g. notifications for all subscribers of a topic) are sent
+ * over a single SMTP connection instead of connecting to the server for every message.
  *
  * @author Andrey Ivanov
  */
@@ -37,16 +41,32 @@ public class MailSender extends JavaMailSenderImpl {
     @Async
     @Override
     public void send(MimeMessage mimeMessage) throws MailException {
+        sendOverOneConnection(mimeMessage);
+    }
+
+    @Async
+    @Override
+    public void send(MimeMessage... mimeMessages) throws MailException {
+        sendOverOneConnection(mimeMessages);
+    }
+
+    /**
+     * Sends all the messages using the same transport, so that SMTP handshake and authentication
+     * happen once per batch. Errors are logged only as mail sending is asynchronous anyway.
+     *
+     * @param mimeMessages messages to be sent
+     */
+    private void sendOverOneConnection(MimeMessage... mimeMessages) {
         try {
-            String subject = mimeMessage.getSubject();
-            StringBuilder to = new StringBuilder();
-            for (Address address : mimeMessage.getRecipients(MimeMessage.RecipientType.TO)) {
-                to.append(address.toString());
+            SMTPMessage[] messages = new SMTPMessage[mimeMessages.length];
+            for (int i = 0; i < mimeMessages.length; i++) {
+                messages[i] = new SMTPMessage(mimeMessages[i]);
+                messages[i].setEnvelopeFrom(getUsername());
             }
-            SMTPMessage message = new SMTPMessage(mimeMessage);
-            message.setEnvelopeFrom(getUsername());
+            String subject = mimeMessages.length == 0 ? null : mimeMessages[0].getSubject();
+            String to = getRecipients(mimeMessages);
             long started = System.currentTimeMillis();
-            super.send(message);
+            doSend(messages, null);
             long secsTook = (System.currentTimeMillis() - started) / 1000;
             if (secsTook > 30) {
                 LOGGER.warn("Sending email took long time [{}] for receiver: [{}]. Subject: [{}]",
@@ -62,4 +82,22 @@ public class MailSender extends JavaMailSenderImpl {
             LOGGER.error("Mail sending failed", e);
         }
     }
+
+    /**
+     * @param mimeMessages messages to be sent
+     * @return addresses of all the receivers of the messages, used for logging
+     * @throws MessagingException if recipients can't be read from a message
+     */
+    private String getRecipients(MimeMessage... mimeMessages) throws MessagingException {
+        StringBuilder to = new StringBuilder();
+        for (MimeMessage mimeMessage : mimeMessages) {
+            for (Address address : mimeMessage.getRecipients(MimeMessage.RecipientType.TO)) {
+                if (to.length() > 0) {
+                    to.append(", ");
+                }
+                to.append(address.toString());
+            }
+        }
+        return to.toString();
+    }
 }
@@ -26,7 +26,6 @@ import org.springframework.context.MessageSource;
 import org.springframework.mail.MailException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.ui.velocity.VelocityEngineUtils;
 import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
@@ -34,7 +33,12 @@ import org.springframework.web.context.request.ServletRequestAttributes;
 import javax.mail.MessagingException;
 import javax.mail.internet.MimeMessage;
 import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
@@ -42,6 +46,10 @@ import java.util.Map;
  * This service is focused on sending e-mail to forum users.
  * Notifications, confirmations or e-mail based subscriptions of a various
  * kind should use this service to perform e-mail sending.
+ * <p/>
+ * Notifications addressed to many users at once (e.g. to all the subscribers of a topic) are rendered
+ * once per recipient language, only the recipient's name is substituted into the ready text afterwards.
+ * Such messages are passed to the {@link JavaMailSender} in batches to be sent over one connection.
  *
  * @author Evgeniy Naumenko
  * @author Eugeny Batov
@@ -68,9 +76,14 @@ public class MailService {
     private static final String RECIPIENT_LOCALE = "locale";
     private static final String NO_ARGS = "noArgs";
     private static final String ESCAPE_TOOL = "escape";
+    private static final String USERNAME = "username";
+    /** Stands for recipient's name in the text rendered once for all the recipients */
+    static final String RECIPIENT_NAME_PLACEHOLDER = "%%recipient_name%%";
+    /** How many messages are sent over one SMTP connection */
+    static final int BULK_SEND_BATCH_SIZE = 100;
     private final JavaMailSender mailSender;
     private final String from;
-    private final VelocityEngine velocityEngine;
+    private final MailTemplateRenderer templateRenderer;
     private final MessageSource messageSource;
     private final JCommuneProperty notificationsEnabledProperty;
     private final EscapeTool escapeTool;
@@ -98,7 +111,7 @@ public class MailService {
                        EntityToDtoConverter converter) {
         this.mailSender = sender;
         this.from = from;
-        this.velocityEngine = engine;
+        this.templateRenderer = new MailTemplateRenderer(engine);
         this.messageSource = source;
         this.notificationsEnabledProperty = notificationsEnabledProperty;
         this.escapeTool = escapeTool;
@@ -159,6 +172,25 @@ public class MailService {
         }
     }
 
+    /**
+     * Sends update notification to all the users specified at once, see
+     * {@link #sendUpdatesOnSubscription(JCUser, SubscriptionAwareEntity)}. The message is rendered
+     * once per recipients' language and messages are sent in batches.
+     *
+     * @param recipients persons to be notified about updates by email
+     * @param entity     changed subscribed entity.
+     */
+    public void sendUpdatesOnSubscription(Collection<JCUser> recipients, SubscriptionAwareEntity entity) {
+        String urlSuffix = entity.getUrlSuffix();
+        Map<String, Object> model = new HashMap<>();
+        model.put(LINK, this.getDeploymentRootUrl() + urlSuffix);
+        model.put(LINK_LABEL, getDeploymentRootUrlWithoutPort() + urlSuffix);
+        model.put(LINK_UNSUBSCRIBE, this.getDeploymentRootUrl()
+                + entity.getUnsubscribeLinkForSubscribersOf(entity.getClass()));
+        sendBulkEmail(recipients, model, "subscriptionNotification.subject", getTitleName((Entity) entity),
+                "subscriptionNotification.vm");
+    }
+
     /**
      * Sends email on forum updates.
      *
@@ -250,6 +282,27 @@ public class MailService {
         }
     }
 
+    /**
+     * Sends email to all the users specified that the topic was moved, see
+     * {@link #sendTopicMovedMail(JCUser, Topic, String, Class)}. The message is rendered
+     * once per recipients' language and messages are sent in batches.
+     *
+     * @param recipients users to send notification
+     * @param topic      relocated topic
+     * @param curUser    User that moved topic
+     */
+    public <T extends SubscriptionAwareEntity> void sendTopicMovedMail(
+            Collection<JCUser> recipients, Topic topic, String curUser, Class<T> subscriptionTargetClass) {
+        String urlSuffix = getTopicUrlSuffix(topic);
+        Map<String, Object> model = new HashMap<>();
+        model.put(CUR_USER, curUser);
+        model.put(LINK, this.getDeploymentRootUrl() + urlSuffix);
+        model.put(LINK_UNSUBSCRIBE, this.getDeploymentRootUrl()
+                + topic.getUnsubscribeLinkForSubscribersOf(subscriptionTargetClass));
+        model.put(LINK_LABEL, getDeploymentRootUrlWithoutPort() + urlSuffix);
+        sendBulkEmail(recipients, model, "moveTopic.subject", "", "moveTopic.vm");
+    }
+
     /**
      * Send email notification to user when he was mentioned in forum.
      * Email notification will be sent only when notifications are enabled
@@ -300,19 +353,116 @@ public class MailService {
             model.put(NO_ARGS, new Object[]{});
             String plainText = this.mergePlainTextTemplate(templateName, model);
             String htmlText = this.mergeHtmlTemplate(templateName, model);
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true);
-            helper.setTo(to);
-            helper.setFrom(from);
-            helper.setSubject(subject);
-            helper.setText(plainText, htmlText);
-            mailSender.send(message);
+            mailSender.send(createMessage(to, subject, plainText, htmlText));
         } catch (MailException | MessagingException e) {
             LOGGER.error("Mail sending failed", e);
             throw new MailingFailedException(e);
         }
     }
 
+    /**
+     * Sends the same notification to many recipients. The text is rendered once for every language
+     * of the recipients with a placeholder instead of recipient's name, that placeholder is replaced
+     * for each of the recipients afterwards. Messages are passed to the mail sender in batches of
+     * {@link #BULK_SEND_BATCH_SIZE}. Errors are logged only, the remaining batches are still sent.
+     *
+     * @param recipients    persons to send the notification to
+     * @param model         template params common for all the recipients
+     * @param subjectCode   code of the message headline in the message source
+     * @param subjectSuffix text to be appended to the localized headline, like entity title
+     * @param templateName  template file name, like "template.vm"
+     */
+    private void sendBulkEmail(Collection<JCUser> recipients, Map<String, Object> model, String subjectCode,
+                               String subjectSuffix, String templateName) {
+        if (!notificationsEnabledProperty.booleanValue()) {
+            LOGGER.debug("Email notifications are turned off in Forum Settings, skip sending [{}] mails" +
+                    " with subject [{}].", recipients.size(), subjectCode);
+            return;
+        }
+        model.put(MESSAGE_SOURCE, messageSource);
+        model.put(ESCAPE_TOOL, escapeTool);
+        model.put(NO_ARGS, new Object[]{});
+        model.put(NAME, RECIPIENT_NAME_PLACEHOLDER);
+        model.put(USER, Collections.singletonMap(USERNAME, RECIPIENT_NAME_PLACEHOLDER));
+        List<MimeMessage> batch = new ArrayList<>(BULK_SEND_BATCH_SIZE);
+        for (Map.Entry<Locale, List<JCUser>> sameLanguage : groupByLocale(recipients).entrySet()) {
+            Locale locale = sameLanguage.getKey();
+            model.put(RECIPIENT_LOCALE, locale);
+            String subject = messageSource.getMessage(subjectCode, new Object[]{}, locale) + subjectSuffix;
+            String plainText = this.mergePlainTextTemplate(templateName, model);
+            String htmlText = this.mergeHtmlTemplate(templateName, model);
+            for (JCUser recipient : sameLanguage.getValue()) {
+                String name = recipient.getUsername();
+                try {
+                    batch.add(createMessage(recipient.getEmail(), subject,
+                            plainText.replace(RECIPIENT_NAME_PLACEHOLDER, name),
+                            htmlText.replace(RECIPIENT_NAME_PLACEHOLDER, escapeTool.html(name))));
+                } catch (MessagingException e) {
+                    LOGGER.error("Failed to prepare mail with subject [" + subject + "] for user: " + name, e);
+                }
+                if (batch.size() == BULK_SEND_BATCH_SIZE) {
+                    sendBatch(batch);
+                }
+            }
+        }
+        sendBatch(batch);
+    }
+
+    /**
+     * Passes all the messages to the mail sender at once and empties the list.
+     *
+     * @param batch messages to be sent
+     */
+    private void sendBatch(List<MimeMessage> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        LOGGER.debug("Sending [{}] emails at once", batch.size());
+        try {
+            mailSender.send(batch.toArray(new MimeMessage[batch.size()]));
+        } catch (MailException e) {
+            LOGGER.error("Mail sending failed", e);
+        }
+        batch.clear();
+    }
+
+    /**
+     * @param recipients users to be grouped
+     * @return users grouped by the language they prefer, the order of recipients is kept
+     */
+    private Map<Locale, List<JCUser>> groupByLocale(Collection<JCUser> recipients) {
+        Map<Locale, List<JCUser>> byLocale = new LinkedHashMap<>();
+        for (JCUser recipient : recipients) {
+            Locale locale = recipient.getLanguage().getLocale();
+            List<JCUser> sameLanguage = byLocale.get(locale);
+            if (sameLanguage == null) {
+                sameLanguage = new ArrayList<>();
+                byLocale.put(locale, sameLanguage);
+            }
+            sameLanguage.add(recipient);
+        }
+        return byLocale;
+    }
+
+    /**
+     * @param to        destination email address
+     * @param subject   message headline
+     * @param plainText plain text version of the message
+     * @param htmlText  html version of the message
+     * @return message ready to be sent
+     * @throws MessagingException if the message can't be composed, e.g. address is malformed
+     */
+    private MimeMessage createMessage(String to, String subject, String plainText, String htmlText)
+            throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true);
+        helper.setTo(to);
+        helper.setFrom(from);
+        helper.setSubject(subject);
+        helper.setText(plainText, htmlText);
+        return message;
+    }
+
     /**
      * Creates a html text message from templates and param given.
      * Template should be located in org/jtalks/jcommune/service/templates/html/
@@ -323,7 +473,7 @@ public class MailService {
      */
     private String mergeHtmlTemplate(String templateName, Map<String, Object> model) {
         String path = HTML_TEMPLATES_PATH + templateName;
-        return VelocityEngineUtils.mergeTemplateIntoString(velocityEngine, path, "UTF-8", model);
+        return templateRenderer.render(path, model);
     }
 
     /**
@@ -336,7 +486,7 @@ public class MailService {
      */
     private String mergePlainTextTemplate(String templateName, Map<String, Object> model) {
         String path = PLAIN_TEXT_TEMPLATES_PATH + templateName;
-        return VelocityEngineUtils.mergeTemplateIntoString(velocityEngine, path, "UTF-8", model);
+        return templateRenderer.render(path, model);
     }
 
     /**
@@ -448,6 +598,25 @@ public class MailService {
         }
     }
 
+    /**
+     * Send email about new topic in the subscribed branch to all the subscribers at once, see
+     * {@link #sendTopicCreationMail(JCUser, Topic)}. The message is rendered once per
+     * subscribers' language and messages are sent in batches.
+     *
+     * @param subscribers recipients
+     * @param topic       newly created topic
+     */
+    void sendTopicCreationMail(Collection<JCUser> subscribers, Topic topic) {
+        String urlSuffix = getTopicUrlSuffix(topic);
+        Map<String, Object> model = new HashMap<>();
+        model.put(LINK, this.getDeploymentRootUrl() + urlSuffix);
+        model.put(LINK_UNSUBSCRIBE, this.getDeploymentRootUrl()
+                + topic.getBranch().getUnsubscribeLinkForSubscribersOf(Branch.class));
+        model.put(LINK_LABEL, getDeploymentRootUrlWithoutPort() + urlSuffix);
+        sendBulkEmail(subscribers, model, "subscriptionNotification.subject", getTitleName(topic.getBranch()),
+                "branchSubscriptionNotification.vm");
+    }
+
     /**
      * Gets url suffix of specified topic. Urls of topics provided by plugins can differ
      *
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Renders e-mail templates. Each template is parsed by Velocity only once, after that the compiled
+ * template is reused for all the following mails, so that mass notifications don't re-read and re-parse
+ * the same file for every recipient.
+ */
+public class MailTemplateRenderer {
+    private static final String ENCODING = "UTF-8";
+    private final VelocityEngine velocityEngine;
+    private final ConcurrentMap<String, Template> templates = new ConcurrentHashMap<>();
+
+    /**
+     * @param velocityEngine engine to load and compile templates with
+     */
+    public MailTemplateRenderer(VelocityEngine velocityEngine) {
+        this.velocityEngine = velocityEngine;
+    }
+
+    /**
+     * Merges the template with the model given.
+     *
+     * @param templatePath classpath location of the template, like "path/to/template.vm"
+     * @param model        template params to be substituted in velocity template
+     * @return rendered text
+     */
+    public String render(String templatePath, Map<String, Object> model) {
+        StringWriter result = new StringWriter();
+        getTemplate(templatePath).merge(new VelocityContext(model), result);
+        return result.toString();
+    }
+
+    /**
+     * @param templatePath classpath location of the template
+     * @return compiled template, loaded from the classpath on the first request only
+     */
+    private Template getTemplate(String templatePath) {
+        Template template = templates.get(templatePath);
+        if (template == null) {
+            template = velocityEngine.getTemplate(templatePath, ENCODING);
+            Template existing = templates.putIfAbsent(templatePath, template);
+            if (existing != null) {
+                template = existing;
+            }
+        }
+        return template;
+    }
+}
@@ -42,6 +42,8 @@ import java.util.List;
  * @author Vitaliy Kravchenko
  */
 public class NotificationService {
+    /** Subscribers are read, filtered and notified by pages of this size, so that they're never loaded all at once */
+    static final int SUBSCRIBERS_PAGE_SIZE = 500;
 
     SubscriptionService subscriptionService;
     private UserService userService;
@@ -72,13 +74,13 @@ public class NotificationService {
      *
      * @param entity changed subscribed entity.
      */
-    public void subscribedEntityChanged(SubscriptionAwareEntity entity) {
-        Collection<JCUser> subscribers = subscriptionService.getAllowedSubscribers(entity);
-        filterSubscribers(subscribers, entity);
-
-        for (JCUser user : subscribers) {
-            mailService.sendUpdatesOnSubscription(user, entity);
-        }
+    public void subscribedEntityChanged(final SubscriptionAwareEntity entity) {
+        forEachSubscribersPage(entity, null, entity, new SubscribersPageHandler() {
+            @Override
+            public void handle(Collection<JCUser> subscribers) {
+                mailService.sendUpdatesOnSubscription(subscribers, entity);
+            }
+        });
     }
 
     /**
@@ -88,26 +90,52 @@ public class NotificationService {
      *
      * @param topic topic moved
      */
-    public void sendNotificationAboutTopicMoved(Topic topic) {
-        String curUser = userService.getCurrentUser().getUsername();
+    public void sendNotificationAboutTopicMoved(final Topic topic) {
+        final String curUser = userService.getCurrentUser().getUsername();
 
         //send notification to topic subscribers
-        Collection<JCUser> topicSubscribers = subscriptionService.getAllowedSubscribers(topic);
-        this.filterSubscribers(topicSubscribers, topic);
+        forEachSubscribersPage(topic, null, topic, new SubscribersPageHandler() {
+            @Override
+            public void handle(Collection<JCUser> subscribers) {
+                mailService.sendTopicMovedMail(subscribers, topic, curUser, Topic.class);
+            }
+        });
 
-        for (JCUser subscriber : topicSubscribers) {
-            mailService.sendTopicMovedMail(subscriber, topic, curUser, Topic.class);
-        }
+        //send notification to branch subscribers, except for the ones notified as topic subscribers
+        forEachSubscribersPage(topic.getBranch(), topic, topic.getBranch(), new SubscribersPageHandler() {
+            @Override
+            public void handle(Collection<JCUser> subscribers) {
+                mailService.sendTopicMovedMail(subscribers, topic, curUser, Branch.class);
+            }
+        });
+    }
 
-        //send notification to branch subscribers
-        Collection<JCUser> branchSubscribers = subscriptionService.getAllowedSubscribers(topic.getBranch());
-        branchSubscribers.removeAll(topicSubscribers);
-        this.filterSubscribers(branchSubscribers, topic.getBranch());
-        for (JCUser subscriber : branchSubscribers) {
-            if (!topicSubscribers.contains(subscriber)) {
-                mailService.sendTopicMovedMail(subscriber, topic, curUser, Branch.class);
+    /**
+     * Reads allowed subscribers of the entity page by page, filters each page and passes it to the handler if
+     * anybody is left to be notified.
+     *
+     * @param entity        subscribed entity
+     * @param excluded      entity whose subscribers are notified separately and should be skipped, may be
+     *                      {@code null}
+     * @param notifiedAbout entity the notification is about, subscribers are filtered by plugins for it
+     * @param handler       sends the notifications to the page of subscribers
+     */
+    private void forEachSubscribersPage(SubscriptionAwareEntity entity, SubscriptionAwareEntity excluded,
+                                        SubscriptionAwareEntity notifiedAbout, SubscribersPageHandler handler) {
+        long lastId = 0;
+        int pageSize;
+        do {
+            List<JCUser> subscribers = subscriptionService.getAllowedSubscribers(
+                    entity, excluded, lastId, SUBSCRIBERS_PAGE_SIZE);
+            pageSize = subscribers.size();
+            if (pageSize > 0) {
+                lastId = subscribers.get(pageSize - 1).getId();
+                filterSubscribers(subscribers, notifiedAbout);
+                if (!subscribers.isEmpty()) {
+                    handler.handle(subscribers);
+                }
             }
-        }
+        } while (pageSize == SUBSCRIBERS_PAGE_SIZE);
     }
 
     /**
@@ -133,16 +161,18 @@ public class NotificationService {
      *
      * @param topic       Current topic
      */
-    public void sendNotificationAboutRemovingTopic(Topic topic) {
+    public void sendNotificationAboutRemovingTopic(final Topic topic) {
         subscribedEntityChanged(topic.getBranch());
-        Collection<JCUser> subscribers = subscriptionService.getAllowedSubscribers(topic);
-        Collection<JCUser> branchSubscribers = subscriptionService.getAllowedSubscribers(topic.getBranch());
-        subscribers.removeAll(branchSubscribers);
-        String curUser = userService.getCurrentUser().getUsername();
-        this.filterSubscribers(subscribers, topic);
-        for (JCUser subscriber : subscribers) {
-            mailService.sendRemovingTopicMail(subscriber, topic, curUser);
-        }
+        final String curUser = userService.getCurrentUser().getUsername();
+        // branch subscribers were notified about the branch change above
+        forEachSubscribersPage(topic, topic.getBranch(), topic, new SubscribersPageHandler() {
+            @Override
+            public void handle(Collection<JCUser> subscribers) {
+                for (JCUser subscriber : subscribers) {
+                    mailService.sendRemovingTopicMail(subscriber, topic, curUser);
+                }
+            }
+        });
     }
 
     /**
@@ -150,12 +180,22 @@ public class NotificationService {
      *
      * @param topic newly created topic
      */
-    public void sendNotificationAboutTopicCreated(Topic topic) {
-        Collection<JCUser> branchSubscribers = subscriptionService.getAllowedSubscribers(topic.getBranch());
-        this.filterSubscribers(branchSubscribers, topic);
-        for (JCUser subscriber : branchSubscribers) {
-            mailService.sendTopicCreationMail(subscriber, topic);
-        }
+    public void sendNotificationAboutTopicCreated(final Topic topic) {
+        forEachSubscribersPage(topic.getBranch(), null, topic, new SubscribersPageHandler() {
+            @Override
+            public void handle(Collection<JCUser> subscribers) {
+                mailService.sendTopicCreationMail(subscribers, topic);
+            }
+        });
     }
-}
 
+    /**
+     * Sends notifications to a page of subscribers left after filtering.
+     */
+    private interface SubscribersPageHandler {
+        /**
+         * @param subscribers not empty page of subscribers to notify
+         */
+        void handle(Collection<JCUser> subscribers);
+    }
+}
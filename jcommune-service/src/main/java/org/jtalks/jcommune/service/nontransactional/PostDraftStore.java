@@ -0,0 +1,232 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import org.joda.time.DateTime;
+import org.jtalks.jcommune.model.dao.PostDraftDao;
+import org.jtalks.jcommune.model.entity.JCUser;
+import org.jtalks.jcommune.model.entity.PostDraft;
+import org.jtalks.jcommune.model.entity.Topic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.session.SessionDestroyedEvent;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Write-behind store of post drafts. Drafts are autosaved every few seconds while user is typing, so only
+ * the latest content of every draft is kept in memory and written to the database by the periodic flush
+ * in one transaction. Only creation of a new draft is written right away, as its id is returned to the page.
+ * <p/>
+ * Pending drafts of the user are also written when session of the user is destroyed and all of them are
+ * written on shutdown. Drafts are never written through the {@link Topic}, so autosaving doesn't update
+ * the topic and doesn't evict it from the second level cache.
+ * <p/>
+ * Pending drafts are kept by the node which received the autosave request. If requests of the same user
+ * are balanced to several nodes, another node reads the draft written by the last flush, so it can be up
+ * to one flush period behind. To never overwrite newer content with the older one, the time of every save
+ * is kept with the pending draft and the draft is not written if it was saved later on another node
+ * (node clocks are expected to be synchronized).
+ */
+public class PostDraftStore implements ApplicationListener<SessionDestroyedEvent> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PostDraftStore.class);
+
+    private final ConcurrentMap<DraftKey, PendingDraft> pendingDrafts = new ConcurrentHashMap<>();
+    private final PostDraftDao postDraftDao;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * @param postDraftDao       to read and write drafts
+     * @param transactionManager to write pending drafts outside of request transactions
+     */
+    public PostDraftStore(PostDraftDao postDraftDao, PlatformTransactionManager transactionManager) {
+        this.postDraftDao = postDraftDao;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Saves content of the user's draft in the topic. Should be called inside of a transaction as new
+     * drafts are written right away, while changes of existing ones are kept till the next flush.
+     *
+     * @param author  author of the draft
+     * @param topic   topic the draft is written in
+     * @param content content of the draft
+     * @return saved draft, it's not attached to the session if the write was delayed
+     */
+    public PostDraft save(JCUser author, Topic topic, String content) {
+        DraftKey key = new DraftKey(author.getId(), topic.getId());
+        PendingDraft pending = pendingDrafts.get(key);
+        long draftId;
+        if (pending != null) {
+            draftId = pending.draftId;
+        } else {
+            PostDraft persisted = postDraftDao.getForUser(author, topic);
+            if (persisted == null) {
+                persisted = new PostDraft(content, author);
+                persisted.setTopic(topic);
+                postDraftDao.saveOrUpdate(persisted);
+                return persisted;
+            }
+            draftId = persisted.getId();
+        }
+        PendingDraft saved = new PendingDraft(draftId, content, new DateTime());
+        pendingDrafts.put(key, saved);
+        return toDraft(author, topic, saved);
+    }
+
+    /**
+     * Gets draft of the user which is not written to the database yet
+     *
+     * @param author author of the draft
+     * @param topic  topic the draft is written in
+     * @return pending draft or null if the draft in database is actual
+     */
+    public PostDraft getPending(JCUser author, Topic topic) {
+        PendingDraft pending = pendingDrafts.get(new DraftKey(author.getId(), topic.getId()));
+        return pending == null ? null : toDraft(author, topic, pending);
+    }
+
+    /**
+     * Discards not written changes of the user's draft, should be called when draft is removed
+     * because it was published or deleted by the user.
+     *
+     * @param author author of the draft
+     * @param topic  topic the draft is written in
+     */
+    public void discard(JCUser author, Topic topic) {
+        pendingDrafts.remove(new DraftKey(author.getId(), topic.getId()));
+    }
+
+    /**
+     * Writes all pending drafts in one transaction. Invoked periodically and on shutdown.
+     */
+    @Scheduled(fixedDelay = 30000)
+    public void flush() {
+        flush(null);
+    }
+
+    /**
+     * Writes pending drafts of the users whose sessions were destroyed
+     *
+     * @param event session destroyed event
+     */
+    @Override
+    public void onApplicationEvent(SessionDestroyedEvent event) {
+        for (SecurityContext context : event.getSecurityContexts()) {
+            if (context.getAuthentication() != null && context.getAuthentication().getPrincipal() instanceof JCUser) {
+                flush(((JCUser) context.getAuthentication().getPrincipal()).getId());
+            }
+        }
+    }
+
+    /**
+     * Writes pending drafts. Drafts which were changed again while they were written stay pending.
+     *
+     * @param authorId id of the user whose drafts should be written or null to write drafts of all users
+     */
+    private void flush(Long authorId) {
+        final Map<DraftKey, PendingDraft> batch = new HashMap<>();
+        for (Map.Entry<DraftKey, PendingDraft> entry : pendingDrafts.entrySet()) {
+            if (authorId == null || entry.getKey().authorId == authorId) {
+                batch.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                for (PendingDraft pending : batch.values()) {
+                    PostDraft draft = postDraftDao.get(pending.draftId);
+                    //draft could be deleted after it was saved last time or saved later on another node
+                    if (draft != null && !isSavedAfter(draft, pending)) {
+                        draft.setContent(pending.content);
+                        draft.setLastSaved(pending.savedAt);
+                        postDraftDao.saveOrUpdate(draft);
+                    }
+                }
+            }
+        });
+        for (Map.Entry<DraftKey, PendingDraft> written : batch.entrySet()) {
+            pendingDrafts.remove(written.getKey(), written.getValue());
+        }
+        LOGGER.debug("{} post drafts were written", batch.size());
+    }
+
+    private boolean isSavedAfter(PostDraft draft, PendingDraft pending) {
+        return draft.getLastSaved() != null && draft.getLastSaved().isAfter(pending.savedAt);
+    }
+
+    private PostDraft toDraft(JCUser author, Topic topic, PendingDraft pending) {
+        PostDraft draft = new PostDraft(pending.content, author);
+        draft.setId(pending.draftId);
+        draft.setTopic(topic);
+        draft.setLastSaved(pending.savedAt);
+        return draft;
+    }
+
+    /**
+     * Identifies draft of the user in the topic
+     */
+    private static final class DraftKey {
+        private final long authorId;
+        private final long topicId;
+
+        private DraftKey(long authorId, long topicId) {
+            this.authorId = authorId;
+            this.topicId = topicId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof DraftKey)) {
+                return false;
+            }
+            DraftKey other = (DraftKey) o;
+            return authorId == other.authorId && topicId == other.topicId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (authorId ^ (authorId >>> 32)) + (int) (topicId ^ (topicId >>> 32));
+        }
+    }
+
+    /**
+     * Latest content of the draft which is not written yet
+     */
+    private static final class PendingDraft {
+        private final long draftId;
+        private final String content;
+        private final DateTime savedAt;
+
+        private PendingDraft(long draftId, String content, DateTime savedAt) {
+            this.draftId = draftId;
+            this.content = content;
+            this.savedAt = savedAt;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import org.jtalks.jcommune.model.entity.JCUser;
+
+import java.io.Serializable;
+
+/**
+ * Operations above cache of user signatures already converted to HTML. Signatures are shown
+ * with every post of the user, but change rarely, so there is no need to pass them through
+ * bb-code processors again and again.
+ * <p/>
+ * Entries are stored by user id together with the signature they were rendered from. The
+ * cache is local for every node, so the entry is dropped not only on eviction, but also when
+ * it was rendered from another version of signature than user has now.
+ */
+public class SignatureCacheService {
+
+    private final Ehcache signatureCache;
+
+    /**
+     * Instantiate bean.
+     *
+     * @param signatureCache cache
+     */
+    public SignatureCacheService(Ehcache signatureCache) {
+        this.signatureCache = signatureCache;
+    }
+
+    /**
+     * Gets rendered signature of the user.
+     *
+     * @param user user whose signature is needed
+     * @return signature in HTML or {@code null} if there is no actual signature of the user in cache
+     */
+    public String getSignatureHtml(JCUser user) {
+        Element element = signatureCache.get(user.getId());
+        if (element == null) {
+            return null;
+        }
+        RenderedSignature rendered = (RenderedSignature) element.getObjectValue();
+        return rendered.isRenderedFrom(user.getSignature()) ? rendered.html : null;
+    }
+
+    /**
+     * Puts rendered signature of the user to cache.
+     *
+     * @param user user whose signature was rendered
+     * @param html signature in HTML
+     */
+    public void putSignatureHtml(JCUser user, String html) {
+        signatureCache.put(new Element(user.getId(), new RenderedSignature(user.getSignature(), html)));
+    }
+
+    /**
+     * Removes rendered signature of the user from cache, should be called when profile of the user is changed.
+     *
+     * @param userId id of the user
+     */
+    public void evict(long userId) {
+        signatureCache.remove(userId);
+    }
+
+    /**
+     * Signature in HTML together with the bb-encoded source it was rendered from.
+     */
+    private static final class RenderedSignature implements Serializable {
+        private final String source;
+        private final String html;
+
+        private RenderedSignature(String source, String html) {
+            this.source = source;
+            this.html = html;
+        }
+
+        private boolean isRenderedFrom(String signature) {
+            return source == null ? signature == null : source.equals(signature);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import org.jtalks.common.model.entity.Section;
+import org.jtalks.jcommune.model.dao.BranchDao;
+import org.jtalks.jcommune.model.dao.SectionDao;
+import org.jtalks.jcommune.model.dao.TopicDao;
+import org.jtalks.jcommune.model.dao.UserDao;
+import org.jtalks.jcommune.model.dao.search.TopicSearchDao;
+import org.jtalks.jcommune.model.entity.Branch;
+import org.jtalks.jcommune.plugin.api.exceptions.NotFoundException;
+import org.jtalks.jcommune.service.BranchLastPostService;
+import org.jtalks.jcommune.service.dto.TopicPurgeProgress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Deletes all topics of branches, sections or the whole forum when they are removed in the administration
+ * application. Topics are deleted by chunks, every chunk is deleted in its own transaction by set-based statements
+ * without loading topics and posts into the session. Post counts of authors, the search index and the second level
+ * cache, including feeds of the branch, are updated once per chunk, the last post of the branch is refreshed once
+ * after all its topics are deleted.
+ * Notifications about deleted topics are not sent.
+ * <p/>
+ * The service is not transactional itself, otherwise all chunks would be deleted in one transaction.
+ */
+public class TopicPurgeService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TopicPurgeService.class);
+
+    private final TopicDao topicDao;
+    private final BranchDao branchDao;
+    private final SectionDao sectionDao;
+    private final UserDao userDao;
+    private final TopicSearchDao topicSearchDao;
+    private final BranchStatisticsCacheService branchStatisticsCacheService;
+    private final FeedCacheService feedCacheService;
+    private final BranchLastPostService branchLastPostService;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private volatile TopicPurgeProgress progress = new TopicPurgeProgress(0);
+
+    /**
+     * @param topicDao           to delete topics
+     * @param branchDao          to find branches
+     * @param sectionDao         to find sections
+     * @param userDao            to recalculate post counts of authors
+     * @param topicSearchDao     to remove deleted topics from the search index
+     * @param branchStatisticsCacheService to evict numbers of topics and posts of the purged branches
+     * @param feedCacheService   to evict RSS feeds showing posts of the purged branches
+     * @param branchLastPostService to refresh the last posts of the purged branches
+     * @param transactionManager to delete every chunk in its own transaction
+     * @param chunkSize          number of topics deleted in one transaction
+     */
+    public TopicPurgeService(TopicDao topicDao, BranchDao branchDao, SectionDao sectionDao, UserDao userDao,
+                             TopicSearchDao topicSearchDao, BranchStatisticsCacheService branchStatisticsCacheService,
+                             FeedCacheService feedCacheService, BranchLastPostService branchLastPostService,
+                             PlatformTransactionManager transactionManager, int chunkSize) {
+        this.topicDao = topicDao;
+        this.branchDao = branchDao;
+        this.sectionDao = sectionDao;
+        this.userDao = userDao;
+        this.topicSearchDao = topicSearchDao;
+        this.branchStatisticsCacheService = branchStatisticsCacheService;
+        this.feedCacheService = feedCacheService;
+        this.branchLastPostService = branchLastPostService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Deletes all topics in the branch and recalculates post counts of their authors.
+     *
+     * @param branchId branch id
+     * @throws NotFoundException when branch not found
+     */
+    public void deleteAllTopicsInBranch(final long branchId) throws NotFoundException {
+        Branch branch = transactionTemplate.execute(new TransactionCallback<Branch>() {
+            @Override
+            public Branch doInTransaction(TransactionStatus status) {
+                return branchDao.get(branchId);
+            }
+        });
+        if (branch == null) {
+            throw new NotFoundException("Branch with id=" + branchId + " not found");
+        }
+        purge(Collections.singletonList(branchId));
+        LOGGER.info("All topics for branch \"{}\" were deleted. Branch id: {}", branch.getName(), branchId);
+    }
+
+    /**
+     * Deletes all topics in all branches of the section and recalculates post counts of their authors.
+     *
+     * @param sectionId section id
+     * @throws NotFoundException when section not found
+     */
+    public void deleteAllTopicsInSection(final long sectionId) throws NotFoundException {
+        List<Long> branchIds = transactionTemplate.execute(new TransactionCallback<List<Long>>() {
+            @Override
+            public List<Long> doInTransaction(TransactionStatus status) {
+                Section section = sectionDao.get(sectionId);
+                return section == null ? null : idsOf(section.getBranches());
+            }
+        });
+        if (branchIds == null) {
+            throw new NotFoundException("Section with id=" + sectionId + " not found");
+        }
+        purge(branchIds);
+        LOGGER.info("All topics for section with id={} were deleted", sectionId);
+    }
+
+    /**
+     * Deletes all topics of the forum and recalculates post counts of their authors.
+     *
+     * @throws NotFoundException if object for deletion has not been found
+     */
+    public void deleteAllTopicsInForum() throws NotFoundException {
+        List<Long> branchIds = transactionTemplate.execute(new TransactionCallback<List<Long>>() {
+            @Override
+            public List<Long> doInTransaction(TransactionStatus status) {
+                return idsOf(branchDao.getAllBranches());
+            }
+        });
+        purge(branchIds);
+        LOGGER.info("All topics of the forum were deleted");
+    }
+
+    /**
+     * Gets progress of the latest deletion
+     *
+     * @return progress of the deletion which is in progress or of the last finished one
+     */
+    public TopicPurgeProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * Deletes topics of the branches chunk by chunk
+     *
+     * @param branchIds ids of branches to delete topics in
+     */
+    private void purge(final List<Long> branchIds) {
+        int totalTopics = transactionTemplate.execute(new TransactionCallback<Integer>() {
+            @Override
+            public Integer doInTransaction(TransactionStatus status) {
+                int count = 0;
+                for (Long branchId : branchIds) {
+                    count += topicDao.countTopics(branchDao.get(branchId));
+                }
+                return count;
+            }
+        });
+        TopicPurgeProgress currentProgress = new TopicPurgeProgress(totalTopics);
+        progress = currentProgress;
+        for (Long branchId : branchIds) {
+            int deleted;
+            do {
+                deleted = deleteChunk(branchId);
+                currentProgress.addDeletedTopics(deleted);
+            } while (deleted == chunkSize);
+            refreshLastPost(branchId);
+        }
+        currentProgress.finish();
+    }
+
+    /**
+     * Refreshes the last post of the branch in its own transaction. Chunks only clear the last post if
+     * it's deleted, so it's looked up once when deletion in the branch is finished.
+     *
+     * @param branchId id of the branch
+     */
+    private void refreshLastPost(final long branchId) {
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                branchLastPostService.refreshLastPostInBranch(branchDao.get(branchId));
+            }
+        });
+    }
+
+    private List<Long> idsOf(List<? extends org.jtalks.common.model.entity.Branch> branches) {
+        List<Long> ids = new ArrayList<>(branches.size());
+        for (org.jtalks.common.model.entity.Branch branch : branches) {
+            ids.add(branch.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Deletes next chunk of topics in the branch in its own transaction
+     *
+     * @param branchId id of the branch
+     * @return number of deleted topics
+     */
+    private int deleteChunk(final long branchId) {
+        return transactionTemplate.execute(new TransactionCallback<Integer>() {
+            @Override
+            public Integer doInTransaction(TransactionStatus status) {
+                List<Long> topicIds = topicDao.getTopicIdsInBranch(branchId, chunkSize);
+                if (topicIds.isEmpty()) {
+                    return 0;
+                }
+                List<Long> authorIds = topicDao.getAuthorIdsOfPosts(topicIds);
+                int deleted = topicDao.deleteTopics(topicIds);
+                userDao.recalculatePostCounts(authorIds);
+                topicSearchDao.removeFromIndex(topicIds);
+                branchStatisticsCacheService.evict(branchId);
+                feedCacheService.evict(branchDao.get(branchId));
+                LOGGER.debug("{} topics were deleted in branch with id={}", deleted, branchId);
+                return topicIds.size();
+            }
+        });
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import org.joda.time.DateTime;
+import org.jtalks.jcommune.model.dao.UserDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Deletes expired user accounts. User account is expired if it's created, but not activated for a day or more.
+ * Accounts are deleted by batches with bulk statements, without loading them into the session, every batch
+ * is deleted in its own transaction.
+ * <p/>
+ * The service is not transactional itself, otherwise all batches would be deleted in one transaction.
+ */
+public class UnactivatedAccountsCleanupService {
+    /** Number of non-activated accounts deleted in one transaction */
+    static final int BATCH_SIZE = 1000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UnactivatedAccountsCleanupService.class);
+
+    private final UserDao userDao;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * @param userDao            to find and delete non-activated accounts
+     * @param transactionManager to delete every batch in its own transaction
+     */
+    public UnactivatedAccountsCleanupService(UserDao userDao, PlatformTransactionManager transactionManager) {
+        this.userDao = userDao;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Deletes expired accounts, called automatically by schedule (every hour unless
+     * UNACTIVATED_ACCOUNTS_CLEANUP_CRON property is set).
+     */
+    @Scheduled(cron = "${UNACTIVATED_ACCOUNTS_CLEANUP_CRON:0 0 * * * *}") // by default every hour at :00 min
+    public void deleteUnactivatedAccounts() {
+        DateTime registeredBefore = new DateTime().minusDays(1);
+        int deletedUsers = 0;
+        int deleted;
+        do {
+            deleted = deleteBatch(registeredBefore);
+            deletedUsers += deleted;
+        } while (deleted == BATCH_SIZE);
+        if (deletedUsers > 0) {
+            LOGGER.info("{} non-activated accounts registered before {} were deleted", deletedUsers, registeredBefore);
+        }
+    }
+
+    /**
+     * Deletes next batch of expired accounts in its own transaction
+     *
+     * @param registeredBefore only accounts registered before this date are deleted
+     * @return number of deleted accounts
+     */
+    private int deleteBatch(final DateTime registeredBefore) {
+        return transactionTemplate.execute(new TransactionCallback<Integer>() {
+            @Override
+            public Integer doInTransaction(TransactionStatus status) {
+                List<Long> userIds = userDao.getNonActivatedUserIds(registeredBefore, BATCH_SIZE);
+                userDao.deleteAclOfUsers(userIds);
+                return userDao.deleteUsers(userIds);
+            }
+        });
+    }
+}
@@ -17,14 +17,31 @@ package org.jtalks.jcommune.service.nontransactional;
 import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
 
+import java.io.Serializable;
+
 /**
  * Operations above user data cache.
+ * <p/>
+ * Counters are changed with compare-and-set, so concurrent messages to the same user don't lose updates.
+ * Every change increases the version of the cache, counts are put with the version taken before they were
+ * counted in the database, so a count read before a change is not cached after the change was skipped
+ * because there was nothing cached yet.
+ * The cache replicates changes to the other nodes of the cluster as removals, so other nodes read the
+ * count from the database again instead of serving a stale one. If counter is changed inside of a transaction,
+ * the change is applied after commit, otherwise other nodes could re-read not yet committed count.
+ * <p/>
+ * Besides new messages counts, counts of messages in private messages folders are kept here, so folder pages
+ * don't count messages on every request.
+ * <p/>
+ * Users who never marked the whole forum as read are remembered too, as they don't have a marker to be found
+ * in the second level cache and it would be looked up in the database on every topic view otherwise.
  *
  * @author Kirill Afonin
  */
 public class UserDataCacheService {
 
     private final Ehcache userDataCache;
+    private final VersionedCache versionedCache;
 
     /**
      * Instantiate bean.
@@ -33,6 +50,16 @@ public class UserDataCacheService {
      */
     public UserDataCacheService(Ehcache userDataCache) {
         this.userDataCache = userDataCache;
+        this.versionedCache = new VersionedCache(userDataCache);
+    }
+
+    /**
+     * Gets version of the cache, it should be taken before loading of the data to be put with it.
+     *
+     * @return current version of the cache
+     */
+    public long getVersion() {
+        return versionedCache.getVersion();
     }
 
     /**
@@ -50,13 +77,14 @@ public class UserDataCacheService {
     }
 
     /**
-     * Put new messages count for {@code username} to cache.
+     * Put new messages count for {@code username} to cache unless the count was changed since it was read.
      *
      * @param username username
      * @param count    new messages count
+     * @param version  version of the cache taken before the count was read
      */
-    public void putNewPmCount(String username, int count) {
-        userDataCache.put(new Element(username, count));
+    public void putNewPmCount(String username, int count, long version) {
+        versionedCache.put(username, count, version);
     }
 
     /**
@@ -65,11 +93,7 @@ public class UserDataCacheService {
      * @param username username
      */
     public void incrementNewMessageCountFor(String username) {
-        Element cacheElementForUser = userDataCache.get(username);
-        if (cacheElementForUser != null) {
-            int count = (Integer) cacheElementForUser.getValue();
-            userDataCache.put(new Element(username, ++count));
-        }
+        addToCount(username, 1);
     }
 
     /**
@@ -78,10 +102,168 @@ public class UserDataCacheService {
      * @param username username
      */
     public void decrementNewMessageCountFor(String username) {
-        Element cacheElementForUser = userDataCache.get(username);
-        if (cacheElementForUser != null) {
-            int count = (Integer) cacheElementForUser.getValue();
-            userDataCache.put(new Element(username, --count));
+        addToCount(username, -1);
+    }
+
+    /**
+     * Decrease new messages count for {@code username} in cache, e.g. when several messages are read at once.
+     *
+     * @param username username
+     * @param count    number of messages which aren't new anymore
+     */
+    public void decrementNewMessageCountFor(String username, int count) {
+        addToCount(username, -count);
+    }
+
+    /**
+     * Get count of messages in the private messages folder of {@code username} in cache.
+     *
+     * @param username username
+     * @param folder   name of the folder, e.g. "inbox"
+     * @return count of messages in the folder or {@code null} if it's not in cache
+     */
+    public Integer getPmFolderCountFor(String username, String folder) {
+        Element cacheElement = userDataCache.get(new PmFolderKey(username, folder));
+        if (cacheElement == null) {
+            return null;
+        }
+        return (Integer) cacheElement.getObjectValue();
+    }
+
+    /**
+     * Put count of messages in the private messages folder of {@code username} to cache unless the count
+     * was changed since it was read.
+     *
+     * @param username username
+     * @param folder   name of the folder, e.g. "inbox"
+     * @param count    count of messages in the folder
+     * @param version  version of the cache taken before the count was read
+     */
+    public void putPmFolderCount(String username, String folder, int count, long version) {
+        versionedCache.put(new PmFolderKey(username, folder), count, version);
+    }
+
+    /**
+     * Changes count of messages in the private messages folder of {@code username} in cache.
+     *
+     * @param username username
+     * @param folder   name of the folder, e.g. "inbox"
+     * @param delta    number of added messages, negative if messages were removed from the folder
+     */
+    public void addToPmFolderCountFor(String username, String folder, int delta) {
+        addToCount(new PmFolderKey(username, folder), delta);
+    }
+
+    /**
+     * Checks whether the user is known to never mark the whole forum as read.
+     *
+     * @param userId id of the user
+     * @return true if the user has no forum marker, false if it's unknown
+     */
+    public boolean isForumNeverMarkedAsReadBy(long userId) {
+        return versionedCache.get(new ForumMarkerKey(userId)) != null;
+    }
+
+    /**
+     * Remembers that the user has no forum marker.
+     *
+     * @param userId  id of the user
+     * @param version version of the cache the absence of the marker was found at
+     */
+    public void putForumNeverMarkedAsReadBy(long userId, long version) {
+        versionedCache.put(new ForumMarkerKey(userId), Boolean.TRUE, version);
+    }
+
+    /**
+     * Forgets that the user has no forum marker, should be called when the user marks the forum as read.
+     *
+     * @param userId id of the user
+     */
+    public void evictForumNeverMarkedAsReadBy(long userId) {
+        versionedCache.evict(new ForumMarkerKey(userId));
+    }
+
+    private void addToCount(final Serializable key, final int delta) {
+        AfterCommit.run(new Runnable() {
+            @Override
+            public void run() {
+                versionedCache.incrementVersion();
+                compareAndAdd(key, delta);
+            }
+        });
+    }
+
+    /**
+     * Atomically changes the count cached by the {@code key} if it's cached. If it's not cached,
+     * it will be read from the database when it's needed.
+     *
+     * @param key   username for new messages count or folder key for folder count
+     * @param delta value to add to the count, count never becomes negative
+     */
+    private void compareAndAdd(Serializable key, int delta) {
+        Element current;
+        Element updated;
+        do {
+            current = userDataCache.get(key);
+            if (current == null) {
+                return;
+            }
+            int count = Math.max(0, (Integer) current.getObjectValue() + delta);
+            updated = new Element(key, count);
+        } while (!userDataCache.replace(current, updated));
+    }
+
+    /**
+     * Key of the count of messages in the private messages folder of the user. Differs from keys of
+     * new messages counts which are plain usernames.
+     */
+    private static final class PmFolderKey implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final String username;
+        private final String folder;
+
+        private PmFolderKey(String username, String folder) {
+            this.username = username;
+            this.folder = folder;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PmFolderKey)) {
+                return false;
+            }
+            PmFolderKey other = (PmFolderKey) o;
+            return username.equals(other.username) && folder.equals(other.folder);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * username.hashCode() + folder.hashCode();
+        }
+    }
+
+    /**
+     * Key of the absence of the forum marker of the user.
+     */
+    private static final class ForumMarkerKey implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final long userId;
+
+        private ForumMarkerKey(long userId) {
+            this.userId = userId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ForumMarkerKey && userId == ((ForumMarkerKey) o).userId;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (userId ^ (userId >>> 32));
         }
     }
 }
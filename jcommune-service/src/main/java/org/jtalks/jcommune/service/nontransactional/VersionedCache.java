@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of data loaded from the database which is evicted, not updated, when the data is changed. Every
+ * eviction increases the version of the cache, so readers take the version before loading the data and
+ * data loaded before the last eviction, which may be stale, is not kept in cache. Evictions are applied
+ * after commit, see {@link AfterCommit}. Data changed in place by the owner of the cache must increase
+ * the version the same way, see {@link #incrementVersion()}.
+ * <p/>
+ * Version is local to the node, evictions reach the other nodes as removals replicated by the cache.
+ */
+class VersionedCache {
+    private final Ehcache cache;
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * @param cache cache replicating removals to the other nodes
+     */
+    VersionedCache(Ehcache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Gets version of the cache, it should be taken before loading of the data.
+     *
+     * @return current version of the cache
+     */
+    long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * @param key key of the data
+     * @return cached data or {@code null} if it's not cached
+     */
+    Object get(Serializable key) {
+        Element element = cache.get(key);
+        return element == null ? null : element.getObjectValue();
+    }
+
+    /**
+     * Puts data to cache if it wasn't evicted since the data started loading. Version is checked again
+     * after put, so eviction performed concurrently with the put can't leave stale data in cache.
+     *
+     * @param key             key of the data
+     * @param value           data
+     * @param loadedAtVersion version of the cache the data was loaded at
+     */
+    void put(Serializable key, Object value, long loadedAtVersion) {
+        if (version.get() != loadedAtVersion) {
+            return;
+        }
+        cache.put(new Element(key, value));
+        if (version.get() != loadedAtVersion) {
+            cache.remove(key);
+        }
+    }
+
+    /**
+     * Increases version of the cache, should be called before cached data is changed in place, so data
+     * loaded before the change is not put to cache after it.
+     */
+    void incrementVersion() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * Evicts data by the keys after commit if there is a transaction.
+     *
+     * @param keys keys of the changed data
+     */
+    void evict(final Serializable... keys) {
+        AfterCommit.run(new Runnable() {
+            @Override
+            public void run() {
+                version.incrementAndGet();
+                for (Serializable key : keys) {
+                    cache.remove(key);
+                }
+            }
+        });
+    }
+
+    /**
+     * Evicts all the data after commit if there is a transaction.
+     */
+    void evictAll() {
+        AfterCommit.run(new Runnable() {
+            @Override
+            public void run() {
+                version.incrementAndGet();
+                cache.removeAll();
+            }
+        });
+    }
+}
@@ -16,6 +16,7 @@ package org.jtalks.jcommune.service.security;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.annotation.Nonnull;
@@ -28,6 +29,7 @@ import org.jtalks.common.model.dao.GroupDao;
 import org.jtalks.common.model.entity.Group;
 import org.jtalks.common.model.permissions.BranchPermission;
 import org.jtalks.common.model.permissions.GeneralPermission;
+import org.jtalks.common.model.permissions.JtalksPermission;
 import org.jtalks.common.model.permissions.ProfilePermission;
 import org.jtalks.common.security.acl.AclManager;
 import org.jtalks.common.security.acl.AclUtil;
@@ -38,10 +40,11 @@ import org.jtalks.common.security.acl.sids.JtalksSidFactory;
 import org.jtalks.common.security.acl.sids.UniversalSid;
 import org.jtalks.jcommune.model.dao.UserDao;
 import org.jtalks.jcommune.model.entity.JCUser;
+import org.jtalks.jcommune.plugin.api.BranchPermissionMask;
+import org.jtalks.jcommune.plugin.api.BulkPermissionEvaluator;
 import org.jtalks.jcommune.plugin.api.PluginPermissionManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.security.access.PermissionEvaluator;
 import org.springframework.security.acls.jdbc.JdbcMutableAclService;
 import org.springframework.security.acls.model.AccessControlEntry;
 import org.springframework.security.acls.model.NotFoundException;
@@ -60,7 +63,7 @@ import org.springframework.security.core.Authentication;
  * @author Elena Lepaeva
  * @author stanislav bashkirtsev
  */
-public class AclGroupPermissionEvaluator implements PermissionEvaluator {
+public class AclGroupPermissionEvaluator implements BulkPermissionEvaluator {
     private static final Logger LOGGER = LoggerFactory.getLogger(AclGroupPermissionEvaluator.class);
 
     private final AclManager aclManager;
@@ -152,6 +155,161 @@ public class AclGroupPermissionEvaluator implements PermissionEvaluator {
         return result;
     }
 
+    /**
+     * {@inheritDoc}
+     * ACL entries of the branch, groups of the user and ACL entries of the groups are read once,
+     * then every permission is checked against them with the same rules as
+     * {@link #hasPermission(Authentication, Serializable, String, Object)} uses.
+     */
+    @Override
+    public BranchPermissionMask getBranchPermissions(Authentication authentication, long branchId) {
+        ObjectIdentity objectIdentity = aclUtil.createIdentity(branchId, "BRANCH");
+        Sid sid = sidFactory.createPrincipal(authentication);
+        List<AccessControlEntry> aces;
+        List<GroupAce> controlEntries;
+        try {
+            aces = ExtendedMutableAcl.castAndCreate(mutableAclService.readAclById(objectIdentity)).getEntries();
+            controlEntries = aclManager.getGroupPermissionsOn(objectIdentity);
+        } catch (NotFoundException nfe) {
+            aces = new ArrayList<>();
+            controlEntries = new ArrayList<>();
+        }
+        List<GroupAce> userGroupEntries = new ArrayList<>();
+        if (authentication.getPrincipal() instanceof JCUser) {
+            for (GroupAce ace : controlEntries) {
+                if (ace.getGroup(groupDao).getUsers().contains(authentication.getPrincipal())) {
+                    userGroupEntries.add(ace);
+                }
+            }
+        }
+        List<AccessControlEntry> personalAces = getPersonalAces(authentication);
+        if (personalAces == null) {
+            return new BranchPermissionMask(new ArrayList<Permission>());
+        }
+
+        List<JtalksPermission> permissions = new ArrayList<JtalksPermission>(Arrays.asList(BranchPermission.values()));
+        permissions.addAll(pluginPermissionManager.getPluginsBranchPermissions());
+        List<Permission> granted = new ArrayList<>();
+        for (JtalksPermission permission : permissions) {
+            if (isRestrictedForSid(sid, aces, permission)
+                    || isGrantedForUserGroups(userGroupEntries, permission, false)
+                    || isGrantedForAnySid(personalAces, permission, false)) {
+                continue;
+            }
+            if (isAllowedForSid(sid, aces, permission)
+                    || isGrantedForUserGroups(userGroupEntries, permission, true)
+                    || isGrantedForAnySid(personalAces, permission, true)) {
+                granted.add(permission);
+            }
+        }
+        return new BranchPermissionMask(granted);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Permissions provided by plugins are looked up among permissions of enabled plugins.
+     */
+    @Override
+    public JtalksPermission findBranchPermission(String permissionName) {
+        int separator = permissionName.indexOf('.');
+        if (separator < 0) {
+            return null;
+        }
+        String className = permissionName.substring(0, separator);
+        String name = permissionName.substring(separator + 1);
+        if (BranchPermission.class.getSimpleName().equals(className)) {
+            try {
+                return BranchPermission.valueOf(name);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        JtalksPermission permission = pluginPermissionManager.findPluginsBranchPermissionByName(name);
+        if (permission == null) {
+            return null;
+        }
+        Class<?> permissionClass = permission instanceof Enum
+                ? ((Enum<?>) permission).getDeclaringClass() : permission.getClass();
+        return permissionClass.getSimpleName().equals(className) ? permission : null;
+    }
+
+    /**
+     * Reads ACL entries of all the groups of user from authentication, which are
+     * used to check <tt>personal permissions</tt>
+     *
+     * @param authentication authentication to read entries for
+     * @return entries of the groups of the user, empty list if principal isn't a forum user
+     *         or <code>null</code> if the user isn't found, so everything is restricted for him
+     */
+    private List<AccessControlEntry> getPersonalAces(Authentication authentication) {
+        List<AccessControlEntry> personalAces = new ArrayList<>();
+        if (authentication.getPrincipal() instanceof JCUser) {
+            JCUser storedUser = (JCUser) authentication.getPrincipal();
+            JCUser actualUser = userDao.get(storedUser.getId());
+            if (actualUser == null) {
+                LOGGER.warn("{} : User #{} not found",
+                        this.getClass().getCanonicalName(),
+                        storedUser.getId());
+                return null;
+            }
+            for (Group group : actualUser.getGroups()) {
+                ObjectIdentity groupIdentity = aclUtil.createIdentity(group.getId(), "GROUP");
+                Sid groupSid = sidFactory.create(group);
+                try {
+                    for (AccessControlEntry ace : ExtendedMutableAcl.castAndCreate(
+                            mutableAclService.readAclById(groupIdentity)).getEntries()) {
+                        if (((UniversalSid) groupSid).getSidId().equals(((UniversalSid) ace.getSid()).getSidId())) {
+                            personalAces.add(ace);
+                        }
+                    }
+                } catch (NotFoundException nfe) {
+                    //group has no personal permissions
+                }
+            }
+        }
+        return personalAces;
+    }
+
+    /**
+     * Check if this <tt>permission</tt> is granted by any of entries, entries should be already
+     * filtered by sid
+     *
+     * @param controlEntries      entries with security information
+     * @param permission          permission to check
+     * @param isCheckAllowedGrant flag that indicates what type of grant need to
+     *                            be checked  - 'allowed' (true) or 'restricted' (false)
+     * @return <code>true</code> if this permission was found with specified type of grant
+     */
+    private boolean isGrantedForAnySid(List<AccessControlEntry> controlEntries, Permission permission,
+                                       boolean isCheckAllowedGrant) {
+        for (AccessControlEntry ace : controlEntries) {
+            if (permission.equals(ace.getPermission()) && ace.isGranting() == isCheckAllowedGrant) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if this <tt>permission</tt> is granted by any of group entries, entries should be
+     * already filtered by groups of the user
+     *
+     * @param controlEntries      entries with security information for groups of the user
+     * @param permission          permission to check
+     * @param isCheckAllowedGrant flag that indicates what type of grant need to
+     *                            be checked  - 'allowed' (true) or 'restricted' (false)
+     * @return <code>true</code> if this permission was found with specified type of grant
+     */
+    private boolean isGrantedForUserGroups(List<GroupAce> controlEntries, Permission permission,
+                                           boolean isCheckAllowedGrant) {
+        for (GroupAce ace : controlEntries) {
+            if (ace.isGranting() == isCheckAllowedGrant && permission.equals(getPermissionOf(ace))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Parses targetId parameter
      *
@@ -364,16 +522,26 @@ public class AclGroupPermissionEvaluator implements PermissionEvaluator {
      */
     private boolean isGrantedForGroup(GroupAce ace, Authentication authentication,
                                       Permission permission, boolean isCheckAllowedGrant) {
-        Permission permissionToComapare = ace.getPermission();
-        if (permissionToComapare == null) {
-            permissionToComapare = pluginPermissionManager.findPluginsBranchPermissionByMask(ace.getPermissionMask());
-        }
         return ace.isGranting() == isCheckAllowedGrant
-                && permission.equals(permissionToComapare)
+                && permission.equals(getPermissionOf(ace))
                 && ace.getGroup(groupDao).getUsers().
                 contains(authentication.getPrincipal());
     }
 
+    /**
+     * Gets permission of the group entry, permissions provided by plugins are looked up by mask
+     *
+     * @param ace entry with security information (for groups)
+     * @return permission of the entry
+     */
+    private Permission getPermissionOf(GroupAce ace) {
+        Permission permission = ace.getPermission();
+        if (permission == null) {
+            permission = pluginPermissionManager.findPluginsBranchPermissionByMask(ace.getPermissionMask());
+        }
+        return permission;
+    }
+
     private Permission getPermission(Object permission) {
         String permissionName = (String) permission;
 
@@ -388,10 +556,13 @@ public class AclGroupPermissionEvaluator implements PermissionEvaluator {
         } else if ((permissionName).startsWith(ProfilePermission.class.getSimpleName())) {
             String particularPermission = permissionName.replace(ProfilePermission.class.getSimpleName() + ".", "");
             return ProfilePermission.valueOf(particularPermission);
+        }
 
-        } else {
+        JtalksPermission pluginPermission = findBranchPermission(permissionName);
+        if (pluginPermission == null) {
             throw new IllegalArgumentException("No other permissions that GeneralPermission are supported now. " +
                     "Was specified: " + permission);
         }
+        return pluginPermission;
     }
 }
\ No newline at end of file
@@ -20,6 +20,7 @@ import org.jtalks.jcommune.model.dao.BannerDao;
 import org.jtalks.jcommune.model.entity.Banner;
 import org.jtalks.jcommune.model.entity.BannerPosition;
 import org.jtalks.jcommune.service.BannerService;
+import org.jtalks.jcommune.service.nontransactional.BannerAndLinkCacheService;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import java.util.Collection;
@@ -29,14 +30,17 @@ import java.util.Map;
 /** @author Anuar_Nurmakanov */
 public class TransactionalBannerService extends AbstractTransactionalEntityService<Banner, BannerDao>
         implements BannerService {
+    private final BannerAndLinkCacheService cacheService;
 
     /**
      * Constructs an instance with given DAO, so it addresses to repository (in our case database).
      *
-     * @param bannerDao to search and change banner in database
+     * @param bannerDao    to search and change banner in database
+     * @param cacheService to keep banners shown on every page without querying database
      */
-    public TransactionalBannerService(BannerDao bannerDao) {
+    public TransactionalBannerService(BannerDao bannerDao, BannerAndLinkCacheService cacheService) {
         super(bannerDao);
+        this.cacheService = cacheService;
     }
 
     /**
@@ -55,17 +59,27 @@ public class TransactionalBannerService extends AbstractTransactionalEntityServi
             existBanner.setContent(uploadedBanner.getContent());
         }
         getDao().saveOrUpdate(existBanner);
+        cacheService.evictBanners();
     }
 
-    /** {@inheritDoc} */
+    /**
+     * {@inheritDoc}
+     * Banners are taken from the cache, they are loaded from the database only if they were changed since
+     * the last load. Returned map is shared between the readers and can't be modified.
+     */
     @Override
     public Map<String, Banner> getAllBanners() {
+        Map<String, Banner> cachedBanners = cacheService.getBanners();
+        if (cachedBanners != null) {
+            return cachedBanners;
+        }
+        long version = cacheService.getVersion();
         Collection<Banner> allBanners = getDao().getAll();
         Map<String, Banner> positionAndBannerMap = new HashMap<String, Banner>();
         for (Banner banner : allBanners) {
             BannerPosition positionOnPage = banner.getPositionOnPage();
             positionAndBannerMap.put(ObjectUtils.toString(positionOnPage), banner);
         }
-        return positionAndBannerMap;
+        return cacheService.putBanners(positionAndBannerMap, version);
     }
 }
@@ -14,6 +14,7 @@
  */
 package org.jtalks.jcommune.service.transactional;
 
+import org.apache.commons.lang.ObjectUtils;
 import org.jtalks.jcommune.model.dao.BranchDao;
 import org.jtalks.jcommune.model.dao.PostDao;
 import org.jtalks.jcommune.model.entity.Branch;
@@ -49,7 +50,22 @@ public class TransactionalBranchLastPostService implements BranchLastPostService
     @Override
     public void refreshLastPostInBranch(Branch branch) {
         Post lastPostOfBranch = postDao.getLastPostFor(branch);
-        branch.setLastPost(lastPostOfBranch);
-        branchDao.saveOrUpdate(branch);
+        // branch isn't updated (and evicted from the cache) if last post is the same, e.g. branch is still empty
+        if (!ObjectUtils.equals(branch.getLastPost(), lastPostOfBranch)) {
+            branch.setLastPost(lastPostOfBranch);
+            branchDao.saveOrUpdate(branch);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateLastPostInBranch(Branch branch, Post post) {
+        Post lastPostOfBranch = branch.getLastPost();
+        if (lastPostOfBranch == null || post.getCreationDate().isAfter(lastPostOfBranch.getCreationDate())) {
+            branch.setLastPost(post);
+            branchDao.saveOrUpdate(branch);
+        }
     }
 }
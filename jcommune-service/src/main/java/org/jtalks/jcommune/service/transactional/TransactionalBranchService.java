@@ -22,19 +22,20 @@ import org.jtalks.common.model.permissions.JtalksPermission;
 import org.jtalks.jcommune.model.dao.BranchDao;
 import org.jtalks.jcommune.model.dao.SectionDao;
 import org.jtalks.jcommune.model.dao.TopicDao;
+import org.jtalks.jcommune.model.dto.ForumStructure;
 import org.jtalks.jcommune.model.dto.GroupsPermissions;
 import org.jtalks.jcommune.model.dto.PermissionChanges;
 import org.jtalks.jcommune.model.entity.Branch;
-import org.jtalks.jcommune.model.entity.Topic;
+import org.jtalks.jcommune.model.entity.JCUser;
 import org.jtalks.jcommune.plugin.api.service.PluginBranchService;
 import org.jtalks.jcommune.service.BranchLastPostService;
 import org.jtalks.jcommune.service.BranchService;
-import org.jtalks.jcommune.service.TopicModificationService;
+import org.jtalks.jcommune.service.UserService;
+import org.jtalks.jcommune.service.nontransactional.BranchStatisticsCacheService;
+import org.jtalks.jcommune.service.nontransactional.ForumStructureCacheService;
 import org.jtalks.jcommune.plugin.api.exceptions.NotFoundException;
 import org.jtalks.jcommune.service.security.AdministrationGroup;
 import org.jtalks.jcommune.service.security.PermissionService;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import java.util.*;
@@ -49,40 +50,47 @@ import java.util.*;
 
 public class TransactionalBranchService extends AbstractTransactionalEntityService<Branch, BranchDao>
         implements BranchService, PluginBranchService {
-
-    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private static final String ANONYMOUS_SIGNATURE = "anonymous";
 
     private SectionDao sectionDao;
     private GroupDao groupDao;
     private TopicDao topicDao;
-    private TopicModificationService topicService;
     private PermissionService permissionService;
     private BranchLastPostService lastPostService;
+    private BranchStatisticsCacheService statisticsCacheService;
+    private ForumStructureCacheService structureCacheService;
+    private UserService userService;
 
     /**
      * Create an instance of entity based service
      *
-     * @param branchDao         data access object, which should be able do all CRUD operations.
-     * @param sectionDao        used for checking branch existence.
-     * @param topicDao          data access object for operations with topics
-     * @param topicService      service to perform complex operations with topics
-     * @param permissionService service to perform permissions operations
+     * @param branchDao              data access object, which should be able do all CRUD operations.
+     * @param sectionDao             used for checking branch existence.
+     * @param topicDao               data access object for operations with topics
+     * @param permissionService      service to perform permissions operations
+     * @param statisticsCacheService to keep numbers of topics and posts in branches
+     * @param structureCacheService  to keep snapshot of sections and branches and visibility of branches
+     * @param userService            to get current user
      */
     public TransactionalBranchService(
             BranchDao branchDao,
             SectionDao sectionDao,
             TopicDao topicDao,
             GroupDao groupDao,
-            TopicModificationService topicService,
             PermissionService permissionService,
-            BranchLastPostService lastPostService) {
+            BranchLastPostService lastPostService,
+            BranchStatisticsCacheService statisticsCacheService,
+            ForumStructureCacheService structureCacheService,
+            UserService userService) {
         super(branchDao);
         this.sectionDao = sectionDao;
         this.topicDao = topicDao;
-        this.topicService = topicService;
         this.permissionService = permissionService;
         this.groupDao = groupDao;
         this.lastPostService = lastPostService;
+        this.statisticsCacheService = statisticsCacheService;
+        this.structureCacheService = structureCacheService;
+        this.userService = userService;
     }
 
     /**
@@ -99,41 +107,102 @@ public class TransactionalBranchService extends AbstractTransactionalEntityServi
      * {@inheritDoc}
      */
     @Override
-    public List<Branch> getAllAvailableBranches(long currentTopicId) {
-        List<Section> allSections = sectionDao.getAll();
-        List<Branch> allBranches = new ArrayList<>();
-        for (Section section : allSections) {
-            allBranches.addAll((List) section.getBranches());
-        }
-        return getBranchesWithViewPermission(currentTopicId, allBranches);
+    public List<ForumStructure.BranchNode> getAllAvailableBranches(long currentTopicId) {
+        return getBranchesWithViewPermission(currentTopicId, getForumStructure().getBranches());
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public List<Branch> getAvailableBranchesInSection(long sectionId, long currentTopicId) throws NotFoundException {
-        if (!sectionDao.isExist(sectionId)) {
+    public List<ForumStructure.BranchNode> getAvailableBranchesInSection(long sectionId, long currentTopicId)
+            throws NotFoundException {
+        ForumStructure.SectionNode section = getForumStructure().getSection(sectionId);
+        if (section == null) {
             throw new NotFoundException("Section with id: " + sectionId + " not found");
         }
-
-        Section section = sectionDao.get(sectionId);
-        List<Branch> branches = (List) section.getBranches();
-        return getBranchesWithViewPermission(currentTopicId, branches);
+        return getBranchesWithViewPermission(currentTopicId, section.getBranches());
     }
 
-    private List<Branch> getBranchesWithViewPermission(Long topicId, List<Branch> branches) {
-        Topic topic = topicDao.get(topicId);
-        List<Branch> result = new ArrayList<>();
-        for (Branch branch : branches) {
-            if (permissionService.hasBranchPermission(branch.getId(), BranchPermission.VIEW_TOPICS)) {
+    /**
+     * Filters out branches which current user can't view and the branch the topic is in.
+     *
+     * @param topicId  id of the topic to be moved
+     * @param branches branches of the forum structure
+     * @return branches the topic can be moved to
+     */
+    private List<ForumStructure.BranchNode> getBranchesWithViewPermission(long topicId,
+                                                                         List<ForumStructure.BranchNode> branches) {
+        // topic is taken from second level cache, its branch is not initialized to get the id
+        long currentBranchId = topicDao.get(topicId).getBranch().getId();
+        Set<Long> visibleBranchIds = getVisibleBranchIds();
+        List<ForumStructure.BranchNode> result = new ArrayList<>();
+        for (ForumStructure.BranchNode branch : branches) {
+            if (branch.getId() != currentBranchId && visibleBranchIds.contains(branch.getId())) {
                 result.add(branch);
             }
         }
-        result.remove(topic.getBranch());
         return result;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ForumStructure getForumStructure() {
+        ForumStructure structure = structureCacheService.getStructure();
+        if (structure == null) {
+            long version = structureCacheService.getVersion();
+            structure = sectionDao.getForumStructure();
+            structureCacheService.putStructure(structure, version);
+        }
+        return structure;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Long> getVisibleBranchIds() {
+        JCUser user = userService.getCurrentUser();
+        String signature = getGroupsSignature(user);
+        Set<Long> visibleBranchIds = structureCacheService.getVisibleBranchIds(signature);
+        if (visibleBranchIds == null) {
+            long version = structureCacheService.getVersion();
+            List<Long> branchIds = signature.isEmpty()
+                    ? Collections.<Long>emptyList() : topicDao.getAllowedBranchesIds(user);
+            visibleBranchIds = structureCacheService.putVisibleBranchIds(signature, branchIds, version);
+        }
+        return visibleBranchIds;
+    }
+
+    /**
+     * Gets signature of the groups of user. Visibility of branches depends only on the groups, so users
+     * with the same signature see the same branches.
+     *
+     * @param user user to get signature for
+     * @return sorted ids of groups of the user separated by comma, special value for anonymous user and
+     *         empty string if user doesn't belong to any group
+     */
+    private String getGroupsSignature(JCUser user) {
+        if (user.isAnonymous()) {
+            return ANONYMOUS_SIGNATURE;
+        }
+        List<Long> groupIds = new ArrayList<>();
+        for (Group group : user.getGroups()) {
+            groupIds.add(group.getId());
+        }
+        Collections.sort(groupIds);
+        StringBuilder signature = new StringBuilder();
+        for (Long groupId : groupIds) {
+            if (signature.length() > 0) {
+                signature.append(',');
+            }
+            signature.append(groupId);
+        }
+        return signature.toString();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -142,9 +211,18 @@ public class TransactionalBranchService extends AbstractTransactionalEntityServi
 
         for (org.jtalks.common.model.entity.Branch commonBranch : branches) {
             Branch jcommuneBranch = (Branch) commonBranch;
-            int postsCount = getDao().getCountPostsInBranch(jcommuneBranch);
+            long version = statisticsCacheService.getVersion();
+            Integer postsCount = statisticsCacheService.getPostsCount(jcommuneBranch.getId());
+            if (postsCount == null) {
+                postsCount = getDao().getCountPostsInBranch(jcommuneBranch);
+                statisticsCacheService.putPostsCount(jcommuneBranch.getId(), postsCount, version);
+            }
             jcommuneBranch.setPostsCount(postsCount);
-            int topicsCount = topicDao.countTopics(jcommuneBranch);
+            Integer topicsCount = statisticsCacheService.getTopicsCount(jcommuneBranch.getId());
+            if (topicsCount == null) {
+                topicsCount = topicDao.countTopics(jcommuneBranch);
+                statisticsCacheService.putTopicsCount(jcommuneBranch.getId(), topicsCount, version);
+            }
             jcommuneBranch.setTopicsCount(topicsCount);
             if (jcommuneBranch.getLastPost() == null) {
                 lastPostService.refreshLastPostInBranch(jcommuneBranch);
@@ -167,24 +245,6 @@ public class TransactionalBranchService extends AbstractTransactionalEntityServi
         return super.get(id);
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public Branch deleteAllTopics(long branchId) throws NotFoundException {
-        Branch branch = get(branchId);
-
-        // Create tmp list to avoid ConcurrentModificationException
-        List<Topic> loopList = new ArrayList<>(branch.getTopics());
-        for (Topic topic : loopList) {
-            topicService.deleteTopicSilent(topic.getId());
-        }
-
-        logger.info("All topics for branch \"{}\" were deleted. " +
-                "Branch id: {}", branch.getName(), branch.getId());
-        return branch;
-    }
-
     /**
      * {@inheritDoc}
      */
@@ -196,6 +256,7 @@ public class TransactionalBranchService extends AbstractTransactionalEntityServi
         branch.setName(title);
         branch.setDescription(description);
         getDao().saveOrUpdate(branch);
+        structureCacheService.evict();
     }
 
     /**
@@ -215,6 +276,7 @@ public class TransactionalBranchService extends AbstractTransactionalEntityServi
         PermissionChanges permissionChanges = new PermissionChanges(BranchPermission.VIEW_TOPICS, groups,
                 Collections.<Group>emptyList());
         permissionService.changeGrants(branch, permissionChanges);
+        structureCacheService.evict();
     }
 
     /**
@@ -263,5 +325,6 @@ public class TransactionalBranchService extends AbstractTransactionalEntityServi
         } else {
             permissionService.changeRestrictions(branch, changes);
         }
+        structureCacheService.evict();
     }
 }
@@ -20,8 +20,10 @@ import org.jtalks.common.model.entity.Component;
 import org.jtalks.jcommune.model.dao.ComponentDao;
 import org.jtalks.jcommune.model.entity.ComponentInformation;
 import org.jtalks.jcommune.service.ComponentService;
+import org.jtalks.jcommune.service.dto.ForumImages;
 import org.jtalks.jcommune.service.exceptions.ImageProcessException;
 import org.jtalks.jcommune.service.nontransactional.Base64Wrapper;
+import org.jtalks.jcommune.service.nontransactional.ForumImagesCacheService;
 import org.jtalks.jcommune.service.nontransactional.ImageService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,16 +53,20 @@ public class TransactionalComponentService extends AbstractTransactionalEntitySe
     private static final Logger LOGGER = LoggerFactory.getLogger(TransactionalComponentService.class);
 
     private final ImageService icoFormatImageService;
+    private final ForumImagesCacheService forumImagesCacheService;
 
     /**
      * Constructs an instance with required fields.
      *
-     * @param icoFormatImageService service for converting icon to ICO format
-     * @param dao                   to get component
+     * @param icoFormatImageService   service for converting icon to ICO format
+     * @param dao                     to get component
+     * @param forumImagesCacheService keeps decoded logo and icons to be served without reading the component
      */
-    public TransactionalComponentService(ImageService icoFormatImageService, ComponentDao dao) {
+    public TransactionalComponentService(ImageService icoFormatImageService, ComponentDao dao,
+                                         ForumImagesCacheService forumImagesCacheService) {
         super(dao);
         this.icoFormatImageService = icoFormatImageService;
+        this.forumImagesCacheService = forumImagesCacheService;
     }
 
     /**
@@ -108,6 +114,7 @@ public class TransactionalComponentService extends AbstractTransactionalEntitySe
         DateTime now = new DateTime();
         now = now.withMillisOfSecond(0);
         forumComponent.setProperty(COMPONENT_INFO_CHANGE_DATE_PROPERTY, String.valueOf(now.getMillis()));
+        forumImagesCacheService.evict();
     }
 
     /**
@@ -115,10 +122,34 @@ public class TransactionalComponentService extends AbstractTransactionalEntitySe
      */
     @Override
     public Date getComponentModificationTime() {
+        return getModificationTimeOf(getDao().getComponent());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ForumImages getForumImages() {
+        ForumImages images = forumImagesCacheService.getImages();
+        if (images == null) {
+            long version = forumImagesCacheService.getVersion();
+            Component component = getDao().getComponent();
+            images = forumImagesCacheService.putImages(component, getModificationTimeOf(component), version);
+        }
+        return images;
+    }
+
+    /**
+     * Gets time of the last change of the forum information
+     *
+     * @param component forum component, may be null
+     * @return modification time or null if there is no component or the time was never set
+     */
+    private Date getModificationTimeOf(Component component) {
         Date modificationDate = null;
 
-        if (getDao().getComponent() != null) {
-            String dateString = getDao().getComponent().getProperty(COMPONENT_INFO_CHANGE_DATE_PROPERTY);
+        if (component != null) {
+            String dateString = component.getProperty(COMPONENT_INFO_CHANGE_DATE_PROPERTY);
 
             if (dateString != null) {
                 modificationDate = new Date(Long.parseLong(dateString));
@@ -18,6 +18,7 @@ import org.jtalks.common.model.entity.Component;
 import org.jtalks.jcommune.model.dao.ExternalLinkDao;
 import org.jtalks.jcommune.model.entity.ExternalLink;
 import org.jtalks.jcommune.service.ExternalLinkService;
+import org.jtalks.jcommune.service.nontransactional.BannerAndLinkCacheService;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import java.util.List;
@@ -28,23 +29,33 @@ import java.util.List;
  */
 public class TransactionalExternalLinkService extends AbstractTransactionalEntityService<ExternalLink, ExternalLinkDao>
         implements ExternalLinkService {
+    private final BannerAndLinkCacheService cacheService;
 
     /**
      * Subclass may use this constructor to store entity DAO or parent
      * entity DAO if necessary
      *
-     * @param dao subclass-provided dao object
+     * @param dao          subclass-provided dao object
+     * @param cacheService to keep links shown on every page without querying database
      */
-    public TransactionalExternalLinkService(ExternalLinkDao dao) {
+    public TransactionalExternalLinkService(ExternalLinkDao dao, BannerAndLinkCacheService cacheService) {
         super(dao);
+        this.cacheService = cacheService;
     }
 
     /**
      * {@inheritDoc}
+     * Links are taken from the cache, they are loaded from the database only if they were changed since
+     * the last load. Returned list is shared between the readers and can't be modified.
      */
     @Override
     public List<ExternalLink> getLinks() {
-        return getDao().getAll();
+        List<ExternalLink> cachedLinks = cacheService.getExternalLinks();
+        if (cachedLinks != null) {
+            return cachedLinks;
+        }
+        long version = cacheService.getVersion();
+        return cacheService.putExternalLinks(getDao().getAll(), version);
     }
 
     /**
@@ -54,6 +65,7 @@ public class TransactionalExternalLinkService extends AbstractTransactionalEntit
     @PreAuthorize("hasPermission(#forumComponent.id, 'COMPONENT', 'GeneralPermission.ADMIN')")
     public void saveLink(ExternalLink link, Component forumComponent) {
         getDao().saveOrUpdate(link);
+        cacheService.evictExternalLinks();
     }
 
     /**
@@ -62,6 +74,8 @@ public class TransactionalExternalLinkService extends AbstractTransactionalEntit
     @Override
     @PreAuthorize("hasPermission(#forumComponent.id, 'COMPONENT', 'GeneralPermission.ADMIN')")
     public boolean deleteLink(long id, Component forumComponent) {
-        return getDao().delete(id);
+        boolean deleted = getDao().delete(id);
+        cacheService.evictExternalLinks();
+        return deleted;
     }
 }
@@ -16,17 +16,18 @@ package org.jtalks.jcommune.service.transactional;
 
 import org.apache.commons.collections.ListUtils;
 import org.joda.time.DateTime;
+import org.jtalks.jcommune.model.dao.ForumReadedMarkerDao;
 import org.jtalks.jcommune.model.dao.LastReadPostDao;
 import org.jtalks.jcommune.model.dao.BranchReadedMarkerDao;
-import org.jtalks.jcommune.model.dao.UserDao;
 import org.jtalks.jcommune.model.entity.*;
 import org.jtalks.jcommune.plugin.api.service.PluginLastReadPostService;
 import org.jtalks.jcommune.service.LastReadPostService;
 import org.jtalks.jcommune.service.UserService;
+import org.jtalks.jcommune.service.nontransactional.LastReadPostCleanupService;
+import org.jtalks.jcommune.service.nontransactional.UserDataCacheService;
 import org.springframework.security.access.prepost.PreAuthorize;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 /**
  * Performs last read posts management to track topic updates
@@ -39,24 +40,33 @@ public class TransactionalLastReadPostService implements LastReadPostService, Pl
 
     private final UserService userService;
     private final LastReadPostDao lastReadPostDao;
-    private final UserDao userDao;
+    private final ForumReadedMarkerDao forumReadedMarkerDao;
     private final BranchReadedMarkerDao branchReadedMarkerDao;
+    private final LastReadPostCleanupService lastReadPostCleanupService;
+    private final UserDataCacheService userDataCacheService;
     /**
      * Constructs an instance with required fields.
      *
      * @param userService     to figure out the current user logged in
      * @param lastReadPostDao to save/read last read post information from a database
-     * @param userDao         to save an information about user of forum
+     * @param forumReadedMarkerDao  to save/read time of marking the whole forum as read
+     * @param branchReadedMarkerDao to save/read time of marking branches as read
+     * @param lastReadPostCleanupService to delete last read posts after marking the whole forum as read
+     * @param userDataCacheService  to remember users who never marked the whole forum as read
      */
     public TransactionalLastReadPostService(
             UserService userService,
             LastReadPostDao lastReadPostDao,
-            UserDao userDao,
-            BranchReadedMarkerDao branchReadedMarkerDao) {
+            ForumReadedMarkerDao forumReadedMarkerDao,
+            BranchReadedMarkerDao branchReadedMarkerDao,
+            LastReadPostCleanupService lastReadPostCleanupService,
+            UserDataCacheService userDataCacheService) {
         this.userService = userService;
         this.lastReadPostDao = lastReadPostDao;
-        this.userDao = userDao;
+        this.forumReadedMarkerDao = forumReadedMarkerDao;
         this.branchReadedMarkerDao = branchReadedMarkerDao;
+        this.lastReadPostCleanupService = lastReadPostCleanupService;
+        this.userDataCacheService = userDataCacheService;
     }
 
     /**
@@ -82,7 +92,8 @@ public class TransactionalLastReadPostService implements LastReadPostService, Pl
 
     /**
      * Extract topics that don't have modifications after marking all forum as read
-     * or after marking their branch as read.
+     * or after marking their branch as read. Markers of all the branches of topics
+     * are read at once.
      *
      * @param currentUser the current user of application
      * @param sourceTopics        the list of topics that must be processed
@@ -91,18 +102,13 @@ public class TransactionalLastReadPostService implements LastReadPostService, Pl
     private List<Topic> extractNotModifiedTopicsSinceForumMarkedAsRead(
             JCUser currentUser,
             List<Topic> sourceTopics) {
-        DateTime forumMarkAsReadDate = currentUser.getAllForumMarkedAsReadTime();
         List<Topic> topics = new ArrayList<>();
         if (!sourceTopics.isEmpty()) {
-            Branch branch = sourceTopics.get(0).getBranch();
-            BranchReadedMarker markBranch = branchReadedMarkerDao.getMarkerFor(currentUser, branch);
-            DateTime markTime = getLastMarkDateTime(markBranch, forumMarkAsReadDate);
+            DateTime forumMarkAsReadDate = getForumMarkTime(currentUser);
+            Map<Long, BranchReadedMarker> branchMarkers = getBranchMarkers(currentUser, sourceTopics);
             for (Topic topic : sourceTopics) {
-                if (!topic.getBranch().equals(branch)) {
-                    branch = topic.getBranch();
-                    markBranch = branchReadedMarkerDao.getMarkerFor(currentUser, branch);
-                    markTime = getLastMarkDateTime(markBranch, forumMarkAsReadDate);
-                }
+                BranchReadedMarker markBranch = branchMarkers.get(topic.getBranch().getId());
+                DateTime markTime = getLastMarkDateTime(markBranch, forumMarkAsReadDate);
                 if(markTime != null && topic.getModificationDate().isBefore(markTime)) {
                     topics.add(topic);
                 }
@@ -111,6 +117,44 @@ public class TransactionalLastReadPostService implements LastReadPostService, Pl
         return topics;
     }
 
+    /**
+     * Gets time of marking the whole forum as read by the user. Most of the users never do it, so the absence
+     * of their markers is cached, otherwise it would be looked up in the database on every topic view.
+     *
+     * @param user user to get the mark time of
+     * @return time of marking the forum as read or null if user never marked forum as read
+     */
+    private DateTime getForumMarkTime(JCUser user) {
+        if (userDataCacheService.isForumNeverMarkedAsReadBy(user.getId())) {
+            return null;
+        }
+        long version = userDataCacheService.getVersion();
+        DateTime markTime = forumReadedMarkerDao.getMarkTime(user);
+        if (markTime == null) {
+            userDataCacheService.putForumNeverMarkedAsReadBy(user.getId(), version);
+        }
+        return markTime;
+    }
+
+    /**
+     * Gets markers of the user for all the branches of topics by one query.
+     *
+     * @param user   user to get markers for
+     * @param topics topics to get markers for their branches
+     * @return markers by ids of their branches
+     */
+    private Map<Long, BranchReadedMarker> getBranchMarkers(JCUser user, List<Topic> topics) {
+        Set<Branch> branches = new HashSet<>();
+        for (Topic topic : topics) {
+            branches.add(topic.getBranch());
+        }
+        Map<Long, BranchReadedMarker> markers = new HashMap<>();
+        for (BranchReadedMarker marker : branchReadedMarkerDao.getMarkersFor(user, branches)) {
+            markers.put(marker.getBranch().getId(), marker);
+        }
+        return markers;
+    }
+
     /**
      * Compares date from marker with specified date and returns greater value
      *
@@ -213,7 +257,7 @@ public class TransactionalLastReadPostService implements LastReadPostService, Pl
      * @param lastPost  last post in the topic (or in the last read page of the topic)
      */
     private void saveLastReadPost(JCUser user, Topic topic, Post lastPost) {
-        DateTime lastTimeForumWasMarkedRead = user.getAllForumMarkedAsReadTime();
+        DateTime lastTimeForumWasMarkedRead = getForumMarkTime(user);
         DateTime topicModifiedDate = topic.getModificationDate();
         if (lastTimeForumWasMarkedRead != null && topicModifiedDate.isBefore(lastTimeForumWasMarkedRead)) {
             return;
@@ -250,15 +294,19 @@ public class TransactionalLastReadPostService implements LastReadPostService, Pl
 
     /**
      * {@inheritDoc}
+     * <p/>
+     * Only the marker of the user is updated, the user itself stays untouched. Last read posts covered
+     * by the mark are deleted in background after the transaction is committed.
      */
     @Override
     public void markAllForumAsReadForCurrentUser() {
         JCUser currentUser = userService.getCurrentUser();
+        DateTime markTime = new DateTime();
 
-        currentUser.setAllForumMarkedAsReadTime(new DateTime());
-        userDao.saveOrUpdate(currentUser);
+        forumReadedMarkerDao.markForumAsRead(currentUser, markTime);
+        userDataCacheService.evictForumNeverMarkedAsReadBy(currentUser.getId());
 
-        lastReadPostDao.deleteLastReadPostsFor(currentUser);
+        lastReadPostCleanupService.deleteLastReadPostsCoveredByMark(currentUser.getId(), markTime);
     }
 
 }
@@ -25,6 +25,7 @@ import org.jtalks.jcommune.plugin.api.PluginLoader;
 import org.jtalks.jcommune.plugin.api.core.Plugin;
 import org.jtalks.jcommune.plugin.api.core.TopicPlugin;
 import org.jtalks.jcommune.plugin.api.filters.TypeFilter;
+import org.jtalks.jcommune.service.nontransactional.FeedCacheService;
 import org.jtalks.jcommune.service.security.AclClassName;
 import org.jtalks.jcommune.service.security.AclGroupPermissionEvaluator;
 import org.jtalks.jcommune.service.security.PermissionManager;
@@ -49,17 +50,21 @@ public class TransactionalPermissionService implements PermissionService {
     private AclGroupPermissionEvaluator aclEvaluator;
     private PermissionManager permissionManager;
     private PluginLoader pluginLoader;
+    private FeedCacheService feedCacheService;
 
     /**
-     * @param contextFacade to get {@link Authentication} object from security context
-     * @param aclEvaluator  to evaluate permissions
+     * @param contextFacade     to get {@link Authentication} object from security context
+     * @param aclEvaluator      to evaluate permissions
+     * @param feedCacheService  to evict RSS feeds of the branches which permissions are changed
      */
     public TransactionalPermissionService(SecurityContextHolderFacade contextFacade,
                                           AclGroupPermissionEvaluator aclEvaluator,
-                                          PermissionManager permissionManager) {
+                                          PermissionManager permissionManager,
+                                          FeedCacheService feedCacheService) {
         this.contextFacade = contextFacade;
         this.aclEvaluator = aclEvaluator;
         this.permissionManager = permissionManager;
+        this.feedCacheService = feedCacheService;
     }
 
     /**
@@ -130,6 +135,7 @@ public class TransactionalPermissionService implements PermissionService {
     @Override
     public void changeGrants(Branch branch, PermissionChanges changes) {
         permissionManager.changeGrants(branch, changes);
+        feedCacheService.evict(branch);
     }
 
     /**
@@ -138,6 +144,7 @@ public class TransactionalPermissionService implements PermissionService {
     @Override
     public void changeRestrictions(Branch branch, PermissionChanges changes) {
         permissionManager.changeRestrictions(branch, changes);
+        feedCacheService.evict(branch);
     }
 
     /**
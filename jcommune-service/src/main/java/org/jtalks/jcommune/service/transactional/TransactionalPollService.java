@@ -19,13 +19,19 @@ import org.jtalks.common.model.dao.Crud;
 import org.jtalks.common.model.dao.GroupDao;
 import org.jtalks.common.model.permissions.GeneralPermission;
 import org.jtalks.common.security.SecurityService;
+import org.jtalks.jcommune.model.dao.PollVoteDao;
+import org.jtalks.jcommune.model.entity.JCUser;
 import org.jtalks.jcommune.model.entity.Poll;
 import org.jtalks.jcommune.model.entity.PollItem;
+import org.jtalks.jcommune.model.entity.PollVote;
 import org.jtalks.jcommune.service.PollService;
 import org.jtalks.jcommune.service.UserService;
 import org.jtalks.jcommune.service.security.AdministrationGroup;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.prepost.PreAuthorize;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.ListIterator;
 
@@ -41,6 +47,7 @@ import static ch.lambdaj.Lambda.*;
 public class TransactionalPollService extends AbstractTransactionalEntityService<Poll, Crud<Poll>>
         implements PollService {
     private Crud<PollItem> pollOptionDao;
+    private PollVoteDao pollVoteDao;
     private GroupDao groupDao;
     private SecurityService securityService;
     private UserService userService;
@@ -53,16 +60,19 @@ public class TransactionalPollService extends AbstractTransactionalEntityService
      * @param groupDao        this dao returns user group for permission granting
      * @param pollOptionDao   data access object, which should be able do
      *                        all CRUD operations with {@link org.jtalks.jcommune.model.entity.PollItem}.
+     * @param pollVoteDao     to record participation of users in polls and to count their votes
      * @param securityService the service for security operations
      * @param userService     to fetch the user currently logged in
      */
     public TransactionalPollService(Crud<Poll> pollDao,
                                     GroupDao groupDao,
                                     Crud<PollItem> pollOptionDao,
+                                    PollVoteDao pollVoteDao,
                                     SecurityService securityService,
                                     UserService userService) {
         super(pollDao);
         this.pollOptionDao = pollOptionDao;
+        this.pollVoteDao = pollVoteDao;
         this.groupDao = groupDao;
         this.securityService = securityService;
         this.userService = userService;
@@ -77,16 +87,26 @@ public class TransactionalPollService extends AbstractTransactionalEntityService
         Poll poll = getDao().get(pollId);
         if (poll.isActive()) {
             prohibitRevote(poll);
+            List<Long> selectedItemsIds = new ArrayList<>();
             for (PollItem option : poll.getPollItems()) {
                 if (selectedOptionsIds.contains(option.getId())) {
-                    option.increaseVotesCount();
-                    pollOptionDao.saveOrUpdate(option);
+                    selectedItemsIds.add(option.getId());
                 }
             }
+            pollVoteDao.increaseVotesCount(poll, selectedItemsIds);
         }
         return poll;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isVotedByCurrentUser(Poll poll) {
+        JCUser currentUser = userService.getCurrentUser();
+        return !currentUser.isAnonymous() && pollVoteDao.isVoted(poll, currentUser);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -123,11 +143,36 @@ public class TransactionalPollService extends AbstractTransactionalEntityService
 
     /**
      * Prohibit the re-vote. In this poll a user will no longer be able to participate.
+     * Unique key of the vote ledger guarantees that concurrent requests of the same
+     * user can't both be counted: the vote is inserted right away as its identifier
+     * is generated by the database, so the request that lost the race fails here
+     * the same way as a plain re-vote does.
      *
      * @param poll a poll, in which the user will no longer be able to participate
+     * @throws AccessDeniedException if the user has already voted in the poll
      */
     private void prohibitRevote(final Poll poll) {
-        securityService.createAclBuilder().restrict(GeneralPermission.WRITE).
-                to(userService.getCurrentUser()).on(poll).flush();
+        JCUser currentUser = userService.getCurrentUser();
+        if (pollVoteDao.isVoted(poll, currentUser)) {
+            throw alreadyVoted(currentUser, poll, null);
+        }
+        try {
+            pollVoteDao.saveOrUpdate(new PollVote(poll, currentUser));
+        } catch (DataIntegrityViolationException e) {
+            throw alreadyVoted(currentUser, poll, e);
+        }
+    }
+
+    /**
+     * Creates an exception telling that user has already voted in the poll.
+     *
+     * @param user  user who tried to vote again
+     * @param poll  poll user tried to vote in
+     * @param cause violation of the unique key of the vote ledger, may be null
+     * @return exception to be thrown
+     */
+    private AccessDeniedException alreadyVoted(JCUser user, Poll poll, Throwable cause) {
+        return new AccessDeniedException("User " + user.getUsername()
+                + " has already voted in the poll " + poll.getId(), cause);
     }
 }
@@ -15,10 +15,10 @@
 package org.jtalks.jcommune.service.transactional;
 
 import org.joda.time.DateTime;
-import org.jtalks.common.model.dao.Crud;
 import org.jtalks.common.model.permissions.BranchPermission;
-import org.jtalks.common.security.SecurityService;
 import org.jtalks.jcommune.model.dao.PostDao;
+import org.jtalks.jcommune.model.dao.PostDraftDao;
+import org.jtalks.jcommune.model.dao.PostVoteDao;
 import org.jtalks.jcommune.model.dao.TopicDao;
 import org.jtalks.jcommune.model.dto.PageRequest;
 import org.jtalks.jcommune.model.entity.*;
@@ -32,7 +32,10 @@ import org.jtalks.jcommune.plugin.api.service.PluginPostService;
 import org.jtalks.jcommune.service.BranchLastPostService;
 import org.jtalks.jcommune.service.PostService;
 import org.jtalks.jcommune.service.UserService;
+import org.jtalks.jcommune.service.nontransactional.BranchStatisticsCacheService;
+import org.jtalks.jcommune.service.nontransactional.FeedCacheService;
 import org.jtalks.jcommune.service.nontransactional.NotificationService;
+import org.jtalks.jcommune.service.nontransactional.PostDraftStore;
 import org.jtalks.jcommune.service.security.AclClassName;
 import org.jtalks.jcommune.service.security.PermissionService;
 import org.slf4j.Logger;
@@ -42,7 +45,9 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.prepost.PreAuthorize;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -59,46 +64,58 @@ public class TransactionalPostService extends AbstractTransactionalEntityService
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private TopicDao topicDao;
-    private SecurityService securityService;
     private NotificationService notificationService;
     private UserService userService;
     private BranchLastPostService branchLastPostService;
     private PermissionService permissionService;
     private PluginLoader pluginLoader;
-    private Crud<PostDraft> postDraftDao;
+    private PostDraftDao postDraftDao;
+    private PostVoteDao postVoteDao;
+    private PostDraftStore postDraftStore;
+    private FeedCacheService feedCacheService;
+    private BranchStatisticsCacheService branchStatisticsCacheService;
 
     /**
      * Create an instance of Post entity based service
      *
      * @param dao                   data access object, which should be able do all CRUD operations with post entity.
      * @param topicDao              this dao used for checking branch existance
-     * @param securityService       service for authorization
      * @param notificationService   to send email updates for subscribed users
      * @param userService           to get current user
      * @param branchLastPostService to refresh the last post of the branch
      * @param permissionService     service for cheking permissions
      * @param pluginLoader          loader of pluinf
      * @param postDraftDao          data access object for manipulating with drafts
+     * @param postVoteDao           data access object for storing votes for posts
+     * @param postDraftStore        to keep autosaved content of drafts till it's written
+     * @param feedCacheService      to evict RSS feeds showing changed posts
+     * @param branchStatisticsCacheService to evict numbers of posts of changed branches
      */
     public TransactionalPostService(
             PostDao dao,
             TopicDao topicDao,
-            SecurityService securityService,
             NotificationService notificationService,
             UserService userService,
             BranchLastPostService branchLastPostService,
             PermissionService permissionService,
             PluginLoader pluginLoader,
-            Crud<PostDraft> postDraftDao) {
+            PostDraftDao postDraftDao,
+            PostVoteDao postVoteDao,
+            PostDraftStore postDraftStore,
+            FeedCacheService feedCacheService,
+            BranchStatisticsCacheService branchStatisticsCacheService) {
         super(dao);
         this.topicDao = topicDao;
-        this.securityService = securityService;
         this.notificationService = notificationService;
         this.userService = userService;
         this.branchLastPostService = branchLastPostService;
         this.permissionService = permissionService;
         this.pluginLoader = pluginLoader;
         this.postDraftDao = postDraftDao;
+        this.postVoteDao = postVoteDao;
+        this.postDraftStore = postDraftStore;
+        this.feedCacheService = feedCacheService;
+        this.branchStatisticsCacheService = branchStatisticsCacheService;
     }
 
     /**
@@ -110,10 +127,10 @@ public class TransactionalPostService extends AbstractTransactionalEntityService
      *                               see <a href="http://jtalks.org/display/jcommune/1.1+Larks">Requirements</a>
      *                               for details
      */
-    @PreAuthorize("(hasPermission(#post.id, 'POST', 'GeneralPermission.WRITE') and " +
-            "hasPermission(#post.topic.branch.id, 'BRANCH', 'BranchPermission.EDIT_OWN_POSTS')) or " +
-            "(not hasPermission(#post.id, 'POST', 'GeneralPermission.WRITE') and " +
-            "hasPermission(#post.topic.branch.id, 'BRANCH', 'BranchPermission.EDIT_OTHERS_POSTS'))")
+    @PreAuthorize("(hasPermission(#post.topic.branch.id, 'BRANCH', 'BranchPermission.EDIT_OWN_POSTS') and " +
+            "#post.userCreated.username == principal.username) or " +
+            "(hasPermission(#post.topic.branch.id, 'BRANCH', 'BranchPermission.EDIT_OTHERS_POSTS') and " +
+            "#post.userCreated.username != principal.username)")
     @Override
     public void updatePost(Post post, String postContent) {
         Topic postTopic = post.getTopic();
@@ -125,6 +142,7 @@ public class TransactionalPostService extends AbstractTransactionalEntityService
 
         this.getDao().saveOrUpdate(post);
         userService.notifyAndMarkNewlyMentionedUsers(post);
+        feedCacheService.evict(postTopic.getBranch());
 
         logger.debug("Post id={} updated.", post.getId());
     }
@@ -150,7 +168,6 @@ public class TransactionalPostService extends AbstractTransactionalEntityService
 
         // todo: event API?
         topicDao.saveOrUpdate(topic);
-        securityService.deleteFromAcl(post);
 
         /*
          only the creator of the post should be notified when it's removed.
@@ -160,6 +177,8 @@ public class TransactionalPostService extends AbstractTransactionalEntityService
         if (deletedPostIsLastPostInBranch) {
             branchLastPostService.refreshLastPostInBranch(branch);
         }
+        feedCacheService.evict(branch);
+        branchStatisticsCacheService.evict(branch.getId());
 
         logger.debug("Deleted post id={}", post.getId());
     }
@@ -168,15 +187,7 @@ public class TransactionalPostService extends AbstractTransactionalEntityService
     @PreAuthorize("hasPermission(#topic.branch.id, 'BRANCH', 'BranchPermission.CREATE_POSTS')")
     public PostDraft saveOrUpdateDraft(Topic topic, String content) {
         JCUser currentUser = userService.getCurrentUser();
-        PostDraft draft = topic.getDraftForUser(currentUser);
-        if (draft == null) {
-            draft = new PostDraft(content, currentUser);
-            topic.addDraft(draft);
-        } else {
-            draft.setContent(content);
-            draft.updateLastSavedTime();
-        }
-        topicDao.saveOrUpdate(topic);
+        PostDraft draft = postDraftStore.save(currentUser, topic, content);
 
         logger.debug("Draft saved in topic. Topic id={}, Post id={}, Post author={}",
                 new Object[]{topic.getId(), draft.getId(), currentUser.getUsername()});
@@ -290,19 +301,64 @@ public class TransactionalPostService extends AbstractTransactionalEntityService
             "and #post.userCreated.username != principal.username")
     public Post vote(Post post, PostVote vote) {
         JCUser currentUser = userService.getCurrentUser();
-        if (!post.canBeVotedBy(currentUser, vote.isVotedUp())) {
+        vote.setUser(currentUser);
+        vote.setPost(post);
+        int ratingChanges = postVoteDao.saveOrFlipVote(vote);
+        if (ratingChanges == 0) {
             logger.info("User [{}] tries to vote for post with id={} in same direction more than one time",
                     currentUser.getUsername(), post.getId());
             throw new AccessDeniedException("User can't vote in same direction more than one time");
         }
-        vote.setUser(currentUser);
-        int ratingChanges = post.calculateRatingChanges(vote);
-        post.putVote(vote);
-        getDao().saveOrUpdate(post);
         getDao().changeRating(post.getId(), ratingChanges);
         return post;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<Long, Boolean> getVotesOfCurrentUser(Collection<Post> posts) {
+        JCUser currentUser = userService.getCurrentUser();
+        if (currentUser.isAnonymous() || posts.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<Long> postIds = new ArrayList<>(posts.size());
+        for (Post post : posts) {
+            postIds.add(post.getId());
+        }
+        return postVoteDao.getVotesOfUser(currentUser, postIds);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Post getFirstPost(Topic topic) {
+        return getDao().getFirstPost(topic);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Page<Post> getAnswers(Post question, String page) {
+        PageRequest pageRequest = new PageRequest(page, userService.getCurrentUser().getPageSize());
+        return getDao().getAnswers(question, pageRequest);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int calculatePageForAnswer(Post post) {
+        Post question = getDao().getFirstPost(post.getTopic());
+        if (question.equals(post)) {
+            return 1;
+        }
+        int pageSize = userService.getCurrentUser().getPageSize();
+        return getDao().getCountAnswersRankedAbove(question, post) / pageSize + 1;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -316,12 +372,23 @@ public class TransactionalPostService extends AbstractTransactionalEntityService
             throw new AccessDeniedException("Only author can delete draft");
         }
         Topic topic = draft.getTopic();
+        postDraftStore.discard(draft.getAuthor(), topic);
         topic.getDrafts().remove(draft);
         topicDao.saveOrUpdate(topic);
 
         logger.debug("Deleted draft id={}", draft.getId());
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PostDraft getDraftOfCurrentUser(Topic topic) {
+        JCUser currentUser = userService.getCurrentUser();
+        PostDraft pending = postDraftStore.getPending(currentUser, topic);
+        return pending == null ? topic.getDraftForUser(currentUser) : pending;
+    }
+
     /**
      * Checks if current user can create comments in specified topic
      *
@@ -30,6 +30,7 @@ import org.jtalks.jcommune.service.nontransactional.UserDataCacheService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import java.util.List;
@@ -46,6 +47,10 @@ public class TransactionalPrivateMessageService
 
 
     public static final int DEFAULT_MESSAGE_COUNT = 0;
+    /** Names of folders, used as URLs for redirection as well */
+    static final String INBOX = "inbox";
+    static final String OUTBOX = "outbox";
+    static final String DRAFTS = "drafts";
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private final SecurityService securityService;
@@ -81,20 +86,92 @@ public class TransactionalPrivateMessageService
      * {@inheritDoc}
      */
     @Override
-    public Page<PrivateMessage> getInboxForCurrentUser(String page) {
+    public Page<PrivateMessage> getInboxForCurrentUser(String page, Long olderThan) {
         JCUser currentUser = userService.getCurrentUser();
         PageRequest pageRequest = new PageRequest(page, currentUser.getPageSize());
-        return this.getDao().getAllForUser(currentUser, pageRequest);
+        int totalCount = getFolderCount(currentUser, INBOX);
+        if (olderThan != null) {
+            List<PrivateMessage> messages = this.getDao().getAllForUserOlderThan(currentUser, olderThan,
+                    currentUser.getPageSize());
+            if (!messages.isEmpty()) {
+                return pageOf(messages, pageRequest, totalCount);
+            }
+        }
+        return this.getDao().getAllForUser(currentUser, pageRequest, totalCount);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Page<PrivateMessage> getOutboxForCurrentUser(String page) {
+    public Page<PrivateMessage> getOutboxForCurrentUser(String page, Long olderThan) {
         JCUser currentUser = userService.getCurrentUser();
         PageRequest pageRequest = new PageRequest(page, currentUser.getPageSize());
-        return this.getDao().getAllFromUser(currentUser, pageRequest);
+        int totalCount = getFolderCount(currentUser, OUTBOX);
+        if (olderThan != null) {
+            List<PrivateMessage> messages = this.getDao().getAllFromUserOlderThan(currentUser, olderThan,
+                    currentUser.getPageSize());
+            if (!messages.isEmpty()) {
+                return pageOf(messages, pageRequest, totalCount);
+            }
+        }
+        return this.getDao().getAllFromUser(currentUser, pageRequest, totalCount);
+    }
+
+    /**
+     * Creates page of messages found by keyset. If the message the page was requested by has been deleted
+     * meanwhile, nothing is found and the page is got by its number instead.
+     *
+     * @param messages    messages of the page
+     * @param pageRequest requested page
+     * @param totalCount  count of messages in the folder
+     * @return page of messages
+     */
+    private Page<PrivateMessage> pageOf(List<PrivateMessage> messages, PageRequest pageRequest, int totalCount) {
+        pageRequest.adjustPageNumber(totalCount);
+        return new PageImpl<>(messages, pageRequest, totalCount);
+    }
+
+    /**
+     * Gets count of messages in the folder of the user from cache, counts them in the database only if the
+     * count isn't cached yet.
+     *
+     * @param user   owner of the folder
+     * @param folder name of the folder
+     * @return count of messages in the folder
+     */
+    private int getFolderCount(JCUser user, String folder) {
+        Integer count = userDataCache.getPmFolderCountFor(user.getUsername(), folder);
+        if (count != null) {
+            return count;
+        }
+        long version = userDataCache.getVersion();
+        switch (folder) {
+            case INBOX:
+                count = this.getDao().getInboxCount(user);
+                break;
+            case OUTBOX:
+                count = this.getDao().getOutboxCount(user);
+                break;
+            default:
+                count = this.getDao().getDraftsCount(user);
+                break;
+        }
+        userDataCache.putPmFolderCount(user.getUsername(), folder, count, version);
+        return count;
+    }
+
+    /**
+     * Changes cached count of messages in the folder of the user if messages were added or removed.
+     *
+     * @param user   owner of the folder
+     * @param folder name of the folder
+     * @param delta  number of added messages, negative for removed ones
+     */
+    private void changeFolderCount(JCUser user, String folder, int delta) {
+        if (delta != 0) {
+            userDataCache.addToPmFolderCountFor(user.getUsername(), folder, delta);
+        }
     }
 
 
@@ -110,6 +187,8 @@ public class TransactionalPrivateMessageService
         this.getDao().saveOrUpdate(pm);
 
         userDataCache.incrementNewMessageCountFor(recipient.getUsername());
+        changeFolderCount(recipient, INBOX, 1);
+        changeFolderCount(userFrom, OUTBOX, 1);
 
         securityService.createAclBuilder().grant(GeneralPermission.READ).to(recipient).on(pm).flush();
         securityService.createAclBuilder().grant(GeneralPermission.READ).to(userFrom).on(pm).flush();
@@ -137,10 +216,18 @@ public class TransactionalPrivateMessageService
      * {@inheritDoc}
      */
     @Override
-    public Page<PrivateMessage> getDraftsForCurrentUser(String page) {
+    public Page<PrivateMessage> getDraftsForCurrentUser(String page, Long olderThan) {
         JCUser currentUser = userService.getCurrentUser();
         PageRequest pageRequest = new PageRequest(page, currentUser.getPageSize());
-        return this.getDao().getDraftsForUser(currentUser, pageRequest);
+        int totalCount = getFolderCount(currentUser, DRAFTS);
+        if (olderThan != null) {
+            List<PrivateMessage> messages = this.getDao().getDraftsForUserOlderThan(currentUser, olderThan,
+                    currentUser.getPageSize());
+            if (!messages.isEmpty()) {
+                return pageOf(messages, pageRequest, totalCount);
+            }
+        }
+        return this.getDao().getDraftsForUser(currentUser, pageRequest, totalCount);
     }
 
     /**
@@ -153,6 +240,9 @@ public class TransactionalPrivateMessageService
         pm.setId(id);
         pm.setStatus(PrivateMessageStatus.DRAFT);
         this.getDao().saveOrUpdate(pm);
+        if (id == 0) {
+            changeFolderCount(userFrom, DRAFTS, 1);
+        }
 
         JCUser user = userService.getCurrentUser();
         securityService.createAclBuilder().grant(GeneralPermission.READ).to(user).on(pm).flush();
@@ -176,8 +266,9 @@ public class TransactionalPrivateMessageService
         if (count != null) {
             return count;
         }
+        long version = userDataCache.getVersion();
         count = this.getDao().getNewMessagesCountFor(username);
-        userDataCache.putNewPmCount(username, count);
+        userDataCache.putNewPmCount(username, count, version);
         return count;
     }
 
@@ -195,6 +286,9 @@ public class TransactionalPrivateMessageService
         this.getDao().saveOrUpdate(pm);
 
         userDataCache.incrementNewMessageCountFor(recipient.getUsername());
+        changeFolderCount(recipient, INBOX, 1);
+        changeFolderCount(userFrom, OUTBOX, 1);
+        changeFolderCount(userFrom, DRAFTS, -1);
 
         securityService.deleteFromAcl(pm);
         securityService.createAclBuilder().grant(GeneralPermission.READ).to(recipient).on(pm).flush();
@@ -252,38 +346,40 @@ public class TransactionalPrivateMessageService
     public String delete(List<Long> ids) throws NotFoundException {
         JCUser currentUser = userService.getCurrentUser();
 
-        String result = "inbox";
-        for (Long id : ids) {
-
-            PrivateMessage message = this.get(id);
-
-            switch (message.getStatus()) {
-                case DRAFT:
-                    this.getDao().delete(message);
-                    result = "drafts";
-                    break;
-                case DELETED_FROM_INBOX:
-                    this.getDao().delete(message);
-                    result = "outbox";
-                    break;
-                case DELETED_FROM_OUTBOX:
-                    this.getDao().delete(message);
-                    result = "inbox";
-                    break;
-                case SENT:
-                    if (currentUser.equals(message.getUserFrom())) {
-                        message.setStatus(PrivateMessageStatus.DELETED_FROM_OUTBOX);
-                        result = "outbox";
-                    } else {
-                        message.setStatus(PrivateMessageStatus.DELETED_FROM_INBOX);
-                        result = "inbox";
-                    }
-                    break;
-                default:
-                    break;
-            }
+        int newMessages = this.getDao().getNewMessagesCount(currentUser, ids);
+        int deletedDrafts = this.getDao().deleteDrafts(currentUser, ids);
+        int deletedFromOutbox = this.getDao().deleteFromOutbox(currentUser, ids);
+        int deletedFromInbox = this.getDao().deleteFromInbox(currentUser, ids);
+        if (deletedDrafts + deletedFromOutbox + deletedFromInbox == 0) {
+            throw new NotFoundException(String.format("none of private messages %s was found in folders of user %s",
+                    ids, currentUser.getUsername()));
+        }
+
+        changeFolderCount(currentUser, DRAFTS, -deletedDrafts);
+        changeFolderCount(currentUser, OUTBOX, -deletedFromOutbox);
+        changeFolderCount(currentUser, INBOX, -deletedFromInbox);
+        if (newMessages > 0) {
+            userDataCache.decrementNewMessageCountFor(currentUser.getUsername(), newMessages);
+        }
+        logger.debug("{} private messages were deleted by user {}", ids.size(), currentUser.getUsername());
+
+        if (deletedDrafts > 0) {
+            return DRAFTS;
+        }
+        return deletedFromOutbox > 0 ? OUTBOX : INBOX;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int markAsRead(List<Long> ids) {
+        JCUser currentUser = userService.getCurrentUser();
+        int markedMessages = this.getDao().markAsRead(currentUser, ids);
+        if (markedMessages > 0) {
+            userDataCache.decrementNewMessageCountFor(currentUser.getUsername(), markedMessages);
         }
-        return result;
+        return markedMessages;
     }
 
     private boolean hasCurrentUserAccessToPM(PrivateMessage privateMessage) throws NotFoundException {
@@ -19,19 +19,17 @@ import org.jtalks.common.model.entity.Section;
 import org.jtalks.jcommune.model.dao.PostDao;
 import org.jtalks.jcommune.model.dao.SectionDao;
 import org.jtalks.jcommune.model.dao.TopicDao;
+import org.jtalks.jcommune.model.dto.ForumStructure;
 import org.jtalks.jcommune.model.entity.JCUser;
 import org.jtalks.jcommune.model.entity.Post;
-import org.jtalks.jcommune.model.entity.Topic;
 import org.jtalks.jcommune.service.BranchService;
 import org.jtalks.jcommune.service.SectionService;
 import org.jtalks.jcommune.service.UserService;
-import org.jtalks.jcommune.plugin.api.exceptions.NotFoundException;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.security.access.AccessDeniedException;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * The implementation of SectionService
@@ -41,8 +39,6 @@ import java.util.List;
 public class TransactionalSectionService extends AbstractTransactionalEntityService<Section, SectionDao>
         implements SectionService {
 
-    private final Logger logger = LoggerFactory.getLogger(getClass());
-
     private BranchService branchService;
 
     private UserService userService;
@@ -81,22 +77,17 @@ public class TransactionalSectionService extends AbstractTransactionalEntityServ
      * {@inheritDoc}
      */
     @Override
-    public List<Section> getAllAvailableSections(long currentTopicId) {
-        List<Section> result = new ArrayList<>();
-        Topic topic = topicDao.get(currentTopicId);
-        List<Section> sections = this.getDao().getAll();
-        JCUser user = userService.getCurrentUser();
-        for (Section section : sections) {
-            List<Branch> branches = new ArrayList<>(section.getBranches());
-            for (Branch branch : branches) {
-                if (branch.equals(topic.getBranch())) {
-                    branches.remove(branch);
+    public List<ForumStructure.SectionNode> getAllAvailableSections(long currentTopicId) {
+        long currentBranchId = topicDao.get(currentTopicId).getBranch().getId();
+        Set<Long> visibleBranchIds = branchService.getVisibleBranchIds();
+        List<ForumStructure.SectionNode> result = new ArrayList<>();
+        for (ForumStructure.SectionNode section : branchService.getForumStructure().getSections()) {
+            for (ForumStructure.BranchNode branch : section.getBranches()) {
+                if (branch.getId() != currentBranchId && visibleBranchIds.contains(branch.getId())) {
+                    result.add(section);
                     break;
                 }
             }
-            if (getDao().getCountAvailableBranches(user, branches) > 0) {
-                result.add(section);
-            }
         }
         return result;
     }
@@ -111,34 +102,6 @@ public class TransactionalSectionService extends AbstractTransactionalEntityServ
         }
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public Section deleteAllTopicsInSection(long sectionId) throws NotFoundException {
-        Section section = get(sectionId);
-
-        //Create tmp list to avoid ConcurrentModificationException
-        List<Branch> loopList = new ArrayList<>(section.getBranches());
-        for (Branch branch : loopList) {
-            branchService.deleteAllTopics(branch.getId());
-        }
-
-        logger.info("All branches for sections \"{}\" were deleted. " +
-                "Section id: {}", section.getName(), section.getId());
-        return section;
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public void deleteAllTopicsInForum() throws NotFoundException {
-        for (Section section : this.getAll()) {
-            this.deleteAllTopicsInSection(section.getId());
-        }
-    }
-
     /**
      * {@inheritDoc}
      */
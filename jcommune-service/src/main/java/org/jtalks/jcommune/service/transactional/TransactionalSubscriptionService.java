@@ -16,6 +16,7 @@ package org.jtalks.jcommune.service.transactional;
 
 import org.jtalks.jcommune.model.dao.BranchDao;
 import org.jtalks.jcommune.model.dao.TopicDao;
+import org.jtalks.jcommune.model.dao.UserDao;
 import org.jtalks.jcommune.model.entity.*;
 import org.jtalks.jcommune.service.SubscriptionService;
 import org.jtalks.jcommune.service.UserService;
@@ -28,7 +29,8 @@ import java.util.*;
  * All the subscriptions are performed on behalf of the current user, so there
  * is no way to subscribe someone else.
  * Current implementation just stores the subscription status in a database
- * leaving notifications to the collaborating classes.
+ * leaving notifications to the collaborating classes. Subscriptions are inserted and
+ * deleted one by one, so subscribers of a topic or a branch are never loaded to change them.
  *
  * @author Evgeniy Naumenko
  */
@@ -38,18 +40,22 @@ public class TransactionalSubscriptionService implements SubscriptionService {
     private UserService userService;
     private BranchDao branchDao;
     private TopicDao topicDao;
+    private UserDao userDao;
 
     /**
      * @param userService to determine the current user requested the operation
      * @param branchDao       for branch subscription updates
      * @param topicDao        for topic subscription updates
+     * @param userDao         to read subscribers to notify by their ids
      */
     public TransactionalSubscriptionService(UserService userService,
                                             BranchDao branchDao,
-                                            TopicDao topicDao) {
+                                            TopicDao topicDao,
+                                            UserDao userDao) {
         this.userService = userService;
         this.branchDao = branchDao;
         this.topicDao = topicDao;
+        this.userDao = userDao;
     }
 
     /**
@@ -58,12 +64,11 @@ public class TransactionalSubscriptionService implements SubscriptionService {
     @Override
     public void toggleTopicSubscription(Topic topic) {
         JCUser current = userService.getCurrentUser();
-        if (topic.userSubscribed(current)) {
-            topic.getSubscribers().remove(current);
+        if (topicDao.isSubscribed(topic, current)) {
+            topicDao.removeSubscriber(topic, current);
         } else {
-            topic.getSubscribers().add(current);
+            topicDao.addSubscriber(topic, current);
         }
-        topicDao.saveOrUpdate(topic);
     }
 
     /**
@@ -72,12 +77,11 @@ public class TransactionalSubscriptionService implements SubscriptionService {
     @Override
     public void toggleBranchSubscription(Branch branch) {
         JCUser current = userService.getCurrentUser();
-        if (branch.getSubscribers().contains(current)) {
-            branch.getSubscribers().remove(current);
+        if (branchDao.isSubscribed(branch, current)) {
+            branchDao.removeSubscriber(branch, current);
         } else {
-            branch.getSubscribers().add(current);
+            branchDao.addSubscriber(branch, current);
         }
-        branchDao.saveOrUpdate(branch);
     }
 
     /**
@@ -85,63 +89,69 @@ public class TransactionalSubscriptionService implements SubscriptionService {
      */
     @Override
     public void unsubscribeFromBranch(Branch branch) {
-        JCUser current = userService.getCurrentUser();
-        if (branch.getSubscribers().contains(current)) {
-            branch.getSubscribers().remove(current);
-        }
-        branchDao.saveOrUpdate(branch);
+        branchDao.removeSubscriber(branch, userService.getCurrentUser());
     }
 
     @Override
     public void toggleSubscription(SubscriptionAwareEntity entityToSubscribe) {
-        JCUser current = userService.getCurrentUser();
-        if (entityToSubscribe.getSubscribers().contains(current)) {
-            entityToSubscribe.getSubscribers().remove(current);
+        if (entityToSubscribe instanceof Topic) {
+            toggleTopicSubscription((Topic) entityToSubscribe);
         } else {
-            entityToSubscribe.getSubscribers().add(current);
+            toggleBranchSubscription((Branch) entityToSubscribe);
         }
-        saveChanges(entityToSubscribe);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Collection<JCUser> getAllowedSubscribers(SubscriptionAwareEntity entity){
+    public List<JCUser> getAllowedSubscribers(SubscriptionAwareEntity entity, SubscriptionAwareEntity excluded,
+                                              long lastId, int maxResults) {
+        List<Long> subscriberIds;
         if (entity instanceof Topic) {
-            return this.topicDao.getAllowedSubscribers(entity);
+            subscriberIds = topicDao.getAllowedSubscriberIds((Topic) entity, (Branch) excluded, lastId, maxResults);
         } else if (entity instanceof Post) {
-            Post post = (Post) entity;
-            Collection<JCUser> subscribers = topicDao.getAllowedSubscribers(post.getTopic());
-            /* Can't return Collections.emptyList() or Arrays.asList(...)
-                may be problems with removing elements
-            */
-            if (subscribers.contains(post.getUserCreated())) {
-                List<JCUser> arrayList = new ArrayList<>(1);
-                arrayList.add(post.getUserCreated());
-                return arrayList;
-            } else {
-                return new ArrayList<>();
-            }
-        } else{
-            return this.branchDao.getAllowedSubscribers(entity);
+            subscriberIds = getAllowedAuthorId((Post) entity, lastId);
+        } else {
+            subscriberIds = branchDao.getAllowedSubscriberIds((Branch) entity, (Topic) excluded, lastId, maxResults);
         }
+        /* Can't return Collections.emptyList(), callers remove filtered subscribers from the page */
+        if (subscriberIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return userDao.getRecipientsByIds(subscriberIds);
     }
 
-    private void saveChanges(SubscriptionAwareEntity entityToSubscribe) {
-        if (entityToSubscribe instanceof Topic) {
-            topicDao.saveOrUpdate((Topic) entityToSubscribe);
-        } else {
-            branchDao.saveOrUpdate((Branch) entityToSubscribe);
+    /**
+     * Only the author of the post is notified about its changes if he is subscribed to the topic. Allowed topic
+     * subscribers are read starting right before the author, so the first one found tells whether it's him.
+     *
+     * @param post   changed post
+     * @param lastId id of the last subscriber of the previous page
+     * @return list with id of the post author or an empty list
+     */
+    private List<Long> getAllowedAuthorId(Post post, long lastId) {
+        long authorId = post.getUserCreated().getId();
+        if (authorId <= lastId) {
+            return Collections.emptyList();
         }
+        List<Long> subscriberIds = topicDao.getAllowedSubscriberIds(post.getTopic(), null, authorId - 1, 1);
+        return subscriberIds.contains(authorId) ? subscriberIds : Collections.<Long>emptyList();
     }
 
     @Override
     public void subscribe(SubscriptionAwareEntity entityToSubscribe) {
         JCUser current = userService.getCurrentUser();
-        if (!(entityToSubscribe.getSubscribers().contains(current))) {
-            entityToSubscribe.getSubscribers().add(current);
-            saveChanges(entityToSubscribe);
+        if (entityToSubscribe instanceof Topic) {
+            Topic topic = (Topic) entityToSubscribe;
+            if (!topicDao.isSubscribed(topic, current)) {
+                topicDao.addSubscriber(topic, current);
+            }
+        } else {
+            Branch branch = (Branch) entityToSubscribe;
+            if (!branchDao.isSubscribed(branch, current)) {
+                branchDao.addSubscriber(branch, current);
+            }
         }
     }
 }
@@ -14,8 +14,6 @@
  */
 package org.jtalks.jcommune.service.transactional;
 
-import org.jtalks.common.model.permissions.GeneralPermission;
-import org.jtalks.common.security.SecurityService;
 import org.jtalks.common.service.security.SecurityContextFacade;
 import org.jtalks.jcommune.model.dao.BranchDao;
 import org.jtalks.jcommune.model.dao.PostDao;
@@ -29,7 +27,10 @@ import org.jtalks.jcommune.plugin.api.filters.TypeFilter;
 import org.jtalks.jcommune.plugin.api.service.PluginTopicModificationService;
 import org.jtalks.jcommune.service.*;
 import org.jtalks.jcommune.plugin.api.exceptions.NotFoundException;
+import org.jtalks.jcommune.service.nontransactional.BranchStatisticsCacheService;
+import org.jtalks.jcommune.service.nontransactional.FeedCacheService;
 import org.jtalks.jcommune.service.nontransactional.NotificationService;
+import org.jtalks.jcommune.service.nontransactional.PostDraftStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.access.AccessDeniedException;
@@ -58,7 +59,6 @@ public class TransactionalTopicModificationService implements TopicModificationS
     private TopicDao dao;
     private PostDao postDao;
 
-    private SecurityService securityService;
     private BranchDao branchDao;
     private NotificationService notificationService;
     private SubscriptionService subscriptionService;
@@ -71,12 +71,14 @@ public class TransactionalTopicModificationService implements TopicModificationS
     private TopicFetchService topicFetchService;
     private TopicDraftService topicDraftService;
     private PluginLoader pluginLoader;
+    private PostDraftStore postDraftStore;
+    private FeedCacheService feedCacheService;
+    private BranchStatisticsCacheService branchStatisticsCacheService;
 
     /**
      * Create an instance of User entity based service.
      *
      * @param dao                   data access object, which should be able do all CRUD operations with topic entity
-     * @param securityService       {@link org.jtalks.common.security.SecurityService} for retrieving current user
      * @param branchDao             used for checking branch existence
      * @param notificationService   to send email notifications on topic updates to subscribed users
      * @param subscriptionService   for subscribing user on topic if notification enabled
@@ -87,8 +89,11 @@ public class TransactionalTopicModificationService implements TopicModificationS
      * @param branchLastPostService to refresh the last post of the branch
      * @param lastReadPostService   to work with last read post
      * @param postDao               to store newly created posts in database
+     * @param postDraftStore        to discard autosaved content of published drafts
+     * @param feedCacheService      to evict RSS feeds showing changed posts
+     * @param branchStatisticsCacheService to evict numbers of topics and posts of changed branches
      */
-    public TransactionalTopicModificationService(TopicDao dao, SecurityService securityService,
+    public TransactionalTopicModificationService(TopicDao dao,
                                                  BranchDao branchDao,
                                                  NotificationService notificationService,
                                                  SubscriptionService subscriptionService,
@@ -101,9 +106,11 @@ public class TransactionalTopicModificationService implements TopicModificationS
                                                  PostDao postDao,
                                                  TopicFetchService topicFetchService,
                                                  TopicDraftService topicDraftService,
-                                                 PluginLoader pluginLoader) {
+                                                 PluginLoader pluginLoader,
+                                                 PostDraftStore postDraftStore,
+                                                 FeedCacheService feedCacheService,
+                                                 BranchStatisticsCacheService branchStatisticsCacheService) {
         this.dao = dao;
-        this.securityService = securityService;
         this.branchDao = branchDao;
         this.notificationService = notificationService;
         this.subscriptionService = subscriptionService;
@@ -117,6 +124,9 @@ public class TransactionalTopicModificationService implements TopicModificationS
         this.topicFetchService = topicFetchService;
         this.topicDraftService = topicDraftService;
         this.pluginLoader = pluginLoader;
+        this.postDraftStore = postDraftStore;
+        this.feedCacheService = feedCacheService;
+        this.branchStatisticsCacheService = branchStatisticsCacheService;
     }
 
     /**
@@ -134,6 +144,7 @@ public class TransactionalTopicModificationService implements TopicModificationS
         Post answer = new Post(currentUser, answerBody);
         topic.addPost(answer);
         topic.removeDraftOfUser(currentUser);
+        postDraftStore.discard(currentUser, topic);
         if (currentUser.isAutosubscribe()){
             subscriptionService.subscribe(topic);
         }
@@ -145,9 +156,10 @@ public class TransactionalTopicModificationService implements TopicModificationS
         branchDao.saveOrUpdate(branch);
         dao.saveOrUpdate(topic);
 
-        securityService.createAclBuilder().grant(GeneralPermission.WRITE).to(currentUser).on(answer).flush();
         notificationService.subscribedEntityChanged(topic);
         userService.notifyAndMarkNewlyMentionedUsers(answer);
+        feedCacheService.evict(branch);
+        branchStatisticsCacheService.evict(branch.getId());
         logger.debug("New post in topic. Topic id={}, Post id={}, Post author={}",
                 new Object[]{topicId, answer.getId(), currentUser.getUsername()});
 
@@ -200,8 +212,6 @@ public class TransactionalTopicModificationService implements TopicModificationS
         dao.saveOrUpdate(topic);
         branchDao.saveOrUpdate(branch);
 
-        securityService.createAclBuilder().grant(GeneralPermission.WRITE).to(currentUser).on(topic).flush();
-        securityService.createAclBuilder().grant(GeneralPermission.WRITE).to(currentUser).on(first).flush();
         notificationService.sendNotificationAboutTopicCreated(topic);
         if (currentUser.isAutosubscribe()){
             subscriptionService.subscribe(topic);
@@ -210,6 +220,8 @@ public class TransactionalTopicModificationService implements TopicModificationS
         userService.notifyAndMarkNewlyMentionedUsers(topic.getFirstPost());
         lastReadPostService.markTopicAsRead(topic);
         topicDraftService.deleteDraft();
+        feedCacheService.evict(branch);
+        branchStatisticsCacheService.evict(branch.getId());
         logger.debug("Created new topic id={}, branch id={}, author={}",
                 new Object[]{topic.getId(), topic.getBranch().getId(), currentUser.getUsername()});
         return topic;
@@ -287,10 +299,10 @@ public class TransactionalTopicModificationService implements TopicModificationS
      *                               <a href="http://jtalks.org/display/jcommune/1.1+Larks">here</a>.
      */
     @Override
-    @PreAuthorize("(hasPermission(#topic.id, 'TOPIC', 'GeneralPermission.WRITE') and " +
-            "hasPermission(#topic.branch.id, 'BRANCH', 'BranchPermission.EDIT_OWN_POSTS')) or " +
-            "(not hasPermission(#topic.id, 'TOPIC', 'GeneralPermission.WRITE') and " +
-            "hasPermission(#topic.branch.id, 'BRANCH', 'BranchPermission.EDIT_OTHERS_POSTS'))")
+    @PreAuthorize("(hasPermission(#topic.branch.id, 'BRANCH', 'BranchPermission.EDIT_OWN_POSTS') and " +
+            "#topic.topicStarter.username == principal.username) or " +
+            "(hasPermission(#topic.branch.id, 'BRANCH', 'BranchPermission.EDIT_OTHERS_POSTS') and " +
+            "#topic.topicStarter.username != principal.username)")
     public void updateTopic(Topic topic, Poll poll) {
         if (topic.isCodeReview()) {
             throw new AccessDeniedException("It is not allowed to edit Code Review!");
@@ -301,6 +313,7 @@ public class TransactionalTopicModificationService implements TopicModificationS
             topic.getPoll().setEndingDate(poll.getEndingDate());
         }
         dao.saveOrUpdate(topic);
+        feedCacheService.evict(topic.getBranch());
         logger.debug("Topic id={} updated", topic.getId());
     }
 
@@ -355,8 +368,9 @@ public class TransactionalTopicModificationService implements TopicModificationS
         if (branchLastPostFromDeletedTopic) {
             branchLastPostService.refreshLastPostInBranch(branch);
         }
+        feedCacheService.evict(branch);
+        branchStatisticsCacheService.evict(branch.getId());
 
-        securityService.deleteFromAcl(Topic.class, topic.getId());
         return branch;
     }
 
@@ -378,7 +392,10 @@ public class TransactionalTopicModificationService implements TopicModificationS
         if (topicPosts.contains(sourceBranch.getLastPost())) {
             branchLastPostService.refreshLastPostInBranch(sourceBranch);
         }
-        branchLastPostService.refreshLastPostInBranch(targetBranch);
+        branchLastPostService.updateLastPostInBranch(targetBranch, topic.getLastPost());
+        feedCacheService.evict(sourceBranch);
+        feedCacheService.evict(targetBranch);
+        branchStatisticsCacheService.evict(sourceBranch.getId(), targetBranch.getId());
 
         notificationService.sendNotificationAboutTopicMoved(topic);
 
@@ -16,7 +16,6 @@ package org.jtalks.jcommune.service.transactional;
 
 import org.apache.commons.lang.RandomStringUtils;
 import org.joda.time.DateTime;
-import org.joda.time.Period;
 import org.jtalks.common.model.dao.GroupDao;
 import org.jtalks.common.model.entity.Group;
 import org.jtalks.common.model.entity.User;
@@ -43,11 +42,11 @@ import org.jtalks.jcommune.service.nontransactional.Base64Wrapper;
 import org.jtalks.jcommune.service.nontransactional.EncryptionService;
 import org.jtalks.jcommune.service.nontransactional.MailService;
 import org.jtalks.jcommune.service.nontransactional.MentionedUsers;
+import org.jtalks.jcommune.service.nontransactional.SignatureCacheService;
 import org.jtalks.jcommune.service.security.AdministrationGroup;
 import org.jtalks.jcommune.service.util.AuthenticationStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import javax.servlet.http.HttpServletRequest;
@@ -82,6 +81,7 @@ public class TransactionalUserService extends AbstractTransactionalEntityService
     private final Base64Wrapper base64Wrapper;
     //Important, use for every password creation.
     private final EncryptionService encryptionService;
+    private final SignatureCacheService signatureCacheService;
 
     /**
      * Create an instance of User entity based service
@@ -94,6 +94,7 @@ public class TransactionalUserService extends AbstractTransactionalEntityService
      * @param encryptionService encodes user password before store
      * @param postDao           for operations with posts
      * @param authenticator     for user authentication
+     * @param signatureCacheService to drop rendered signature when profile is changed
      */
     public TransactionalUserService(UserDao dao,
                                     GroupDao groupDao,
@@ -102,7 +103,8 @@ public class TransactionalUserService extends AbstractTransactionalEntityService
                                     Base64Wrapper base64Wrapper,
                                     EncryptionService encryptionService,
                                     PostDao postDao,
-                                    Authenticator authenticator) {
+                                    Authenticator authenticator,
+                                    SignatureCacheService signatureCacheService) {
         super(dao);
         this.groupDao = groupDao;
         this.securityService = securityService;
@@ -111,6 +113,7 @@ public class TransactionalUserService extends AbstractTransactionalEntityService
         this.encryptionService = encryptionService;
         this.postDao = postDao;
         this.authenticator = authenticator;
+        this.signatureCacheService = signatureCacheService;
     }
 
     /**
@@ -196,6 +199,7 @@ public class TransactionalUserService extends AbstractTransactionalEntityService
         editedUser.setLocation(editedUserProfileInfo.getLocation());
 
         this.getDao().saveOrUpdate(editedUser);
+        signatureCacheService.evict(editedUser.getId());
         LOGGER.info("Updated user profile. Username: {}", editedUser.getUsername());
         return editedUser;
     }
@@ -290,21 +294,6 @@ public class TransactionalUserService extends AbstractTransactionalEntityService
         }
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    @Scheduled(cron = "0 * * * * *") // cron expression: invoke every hour at :00 min, e.g. 11:00, 12:00 and so on
-    public void deleteUnactivatedAccountsByTimer() {
-        DateTime today = new DateTime();
-        for (JCUser user : this.getDao().getNonActivatedUsers()) {
-            Period period = new Period(user.getRegistrationDate(), today);
-            if (period.getDays() > 0) {
-                this.getDao().delete(user);
-            }
-        }
-    }
-
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.jmx;
+
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Statistics;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+public class CacheStatisticsServiceTest {
+    private static final String QUERY_REGION = "query.sections";
+    private static final String APPLICATION_CACHE = "branchStatisticsCache";
+
+    private org.hibernate.stat.Statistics hibernateStatistics;
+    private Statistics cacheStatistics;
+    private CacheStatisticsService service;
+
+    @BeforeMethod
+    public void init() {
+        SessionFactory sessionFactory = mock(SessionFactory.class);
+        hibernateStatistics = mock(org.hibernate.stat.Statistics.class);
+        when(sessionFactory.getStatistics()).thenReturn(hibernateStatistics);
+        Ehcache cache = mock(Ehcache.class);
+        cacheStatistics = mock(Statistics.class);
+        when(cache.getName()).thenReturn(APPLICATION_CACHE);
+        when(cache.getStatistics()).thenReturn(cacheStatistics);
+
+        service = new CacheStatisticsService();
+        service.setSessionFactory(sessionFactory);
+        service.setApplicationCaches(Arrays.asList(cache));
+    }
+
+    @Test
+    public void regionNamesShouldIncludeHibernateRegionsAndApplicationCaches() {
+        when(hibernateStatistics.getSecondLevelCacheRegionNames()).thenReturn(new String[]{QUERY_REGION});
+
+        assertEquals(service.getCacheRegionNames(), new String[]{QUERY_REGION, APPLICATION_CACHE});
+    }
+
+    @Test
+    public void statisticsOfHibernateRegionShouldBeTakenFromHibernate() {
+        SecondLevelCacheStatistics regionStatistics = mock(SecondLevelCacheStatistics.class);
+        when(regionStatistics.getHitCount()).thenReturn(10L);
+        when(regionStatistics.getMissCount()).thenReturn(2L);
+        when(regionStatistics.getElementCountInMemory()).thenReturn(3L);
+        when(hibernateStatistics.getSecondLevelCacheStatistics(QUERY_REGION)).thenReturn(regionStatistics);
+
+        assertEquals(service.getCacheRegionHitCount(QUERY_REGION), 10L);
+        assertEquals(service.getCacheRegionMissCount(QUERY_REGION), 2L);
+        assertEquals(service.getCacheRegionElementCount(QUERY_REGION), 3L);
+    }
+
+    @Test
+    public void statisticsOfApplicationCacheShouldBeTakenFromEhcache() {
+        when(cacheStatistics.getCacheHits()).thenReturn(7L);
+        when(cacheStatistics.getCacheMisses()).thenReturn(1L);
+        when(cacheStatistics.getObjectCount()).thenReturn(5L);
+
+        assertEquals(service.getCacheRegionHitCount(APPLICATION_CACHE), 7L);
+        assertEquals(service.getCacheRegionMissCount(APPLICATION_CACHE), 1L);
+        assertEquals(service.getCacheRegionElementCount(APPLICATION_CACHE), 5L);
+    }
+
+    @Test
+    public void statisticsOfUnknownRegionShouldBeZero() {
+        assertEquals(service.getCacheRegionHitCount("unknown"), 0L);
+        assertEquals(service.getCacheRegionMissCount("unknown"), 0L);
+        assertEquals(service.getCacheRegionElementCount("unknown"), 0L);
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.*;
+
+public class AfterCommitTest {
+    private Runnable action;
+
+    @BeforeMethod
+    public void setUp() {
+        action = mock(Runnable.class);
+    }
+
+    @Test
+    public void actionShouldBeRunRightAwayWithoutTransaction() {
+        AfterCommit.run(action);
+
+        verify(action).run();
+    }
+
+    @Test
+    public void actionShouldBeRunAfterCommitOfTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            AfterCommit.run(action);
+
+            verify(action, never()).run();
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+            verify(action).run();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void actionShouldNotBeRunIfTransactionIsRolledBack() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            AfterCommit.run(action);
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+            verify(action, never()).run();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+}
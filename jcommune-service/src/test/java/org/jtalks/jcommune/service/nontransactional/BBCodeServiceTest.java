@@ -23,7 +23,12 @@ import org.testng.annotations.Test;
 
 import static java.util.Collections.list;
 import static java.util.Collections.singletonList;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
@@ -57,6 +62,40 @@ public class BBCodeServiceTest {
         assertEquals(result,"<a  href=\"/jcommune/users/16\" class=\"mentioned-user\" >[user]e-c[/user]</a>");
     }
 
+    @Test
+    public void signatureShouldBeRenderedAndCachedIfItIsNotInCache() {
+        SignatureCacheService signatureCache = mock(SignatureCacheService.class);
+        service.setSignatureCache(signatureCache);
+        JCUser user = new JCUser("name", "mail", "pass");
+        user.setSignature("[b]signature[/b]");
+
+        String result = service.convertSignatureToHtml(user);
+
+        assertEquals(result, service.convertBbToHtml("[b]signature[/b]"));
+        verify(signatureCache).putSignatureHtml(user, result);
+    }
+
+    @Test
+    public void signatureShouldBeTakenFromCacheIfItIsAlreadyRendered() {
+        SignatureCacheService signatureCache = mock(SignatureCacheService.class);
+        service.setSignatureCache(signatureCache);
+        JCUser user = new JCUser("name", "mail", "pass");
+        user.setSignature("[b]signature[/b]");
+        when(signatureCache.getSignatureHtml(user)).thenReturn("cached");
+
+        assertEquals(service.convertSignatureToHtml(user), "cached");
+        verify(signatureCache, never()).putSignatureHtml(any(JCUser.class), anyString());
+    }
+
+    @Test
+    public void emptySignatureShouldNotBeRendered() {
+        SignatureCacheService signatureCache = mock(SignatureCacheService.class);
+        service.setSignatureCache(signatureCache);
+
+        assertEquals(service.convertSignatureToHtml(new JCUser("name", "mail", "pass")), "");
+        verifyZeroInteractions(signatureCache);
+    }
+
     @Test(dataProvider = "validBBCodes")
     public void testBBCodeConversion(String bbCode, String expectedResult) {
         assertEquals(service.convertBbToHtml(bbCode), expectedResult);
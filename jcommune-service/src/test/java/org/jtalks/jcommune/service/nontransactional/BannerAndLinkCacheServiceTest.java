@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import org.jtalks.jcommune.model.entity.Banner;
+import org.jtalks.jcommune.model.entity.BannerPosition;
+import org.jtalks.jcommune.model.entity.ExternalLink;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+public class BannerAndLinkCacheServiceTest {
+    private Ehcache cache;
+    private BannerAndLinkCacheService cacheService;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        cache = mock(Ehcache.class);
+        cacheService = new BannerAndLinkCacheService(cache);
+    }
+
+    @Test
+    public void bannersShouldBeNullIfThereIsNoSnapshot() {
+        assertNull(cacheService.getBanners());
+    }
+
+    @Test
+    public void putBannersShouldCacheTheirSnapshot() {
+        Map<String, Banner> banners = new HashMap<>();
+        banners.put(BannerPosition.TOP.toString(), new Banner(BannerPosition.TOP, "top"));
+
+        Map<String, Banner> snapshot = cacheService.putBanners(banners, cacheService.getVersion());
+
+        assertEquals(snapshot, banners);
+        assertSame(getPutElement().getObjectValue(), snapshot);
+        assertEquals(getPutElement().getObjectKey(), BannerAndLinkCacheService.BANNERS);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void snapshotOfBannersShouldNotBeModifiable() {
+        Map<String, Banner> snapshot = cacheService.putBanners(new HashMap<String, Banner>(), 0);
+
+        snapshot.put(BannerPosition.TOP.toString(), new Banner());
+    }
+
+    @Test
+    public void snapshotShouldNotDependOnLoadedCollection() {
+        List<ExternalLink> links = new ArrayList<>(Arrays.asList(new ExternalLink()));
+
+        List<ExternalLink> snapshot = cacheService.putExternalLinks(links, 0);
+        links.clear();
+
+        assertEquals(snapshot.size(), 1);
+    }
+
+    @Test
+    public void cachedLinksShouldBeReturned() {
+        List<ExternalLink> links = Collections.singletonList(new ExternalLink());
+        when(cache.get(BannerAndLinkCacheService.EXTERNAL_LINKS))
+                .thenReturn(new Element(BannerAndLinkCacheService.EXTERNAL_LINKS, links));
+
+        assertSame(cacheService.getExternalLinks(), links);
+    }
+
+    @Test
+    public void snapshotLoadedBeforeEvictionShouldNotBeCached() {
+        long version = cacheService.getVersion();
+        cacheService.evictExternalLinks();
+
+        cacheService.putExternalLinks(Collections.<ExternalLink>emptyList(), version);
+
+        verify(cache, never()).put(any(Element.class));
+    }
+
+    @Test
+    public void evictionShouldRemoveSnapshotAndChangeVersion() {
+        long version = cacheService.getVersion();
+
+        cacheService.evictBanners();
+
+        verify(cache).remove(BannerAndLinkCacheService.BANNERS);
+        assertEquals(cacheService.getVersion(), version + 1);
+    }
+
+    @Test
+    public void evictionInTransactionShouldBeAppliedAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cacheService.evictBanners();
+
+            verify(cache, never()).remove(any(String.class));
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+            verify(cache).remove(BannerAndLinkCacheService.BANNERS);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private Element getPutElement() {
+        ArgumentCaptor<Element> put = ArgumentCaptor.forClass(Element.class);
+        verify(cache).put(put.capture());
+        return put.getValue();
+    }
+}
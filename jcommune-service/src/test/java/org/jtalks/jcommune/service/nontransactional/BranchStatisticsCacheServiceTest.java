@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.Serializable;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+
+public class BranchStatisticsCacheServiceTest {
+    private static final long BRANCH_ID = 7L;
+
+    private Ehcache cache;
+    private BranchStatisticsCacheService cacheService;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        cache = mock(Ehcache.class);
+        cacheService = new BranchStatisticsCacheService(cache);
+    }
+
+    @Test
+    public void countsShouldBeNullIfTheyAreNotCached() {
+        assertNull(cacheService.getPostsCount(BRANCH_ID));
+        assertNull(cacheService.getTopicsCount(BRANCH_ID));
+    }
+
+    @Test
+    public void putPostsCountShouldCacheItByBranchId() {
+        cacheService.putPostsCount(BRANCH_ID, 42, cacheService.getVersion());
+
+        Element element = getPutElement();
+        when(cache.get((Serializable) element.getObjectKey())).thenReturn(element);
+        assertEquals(cacheService.getPostsCount(BRANCH_ID), Integer.valueOf(42));
+    }
+
+    @Test
+    public void putTopicsCountShouldCacheItByBranchId() {
+        cacheService.putTopicsCount(BRANCH_ID, 5, cacheService.getVersion());
+
+        Element element = getPutElement();
+        when(cache.get((Serializable) element.getObjectKey())).thenReturn(element);
+        assertEquals(cacheService.getTopicsCount(BRANCH_ID), Integer.valueOf(5));
+    }
+
+    @Test
+    public void postsAndTopicsCountsShouldHaveDifferentKeys() {
+        cacheService.putPostsCount(BRANCH_ID, 42, 0);
+        cacheService.putTopicsCount(BRANCH_ID, 5, 0);
+
+        ArgumentCaptor<Element> put = ArgumentCaptor.forClass(Element.class);
+        verify(cache, times(2)).put(put.capture());
+        assertFalse(put.getAllValues().get(0).getObjectKey().equals(put.getAllValues().get(1).getObjectKey()));
+    }
+
+    @Test
+    public void countLoadedBeforeEvictionShouldNotBeCached() {
+        long version = cacheService.getVersion();
+        cacheService.evict(BRANCH_ID);
+
+        cacheService.putPostsCount(BRANCH_ID, 42, version);
+
+        verify(cache, never()).put(any(Element.class));
+    }
+
+    @Test
+    public void evictionShouldRemoveCountsOfEachBranchAndChangeVersion() {
+        long version = cacheService.getVersion();
+
+        cacheService.evict(BRANCH_ID, BRANCH_ID + 1);
+
+        verify(cache, times(4)).remove(anyString());
+        assertEquals(cacheService.getVersion(), version + 1);
+    }
+
+    @Test
+    public void evictionInTransactionShouldBeAppliedAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cacheService.evict(BRANCH_ID);
+
+            verify(cache, never()).remove(anyString());
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+            verify(cache, times(2)).remove(anyString());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private Element getPutElement() {
+        ArgumentCaptor<Element> put = ArgumentCaptor.forClass(Element.class);
+        verify(cache).put(put.capture());
+        return put.getValue();
+    }
+}
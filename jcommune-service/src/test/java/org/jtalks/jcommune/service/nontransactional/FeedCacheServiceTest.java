@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import org.jtalks.common.model.entity.Section;
+import org.jtalks.jcommune.model.entity.Branch;
+import org.jtalks.jcommune.service.dto.CachedFeed;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.Serializable;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+public class FeedCacheServiceTest {
+    private static final String URL = "http://localhost:8080/forum/topics/recent.rss";
+    private static final String VISIBILITY = "anonymous";
+    private static final String GENERATION = "forum#1";
+
+    private Ehcache cache;
+    private FeedCacheService cacheService;
+    private CachedFeed feed = new CachedFeed(new byte[]{1, 2, 3}, "application/rss+xml", 1000L);
+    private Branch branch;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        cache = mock(Ehcache.class);
+        cacheService = new FeedCacheService(cache);
+        branch = new Branch("branch", "description");
+        branch.setId(7L);
+        Section section = new Section("section");
+        section.setId(3L);
+        branch.setSection(section);
+    }
+
+    @Test
+    public void feedShouldBeNullIfItIsNotCached() {
+        assertNull(cacheService.getFeed(GENERATION, URL, VISIBILITY));
+    }
+
+    @Test
+    public void putFeedShouldCacheItByGenerationUrlAndVisibility() {
+        cacheService.putFeed(GENERATION, URL, VISIBILITY, feed);
+
+        Element element = getPutElement();
+        when(cache.get((Serializable) element.getObjectKey())).thenReturn(element);
+        assertSame(cacheService.getFeed(GENERATION, URL, VISIBILITY), feed);
+        assertNull(cacheService.getFeed("forum#2", URL, VISIBILITY));
+    }
+
+    @Test
+    public void feedsOfDifferentReadersShouldHaveDifferentKeys() {
+        cacheService.putFeed(GENERATION, URL, VISIBILITY, feed);
+        cacheService.putFeed(GENERATION, URL, "user", feed);
+
+        ArgumentCaptor<Element> put = ArgumentCaptor.forClass(Element.class);
+        verify(cache, times(2)).put(put.capture());
+        assertFalse(put.getAllValues().get(0).getObjectKey().equals(put.getAllValues().get(1).getObjectKey()));
+    }
+
+    @Test
+    public void currentGenerationShouldBeReturnedIfItIsCached() {
+        when(cache.get(anyString())).thenReturn(new Element("generation:forum", GENERATION));
+
+        assertEquals(cacheService.getGeneration(FeedCacheService.FORUM_FEED), GENERATION);
+        verify(cache, never()).putIfAbsent(any(Element.class));
+    }
+
+    @Test
+    public void newGenerationShouldBeStartedIfFeedWasEvicted() {
+        String generation = cacheService.getGeneration(FeedCacheService.FORUM_FEED);
+
+        ArgumentCaptor<Element> started = ArgumentCaptor.forClass(Element.class);
+        verify(cache).putIfAbsent(started.capture());
+        assertEquals(started.getValue().getObjectValue(), generation);
+        assertTrue(generation.startsWith(FeedCacheService.FORUM_FEED));
+    }
+
+    @Test
+    public void generationStartedConcurrentlyShouldWin() {
+        when(cache.putIfAbsent(any(Element.class))).thenReturn(new Element("generation:forum", GENERATION));
+
+        assertEquals(cacheService.getGeneration(FeedCacheService.FORUM_FEED), GENERATION);
+    }
+
+    @Test
+    public void generationsOfDifferentFeedsShouldDiffer() {
+        String forum = cacheService.getGeneration(FeedCacheService.FORUM_FEED);
+        String branchFeed = cacheService.getGeneration(FeedCacheService.getBranchFeed(7));
+
+        assertFalse(forum.equals(branchFeed));
+    }
+
+    @Test
+    public void evictionShouldRemoveGenerationsOfFeedsShowingTheBranchOnly() {
+        cacheService.evict(branch);
+
+        verify(cache).remove("generation:" + FeedCacheService.FORUM_FEED);
+        verify(cache).remove("generation:" + FeedCacheService.getBranchFeed(7));
+        verify(cache).remove("generation:" + FeedCacheService.getSectionFeed(3));
+        verify(cache, never()).removeAll();
+    }
+
+    @Test
+    public void evictionInTransactionShouldBeAppliedAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cacheService.evict(branch);
+
+            verify(cache, never()).remove(anyString());
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+            verify(cache, times(3)).remove(anyString());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private Element getPutElement() {
+        ArgumentCaptor<Element> put = ArgumentCaptor.forClass(Element.class);
+        verify(cache).put(put.capture());
+        return put.getValue();
+    }
+}
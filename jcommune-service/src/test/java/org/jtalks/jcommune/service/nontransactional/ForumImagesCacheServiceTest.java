@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import org.jtalks.common.model.entity.Component;
+import org.jtalks.jcommune.service.dto.ForumImages;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.testng.Assert.*;
+
+public class ForumImagesCacheServiceTest {
+    private static final String LOGO_PROPERTY = "jcommune.logo";
+    private static final String LOGO = "logo";
+    private static final byte[] DEFAULT_LOGO = new byte[]{1, 2, 3};
+
+    @Mock
+    private ImageService logoService;
+    @Mock
+    private Ehcache cache;
+
+    private ForumImagesCacheService cacheService;
+
+    @BeforeMethod
+    public void init() {
+        initMocks(this);
+        when(logoService.getDefaultImage()).thenReturn(DEFAULT_LOGO);
+        cacheService = new ForumImagesCacheService(cache, Collections.singletonMap(LOGO_PROPERTY, logoService));
+    }
+
+    @Test
+    public void imagesShouldBeNullIfThereIsNoSnapshot() {
+        assertNull(cacheService.getImages());
+    }
+
+    @Test
+    public void getImagesShouldReturnCachedSnapshot() {
+        ForumImages images = cacheService.putImages(null, null, cacheService.getVersion());
+        when(cache.get((Serializable) ForumImagesCacheService.IMAGES))
+                .thenReturn(new Element(ForumImagesCacheService.IMAGES, images));
+
+        assertSame(cacheService.getImages(), images);
+    }
+
+    @Test
+    public void putImagesShouldDecodeImageFromComponentProperty() {
+        Component component = new Component();
+        component.addProperty(LOGO_PROPERTY, LOGO);
+        Date modificationTime = new Date(1000);
+
+        ForumImages images = cacheService.putImages(component, modificationTime, cacheService.getVersion());
+
+        assertEquals(images.getImage(LOGO_PROPERTY), new Base64Wrapper().decodeB64Bytes(LOGO));
+        assertEquals(images.getModificationTime(), modificationTime);
+        assertSame(getPutElement().getObjectValue(), images);
+        assertEquals(getPutElement().getObjectKey(), ForumImagesCacheService.IMAGES);
+    }
+
+    @Test
+    public void putImagesShouldUseDefaultImageWhenPropertyIsEmpty() {
+        Component component = new Component();
+        component.addProperty(LOGO_PROPERTY, "");
+
+        ForumImages images = cacheService.putImages(component, null, cacheService.getVersion());
+
+        assertEquals(images.getImage(LOGO_PROPERTY), DEFAULT_LOGO);
+        assertNull(images.getModificationTime());
+    }
+
+    @Test
+    public void putImagesShouldUseDefaultImageWhenThereIsNoComponent() {
+        ForumImages images = cacheService.putImages(null, null, cacheService.getVersion());
+
+        assertEquals(images.getImage(LOGO_PROPERTY), DEFAULT_LOGO);
+    }
+
+    @Test
+    public void imagesLoadedBeforeEvictionShouldNotBeCached() {
+        long version = cacheService.getVersion();
+        cacheService.evict();
+
+        ForumImages images = cacheService.putImages(null, null, version);
+
+        assertEquals(images.getImage(LOGO_PROPERTY), DEFAULT_LOGO);
+        verify(cache, never()).put(any(Element.class));
+    }
+
+    @Test
+    public void evictShouldRemoveImagesOnlyAfterTransactionIsCommitted() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cacheService.evict();
+
+            verify(cache, never()).remove(any(Serializable.class));
+            for (TransactionSynchronization synchronization
+                    : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+            verify(cache).remove((Serializable) ForumImagesCacheService.IMAGES);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void eTagShouldDependOnImageContent() {
+        ForumImages defaultImages = cacheService.putImages(null, null, 0);
+        Component component = new Component();
+        component.addProperty(LOGO_PROPERTY, LOGO);
+        ForumImages customImages = cacheService.putImages(component, null, 0);
+
+        assertNotNull(defaultImages.getETag(LOGO_PROPERTY));
+        assertFalse(defaultImages.getETag(LOGO_PROPERTY).equals(customImages.getETag(LOGO_PROPERTY)));
+        assertEquals(cacheService.putImages(null, null, 0).getETag(LOGO_PROPERTY),
+                defaultImages.getETag(LOGO_PROPERTY));
+    }
+
+    private Element getPutElement() {
+        ArgumentCaptor<Element> captor = ArgumentCaptor.forClass(Element.class);
+        verify(cache).put(captor.capture());
+        return captor.getValue();
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import org.jtalks.jcommune.model.dto.ForumStructure;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+public class ForumStructureCacheServiceTest {
+    private Ehcache cache;
+    private ForumStructureCacheService cacheService;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        cache = mock(Ehcache.class);
+        cacheService = new ForumStructureCacheService(cache);
+    }
+
+    @Test
+    public void structureShouldBeNullIfItIsNotCached() {
+        assertNull(cacheService.getStructure());
+    }
+
+    @Test
+    public void putStructureShouldCacheIt() {
+        ForumStructure structure = new ForumStructure(Collections.<ForumStructure.SectionNode>emptyList());
+
+        cacheService.putStructure(structure, cacheService.getVersion());
+
+        assertSame(getPutElement().getObjectValue(), structure);
+        assertEquals(getPutElement().getObjectKey(), ForumStructureCacheService.STRUCTURE);
+    }
+
+    @Test
+    public void visibleBranchIdsShouldBeCachedByGroupsSignature() {
+        Set<Long> snapshot = cacheService.putVisibleBranchIds("1,2", Arrays.asList(1L, 2L), 0);
+
+        assertEquals(getPutElement().getObjectKey(), ForumStructureCacheService.VISIBLE_BRANCHES_PREFIX + "1,2");
+        assertSame(getPutElement().getObjectValue(), snapshot);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void visibleBranchIdsShouldNotBeModifiable() {
+        Set<Long> snapshot = cacheService.putVisibleBranchIds("1", new ArrayList<Long>(), 0);
+
+        snapshot.add(1L);
+    }
+
+    @Test
+    public void cachedVisibleBranchIdsShouldBeReturned() {
+        Set<Long> ids = Collections.singleton(1L);
+        String key = ForumStructureCacheService.VISIBLE_BRANCHES_PREFIX + "anonymous";
+        when(cache.get(key)).thenReturn(new Element(key, ids));
+
+        assertSame(cacheService.getVisibleBranchIds("anonymous"), ids);
+    }
+
+    @Test
+    public void dataLoadedBeforeEvictionShouldNotBeCached() {
+        long version = cacheService.getVersion();
+        cacheService.evict();
+
+        cacheService.putVisibleBranchIds("1", Collections.<Long>emptyList(), version);
+        cacheService.putStructure(new ForumStructure(Collections.<ForumStructure.SectionNode>emptyList()), version);
+
+        verify(cache, never()).put(any(Element.class));
+    }
+
+    @Test
+    public void evictionShouldRemoveAllDataAndChangeVersion() {
+        long version = cacheService.getVersion();
+
+        cacheService.evict();
+
+        verify(cache).removeAll();
+        assertEquals(cacheService.getVersion(), version + 1);
+    }
+
+    @Test
+    public void evictionInTransactionShouldBeAppliedAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cacheService.evict();
+
+            verify(cache, never()).removeAll();
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+            verify(cache).removeAll();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void structureSnapshotShouldNotDependOnLoadedLists() {
+        List<ForumStructure.BranchNode> branches = new ArrayList<>();
+        branches.add(new ForumStructure.BranchNode(1L, "branch"));
+        List<ForumStructure.SectionNode> sections = new ArrayList<>();
+        sections.add(new ForumStructure.SectionNode(1L, "section", branches));
+
+        ForumStructure structure = new ForumStructure(sections);
+        branches.clear();
+        sections.clear();
+
+        assertEquals(structure.getSections().size(), 1);
+        assertEquals(structure.getBranches().size(), 1);
+    }
+
+    private Element getPutElement() {
+        ArgumentCaptor<Element> put = ArgumentCaptor.forClass(Element.class);
+        verify(cache).put(put.capture());
+        return put.getValue();
+    }
+}
@@ -19,6 +19,7 @@ import net.sf.image4j.codec.ico.ICOEncoder;
 import org.apache.commons.codec.binary.Base64;
 import org.jtalks.jcommune.service.exceptions.ImageProcessException;
 import org.springframework.mock.web.MockMultipartFile;
+import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -27,9 +28,16 @@ import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 import static org.mockito.MockitoAnnotations.initMocks;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 /**
  * @author Eugeny Batov
@@ -41,8 +49,12 @@ public class ImageConverterTest {
 
     private static final int ICON_MAX_WIDTH = 32;
     private static final int ICON_MAX_HEIGHT = 32;
+    /** Decoding of 10,000x10,000 image at full size takes 400 MB */
+    private static final int HUGE_IMAGE_SIZE = 10000;
+    private static final long HUGE_IMAGE_MEMORY_CEILING = 32 * 1024 * 1024;
 
     private ImageConverter imageConverter;
+    private ForkJoinPool scalingPool;
     private byte[] byteArray = new byte[]{1, 2, 3};
 
 
@@ -50,6 +62,12 @@ public class ImageConverterTest {
     public void init() throws IOException {
         initMocks(this);
         imageConverter = new ImageConverter("jpeg", BufferedImage.TYPE_INT_RGB, DEFAULT_MAX_WIDTH, DEFAULT_MAX_HEIGHT);
+        scalingPool = new ForkJoinPool();
+    }
+
+    @AfterClass
+    public void shutdownScalingPool() {
+        scalingPool.shutdown();
     }
 
     @Test(expectedExceptions = {IllegalArgumentException.class})
@@ -245,4 +263,145 @@ public class ImageConverterTest {
         assertEquals(image.getHeight(), maxSize);
         assertEquals(image.getWidth(), ImageConverter.MINIMUM_ICO_WIDTH);
     }
+
+    @Test
+    public void bigImageShouldBeDecodedWithSubsamplingNotSmallerThanMaximumSize() throws Exception {
+        ImageConverter converter = ImageConverter.createConverter("png", DEFAULT_MAX_WIDTH, DEFAULT_MAX_HEIGHT);
+        byte[] bytes = toPng(new BufferedImage(2000, 1000, BufferedImage.TYPE_INT_ARGB));
+
+        BufferedImage image = converter.convertByteArrayToImage(bytes);
+
+        assertEquals(image.getWidth(), 100);
+        assertEquals(image.getHeight(), 50);
+    }
+
+    @Test
+    public void bigImageShouldBeResizedToMaximumSizeAfterSubsampledDecoding() throws Exception {
+        ImageConverter converter = ImageConverter.createConverter("png", DEFAULT_MAX_WIDTH, DEFAULT_MAX_HEIGHT);
+        byte[] bytes = toPng(new BufferedImage(3000, 1300, BufferedImage.TYPE_INT_ARGB));
+
+        BufferedImage image = converter.resizeImage(converter.convertByteArrayToImage(bytes),
+                BufferedImage.TYPE_INT_ARGB);
+
+        assertEquals(image.getWidth(), 100);
+        assertEquals(image.getHeight(), 44);
+    }
+
+    @Test(dataProvider = "subsamplingData")
+    public void testGetSubsampling(int width, int height, int expected) {
+        ImageConverter converter = ImageConverter.createConverter("png", DEFAULT_MAX_WIDTH, DEFAULT_MAX_HEIGHT);
+
+        assertEquals(converter.getSubsampling(width, height), expected);
+    }
+
+    @DataProvider
+    private Object[][] subsamplingData() {
+        return new Object[][]{
+                {50, 50, 1}, {100, 100, 1}, {199, 199, 1}, {200, 150, 2}, {150, 350, 3}, {10000, 10000, 100}
+        };
+    }
+
+    @Test(dataProvider = "scaledImageSizes")
+    public void resizedImageShouldKeepColorOfUniformImage(int size, int imageType) {
+        ImageConverter converter = new ImageConverter("png", imageType, size, size);
+        converter.setScalingPool(scalingPool);
+        BufferedImage image = new BufferedImage(size * 2, size * 2, BufferedImage.TYPE_INT_ARGB);
+        int color = 0xFF336699;
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, color);
+            }
+        }
+
+        BufferedImage resized = converter.resizeImage(image, imageType);
+
+        assertEquals(resized.getWidth(), size);
+        assertEquals(resized.getRGB(0, 0), color);
+        assertEquals(resized.getRGB(size - 1, size - 1), color);
+        assertEquals(resized.getRGB(size / 2, size / 3), color);
+    }
+
+    @DataProvider
+    private Object[][] scaledImageSizes() {
+        return new Object[][]{
+                {DEFAULT_MAX_WIDTH, BufferedImage.TYPE_INT_RGB},
+                {DEFAULT_MAX_WIDTH, BufferedImage.TYPE_3BYTE_BGR},
+                // big enough to be scaled in several threads
+                {1024, BufferedImage.TYPE_INT_ARGB}
+        };
+    }
+
+    @Test
+    public void hugeImageShouldBeDecodedWithinMemoryCeiling() throws Exception {
+        ImageConverter converter = ImageConverter.createConverter("png", DEFAULT_MAX_WIDTH, DEFAULT_MAX_HEIGHT);
+        byte[] bytes = uniformPng(HUGE_IMAGE_SIZE, HUGE_IMAGE_SIZE, new byte[]{0x33, 0x66, (byte) 0x99, (byte) 0xFF});
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        boolean allocationsMeasured = threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = allocationsMeasured
+                ? ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threadId) : 0;
+
+        BufferedImage image = converter.resizeImage(converter.convertByteArrayToImage(bytes),
+                BufferedImage.TYPE_INT_ARGB);
+
+        assertEquals(image.getWidth(), DEFAULT_MAX_WIDTH);
+        assertEquals(image.getHeight(), DEFAULT_MAX_HEIGHT);
+        assertEquals(image.getRGB(DEFAULT_MAX_WIDTH / 2, DEFAULT_MAX_HEIGHT / 2), 0xFF336699);
+        if (allocationsMeasured) {
+            long allocated = ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threadId)
+                    - allocatedBefore;
+            assertTrue(allocated < HUGE_IMAGE_MEMORY_CEILING, allocated + " bytes were allocated while decoding");
+        }
+    }
+
+    /**
+     * Writes PNG of the uniform image row by row, so even huge images need memory only for one row
+     *
+     * @param width  width of the image
+     * @param height height of the image
+     * @param rgba   color of all the pixels
+     * @return PNG data
+     */
+    private byte[] uniformPng(int width, int height, byte[] rgba) throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        png.write(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream headerData = new DataOutputStream(header);
+        headerData.writeInt(width);
+        headerData.writeInt(height);
+        headerData.write(new byte[]{8, 6, 0, 0, 0}); // 8 bits per channel, RGBA, no interlacing
+        writePngChunk(png, "IHDR", header.toByteArray());
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(data, new Deflater(Deflater.BEST_SPEED))) {
+            byte[] row = new byte[1 + width * rgba.length]; // the first byte is filter type, 0 means no filter
+            for (int x = 0; x < width; x++) {
+                System.arraycopy(rgba, 0, row, 1 + x * rgba.length, rgba.length);
+            }
+            for (int y = 0; y < height; y++) {
+                deflater.write(row);
+            }
+        }
+        writePngChunk(png, "IDAT", data.toByteArray());
+        writePngChunk(png, "IEND", new byte[0]);
+        return png.toByteArray();
+    }
+
+    private void writePngChunk(OutputStream out, String type, byte[] data) throws IOException {
+        DataOutputStream chunk = new DataOutputStream(out);
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        chunk.writeInt(data.length);
+        chunk.write(typeBytes);
+        chunk.write(data);
+        chunk.writeInt((int) crc.getValue());
+    }
+
+    private byte[] toPng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", baos);
+        return baos.toByteArray();
+    }
 }
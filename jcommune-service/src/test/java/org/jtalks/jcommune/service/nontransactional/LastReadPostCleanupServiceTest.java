@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import org.joda.time.DateTime;
+import org.jtalks.jcommune.model.dao.LastReadPostDao;
+import org.mockito.Mock;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class LastReadPostCleanupServiceTest {
+    private static final int CHUNK_SIZE = 2;
+    private static final long USER_ID = 1L;
+
+    @Mock
+    private LastReadPostDao lastReadPostDao;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private LastReadPostCleanupService service;
+    private DateTime markTime;
+
+    @BeforeMethod
+    public void setUp() {
+        initMocks(this);
+        service = new LastReadPostCleanupService(lastReadPostDao, new SyncTaskExecutor(),
+                transactionManager, CHUNK_SIZE);
+        markTime = new DateTime();
+    }
+
+    @Test
+    public void deleteLastReadPostsCoveredByMarkShouldDeleteByChunks() {
+        when(lastReadPostDao.deleteLastReadPostsFor(USER_ID, markTime, CHUNK_SIZE)).thenReturn(2, 2, 1);
+
+        service.deleteLastReadPostsCoveredByMark(USER_ID, markTime);
+
+        verify(lastReadPostDao, times(3)).deleteLastReadPostsFor(USER_ID, markTime, CHUNK_SIZE);
+        verify(transactionManager, times(3)).commit(any(TransactionStatus.class));
+    }
+
+    @Test
+    public void deleteLastReadPostsCoveredByMarkShouldStopWhenNothingIsDeleted() {
+        when(lastReadPostDao.deleteLastReadPostsFor(USER_ID, markTime, CHUNK_SIZE)).thenReturn(0);
+
+        service.deleteLastReadPostsCoveredByMark(USER_ID, markTime);
+
+        verify(lastReadPostDao, times(1)).deleteLastReadPostsFor(USER_ID, markTime, CHUNK_SIZE);
+    }
+
+    @Test
+    public void deleteLastReadPostsCoveredByMarkShouldNotFailWhenDeletionFails() {
+        when(lastReadPostDao.deleteLastReadPostsFor(USER_ID, markTime, CHUNK_SIZE))
+                .thenThrow(new RuntimeException());
+
+        service.deleteLastReadPostsCoveredByMark(USER_ID, markTime);
+
+        verify(transactionManager).rollback(any(TransactionStatus.class));
+    }
+
+    @Test
+    public void deleteLastReadPostsCoveredByMarkShouldWaitForCommitOfCurrentTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.deleteLastReadPostsCoveredByMark(USER_ID, markTime);
+
+            verifyZeroInteractions(lastReadPostDao);
+            TransactionSynchronizationManager.getSynchronizations().get(0).afterCommit();
+            verify(lastReadPostDao).deleteLastReadPostsFor(USER_ID, markTime, CHUNK_SIZE);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+}
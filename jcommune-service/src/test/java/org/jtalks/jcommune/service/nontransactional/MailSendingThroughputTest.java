@@ -0,0 +1,140 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.tools.generic.EscapeTool;
+import org.jtalks.common.model.entity.Property;
+import org.jtalks.jcommune.model.dao.PropertyDao;
+import org.jtalks.jcommune.model.entity.Branch;
+import org.jtalks.jcommune.model.entity.JCUser;
+import org.jtalks.jcommune.model.entity.JCommuneProperty;
+import org.jtalks.jcommune.service.dto.EntityToDtoConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.support.ReloadableResourceBundleMessageSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.jtalks.jcommune.model.entity.JCommuneProperty.SENDING_NOTIFICATIONS_ENABLED;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Sends notifications to many subscribers through the real {@link MailSender} and the in-process
+ * SMTP stand-in and reports how many mails per second were sent.
+ */
+public class MailSendingThroughputTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MailSendingThroughputTest.class);
+    private static final int SUBSCRIBERS = 1000;
+    private static final String PROPERTY_NAME = "property";
+
+    private SmtpStandInServer smtpServer;
+    private MailService service;
+    private Branch branch;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        smtpServer = new SmtpStandInServer().start();
+        MailSender sender = new MailSender();
+        sender.setHost("localhost");
+        sender.setPort(smtpServer.getPort());
+        sender.setDefaultEncoding("UTF-8");
+        Properties mailProperties = new Properties();
+        mailProperties.setProperty("mail.smtp.localhost", "localhost");
+        sender.setJavaMailProperties(mailProperties);
+
+        PropertyDao propertyDao = mock(PropertyDao.class);
+        when(propertyDao.getByName(PROPERTY_NAME)).thenReturn(new Property(PROPERTY_NAME, "true"));
+        JCommuneProperty notificationsEnabledProperty = SENDING_NOTIFICATIONS_ENABLED;
+        notificationsEnabledProperty.setPropertyDao(propertyDao);
+        notificationsEnabledProperty.setName(PROPERTY_NAME);
+
+        VelocityEngine velocityEngine = new VelocityEngine();
+        velocityEngine.setProperty("resource.loader", "class");
+        velocityEngine.setProperty("class.resource.loader.class",
+                "org.apache.velocity.runtime.resource.loader.ClasspathResourceLoader");
+        velocityEngine.setProperty("runtime.log.logsystem.class", "org.apache.velocity.runtime.log.NullLogSystem");
+        ReloadableResourceBundleMessageSource messageSource = new ReloadableResourceBundleMessageSource();
+        messageSource.setBasename("classpath:/org/jtalks/jcommune/service/bundle/TemplatesMessages");
+        service = new MailService(sender, "forum@jtalks.org", velocityEngine, messageSource,
+                notificationsEnabledProperty, new EscapeTool(), mock(EntityToDtoConverter.class));
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setServerName("coolsite.com");
+        request.setServerPort(8080);
+        request.setContextPath("/forum");
+        RequestContextHolder.setRequestAttributes(new ServletWebRequest(request));
+
+        branch = new Branch("branch", "description");
+        branch.setId(1);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        smtpServer.stop();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void bulkNotificationShouldReuseConnectionForBatch() throws Exception {
+        List<JCUser> subscribers = createSubscribers(SUBSCRIBERS);
+
+        long started = System.nanoTime();
+        service.sendUpdatesOnSubscription(subscribers, branch);
+        long tookMillis = Math.max(1, (System.nanoTime() - started) / 1000000);
+
+        assertEquals(smtpServer.getMessages().size(), SUBSCRIBERS);
+        assertEquals(smtpServer.getConnectionCount(), SUBSCRIBERS / MailService.BULK_SEND_BATCH_SIZE);
+        assertTrue(smtpServer.getMessages().get(SUBSCRIBERS - 1).contains("user" + (SUBSCRIBERS - 1)));
+        LOGGER.info("Bulk notification: {} mails in {} ms, {} mails/s",
+                new Object[]{SUBSCRIBERS, tookMillis, SUBSCRIBERS * 1000L / tookMillis});
+    }
+
+    @Test
+    public void notificationPerRecipientShouldConnectForEachMail() throws Exception {
+        int recipients = SUBSCRIBERS / 10;
+        List<JCUser> subscribers = createSubscribers(recipients);
+
+        long started = System.nanoTime();
+        for (JCUser subscriber : subscribers) {
+            service.sendUpdatesOnSubscription(subscriber, branch);
+        }
+        long tookMillis = Math.max(1, (System.nanoTime() - started) / 1000000);
+
+        assertEquals(smtpServer.getMessages().size(), recipients);
+        assertEquals(smtpServer.getConnectionCount(), recipients);
+        LOGGER.info("Notification per recipient: {} mails in {} ms, {} mails/s",
+                new Object[]{recipients, tookMillis, recipients * 1000L / tookMillis});
+    }
+
+    private List<JCUser> createSubscribers(int count) {
+        List<JCUser> subscribers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            subscribers.add(new JCUser("user" + i, "user" + i + "@jtalks.org", "password"));
+        }
+        return subscribers;
+    }
+}
@@ -26,6 +26,8 @@ import org.jtalks.jcommune.plugin.api.exceptions.NotFoundException;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.springframework.context.support.ReloadableResourceBundleMessageSource;
 import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
@@ -42,11 +44,15 @@ import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimeMultipart;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.jtalks.jcommune.model.entity.JCommuneProperty.SENDING_NOTIFICATIONS_ENABLED;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 /**
@@ -306,9 +312,138 @@ public class MailServiceTest {
         verify(sender, never()).send(any(MimeMessage.class));
     }
 
+    @Test
+    public void bulkSubscriptionNotificationShouldBeSentInOneBatch() throws Exception {
+        enableEmailNotifications();
+        List<List<MimeMessage>> batches = captureBatches();
+        JCUser first = new JCUser("first", "first@bar.zz", PASSWORD);
+        JCUser second = new JCUser("<second>", "second@bar.zz", PASSWORD);
+
+        service.sendUpdatesOnSubscription(Arrays.asList(first, second), branch);
+
+        assertEquals(batches.size(), 1);
+        assertEquals(batches.get(0).size(), 2);
+        MimeMessage firstMessage = batches.get(0).get(0);
+        MimeMessage secondMessage = batches.get(0).get(1);
+        assertEquals(((InternetAddress) firstMessage.getRecipients(Message.RecipientType.TO)[0]).getAddress(),
+                "first@bar.zz");
+        assertEquals(((InternetAddress) secondMessage.getRecipients(Message.RecipientType.TO)[0]).getAddress(),
+                "second@bar.zz");
+        assertTrue(firstMessage.getSubject().contains("title Branch"));
+        assertTrue(getMimeMailBody(firstMessage).contains("first"));
+        assertFalse(getMimeMailBody(firstMessage).contains(MailService.RECIPIENT_NAME_PLACEHOLDER));
+        assertTrue(getMimeMailBody(firstMessage).contains("http://coolsite.com:1234/forum/branches/" + branchId));
+        assertTrue(getMimeMailBody(secondMessage).contains("<second>"));
+        assertFalse(getMimeMailBody(secondMessage).contains("first"));
+        assertTrue(getMimeMailHtml(secondMessage).contains("&lt;second&gt;"));
+    }
+
+    @Test
+    public void bulkNotificationShouldBeLocalizedForEachRecipient() throws Exception {
+        enableEmailNotifications();
+        List<List<MimeMessage>> batches = captureBatches();
+        JCUser english = new JCUser("english", "en@bar.zz", PASSWORD);
+        english.setLanguage(Language.ENGLISH);
+        JCUser russian = new JCUser("russian", "ru@bar.zz", PASSWORD);
+        russian.setLanguage(Language.RUSSIAN);
+
+        service.sendUpdatesOnSubscription(Arrays.asList(english, russian), topic);
+
+        assertEquals(batches.get(0).size(), 2);
+        assertEquals(batches.get(0).get(0).getSubject(), messageSource.getMessage("subscriptionNotification.subject",
+                new Object[]{}, Language.ENGLISH.getLocale()) + ": title Topic");
+        assertEquals(batches.get(0).get(1).getSubject(), messageSource.getMessage("subscriptionNotification.subject",
+                new Object[]{}, Language.RUSSIAN.getLocale()) + ": title Topic");
+        assertTrue(getMimeMailBody(batches.get(0).get(1)).contains(messageSource.getMessage(
+                "subscriptionNotification.content", new Object[]{}, Language.RUSSIAN.getLocale())));
+    }
+
+    @Test
+    public void bulkNotificationShouldBeSplitIntoBatches() throws Exception {
+        enableEmailNotifications();
+        List<List<MimeMessage>> batches = captureBatches();
+        List<JCUser> recipients = new ArrayList<>();
+        for (int i = 0; i <= MailService.BULK_SEND_BATCH_SIZE; i++) {
+            recipients.add(new JCUser("user" + i, "user" + i + "@bar.zz", PASSWORD));
+        }
+
+        service.sendTopicCreationMail(recipients, topic);
+
+        assertEquals(batches.size(), 2);
+        assertEquals(batches.get(0).size(), MailService.BULK_SEND_BATCH_SIZE);
+        assertEquals(batches.get(1).size(), 1);
+        assertTrue(getMimeMailBody(batches.get(1).get(0)).contains("user" + MailService.BULK_SEND_BATCH_SIZE));
+    }
+
+    @Test
+    public void bulkTopicMovedMailShouldContainRecipientName() throws Exception {
+        enableEmailNotifications();
+        List<List<MimeMessage>> batches = captureBatches();
+
+        service.sendTopicMovedMail(Arrays.asList(user), topic, "admin", Topic.class);
+
+        String body = getMimeMailBody(batches.get(0).get(0));
+        assertTrue(body.contains(USERNAME));
+        assertTrue(body.contains("admin"));
+        assertTrue(body.contains("http://coolsite.com:1234/forum/topics/" + topicId));
+    }
+
+    @Test
+    public void bulkNotificationShouldNotBeSentIfNotificationsAreDisabled() throws Exception {
+        disableEmailNotifications();
+        List<List<MimeMessage>> batches = captureBatches();
+
+        service.sendUpdatesOnSubscription(Arrays.asList(user), topic);
+
+        assertTrue(batches.isEmpty());
+    }
+
+    /**
+     * Makes mail sender create a new message each time and collects messages passed to it at once.
+     *
+     * @return list to be filled with batches of messages sent
+     */
+    private List<List<MimeMessage>> captureBatches() {
+        final List<List<MimeMessage>> batches = new ArrayList<>();
+        when(sender.createMimeMessage()).thenAnswer(new Answer<MimeMessage>() {
+            @Override
+            public MimeMessage answer(InvocationOnMock invocation) {
+                return new MimeMessage((Session) null);
+            }
+        });
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                List<MimeMessage> batch = new ArrayList<>();
+                for (Object argument : invocation.getArguments()) {
+                    if (argument instanceof MimeMessage[]) {
+                        batch.addAll(Arrays.asList((MimeMessage[]) argument));
+                    } else {
+                        batch.add((MimeMessage) argument);
+                    }
+                }
+                batches.add(batch);
+                return null;
+            }
+        }).when(sender).send(Matchers.<MimeMessage[]>anyVararg());
+        return batches;
+    }
+
     private String getMimeMailBody() throws IOException, MessagingException {
-        return ((MimeMultipart) ((MimeMultipart) ((MimeMultipart) captor.getValue().getContent()).getBodyPart(0).
-                getDataHandler().getContent()).getBodyPart(0).getDataHandler().getContent()).getBodyPart(0).
+        return getMimeMailBody(captor.getValue());
+    }
+
+    private String getMimeMailBody(MimeMessage message) throws IOException, MessagingException {
+        return getMimeMailAlternative(message, 0);
+    }
+
+    private String getMimeMailHtml(MimeMessage message) throws IOException, MessagingException {
+        return getMimeMailAlternative(message, 1);
+    }
+
+    private String getMimeMailAlternative(MimeMessage message, int index) throws IOException, MessagingException {
+        return ((MimeMultipart) ((MimeMultipart) ((MimeMultipart) message.getContent()).getBodyPart(0).
+                getDataHandler().getContent()).getBodyPart(0).getDataHandler().getContent()).getBodyPart(index).
                 getDataHandler().getContent().toString();//sorry
     }
 
@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import org.apache.velocity.app.VelocityEngine;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertTrue;
+
+public class MailTemplateRendererTest {
+    private static final String TEMPLATE = "org/jtalks/jcommune/service/templates/plaintext/passwordRecovery.vm";
+
+    private VelocityEngine velocityEngine;
+    private MailTemplateRenderer renderer;
+
+    @BeforeMethod
+    public void setUp() {
+        velocityEngine = new VelocityEngine();
+        velocityEngine.setProperty("resource.loader", "class");
+        velocityEngine.setProperty("class.resource.loader.class",
+                "org.apache.velocity.runtime.resource.loader.ClasspathResourceLoader");
+        velocityEngine.setProperty("runtime.log.logsystem.class", "org.apache.velocity.runtime.log.NullLogSystem");
+        velocityEngine = spy(velocityEngine);
+        renderer = new MailTemplateRenderer(velocityEngine);
+    }
+
+    @Test
+    public void templateShouldBeLoadedOnlyOnce() {
+        renderer.render(TEMPLATE, modelFor("first"));
+        renderer.render(TEMPLATE, modelFor("second"));
+
+        verify(velocityEngine, times(1)).getTemplate(TEMPLATE, "UTF-8");
+    }
+
+    @Test
+    public void cachedTemplateShouldBeMergedWithEachModel() {
+        renderer.render(TEMPLATE, modelFor("first"));
+        String second = renderer.render(TEMPLATE, modelFor("second"));
+
+        assertTrue(second.contains("second"));
+        assertTrue(second.contains("new_password"));
+    }
+
+    private Map<String, Object> modelFor(String name) {
+        Map<String, Object> model = new HashMap<>();
+        model.put("name", name);
+        model.put("newPassword", "new_password");
+        return model;
+    }
+}
@@ -17,20 +17,25 @@ package org.jtalks.jcommune.service.nontransactional;
 
 import org.jtalks.jcommune.model.entity.Branch;
 import org.jtalks.jcommune.model.entity.JCUser;
+import org.jtalks.jcommune.model.entity.SubscriptionAwareEntity;
 import org.jtalks.jcommune.model.entity.Topic;
 import org.jtalks.jcommune.plugin.api.PluginLoader;
 import org.jtalks.jcommune.service.SubscriptionService;
 import org.jtalks.jcommune.service.UserService;
 import org.jtalks.jcommune.service.exceptions.MailingFailedException;
+import org.mockito.ArgumentMatcher;
 import org.mockito.Mock;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
-import static org.testng.Assert.assertEquals;
 
 /**
  * @author Evgeniy Naumenko
@@ -77,14 +82,11 @@ public class NotificationServiceTest {
         topic.getSubscribers().add(user1);
         topic.getSubscribers().add(user2);
         topic.getSubscribers().add(currentUser);
-        when(subscriptionService.getAllowedSubscribers(topic)).thenReturn(topic.getSubscribers());
+        givenSubscribers(topic, null, user1, user2, currentUser);
 
         service.subscribedEntityChanged(topic);
 
-        verify(mailService, times(2)).sendUpdatesOnSubscription(any(JCUser.class), eq(topic));
-        verify(mailService).sendUpdatesOnSubscription(user1, topic);
-        verify(mailService).sendUpdatesOnSubscription(user2, topic);
-        assertEquals(topic.getSubscribers().size(), 2);
+        verify(mailService).sendUpdatesOnSubscription(recipients(user1, user2), eq(topic));
     }
 
     @Test
@@ -92,15 +94,11 @@ public class NotificationServiceTest {
         branch.getSubscribers().add(user1);
         branch.getSubscribers().add(user2);
         branch.getSubscribers().add(currentUser);
-        when(subscriptionService.getAllowedSubscribers(branch)).thenReturn(branch.getSubscribers());
+        givenSubscribers(branch, null, user1, user2, currentUser);
 
         service.subscribedEntityChanged(branch);
 
-        verify(mailService, times(2)).sendUpdatesOnSubscription(
-                any(JCUser.class), eq(branch));
-        verify(mailService).sendUpdatesOnSubscription(user1, branch);
-        verify(mailService).sendUpdatesOnSubscription(user2, branch);
-        assertEquals(branch.getSubscribers().size(), 2);
+        verify(mailService).sendUpdatesOnSubscription(recipients(user1, user2), eq(branch));
     }
 
     @Test
@@ -108,11 +106,11 @@ public class NotificationServiceTest {
         when(userService.getCurrentUser()).thenReturn(user1);
         topic.getSubscribers().add(user1);
         topic.getSubscribers().add(user2);
-        when(subscriptionService.getAllowedSubscribers(topic)).thenReturn(topic.getSubscribers());
+        givenSubscribers(topic, null, user1, user2);
 
         service.subscribedEntityChanged(topic);
 
-        verify(mailService).sendUpdatesOnSubscription(user2, topic);
+        verify(mailService).sendUpdatesOnSubscription(recipients(user2), eq(topic));
         verifyNoMoreInteractions(mailService);
     }
 
@@ -121,11 +119,11 @@ public class NotificationServiceTest {
         when(userService.getCurrentUser()).thenReturn(user1);
         branch.getSubscribers().add(user1);
         branch.getSubscribers().add(user2);
-        when(subscriptionService.getAllowedSubscribers(branch)).thenReturn(branch.getSubscribers());
+        givenSubscribers(branch, null, user1, user2);
 
         service.subscribedEntityChanged(branch);
 
-        verify(mailService).sendUpdatesOnSubscription(user2, branch);
+        verify(mailService).sendUpdatesOnSubscription(recipients(user2), eq(branch));
         verifyNoMoreInteractions(mailService);
     }
 
@@ -149,12 +147,12 @@ public class NotificationServiceTest {
         branch.getSubscribers().add(user2);
         branch.getSubscribers().add(user3);
 
-        when(subscriptionService.getAllowedSubscribers(branch)).thenReturn(branch.getSubscribers());
+        givenSubscribers(branch, topic, user2, user3);
 
         service.sendNotificationAboutTopicMoved(topic);
 
-        verify(mailService).sendTopicMovedMail(user2, topic, currentUser.getUsername(), Branch.class);
-        verify(mailService).sendTopicMovedMail(user3, topic, currentUser.getUsername(), Branch.class);
+        verify(mailService).sendTopicMovedMail(
+                recipients(user2, user3), eq(topic), eq(currentUser.getUsername()), eq(Branch.class));
     }
 
     @Test
@@ -163,12 +161,14 @@ public class NotificationServiceTest {
         branch.getSubscribers().add(currentUser);
         branch.getSubscribers().add(user2);
 
-        when(subscriptionService.getAllowedSubscribers(branch)).thenReturn(branch.getSubscribers());
+        givenSubscribers(branch, topic, currentUser, user2);
 
         service.sendNotificationAboutTopicMoved(topic);
 
-        verify(mailService, never()).sendTopicMovedMail(currentUser, topic, currentUser.getUsername(), Branch.class);
-        verify(mailService).sendTopicMovedMail(user2, topic, currentUser.getUsername(), Branch.class);
+        verify(mailService, never()).sendTopicMovedMail(
+                recipientsWith(currentUser), eq(topic), eq(currentUser.getUsername()), eq(Branch.class));
+        verify(mailService).sendTopicMovedMail(
+                recipients(user2), eq(topic), eq(currentUser.getUsername()), eq(Branch.class));
     }
 
     @Test
@@ -177,12 +177,12 @@ public class NotificationServiceTest {
         topic.getSubscribers().add(user1);
         topic.getSubscribers().add(user2);
 
-        when(subscriptionService.getAllowedSubscribers(topic)).thenReturn(topic.getSubscribers());
+        givenSubscribers(topic, null, user1, user2);
 
         service.sendNotificationAboutTopicMoved(topic);
 
-        verify(mailService).sendTopicMovedMail(user1, topic, currentUser.getUsername(), Topic.class);
-        verify(mailService).sendTopicMovedMail(user2, topic, currentUser.getUsername(), Topic.class);
+        verify(mailService).sendTopicMovedMail(
+                recipients(user1, user2), eq(topic), eq(currentUser.getUsername()), eq(Topic.class));
     }
 
     @Test
@@ -191,12 +191,14 @@ public class NotificationServiceTest {
         topic.getSubscribers().add(user1);
         topic.getSubscribers().add(currentUser);
 
-        when(subscriptionService.getAllowedSubscribers(topic)).thenReturn(topic.getSubscribers());
+        givenSubscribers(topic, null, user1, currentUser);
 
         service.sendNotificationAboutTopicMoved(topic);
 
-        verify(mailService, never()).sendTopicMovedMail(currentUser, topic, currentUser.getUsername(), Topic.class);
-        verify(mailService).sendTopicMovedMail(user1, topic, currentUser.getUsername(), Topic.class);
+        verify(mailService, never()).sendTopicMovedMail(
+                recipientsWith(currentUser), eq(topic), eq(currentUser.getUsername()), eq(Topic.class));
+        verify(mailService).sendTopicMovedMail(
+                recipients(user1), eq(topic), eq(currentUser.getUsername()), eq(Topic.class));
     }
 
     @Test
@@ -206,15 +208,20 @@ public class NotificationServiceTest {
         topic.getSubscribers().add(user1);
         branch.getSubscribers().add(user2);
 
-        when(subscriptionService.getAllowedSubscribers(branch)).thenReturn(branch.getSubscribers());
-        when(subscriptionService.getAllowedSubscribers(topic)).thenReturn(topic.getSubscribers());
+        // subscribers of the topic are skipped by the query for branch subscribers
+        givenSubscribers(branch, topic, user2);
+        givenSubscribers(topic, null, user1);
 
         service.sendNotificationAboutTopicMoved(topic);
 
-        verify(mailService).sendTopicMovedMail(user1, topic, currentUser.getUsername(), Topic.class);
-        verify(mailService, never()).sendTopicMovedMail(user1, topic, currentUser.getUsername(), Branch.class);
-        verify(mailService, never()).sendTopicMovedMail(user2, topic, currentUser.getUsername(), Topic.class);
-        verify(mailService).sendTopicMovedMail(user2, topic, currentUser.getUsername(), Branch.class);
+        verify(mailService).sendTopicMovedMail(
+                recipients(user1), eq(topic), eq(currentUser.getUsername()), eq(Topic.class));
+        verify(mailService, never()).sendTopicMovedMail(
+                recipientsWith(user1), eq(topic), eq(currentUser.getUsername()), eq(Branch.class));
+        verify(mailService, never()).sendTopicMovedMail(
+                recipientsWith(user2), eq(topic), eq(currentUser.getUsername()), eq(Topic.class));
+        verify(mailService).sendTopicMovedMail(
+                recipients(user2), eq(topic), eq(currentUser.getUsername()), eq(Branch.class));
 
     }
 
@@ -232,7 +239,7 @@ public class NotificationServiceTest {
         topic.getSubscribers().add(user1);
         topic.getSubscribers().add(user2);
 
-        when(subscriptionService.getAllowedSubscribers(topic)).thenReturn(topic.getSubscribers());
+        givenSubscribers(topic, branch, user1, user2);
 
         service.sendNotificationAboutRemovingTopic(topic);
 
@@ -246,7 +253,7 @@ public class NotificationServiceTest {
         topic.getSubscribers().add(currentUser);
         topic.getSubscribers().add(user1);
 
-        when(subscriptionService.getAllowedSubscribers(topic)).thenReturn(topic.getSubscribers());
+        givenSubscribers(topic, branch, currentUser, user1);
 
         service.sendNotificationAboutRemovingTopic(topic);
 
@@ -260,12 +267,11 @@ public class NotificationServiceTest {
         branch.getSubscribers().add(user1);
         branch.getSubscribers().add(user2);
 
-        when(subscriptionService.getAllowedSubscribers(branch)).thenReturn(branch.getSubscribers());
+        givenSubscribers(branch, null, user1, user2);
 
         service.sendNotificationAboutRemovingTopic(topic);
 
-        verify(mailService).sendUpdatesOnSubscription(user1, branch);
-        verify(mailService).sendUpdatesOnSubscription(user2, branch);
+        verify(mailService).sendUpdatesOnSubscription(recipients(user1, user2), eq(branch));
     }
 
     @Test
@@ -274,12 +280,12 @@ public class NotificationServiceTest {
         branch.getSubscribers().add(currentUser);
         branch.getSubscribers().add(user1);
 
-        when(subscriptionService.getAllowedSubscribers(branch)).thenReturn(branch.getSubscribers());
+        givenSubscribers(branch, null, currentUser, user1);
 
         service.sendNotificationAboutRemovingTopic(topic);
 
-        verify(mailService, never()).sendUpdatesOnSubscription(currentUser, branch);
-        verify(mailService).sendUpdatesOnSubscription(user1, branch);
+        verify(mailService, never()).sendUpdatesOnSubscription(recipientsWith(currentUser), eq(branch));
+        verify(mailService).sendUpdatesOnSubscription(recipients(user1), eq(branch));
 
     }
 
@@ -291,28 +297,111 @@ public class NotificationServiceTest {
         topic.getSubscribers().add(user2);
         topic.getSubscribers().add(user3);
 
-        when(subscriptionService.getAllowedSubscribers(branch)).thenReturn(branch.getSubscribers());
-        when(subscriptionService.getAllowedSubscribers(topic)).thenReturn(topic.getSubscribers());
+        givenSubscribers(branch, null, user1, user2);
+        // subscribers of the branch are skipped by the query for topic subscribers
+        givenSubscribers(topic, branch, user3);
 
         service.sendNotificationAboutRemovingTopic(topic);
 
-        verify(mailService).sendUpdatesOnSubscription(user1, branch);
+        verify(mailService).sendUpdatesOnSubscription(recipients(user1, user2), eq(branch));
         verify(mailService, never()).sendRemovingTopicMail(user1, topic, currentUser.getUsername());
         verify(mailService, never()).sendRemovingTopicMail(user2, topic, currentUser.getUsername());
-        verify(mailService).sendUpdatesOnSubscription(user2, branch);
         verify(mailService).sendRemovingTopicMail(user3, topic, currentUser.getUsername());
-        verify(mailService, never()).sendUpdatesOnSubscription(user3, branch);
+        verify(mailService, never()).sendUpdatesOnSubscription(recipientsWith(user3), eq(branch));
     }
     
     @Test
     public void notificationMailShouldBeSendAfterTopicWasCreated() {
         branch.getSubscribers().add(user1);
         branch.getSubscribers().add(currentUser);
-        when(subscriptionService.getAllowedSubscribers(branch)).thenReturn(branch.getSubscribers());
+        givenSubscribers(branch, null, user1, currentUser);
         
         service.sendNotificationAboutTopicCreated(topic);
         
-        verify(mailService, times(1)).sendTopicCreationMail(user1, topic);
+        verify(mailService).sendTopicCreationMail(recipients(user1), eq(topic));
         verifyNoMoreInteractions(mailService);
     }
+
+    @Test
+    public void subscribersShouldBeNotifiedPageByPage() {
+        List<JCUser> firstPage = new ArrayList<>();
+        for (int i = 1; i <= NotificationService.SUBSCRIBERS_PAGE_SIZE; i++) {
+            firstPage.add(subscriber(i));
+        }
+        JCUser last = subscriber(NotificationService.SUBSCRIBERS_PAGE_SIZE + 1);
+        when(subscriptionService.getAllowedSubscribers(branch, null, 0L, NotificationService.SUBSCRIBERS_PAGE_SIZE))
+                .thenReturn(firstPage);
+        when(subscriptionService.getAllowedSubscribers(branch, null, NotificationService.SUBSCRIBERS_PAGE_SIZE,
+                NotificationService.SUBSCRIBERS_PAGE_SIZE)).thenReturn(new ArrayList<>(Arrays.asList(last)));
+
+        service.subscribedEntityChanged(branch);
+
+        verify(mailService).sendUpdatesOnSubscription(
+                recipients(firstPage.toArray(new JCUser[firstPage.size()])), eq(branch));
+        verify(mailService).sendUpdatesOnSubscription(recipients(last), eq(branch));
+    }
+
+    @Test
+    public void nextPageShouldStartAfterSubscriberFilteredOut() {
+        List<JCUser> firstPage = new ArrayList<>();
+        for (int i = 1; i < NotificationService.SUBSCRIBERS_PAGE_SIZE; i++) {
+            firstPage.add(subscriber(i));
+        }
+        currentUser.setId(NotificationService.SUBSCRIBERS_PAGE_SIZE);
+        firstPage.add(currentUser);
+        JCUser last = subscriber(NotificationService.SUBSCRIBERS_PAGE_SIZE + 1);
+        when(subscriptionService.getAllowedSubscribers(topic, null, 0L, NotificationService.SUBSCRIBERS_PAGE_SIZE))
+                .thenReturn(firstPage);
+        when(subscriptionService.getAllowedSubscribers(topic, null, NotificationService.SUBSCRIBERS_PAGE_SIZE,
+                NotificationService.SUBSCRIBERS_PAGE_SIZE)).thenReturn(new ArrayList<>(Arrays.asList(last)));
+
+        service.subscribedEntityChanged(topic);
+
+        verify(mailService).sendUpdatesOnSubscription(recipients(last), eq(topic));
+        verify(mailService, never()).sendUpdatesOnSubscription(recipientsWith(currentUser), eq(topic));
+    }
+
+    /**
+     * Stubs the first page of allowed subscribers of the entity.
+     *
+     * @param entity   subscribed entity
+     * @param excluded entity whose subscribers are skipped by the query
+     * @param users    subscribers found
+     */
+    private void givenSubscribers(SubscriptionAwareEntity entity, SubscriptionAwareEntity excluded, JCUser... users) {
+        when(subscriptionService.getAllowedSubscribers(entity, excluded, 0L, NotificationService.SUBSCRIBERS_PAGE_SIZE))
+                .thenReturn(new ArrayList<>(Arrays.asList(users)));
+    }
+
+    private static JCUser subscriber(long id) {
+        JCUser user = new JCUser("subscriber" + id, "subscriber" + id + "@mail.com", "password");
+        user.setId(id);
+        return user;
+    }
+
+    /**
+     * @param users expected recipients of the notification
+     * @return matcher of the collection consisting of exactly the users given in any order
+     */
+    private static Collection<JCUser> recipients(final JCUser... users) {
+        return argThat(new ArgumentMatcher<Collection<JCUser>>() {
+            @Override
+            public boolean matches(Object argument) {
+                return new HashSet<>((Collection<?>) argument).equals(new HashSet<>(Arrays.asList(users)));
+            }
+        });
+    }
+
+    /**
+     * @param user one of the recipients of the notification
+     * @return matcher of the collection containing the user given
+     */
+    private static Collection<JCUser> recipientsWith(final JCUser user) {
+        return argThat(new ArgumentMatcher<Collection<JCUser>>() {
+            @Override
+            public boolean matches(Object argument) {
+                return ((Collection<?>) argument).contains(user);
+            }
+        });
+    }
 }
@@ -0,0 +1,213 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import org.joda.time.DateTime;
+import org.jtalks.jcommune.model.dao.PostDraftDao;
+import org.jtalks.jcommune.model.entity.JCUser;
+import org.jtalks.jcommune.model.entity.PostDraft;
+import org.jtalks.jcommune.model.entity.Topic;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.core.session.SessionDestroyedEvent;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class PostDraftStoreTest {
+    private static final long DRAFT_ID = 42L;
+
+    @Mock
+    private PostDraftDao postDraftDao;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private PostDraftStore store;
+    private JCUser author;
+    private Topic topic;
+
+    @BeforeMethod
+    public void setUp() {
+        initMocks(this);
+        store = new PostDraftStore(postDraftDao, transactionManager);
+        author = new JCUser("username", "email@mail.com", "password");
+        author.setId(1L);
+        topic = new Topic(author, "title");
+        topic.setId(2L);
+    }
+
+    @Test
+    public void saveShouldWriteNewDraftRightAway() {
+        PostDraft draft = store.save(author, topic, "content");
+
+        verify(postDraftDao).saveOrUpdate(draft);
+        assertEquals(draft.getContent(), "content");
+        assertEquals(draft.getTopic(), topic);
+        assertNull(store.getPending(author, topic));
+    }
+
+    @Test
+    public void saveShouldDelayWriteOfExistingDraft() {
+        when(postDraftDao.getForUser(author, topic)).thenReturn(persistedDraft("old content"));
+
+        PostDraft draft = store.save(author, topic, "new content");
+
+        verify(postDraftDao, never()).saveOrUpdate(any(PostDraft.class));
+        assertEquals(draft.getId(), DRAFT_ID);
+        assertEquals(store.getPending(author, topic).getContent(), "new content");
+    }
+
+    @Test
+    public void repeatedSavesShouldNotReadDraftAgain() {
+        when(postDraftDao.getForUser(author, topic)).thenReturn(persistedDraft("old content"));
+
+        store.save(author, topic, "first");
+        PostDraft draft = store.save(author, topic, "second");
+
+        verify(postDraftDao, times(1)).getForUser(author, topic);
+        assertEquals(draft.getId(), DRAFT_ID);
+        assertEquals(store.getPending(author, topic).getContent(), "second");
+    }
+
+    @Test
+    public void flushShouldWriteLatestContentInOneTransaction() {
+        PostDraft persisted = persistedDraft("old content");
+        when(postDraftDao.getForUser(author, topic)).thenReturn(persisted);
+        when(postDraftDao.get(DRAFT_ID)).thenReturn(persisted);
+        store.save(author, topic, "first");
+        store.save(author, topic, "second");
+
+        store.flush();
+
+        verify(transactionManager, times(1)).getTransaction(any(TransactionDefinition.class));
+        verify(postDraftDao).saveOrUpdate(persisted);
+        assertEquals(persisted.getContent(), "second");
+        assertNull(store.getPending(author, topic));
+    }
+
+    @Test
+    public void flushShouldNotOverwriteDraftSavedLaterOnAnotherNode() {
+        PostDraft persisted = persistedDraft("old content");
+        when(postDraftDao.getForUser(author, topic)).thenReturn(persisted);
+        store.save(author, topic, "content of this node");
+        PostDraft savedOnAnotherNode = persistedDraft("content of another node");
+        savedOnAnotherNode.setLastSaved(new DateTime().plusMinutes(1));
+        when(postDraftDao.get(DRAFT_ID)).thenReturn(savedOnAnotherNode);
+
+        store.flush();
+
+        verify(postDraftDao, never()).saveOrUpdate(any(PostDraft.class));
+        assertEquals(savedOnAnotherNode.getContent(), "content of another node");
+        assertNull(store.getPending(author, topic));
+    }
+
+    @Test
+    public void flushShouldKeepTimeOfTheSave() {
+        PostDraft persisted = persistedDraft("old content");
+        persisted.setLastSaved(new DateTime().minusMinutes(1));
+        when(postDraftDao.getForUser(author, topic)).thenReturn(persisted);
+        when(postDraftDao.get(DRAFT_ID)).thenReturn(persisted);
+        DateTime savedAt = store.save(author, topic, "new content").getLastSaved();
+
+        store.flush();
+
+        assertEquals(persisted.getLastSaved(), savedAt);
+    }
+
+    @Test
+    public void flushWithoutPendingDraftsShouldNotStartTransaction() {
+        store.flush();
+
+        verifyZeroInteractions(transactionManager);
+    }
+
+    @Test
+    public void flushShouldSkipDraftsDeletedAfterSave() {
+        when(postDraftDao.getForUser(author, topic)).thenReturn(persistedDraft("old content"));
+        store.save(author, topic, "new content");
+
+        store.flush();
+
+        verify(postDraftDao, never()).saveOrUpdate(any(PostDraft.class));
+        assertNull(store.getPending(author, topic));
+    }
+
+    @Test
+    public void discardedDraftShouldNotBeWritten() {
+        when(postDraftDao.getForUser(author, topic)).thenReturn(persistedDraft("old content"));
+        store.save(author, topic, "new content");
+
+        store.discard(author, topic);
+        store.flush();
+
+        assertNull(store.getPending(author, topic));
+        verify(postDraftDao, never()).get(anyLong());
+    }
+
+    @Test
+    public void destroyedSessionShouldWriteDraftsOfItsUserOnly() {
+        JCUser anotherAuthor = new JCUser("another", "another@mail.com", "password");
+        anotherAuthor.setId(3L);
+        PostDraft persisted = persistedDraft("old content");
+        when(postDraftDao.getForUser(any(JCUser.class), eq(topic))).thenReturn(persisted);
+        when(postDraftDao.get(DRAFT_ID)).thenReturn(persisted);
+        store.save(author, topic, "content of author");
+        store.save(anotherAuthor, topic, "content of another author");
+
+        store.onApplicationEvent(sessionDestroyedBy(author));
+
+        ArgumentCaptor<PostDraft> written = ArgumentCaptor.forClass(PostDraft.class);
+        verify(postDraftDao).saveOrUpdate(written.capture());
+        assertEquals(written.getValue().getContent(), "content of author");
+        assertNull(store.getPending(author, topic));
+        assertEquals(store.getPending(anotherAuthor, topic).getContent(), "content of another author");
+    }
+
+    private PostDraft persistedDraft(String content) {
+        PostDraft draft = new PostDraft(content, author);
+        draft.setId(DRAFT_ID);
+        draft.setTopic(topic);
+        return draft;
+    }
+
+    private SessionDestroyedEvent sessionDestroyedBy(JCUser user) {
+        final SecurityContext context = new SecurityContextImpl();
+        context.setAuthentication(new UsernamePasswordAuthenticationToken(user, null));
+        return new SessionDestroyedEvent("session") {
+            @Override
+            public List<SecurityContext> getSecurityContexts() {
+                return Arrays.asList(context);
+            }
+
+            @Override
+            public String getId() {
+                return "session";
+            }
+        };
+    }
+}
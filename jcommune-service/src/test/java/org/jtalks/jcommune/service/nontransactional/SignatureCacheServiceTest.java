@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import org.jtalks.jcommune.model.entity.JCUser;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class SignatureCacheServiceTest {
+    private static final long USER_ID = 42L;
+    private static final String HTML = "<b>signature</b>";
+
+    private Ehcache cache;
+    private SignatureCacheService signatureCacheService;
+    private JCUser user;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        cache = mock(Ehcache.class);
+        signatureCacheService = new SignatureCacheService(cache);
+        user = new JCUser("username", "email", "password");
+        user.setId(USER_ID);
+        user.setSignature("[b]signature[/b]");
+    }
+
+    @Test
+    public void cachedSignatureShouldBeReturnedIfSignatureIsNotChanged() {
+        when(cache.get(USER_ID)).thenReturn(putAndCapture());
+
+        assertEquals(signatureCacheService.getSignatureHtml(user), HTML);
+    }
+
+    @Test
+    public void cachedSignatureShouldNotBeReturnedIfSignatureIsChanged() {
+        Element element = putAndCapture();
+        when(cache.get(USER_ID)).thenReturn(element);
+        user.setSignature("[i]new signature[/i]");
+
+        assertNull(signatureCacheService.getSignatureHtml(user));
+    }
+
+    @Test
+    public void nullShouldBeReturnedIfSignatureIsNotInCache() {
+        when(cache.get(USER_ID)).thenReturn(null);
+
+        assertNull(signatureCacheService.getSignatureHtml(user));
+    }
+
+    @Test
+    public void evictShouldRemoveSignatureOfUser() {
+        signatureCacheService.evict(USER_ID);
+
+        verify(cache).remove(USER_ID);
+    }
+
+    private Element putAndCapture() {
+        signatureCacheService.putSignatureHtml(user, HTML);
+        ArgumentCaptor<Element> captor = ArgumentCaptor.forClass(Element.class);
+        verify(cache).put(captor.capture());
+        assertEquals(captor.getValue().getObjectKey(), USER_ID);
+        return captor.getValue();
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import org.jtalks.common.model.entity.Section;
+import org.jtalks.jcommune.model.dao.BranchDao;
+import org.jtalks.jcommune.model.dao.SectionDao;
+import org.jtalks.jcommune.model.dao.TopicDao;
+import org.jtalks.jcommune.model.dao.UserDao;
+import org.jtalks.jcommune.model.dao.search.TopicSearchDao;
+import org.jtalks.jcommune.model.entity.Branch;
+import org.jtalks.jcommune.plugin.api.exceptions.NotFoundException;
+import org.jtalks.jcommune.service.BranchLastPostService;
+import org.jtalks.jcommune.service.dto.TopicPurgeProgress;
+import org.mockito.Mock;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TopicPurgeServiceTest {
+    private static final int CHUNK_SIZE = 2;
+    private static final long BRANCH_ID = 1L;
+    private static final long SECTION_ID = 2L;
+
+    @Mock
+    private TopicDao topicDao;
+    @Mock
+    private BranchDao branchDao;
+    @Mock
+    private SectionDao sectionDao;
+    @Mock
+    private UserDao userDao;
+    @Mock
+    private TopicSearchDao topicSearchDao;
+    @Mock
+    private BranchStatisticsCacheService branchStatisticsCacheService;
+    @Mock
+    private FeedCacheService feedCacheService;
+    @Mock
+    private BranchLastPostService branchLastPostService;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private TopicPurgeService service;
+    private Branch branch;
+
+    @BeforeMethod
+    public void setUp() {
+        initMocks(this);
+        service = new TopicPurgeService(topicDao, branchDao, sectionDao, userDao, topicSearchDao,
+                branchStatisticsCacheService, feedCacheService, branchLastPostService, transactionManager, CHUNK_SIZE);
+        branch = new Branch("branch", "description");
+        branch.setId(BRANCH_ID);
+        when(branchDao.get(BRANCH_ID)).thenReturn(branch);
+    }
+
+    @Test
+    public void deleteAllTopicsInBranchShouldDeleteTopicsByChunks() throws NotFoundException {
+        List<Long> firstChunk = Arrays.asList(1L, 2L);
+        List<Long> lastChunk = Arrays.asList(3L);
+        List<Long> authors = Arrays.asList(10L, 11L);
+        when(topicDao.countTopics(branch)).thenReturn(3);
+        when(topicDao.getTopicIdsInBranch(BRANCH_ID, CHUNK_SIZE)).thenReturn(firstChunk, lastChunk);
+        when(topicDao.getAuthorIdsOfPosts(firstChunk)).thenReturn(authors);
+
+        service.deleteAllTopicsInBranch(BRANCH_ID);
+
+        verify(topicDao).deleteTopics(firstChunk);
+        verify(topicDao).deleteTopics(lastChunk);
+        verify(userDao).recalculatePostCounts(authors);
+        verify(topicSearchDao).removeFromIndex(firstChunk);
+        verify(topicSearchDao).removeFromIndex(lastChunk);
+        verify(branchStatisticsCacheService, times(2)).evict(BRANCH_ID);
+        verify(feedCacheService, times(2)).evict(branch);
+        verify(branchLastPostService).refreshLastPostInBranch(branch);
+        verify(transactionManager, times(5)).commit(any(TransactionStatus.class));
+        TopicPurgeProgress progress = service.getProgress();
+        assertEquals(progress.getTotalTopics(), 3);
+        assertEquals(progress.getDeletedTopics(), 3);
+        assertTrue(progress.isFinished());
+    }
+
+    @Test
+    public void deleteAllTopicsInBranchShouldQueryNextChunkWhenLastOneWasFull() throws NotFoundException {
+        List<Long> chunk = Arrays.asList(1L, 2L);
+        when(topicDao.countTopics(branch)).thenReturn(2);
+        when(topicDao.getTopicIdsInBranch(BRANCH_ID, CHUNK_SIZE)).thenReturn(chunk, Collections.<Long>emptyList());
+
+        service.deleteAllTopicsInBranch(BRANCH_ID);
+
+        verify(topicDao, times(2)).getTopicIdsInBranch(BRANCH_ID, CHUNK_SIZE);
+        verify(topicDao, times(1)).deleteTopics(anyCollectionOf(Long.class));
+        assertEquals(service.getProgress().getDeletedTopics(), 2);
+    }
+
+    @Test
+    public void deleteAllTopicsInEmptyBranchShouldNotDeleteAnything() throws NotFoundException {
+        when(topicDao.getTopicIdsInBranch(BRANCH_ID, CHUNK_SIZE)).thenReturn(Collections.<Long>emptyList());
+
+        service.deleteAllTopicsInBranch(BRANCH_ID);
+
+        verify(topicDao, never()).deleteTopics(anyCollectionOf(Long.class));
+        verify(userDao, never()).recalculatePostCounts(anyCollectionOf(Long.class));
+        assertTrue(service.getProgress().isFinished());
+    }
+
+    @Test(expectedExceptions = NotFoundException.class)
+    public void deleteAllTopicsInBranchShouldThrowWhenBranchNotFound() throws NotFoundException {
+        when(branchDao.get(anyLong())).thenReturn(null);
+
+        service.deleteAllTopicsInBranch(BRANCH_ID);
+    }
+
+    @Test
+    public void deleteAllTopicsInSectionShouldDeleteTopicsOfAllBranches() throws NotFoundException {
+        Branch anotherBranch = new Branch("another branch", "description");
+        anotherBranch.setId(BRANCH_ID + 1);
+        Section section = new Section("section");
+        section.addOrUpdateBranch(branch);
+        section.addOrUpdateBranch(anotherBranch);
+        when(sectionDao.get(SECTION_ID)).thenReturn(section);
+        when(branchDao.get(BRANCH_ID + 1)).thenReturn(anotherBranch);
+        when(topicDao.getTopicIdsInBranch(anyLong(), anyInt())).thenReturn(Arrays.asList(1L));
+
+        service.deleteAllTopicsInSection(SECTION_ID);
+
+        verify(topicDao).getTopicIdsInBranch(BRANCH_ID, CHUNK_SIZE);
+        verify(topicDao).getTopicIdsInBranch(BRANCH_ID + 1, CHUNK_SIZE);
+        verify(topicDao, times(2)).deleteTopics(Arrays.asList(1L));
+        verify(branchLastPostService).refreshLastPostInBranch(branch);
+        verify(branchLastPostService).refreshLastPostInBranch(anotherBranch);
+    }
+
+    @Test(expectedExceptions = NotFoundException.class)
+    public void deleteAllTopicsInSectionShouldThrowWhenSectionNotFound() throws NotFoundException {
+        service.deleteAllTopicsInSection(SECTION_ID);
+    }
+
+    @Test
+    public void deleteAllTopicsInForumShouldDeleteTopicsOfAllBranches() throws NotFoundException {
+        when(branchDao.getAllBranches()).thenReturn(Arrays.asList(branch));
+        when(topicDao.getTopicIdsInBranch(BRANCH_ID, CHUNK_SIZE)).thenReturn(Arrays.asList(1L));
+
+        service.deleteAllTopicsInForum();
+
+        verify(topicDao).deleteTopics(Arrays.asList(1L));
+        assertTrue(service.getProgress().isFinished());
+    }
+}
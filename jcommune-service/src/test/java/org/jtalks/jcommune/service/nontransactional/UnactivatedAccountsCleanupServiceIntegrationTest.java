@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import org.joda.time.DateTime;
+import org.jtalks.jcommune.model.dao.UserDao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.UUID;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Deletes lots of non-activated accounts from the test database. Test methods are not transactional, so every batch
+ * is really committed in its own transaction, data is seeded and removed by plain JDBC.
+ */
+@ContextConfiguration(locations = {"classpath:/org/jtalks/jcommune/model/entity/applicationContext-dao.xml"})
+public class UnactivatedAccountsCleanupServiceIntegrationTest extends AbstractTestNGSpringContextTests {
+    private static final int EXPIRED_ACCOUNTS = 100000;
+    private static final long FIRST_EXPIRED_ID = 1000000;
+    private static final long FRESH_ID = FIRST_EXPIRED_ID + EXPIRED_ACCOUNTS;
+    /** ACL tables are not mapped, so hbm2ddl doesn't create them, only columns used by the cleanup are created */
+    private static final String[] ACL_DDL = {
+            "CREATE TABLE acl_sid (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+                    + " principal TINYINT NOT NULL, sid VARCHAR(100) NOT NULL, UNIQUE (sid, principal))",
+            "CREATE TABLE acl_object_identity (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+                    + " owner_sid BIGINT, FOREIGN KEY (owner_sid) REFERENCES acl_sid (id))",
+            "CREATE TABLE acl_entry (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+                    + " acl_object_identity BIGINT NOT NULL, sid BIGINT NOT NULL,"
+                    + " FOREIGN KEY (acl_object_identity) REFERENCES acl_object_identity (id),"
+                    + " FOREIGN KEY (sid) REFERENCES acl_sid (id))"
+    };
+
+    @Autowired
+    private UserDao userDao;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private DataSource dataSource;
+
+    @BeforeClass
+    public void createAclTables() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            try (ResultSet tables = connection.getMetaData().getTables(null, null, "ACL_ENTRY", null)) {
+                if (tables.next()) {
+                    return;
+                }
+            }
+            try (Statement statement = connection.createStatement()) {
+                for (String ddl : ACL_DDL) {
+                    statement.execute(ddl);
+                }
+            }
+        }
+    }
+
+    @AfterMethod
+    public void deleteSeededData() throws SQLException {
+        execute("DELETE FROM acl_entry", "DELETE FROM acl_object_identity", "DELETE FROM acl_sid",
+                "DELETE FROM JC_USER_DETAILS WHERE USER_ID >= " + FIRST_EXPIRED_ID,
+                "DELETE FROM USERS WHERE ID >= " + FIRST_EXPIRED_ID);
+    }
+
+    @Test
+    public void allExpiredAccountsShouldBeDeletedWithTheirAclByBatchesInSeparateTransactions() throws SQLException {
+        DateTime registeredBefore = new DateTime().minusDays(1);
+        insertNonActivatedUsers(FIRST_EXPIRED_ID, EXPIRED_ACCOUNTS, registeredBefore.minusHours(1));
+        insertNonActivatedUsers(FRESH_ID, 1, registeredBefore.plusHours(1));
+        execute("INSERT INTO acl_sid (id, principal, sid) VALUES (1, 1, 'user:" + FIRST_EXPIRED_ID + "')",
+                "INSERT INTO acl_sid (id, principal, sid) VALUES (2, 1, 'user:" + FRESH_ID + "')",
+                "INSERT INTO acl_object_identity (id, owner_sid) VALUES (1, NULL)",
+                "INSERT INTO acl_entry (id, acl_object_identity, sid) VALUES (1, 1, 1)",
+                "INSERT INTO acl_entry (id, acl_object_identity, sid) VALUES (2, 1, 2)");
+        PlatformTransactionManager countingTransactionManager = spy(transactionManager);
+
+        long started = System.currentTimeMillis();
+        new UnactivatedAccountsCleanupService(userDao, countingTransactionManager).deleteUnactivatedAccounts();
+        logger.info(EXPIRED_ACCOUNTS + " accounts were deleted in " + (System.currentTimeMillis() - started) + " ms");
+
+        assertEquals(countRows("SELECT COUNT(*) FROM USERS WHERE ID >= " + FIRST_EXPIRED_ID), 1);
+        assertEquals(countRows("SELECT COUNT(*) FROM USERS WHERE ID = " + FRESH_ID), 1);
+        assertEquals(countRows("SELECT COUNT(*) FROM acl_sid"), 1);
+        assertEquals(countRows("SELECT COUNT(*) FROM acl_entry WHERE sid = 2"), 1);
+        int fullBatches = EXPIRED_ACCOUNTS / UnactivatedAccountsCleanupService.BATCH_SIZE;
+        verify(countingTransactionManager, times(fullBatches + 1)).getTransaction(any(TransactionDefinition.class));
+    }
+
+    /**
+     * Seeds non-activated accounts by JDBC batches, saving so many users through the session would take ages.
+     */
+    private void insertNonActivatedUsers(long firstId, int count, DateTime registrationDate) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement users = connection.prepareStatement("INSERT INTO USERS (ID, VERSION, UUID, "
+                     + "USERNAME, ENCODED_USERNAME, EMAIL, PASSWORD, ENABLED) VALUES (?, 0, ?, ?, ?, ?, 'pass', 0)");
+             PreparedStatement details = connection.prepareStatement("INSERT INTO JC_USER_DETAILS (USER_ID, "
+                     + "PAGE_SIZE, SEND_PM_NOTIFICATION, REGISTRATION_DATE, POST_COUNT, AUTOSUBSCRIBE, "
+                     + "MENTIONING_NOTIFICATIONS_ENABLED) VALUES (?, 50, 0, ?, 0, 0, 0)")) {
+            Timestamp registeredAt = new Timestamp(registrationDate.getMillis());
+            for (long id = firstId; id < firstId + count; id++) {
+                users.setLong(1, id);
+                users.setString(2, UUID.randomUUID().toString());
+                users.setString(3, "spammer" + id);
+                users.setString(4, "spammer" + id);
+                users.setString(5, "spammer" + id + "@mail.com");
+                users.addBatch();
+                details.setLong(1, id);
+                details.setTimestamp(2, registeredAt);
+                details.addBatch();
+            }
+            users.executeBatch();
+            details.executeBatch();
+        }
+    }
+
+    private void execute(String... statements) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.executeUpdate(sql);
+            }
+        }
+    }
+
+    private long countRows(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import org.joda.time.DateTime;
+import org.jtalks.jcommune.model.dao.UserDao;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.testng.Assert.assertTrue;
+
+public class UnactivatedAccountsCleanupServiceTest {
+    @Mock
+    private UserDao userDao;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private UnactivatedAccountsCleanupService service;
+
+    @BeforeMethod
+    public void setUp() {
+        initMocks(this);
+        service = new UnactivatedAccountsCleanupService(userDao, transactionManager);
+    }
+
+    @Test
+    public void accountsRegisteredMoreThanDayAgoShouldBeDeleted() {
+        List<Long> userIds = asList(1L, 2L);
+        when(userDao.getNonActivatedUserIds(any(DateTime.class), anyInt())).thenReturn(userIds);
+        when(userDao.deleteUsers(userIds)).thenReturn(userIds.size());
+
+        service.deleteUnactivatedAccounts();
+
+        ArgumentCaptor<DateTime> registeredBefore = ArgumentCaptor.forClass(DateTime.class);
+        verify(userDao).getNonActivatedUserIds(registeredBefore.capture(),
+                eq(UnactivatedAccountsCleanupService.BATCH_SIZE));
+        assertTrue(registeredBefore.getValue().isBefore(new DateTime().minusHours(23)));
+        verify(userDao).deleteAclOfUsers(userIds);
+        verify(userDao).deleteUsers(userIds);
+    }
+
+    @Test
+    public void everyBatchShouldBeDeletedInItsOwnTransactionUntilLastBatchIsNotFull() {
+        List<Long> fullBatch = new ArrayList<>();
+        for (long id = 0; id < UnactivatedAccountsCleanupService.BATCH_SIZE; id++) {
+            fullBatch.add(id);
+        }
+        List<Long> lastBatch = asList(-1L);
+        when(userDao.getNonActivatedUserIds(any(DateTime.class), anyInt())).thenReturn(fullBatch, lastBatch);
+        when(userDao.deleteUsers(fullBatch)).thenReturn(fullBatch.size());
+        when(userDao.deleteUsers(lastBatch)).thenReturn(lastBatch.size());
+
+        service.deleteUnactivatedAccounts();
+
+        verify(userDao).deleteUsers(fullBatch);
+        verify(userDao).deleteUsers(lastBatch);
+        verify(userDao, times(2)).getNonActivatedUserIds(any(DateTime.class), anyInt());
+        verify(transactionManager, times(2)).getTransaction(any(TransactionDefinition.class));
+    }
+}
@@ -16,14 +16,21 @@ package org.jtalks.jcommune.service.nontransactional;
 
 import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
+import java.io.Serializable;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
 
 /**
  * @author Kirill Afonin
@@ -36,6 +43,7 @@ public class UserDataCacheServiceTest {
     @BeforeMethod
     public void setUp() throws Exception {
         cache = mock(Ehcache.class);
+        when(cache.replace(any(Element.class), any(Element.class))).thenReturn(true);
         userDataCacheService = new UserDataCacheService(cache);
     }
 
@@ -62,11 +70,41 @@ public class UserDataCacheServiceTest {
 
     @Test
     public void testPutNewPmCount() throws Exception {
-        userDataCacheService.putNewPmCount(USERNAME, 2);
+        userDataCacheService.putNewPmCount(USERNAME, 2, userDataCacheService.getVersion());
 
         verify(cache).put(new Element(USERNAME, 2));
     }
 
+    @Test
+    public void newPmCountReadBeforeIncrementShouldNotBeCached() throws Exception {
+        long version = userDataCacheService.getVersion();
+        userDataCacheService.incrementNewMessageCountFor(USERNAME);
+
+        userDataCacheService.putNewPmCount(USERNAME, 2, version);
+
+        verify(cache, never()).put(any(Element.class));
+    }
+
+    @Test
+    public void newPmCountCachedBeforeCommitOfIncrementShouldBeIncremented() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            long version = userDataCacheService.getVersion();
+            userDataCacheService.incrementNewMessageCountFor(USERNAME);
+            userDataCacheService.putNewPmCount(USERNAME, 2, version);
+            verify(cache).put(new Element(USERNAME, 2));
+
+            when(cache.get(USERNAME)).thenReturn(new Element(USERNAME, 2));
+            for (TransactionSynchronization synchronization
+                    : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+            assertEquals(getReplacedValue(), 3);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
     @Test
     public void testIncrementNewMessageCountFor() throws Exception {
         Element cacheElement = new Element(USERNAME, 1);
@@ -75,7 +113,7 @@ public class UserDataCacheServiceTest {
         userDataCacheService.incrementNewMessageCountFor(USERNAME);
 
         verify(cache).get(USERNAME);
-        verify(cache).put(new Element(USERNAME, 2));
+        assertEquals(getReplacedValue(), 2);
     }
 
     @Test
@@ -86,7 +124,58 @@ public class UserDataCacheServiceTest {
         userDataCacheService.decrementNewMessageCountFor(USERNAME);
 
         verify(cache).get(USERNAME);
-        verify(cache).put(new Element(USERNAME, 1));
+        assertEquals(getReplacedValue(), 1);
+    }
+
+    @Test
+    public void decrementShouldNotMakeCountNegative() throws Exception {
+        Element cacheElement = new Element(USERNAME, 0);
+        when(cache.get(USERNAME)).thenReturn(cacheElement);
+
+        userDataCacheService.decrementNewMessageCountFor(USERNAME);
+
+        assertEquals(getReplacedValue(), 0);
+    }
+
+    @Test
+    public void incrementShouldBeRetriedWhenCountWasChangedConcurrently() throws Exception {
+        Element staleElement = new Element(USERNAME, 1);
+        Element actualElement = new Element(USERNAME, 2);
+        when(cache.get(USERNAME)).thenReturn(staleElement, actualElement);
+        when(cache.replace(any(Element.class), any(Element.class))).thenReturn(false, true);
+
+        userDataCacheService.incrementNewMessageCountFor(USERNAME);
+
+        verify(cache, times(2)).get(USERNAME);
+        ArgumentCaptor<Element> expected = ArgumentCaptor.forClass(Element.class);
+        ArgumentCaptor<Element> updated = ArgumentCaptor.forClass(Element.class);
+        verify(cache, times(2)).replace(expected.capture(), updated.capture());
+        assertSame(expected.getValue(), actualElement);
+        assertEquals(updated.getValue().getObjectValue(), 3);
+    }
+
+    private Object getReplacedValue() {
+        ArgumentCaptor<Element> updated = ArgumentCaptor.forClass(Element.class);
+        verify(cache).replace(any(Element.class), updated.capture());
+        return updated.getValue().getObjectValue();
+    }
+
+    @Test
+    public void incrementInTransactionShouldBeAppliedAfterCommit() throws Exception {
+        Element cacheElement = new Element(USERNAME, 1);
+        when(cache.get(USERNAME)).thenReturn(cacheElement);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            userDataCacheService.incrementNewMessageCountFor(USERNAME);
+
+            verify(cache, never()).replace(any(Element.class), any(Element.class));
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+            assertEquals(getReplacedValue(), 2);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
     }
 
 
@@ -108,4 +197,74 @@ public class UserDataCacheServiceTest {
 
         verify(cache).get(USERNAME);
     }
+
+    @Test
+    public void decrementByCountShouldSubtractAllOfThem() throws Exception {
+        when(cache.get(USERNAME)).thenReturn(new Element(USERNAME, 5));
+
+        userDataCacheService.decrementNewMessageCountFor(USERNAME, 3);
+
+        assertEquals(getReplacedValue(), 2);
+    }
+
+    @Test
+    public void folderCountShouldBeCachedSeparatelyFromNewMessagesCount() throws Exception {
+        userDataCacheService.putPmFolderCount(USERNAME, "inbox", 7, userDataCacheService.getVersion());
+
+        ArgumentCaptor<Element> put = ArgumentCaptor.forClass(Element.class);
+        verify(cache).put(put.capture());
+        assertFalse(USERNAME.equals(put.getValue().getObjectKey()));
+        assertEquals(put.getValue().getObjectValue(), 7);
+
+        when(cache.get((Serializable) put.getValue().getObjectKey())).thenReturn(put.getValue());
+        assertEquals(userDataCacheService.getPmFolderCountFor(USERNAME, "inbox"), Integer.valueOf(7));
+        assertNull(userDataCacheService.getPmFolderCountFor(USERNAME, "outbox"));
+    }
+
+    @Test
+    public void addToFolderCountShouldChangeCachedFolderCount() throws Exception {
+        userDataCacheService.putPmFolderCount(USERNAME, "drafts", 3, userDataCacheService.getVersion());
+        ArgumentCaptor<Element> put = ArgumentCaptor.forClass(Element.class);
+        verify(cache).put(put.capture());
+        when(cache.get((Serializable) put.getValue().getObjectKey())).thenReturn(put.getValue());
+
+        userDataCacheService.addToPmFolderCountFor(USERNAME, "drafts", -2);
+
+        assertEquals(getReplacedValue(), 1);
+        verify(cache, never()).get(USERNAME);
+    }
+
+    @Test
+    public void folderCountReadBeforeItWasChangedShouldNotBeCached() throws Exception {
+        long version = userDataCacheService.getVersion();
+        userDataCacheService.addToPmFolderCountFor(USERNAME, "inbox", 1);
+
+        userDataCacheService.putPmFolderCount(USERNAME, "inbox", 7, version);
+
+        verify(cache, never()).put(any(Element.class));
+    }
+
+    @Test
+    public void userWhoNeverMarkedForumAsReadShouldBeRemembered() throws Exception {
+        assertFalse(userDataCacheService.isForumNeverMarkedAsReadBy(42L));
+
+        userDataCacheService.putForumNeverMarkedAsReadBy(42L, userDataCacheService.getVersion());
+        ArgumentCaptor<Element> put = ArgumentCaptor.forClass(Element.class);
+        verify(cache).put(put.capture());
+        when(cache.get((Serializable) put.getValue().getObjectKey())).thenReturn(put.getValue());
+
+        assertTrue(userDataCacheService.isForumNeverMarkedAsReadBy(42L));
+        assertFalse(userDataCacheService.isForumNeverMarkedAsReadBy(43L));
+    }
+
+    @Test
+    public void absenceOfMarkerFoundBeforeMarkingShouldNotBeRemembered() throws Exception {
+        long version = userDataCacheService.getVersion();
+        userDataCacheService.evictForumNeverMarkedAsReadBy(42L);
+
+        userDataCacheService.putForumNeverMarkedAsReadBy(42L, version);
+
+        verify(cache).remove(any(Serializable.class));
+        verify(cache, never()).put(any(Element.class));
+    }
 }
@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.service.nontransactional;
+
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class VersionedCacheTest {
+    private static final String KEY = "key";
+
+    private Ehcache ehcache;
+    private VersionedCache cache;
+
+    @BeforeMethod
+    public void setUp() {
+        ehcache = mock(Ehcache.class);
+        cache = new VersionedCache(ehcache);
+    }
+
+    @Test
+    public void getShouldReturnNullIfValueIsNotCached() {
+        assertNull(cache.get(KEY));
+    }
+
+    @Test
+    public void getShouldReturnCachedValue() {
+        when(ehcache.get(KEY)).thenReturn(new Element(KEY, "value"));
+
+        assertEquals(cache.get(KEY), "value");
+    }
+
+    @Test
+    public void valueLoadedAtCurrentVersionShouldBeCached() {
+        cache.put(KEY, "value", cache.getVersion());
+
+        verify(ehcache).put(new Element(KEY, "value"));
+        verify(ehcache, never()).remove(anyString());
+    }
+
+    @Test
+    public void valueLoadedBeforeEvictionShouldNotBeCached() {
+        long version = cache.getVersion();
+        cache.evict(KEY);
+
+        cache.put(KEY, "value", version);
+
+        verify(ehcache, never()).put(any(Element.class));
+    }
+
+    @Test
+    public void valueLoadedBeforeInPlaceChangeShouldNotBeCached() {
+        long version = cache.getVersion();
+        cache.incrementVersion();
+
+        cache.put(KEY, "value", version);
+
+        verify(ehcache, never()).put(any(Element.class));
+        verify(ehcache, never()).remove(anyString());
+    }
+
+    @Test
+    public void valueShouldBeRemovedIfCacheWasEvictedDuringPut() {
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                cache.evictAll();
+                return null;
+            }
+        }).when(ehcache).put(any(Element.class));
+
+        cache.put(KEY, "value", cache.getVersion());
+
+        verify(ehcache).remove(KEY);
+    }
+
+    @Test
+    public void evictionShouldRemoveEveryKeyAndChangeVersion() {
+        long version = cache.getVersion();
+
+        cache.evict(KEY, "other");
+
+        verify(ehcache).remove(KEY);
+        verify(ehcache).remove("other");
+        assertEquals(cache.getVersion(), version + 1);
+    }
+
+    @Test
+    public void evictionOfAllDataShouldClearCacheAndChangeVersion() {
+        long version = cache.getVersion();
+
+        cache.evictAll();
+
+        verify(ehcache).removeAll();
+        assertEquals(cache.getVersion(), version + 1);
+    }
+
+    @Test
+    public void evictionInTransactionShouldBeAppliedAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            long version = cache.getVersion();
+            cache.evict(KEY);
+
+            verify(ehcache, never()).remove(anyString());
+            assertEquals(cache.getVersion(), version);
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+            verify(ehcache).remove(KEY);
+            assertEquals(cache.getVersion(), version + 1);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+}
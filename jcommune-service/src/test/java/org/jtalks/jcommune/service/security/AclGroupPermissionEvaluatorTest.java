@@ -17,6 +17,7 @@ package org.jtalks.jcommune.service.security;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.jtalks.common.model.dao.GroupDao;
@@ -33,6 +34,7 @@ import org.jtalks.common.security.acl.sids.UserGroupSid;
 import org.jtalks.common.security.acl.sids.UserSid;
 import org.jtalks.jcommune.model.dao.UserDao;
 import org.jtalks.jcommune.model.entity.JCUser;
+import org.jtalks.jcommune.plugin.api.BranchPermissionMask;
 import org.jtalks.jcommune.plugin.api.PluginPermissionManager;
 import org.jtalks.jcommune.plugin.api.exceptions.NotFoundException;
 import org.mockito.Mock;
@@ -235,6 +237,86 @@ public class AclGroupPermissionEvaluatorTest {
         Assert.assertFalse(evaluator.hasPermission(authentication, targetId, targetType, "123"));
     }
 
+    @Test
+    public void getBranchPermissionsShouldContainPermissionsGrantedToUserSid() throws Exception {
+        List<AccessControlEntry> aces = new ArrayList<>();
+        aces.add(createAccessControlEntry(generalPermission, true, userSid));
+        aces.add(createAccessControlEntry(BranchPermission.MOVE_TOPICS, false, userSid));
+        Mockito.when(acl.getEntries()).thenReturn(aces);
+        Mockito.when(aclManager.getGroupPermissionsOn(objectIdentity)).thenReturn(new ArrayList<GroupAce>());
+
+        BranchPermissionMask mask = evaluator.getBranchPermissions(authentication, targetId);
+
+        Assert.assertTrue(mask.isGranted(generalPermission));
+        Assert.assertFalse(mask.isGranted(BranchPermission.MOVE_TOPICS));
+        Assert.assertFalse(mask.isGranted(someOtherPermission));
+    }
+
+    @Test
+    public void getBranchPermissionsShouldPreferRestrictionsOfGroups() throws Exception {
+        setEnvForGroupSidTests(true);
+
+        BranchPermissionMask mask = evaluator.getBranchPermissions(authentication, targetId);
+
+        Assert.assertTrue(mask.isGranted(generalPermission));
+        Assert.assertFalse(mask.isGranted(someOtherPermission));
+    }
+
+    @Test
+    public void getBranchPermissionsShouldContainPersonalPermissionsOfGroups() throws Exception {
+        setEnvForPermissionOnGroupTests(true);
+        Mockito.when(aclManager.getGroupPermissionsOn(objectIdentity)).thenReturn(new ArrayList<GroupAce>());
+
+        BranchPermissionMask mask = evaluator.getBranchPermissions(authentication, targetId);
+
+        Assert.assertTrue(mask.isGranted(generalPermission));
+    }
+
+    @Test
+    public void getBranchPermissionsShouldBeEmptyForNonExistentUser() throws Exception {
+        setEnvForGroupSidTests(true);
+        when(userDao.get(user.getId())).thenReturn(null);
+
+        BranchPermissionMask mask = evaluator.getBranchPermissions(authentication, targetId);
+
+        Assert.assertFalse(mask.isGranted(generalPermission));
+    }
+
+    @Test
+    public void findBranchPermissionShouldResolveCommonBranchPermission() {
+        Assert.assertEquals(evaluator.findBranchPermission("BranchPermission.CREATE_POSTS"),
+                BranchPermission.CREATE_POSTS);
+        Assert.assertNull(evaluator.findBranchPermission("BranchPermission.UNKNOWN"));
+    }
+
+    @Test
+    public void findBranchPermissionShouldResolvePluginBranchPermission() {
+        when(pluginManager.findPluginsBranchPermissionByName("CREATE_SOMETHING"))
+                .thenReturn(TestPluginBranchPermission.CREATE_SOMETHING);
+
+        Assert.assertEquals(evaluator.findBranchPermission("TestPluginBranchPermission.CREATE_SOMETHING"),
+                TestPluginBranchPermission.CREATE_SOMETHING);
+        Assert.assertNull(evaluator.findBranchPermission("OtherPluginBranchPermission.CREATE_SOMETHING"));
+        Assert.assertNull(evaluator.findBranchPermission("TestPluginBranchPermission.UNKNOWN"));
+    }
+
+    @Test
+    public void getBranchPermissionsShouldContainPluginBranchPermissions() throws Exception {
+        List<AccessControlEntry> aces = new ArrayList<>();
+        aces.add(createAccessControlEntry(TestPluginBranchPermission.CREATE_SOMETHING, true, userSid));
+        Mockito.when(acl.getEntries()).thenReturn(aces);
+        Mockito.when(aclManager.getGroupPermissionsOn(objectIdentity)).thenReturn(new ArrayList<GroupAce>());
+        when(pluginManager.getPluginsBranchPermissions()).thenReturn(
+                Arrays.<JtalksPermission>asList(TestPluginBranchPermission.CREATE_SOMETHING));
+        when(pluginManager.findPluginsBranchPermissionByName("CREATE_SOMETHING"))
+                .thenReturn(TestPluginBranchPermission.CREATE_SOMETHING);
+
+        BranchPermissionMask mask = evaluator.getBranchPermissions(authentication, targetId);
+
+        JtalksPermission resolved = evaluator.findBranchPermission("TestPluginBranchPermission.CREATE_SOMETHING");
+        Assert.assertTrue(mask.isGranted(resolved));
+    }
+
     @SuppressWarnings("deprecation")
     @Test(expectedExceptions = UnsupportedOperationException.class)
     public void testHasPermission() throws Exception {
@@ -260,4 +342,32 @@ public class AclGroupPermissionEvaluatorTest {
         Mockito.when(groupAce.getPermission()).thenReturn(permission);
         return groupAce;
     }
+
+    /**
+     * Branch permission of some plugin
+     */
+    private enum TestPluginBranchPermission implements JtalksPermission {
+        CREATE_SOMETHING(Integer.parseInt("11111", 2));
+
+        private final int mask;
+
+        TestPluginBranchPermission(int mask) {
+            this.mask = mask;
+        }
+
+        @Override
+        public String getName() {
+            return name();
+        }
+
+        @Override
+        public int getMask() {
+            return mask;
+        }
+
+        @Override
+        public String getPattern() {
+            return null;
+        }
+    }
 }
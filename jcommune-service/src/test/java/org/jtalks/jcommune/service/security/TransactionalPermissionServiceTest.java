@@ -23,6 +23,7 @@ import org.jtalks.common.service.security.SecurityContextHolderFacade;
 import org.jtalks.jcommune.model.dto.GroupsPermissions;
 import org.jtalks.jcommune.model.dto.PermissionChanges;
 import org.jtalks.jcommune.model.entity.Branch;
+import org.jtalks.jcommune.service.nontransactional.FeedCacheService;
 import org.jtalks.jcommune.service.transactional.TransactionalPermissionService;
 import org.mockito.Mock;
 import org.springframework.security.access.AccessDeniedException;
@@ -44,6 +45,8 @@ public class TransactionalPermissionServiceTest {
     private SecurityContextHolderFacade contextFacade;
     @Mock
     private AclGroupPermissionEvaluator aclEvaluator;
+    @Mock
+    private FeedCacheService feedCacheService;
 
     private PermissionService permissionService;
     private PermissionManager permissionManager;
@@ -52,7 +55,8 @@ public class TransactionalPermissionServiceTest {
     public void initEnvironmental() {
         initMocks(this);
         permissionManager = mock(PermissionManager.class);
-        permissionService = spy(new TransactionalPermissionService(contextFacade, aclEvaluator, permissionManager));
+        permissionService = spy(new TransactionalPermissionService(contextFacade, aclEvaluator, permissionManager,
+                feedCacheService));
     }
 
     @BeforeMethod
@@ -146,6 +150,17 @@ public class TransactionalPermissionServiceTest {
         permissionService.changeGrants(group, changes);
     }
 
+    @Test
+    public void changingPermissionsOfBranchShouldEvictItsFeeds() {
+        PermissionChanges changes = mock(PermissionChanges.class);
+        Branch branch = mock(Branch.class);
+
+        permissionService.changeGrants(branch, changes);
+        permissionService.changeRestrictions(branch, changes);
+
+        verify(feedCacheService, times(2)).evict(branch);
+    }
+
     @Test
     public void testChangeRestrictions() {
         PermissionChanges changes = mock(PermissionChanges.class);
@@ -19,18 +19,26 @@ import org.jtalks.jcommune.model.dao.BannerDao;
 import org.jtalks.jcommune.model.entity.Banner;
 import org.jtalks.jcommune.model.entity.BannerPosition;
 import org.jtalks.jcommune.service.BannerService;
+import org.jtalks.jcommune.service.nontransactional.BannerAndLinkCacheService;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
 
 /**
  * 
@@ -40,12 +48,14 @@ import static org.testng.Assert.assertEquals;
 public class TransactionalBannerServiceTest {
     @Mock
     private BannerDao bannerDao;
+    @Mock
+    private BannerAndLinkCacheService cacheService;
     private BannerService bannerService;
     
     @BeforeMethod
     public void init() {
         initMocks(this);
-        bannerService = new TransactionalBannerService(bannerDao);
+        bannerService = new TransactionalBannerService(bannerDao, cacheService);
     }
     
     @Test
@@ -54,6 +64,7 @@ public class TransactionalBannerServiceTest {
         bannerService.uploadBanner(uploadedBanner, new Component());
 
         verify(bannerDao).saveOrUpdate(uploadedBanner);
+        verify(cacheService).evictBanners();
     }
 
     @Test
@@ -74,11 +85,24 @@ public class TransactionalBannerServiceTest {
         Banner bottomBanner = new Banner(BannerPosition.BOTTOM, "BOTTOM");
         List<Banner> banners = Arrays.asList(topBanner, bottomBanner);
         when(bannerDao.getAll()).thenReturn(banners);
+        when(cacheService.getVersion()).thenReturn(3L);
+
+        bannerService.getAllBanners();
 
-        Map<String, Banner> positionToBannerMap = bannerService.getAllBanners();
+        ArgumentCaptor<Map> positionToBannerMap = ArgumentCaptor.forClass(Map.class);
+        verify(cacheService).putBanners(positionToBannerMap.capture(), eq(3L));
+        assertEquals(positionToBannerMap.getValue().get(BannerPosition.TOP.toString()), topBanner);
+        assertEquals(positionToBannerMap.getValue().get(BannerPosition.BOTTOM.toString()), bottomBanner);
+    }
+
+    @Test
+    public void cachedBannersShouldBeReturnedWithoutQueryingRepository() {
+        Map<String, Banner> banners = Collections.singletonMap(BannerPosition.TOP.toString(), new Banner());
+        when(cacheService.getBanners()).thenReturn(banners);
 
-        assertEquals(positionToBannerMap.get(BannerPosition.TOP.toString()), topBanner);
-        assertEquals(positionToBannerMap.get(BannerPosition.BOTTOM.toString()), bottomBanner);
+        assertSame(bannerService.getAllBanners(), banners);
+        verify(bannerDao, never()).getAll();
+        verify(cacheService, never()).putBanners(Matchers.<Map<String, Banner>>any(), anyLong());
     }
 
 }
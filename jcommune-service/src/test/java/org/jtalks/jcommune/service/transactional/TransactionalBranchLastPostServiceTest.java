@@ -14,6 +14,7 @@
  */
 package org.jtalks.jcommune.service.transactional;
 
+import org.joda.time.DateTime;
 import org.jtalks.jcommune.model.dao.BranchDao;
 import org.jtalks.jcommune.model.dao.PostDao;
 import org.jtalks.jcommune.model.entity.Branch;
@@ -21,9 +22,11 @@ import org.jtalks.jcommune.model.entity.Post;
 import org.jtalks.jcommune.service.BranchLastPostService;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
@@ -61,4 +64,53 @@ public class TransactionalBranchLastPostServiceTest {
         verify(branchDao).saveOrUpdate(branchOfDeletedPost);
         verify(postDao).getLastPostFor(branchOfDeletedPost);
     }
+
+    @Test
+    public void refreshLastPostInBranchShouldNotUpdateBranchWhenLastPostIsTheSame() {
+        Branch emptyBranch = new Branch(BRANCH_NAME, BRANCH_DESCRIPTION);
+
+        branchLastPostService.refreshLastPostInBranch(emptyBranch);
+
+        verify(branchDao, never()).saveOrUpdate(emptyBranch);
+    }
+
+    @Test
+    public void updateLastPostInBranchShouldSetNewerPost() {
+        Branch branch = new Branch(BRANCH_NAME, BRANCH_DESCRIPTION);
+        Post oldPost = new Post(null, null);
+        ReflectionTestUtils.setField(oldPost, "creationDate", new DateTime(2000, 1, 1, 0, 0, 0, 0));
+        branch.setLastPost(oldPost);
+        Post newPost = new Post(null, null);
+
+        branchLastPostService.updateLastPostInBranch(branch, newPost);
+
+        assertEquals(branch.getLastPost(), newPost);
+        verify(branchDao).saveOrUpdate(branch);
+        verify(postDao, never()).getLastPostFor(branch);
+    }
+
+    @Test
+    public void updateLastPostInBranchShouldSetPostInEmptyBranch() {
+        Branch branch = new Branch(BRANCH_NAME, BRANCH_DESCRIPTION);
+        Post post = new Post(null, null);
+
+        branchLastPostService.updateLastPostInBranch(branch, post);
+
+        assertEquals(branch.getLastPost(), post);
+        verify(branchDao).saveOrUpdate(branch);
+    }
+
+    @Test
+    public void updateLastPostInBranchShouldKeepNewerLastPost() {
+        Branch branch = new Branch(BRANCH_NAME, BRANCH_DESCRIPTION);
+        Post lastPost = new Post(null, null);
+        branch.setLastPost(lastPost);
+        Post oldPost = new Post(null, null);
+        ReflectionTestUtils.setField(oldPost, "creationDate", new DateTime(2000, 1, 1, 0, 0, 0, 0));
+
+        branchLastPostService.updateLastPostInBranch(branch, oldPost);
+
+        assertEquals(branch.getLastPost(), lastPost);
+        verify(branchDao, never()).saveOrUpdate(branch);
+    }
 }
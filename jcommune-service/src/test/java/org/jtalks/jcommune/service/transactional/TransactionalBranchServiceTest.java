@@ -16,29 +16,30 @@ package org.jtalks.jcommune.service.transactional;
 
 import org.jtalks.common.model.dao.GroupDao;
 import org.jtalks.common.model.entity.Group;
-import org.jtalks.common.model.entity.Section;
 import org.jtalks.common.model.permissions.BranchPermission;
 import org.jtalks.jcommune.model.dao.BranchDao;
 import org.jtalks.jcommune.model.dao.SectionDao;
 import org.jtalks.jcommune.model.dao.TopicDao;
+import org.jtalks.jcommune.model.dto.ForumStructure;
 import org.jtalks.jcommune.model.dto.GroupsPermissions;
 import org.jtalks.jcommune.model.dto.PermissionChanges;
 import org.jtalks.jcommune.model.entity.*;
 import org.jtalks.jcommune.service.BranchLastPostService;
 import org.jtalks.jcommune.service.BranchService;
-import org.jtalks.jcommune.service.TopicModificationService;
 import org.jtalks.jcommune.service.UserService;
+import org.jtalks.jcommune.service.nontransactional.BranchStatisticsCacheService;
+import org.jtalks.jcommune.service.nontransactional.ForumStructureCacheService;
 import org.jtalks.jcommune.plugin.api.exceptions.NotFoundException;
 import org.jtalks.jcommune.service.security.PermissionService;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
-import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
 import static org.testng.Assert.*;
@@ -67,16 +68,17 @@ public class TransactionalBranchServiceTest {
     @Mock
     private BranchService branchService;
     @Mock
-    private TopicModificationService topicService;
-    @Mock
     private UserService userService;
     @Mock
     private PermissionService permissionService;
     @Mock
     private BranchLastPostService lastPostService;
+    @Mock
+    private BranchStatisticsCacheService statisticsCacheService;
+    @Mock
+    private ForumStructureCacheService structureCacheService;
 
     private Topic topic;
-    private Section section;
 
     @BeforeMethod
     public void setUp() throws Exception {
@@ -86,11 +88,14 @@ public class TransactionalBranchServiceTest {
                 sectionDao,
                 topicDao,
                 groupDao,
-                topicService,
                 permissionService,
-                lastPostService);
+                lastPostService,
+                statisticsCacheService,
+                structureCacheService,
+                userService);
+        when(statisticsCacheService.getPostsCount(anyLong())).thenReturn(null);
+        when(statisticsCacheService.getTopicsCount(anyLong())).thenReturn(null);
         topic = null;
-        section = null;
     }
 
     @Test
@@ -114,58 +119,130 @@ public class TransactionalBranchServiceTest {
 
     @Test
     public void getAvailableBranchesInSectionCheckPermission() throws NotFoundException {
-        setUpGetAvailableBranchesInSection();
-        when(permissionService.hasBranchPermission(section.getBranches().get(1).getId(),
-                BranchPermission.VIEW_TOPICS)).thenReturn(true);
+        setUpGetAvailableBranches();
+        when(topicDao.getAllowedBranchesIds(any(JCUser.class))).thenReturn(Arrays.asList(3L));
 
-        List<Branch> result = branchService.getAvailableBranchesInSection(SECTION_ID, TOPIC_ID);
+        List<ForumStructure.BranchNode> result = branchService.getAvailableBranchesInSection(SECTION_ID, TOPIC_ID);
         assertEquals(result.size(), 1, "User shouldn't see branches without view permission.");
+        assertEquals(result.get(0).getId(), 3L);
     }
 
     @Test
     public void getAvailableBranchesInSectionShouldRemoveTopicBranch() throws NotFoundException {
-        setUpGetAvailableBranchesInSection();
-        for (org.jtalks.common.model.entity.Branch branch : section.getBranches()) {
-            when(permissionService.hasBranchPermission(branch.getId(), BranchPermission.VIEW_TOPICS)).thenReturn(true);
+        setUpGetAvailableBranches();
+        when(topicDao.getAllowedBranchesIds(any(JCUser.class))).thenReturn(Arrays.asList(1L, 2L, 3L));
+
+        List<ForumStructure.BranchNode> result = branchService.getAvailableBranchesInSection(SECTION_ID, TOPIC_ID);
+        assertEquals(result.size(), 2);
+        for (ForumStructure.BranchNode branch : result) {
+            assertFalse(branch.getId() == topic.getBranch().getId(),
+                    "Topic shouldn't be accessible for move to the same branch.");
         }
+    }
 
-        List<Branch> result = branchService.getAvailableBranchesInSection(SECTION_ID, TOPIC_ID);
-        assertFalse(result.contains(topic.getBranch()), "Topic shouldn't be accessible for move to the same branch.");
+    @Test(expectedExceptions = {NotFoundException.class})
+    public void getAvailableBranchesInSectionWithIncorrectSectionId() throws NotFoundException {
+        setUpGetAvailableBranches();
+        branchService.getAvailableBranchesInSection(42L, TOPIC_ID);
     }
 
-    private void setUpGetAvailableBranchesInSection() {
-        topic = ObjectsFactory.getDefaultTopic();
-        section = ObjectsFactory.getDefaultSectionWithBranches();
-        Branch topicBranch = (Branch) section.getBranches().get(0);
-        topicBranch.addTopic(topic);
+    @Test
+    public void getAllAvailableBranchesCheckPermission() {
+        setUpGetAvailableBranches();
+        when(topicDao.getAllowedBranchesIds(any(JCUser.class))).thenReturn(Arrays.asList(1L, 2L, 4L));
 
-        when(sectionDao.isExist(SECTION_ID)).thenReturn(true);
-        when(sectionDao.get(SECTION_ID)).thenReturn(section);
+        List<ForumStructure.BranchNode> result = branchService.getAllAvailableBranches(TOPIC_ID);
+        assertEquals(result.size(), 2, "User shouldn't see branches without view permission.");
+        assertEquals(result.get(0).getId(), 2L);
+        assertEquals(result.get(1).getId(), 4L);
+    }
+
+    private void setUpGetAvailableBranches() {
+        ForumStructure.SectionNode first = new ForumStructure.SectionNode(SECTION_ID, "first", Arrays.asList(
+                new ForumStructure.BranchNode(1L, "1"),
+                new ForumStructure.BranchNode(2L, "2"),
+                new ForumStructure.BranchNode(3L, "3")));
+        ForumStructure.SectionNode second = new ForumStructure.SectionNode(2L, "second", Arrays.asList(
+                new ForumStructure.BranchNode(4L, "4"),
+                new ForumStructure.BranchNode(5L, "5")));
+        when(structureCacheService.getStructure()).thenReturn(new ForumStructure(Arrays.asList(first, second)));
+
+        topic = ObjectsFactory.getDefaultTopic();
+        ObjectsFactory.getDefaultBranchWithTopic(1L, topic);
         when(topicDao.get(TOPIC_ID)).thenReturn(topic);
+
+        JCUser user = new JCUser("username", "email", "password");
+        Group group = new Group("group");
+        group.setId(1L);
+        user.addGroup(group);
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(structureCacheService.putVisibleBranchIds(anyString(), anyCollectionOf(Long.class), anyLong()))
+                .thenAnswer(new Answer<Set<Long>>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Set<Long> answer(InvocationOnMock invocation) throws Throwable {
+                        return new HashSet<>((Collection<Long>) invocation.getArguments()[1]);
+                    }
+                });
     }
 
-    @Test(expectedExceptions = {NotFoundException.class})
-    public void getAvailableBranchesInSectionWithIncorrectSectionId() throws NotFoundException {
-        when(sectionDao.isExist(SECTION_ID)).thenReturn(false);
-        branchService.getAvailableBranchesInSection(SECTION_ID, TOPIC_ID);
+    @Test
+    public void getForumStructureShouldLoadStructureAndCacheItWhenNotCached() {
+        ForumStructure structure = new ForumStructure(Collections.<ForumStructure.SectionNode>emptyList());
+        when(structureCacheService.getVersion()).thenReturn(5L);
+        when(sectionDao.getForumStructure()).thenReturn(structure);
+
+        assertSame(branchService.getForumStructure(), structure);
+        verify(structureCacheService).putStructure(structure, 5L);
     }
 
     @Test
-    public void getAllAvailableBranchesCheckPermission() {
-        List<Section> sections = ObjectsFactory.getDefaultSectionListWithBranches();
-        topic = ObjectsFactory.getDefaultTopic();
-        Branch topicBranch = (Branch) sections.get(0).getBranches().get(0);
-        topicBranch.addTopic(topic);
+    public void getForumStructureShouldNotQueryDatabaseWhenStructureIsCached() {
+        ForumStructure structure = new ForumStructure(Collections.<ForumStructure.SectionNode>emptyList());
+        when(structureCacheService.getStructure()).thenReturn(structure);
 
-        when(sectionDao.getAll()).thenReturn(sections);
-        when(topicDao.get(TOPIC_ID)).thenReturn(topic);
-        when(permissionService.hasBranchPermission(sections.get(0).getBranches().get(1).getId(),
-                BranchPermission.VIEW_TOPICS)).thenReturn(true);
-        when(permissionService.hasBranchPermission(sections.get(1).getBranches().get(2).getId(),
-                BranchPermission.VIEW_TOPICS)).thenReturn(true);
+        assertSame(branchService.getForumStructure(), structure);
+        verify(sectionDao, never()).getForumStructure();
+    }
 
-        List<Branch> result = branchService.getAllAvailableBranches(TOPIC_ID);
-        assertEquals(result.size(), 2, "User shouldn't see branches without view permission.");
+    @Test
+    public void getVisibleBranchIdsShouldUseSortedGroupIdsAsSignature() {
+        JCUser user = new JCUser("username", "email", "password");
+        Group first = new Group("first");
+        first.setId(7L);
+        Group second = new Group("second");
+        second.setId(3L);
+        user.addGroup(first);
+        user.addGroup(second);
+        Set<Long> cached = new HashSet<>(Arrays.asList(1L, 2L));
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(structureCacheService.getVisibleBranchIds("3,7")).thenReturn(cached);
+
+        assertSame(branchService.getVisibleBranchIds(), cached);
+        verify(topicDao, never()).getAllowedBranchesIds(any(JCUser.class));
+    }
+
+    @Test
+    public void getVisibleBranchIdsShouldQueryDatabaseAndCacheResultWhenNotCached() {
+        AnonymousUser user = new AnonymousUser();
+        List<Long> allowed = Arrays.asList(1L, 2L);
+        Set<Long> expected = new HashSet<>(allowed);
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(structureCacheService.getVersion()).thenReturn(2L);
+        when(topicDao.getAllowedBranchesIds(user)).thenReturn(allowed);
+        when(structureCacheService.putVisibleBranchIds("anonymous", allowed, 2L)).thenReturn(expected);
+
+        assertSame(branchService.getVisibleBranchIds(), expected);
+    }
+
+    @Test
+    public void getVisibleBranchIdsShouldNotQueryDatabaseForUserWithoutGroups() {
+        when(userService.getCurrentUser()).thenReturn(new JCUser("username", "email", "password"));
+
+        branchService.getVisibleBranchIds();
+
+        verify(topicDao, never()).getAllowedBranchesIds(any(JCUser.class));
+        verify(structureCacheService).putVisibleBranchIds("", Collections.<Long>emptyList(), 0L);
     }
 
     @Test
@@ -218,63 +295,52 @@ public class TransactionalBranchServiceTest {
     }
 
     @Test
-    public void testGetBranch() throws NotFoundException {
-        Branch expectedBranch = new Branch(BRANCH_NAME, BRANCH_DESCRIPTION);
-        when(branchDao.isExist(BRANCH_ID)).thenReturn(true);
-        when(branchDao.get(BRANCH_ID)).thenReturn(expectedBranch);
+    public void fillStatisticInfoShouldCacheCountsLoadedFromDatabase() {
+        Branch branch = new Branch(BRANCH_NAME, BRANCH_DESCRIPTION);
+        branch.setId(BRANCH_ID);
+        when(statisticsCacheService.getVersion()).thenReturn(3L);
+        when(branchDao.getCountPostsInBranch(branch)).thenReturn(10);
+        when(topicDao.countTopics(branch)).thenReturn(20);
 
-        Branch actualBranch = branchService.get(BRANCH_ID);
+        branchService.fillStatisticInfo(Arrays.<org.jtalks.common.model.entity.Branch>asList(branch));
 
-        assertEquals(actualBranch, expectedBranch, "Branches aren't equal");
-        verify(branchDao).isExist(BRANCH_ID);
-        verify(branchDao).get(BRANCH_ID);
-    }
-
-    @Test(expectedExceptions = {NotFoundException.class})
-    public void testGetBranchWithIncorrectId() throws NotFoundException {
-        when(branchDao.isExist(BRANCH_ID)).thenReturn(false);
-
-        branchService.get(BRANCH_ID);
+        verify(statisticsCacheService).putPostsCount(BRANCH_ID, 10, 3L);
+        verify(statisticsCacheService).putTopicsCount(BRANCH_ID, 20, 3L);
     }
 
     @Test
-    public void testDeleteAllTopics() throws NotFoundException {
-        Branch expectedBranch = new Branch(BRANCH_NAME, BRANCH_DESCRIPTION);
-        expectedBranch.addTopic(new Topic());
-        expectedBranch.addTopic(new Topic());
-
-        when(branchDao.isExist(BRANCH_ID)).thenReturn(true);
-        when(branchDao.get(BRANCH_ID)).thenReturn(expectedBranch);
+    public void fillStatisticInfoShouldNotQueryDatabaseForCachedCounts() {
+        Branch branch = new Branch(BRANCH_NAME, BRANCH_DESCRIPTION);
+        branch.setId(BRANCH_ID);
+        when(statisticsCacheService.getPostsCount(BRANCH_ID)).thenReturn(10);
+        when(statisticsCacheService.getTopicsCount(BRANCH_ID)).thenReturn(20);
 
-        Branch actualBranch = branchService.deleteAllTopics(BRANCH_ID);
+        branchService.fillStatisticInfo(Arrays.<org.jtalks.common.model.entity.Branch>asList(branch));
 
-        assertEquals(actualBranch, expectedBranch, "Branches aren't equal");
-        verify(branchDao).isExist(BRANCH_ID);
-        verify(branchDao).get(BRANCH_ID);
-        verify(topicService, times(2)).deleteTopicSilent(anyLong());
+        assertEquals(branch.getPostCount(), 10);
+        assertEquals(branch.getTopicCount(), 20);
+        verify(branchDao, never()).getCountPostsInBranch(branch);
+        verify(topicDao, never()).countTopics(branch);
     }
 
     @Test
-    public void testDeleteAllTopicsInEmptyBranch() throws NotFoundException {
+    public void testGetBranch() throws NotFoundException {
         Branch expectedBranch = new Branch(BRANCH_NAME, BRANCH_DESCRIPTION);
         when(branchDao.isExist(BRANCH_ID)).thenReturn(true);
         when(branchDao.get(BRANCH_ID)).thenReturn(expectedBranch);
 
-        Branch actualBranch = branchService.deleteAllTopics(BRANCH_ID);
+        Branch actualBranch = branchService.get(BRANCH_ID);
 
         assertEquals(actualBranch, expectedBranch, "Branches aren't equal");
         verify(branchDao).isExist(BRANCH_ID);
         verify(branchDao).get(BRANCH_ID);
-        verify(topicService, times(0)).deleteTopicSilent(anyLong());
     }
 
-    @Test(expectedExceptions = NotFoundException.class)
-    public void testDeleteAllTopicsWithIncorrectId() throws NotFoundException {
+    @Test(expectedExceptions = {NotFoundException.class})
+    public void testGetBranchWithIncorrectId() throws NotFoundException {
         when(branchDao.isExist(BRANCH_ID)).thenReturn(false);
 
-        branchService.deleteAllTopics(BRANCH_ID);
-
-        assertTrue(false);
+        branchService.get(BRANCH_ID);
     }
 
     @Test(expectedExceptions = NotFoundException.class)
@@ -356,6 +422,7 @@ public class TransactionalBranchServiceTest {
 
         branchService.changeBranchPermissions(0, branchId, true, changes);
         verify(permissionService).changeGrants(expectedBranch, changes);
+        verify(structureCacheService).evict();
     }
 
     @Test
@@ -17,22 +17,28 @@ package org.jtalks.jcommune.service.transactional;
 import org.jtalks.common.model.entity.Component;
 import org.jtalks.jcommune.model.dao.ComponentDao;
 import org.jtalks.jcommune.model.entity.ComponentInformation;
+import org.jtalks.jcommune.service.dto.ForumImages;
 import org.jtalks.jcommune.service.exceptions.ImageProcessException;
 import org.jtalks.jcommune.service.nontransactional.Base64Wrapper;
+import org.jtalks.jcommune.service.nontransactional.ForumImagesCacheService;
 import org.jtalks.jcommune.service.nontransactional.ImageService;
 import org.mockito.Mock;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.util.Collections;
 import java.util.Date;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 
 /**
  * @author Anuar_Nurmakanov
@@ -53,6 +59,8 @@ public class TransactionalComponentServiceTest {
     private ImageService imageService;
     @Mock
     private Component component;
+    @Mock
+    private ForumImagesCacheService forumImagesCacheService;
 
     private TransactionalComponentService componentService;
 
@@ -60,7 +68,7 @@ public class TransactionalComponentServiceTest {
     public void init() {
         initMocks(this);
         when(component.getId()).thenReturn(COMPONENT_ID);
-        componentService = new TransactionalComponentService(imageService, componentDao);
+        componentService = new TransactionalComponentService(imageService, componentDao, forumImagesCacheService);
     }
 
     @Test
@@ -105,6 +113,7 @@ public class TransactionalComponentServiceTest {
         verify(component).setProperty(TransactionalComponentService.LOGO_PROPERTY, LOGO);
 
         verify(component).setProperty(eq(TransactionalComponentService.COMPONENT_INFO_CHANGE_DATE_PROPERTY), anyString());
+        verify(forumImagesCacheService).evict();
     }
 
     @Test(dataProvider = "emptyValues")
@@ -190,5 +199,27 @@ public class TransactionalComponentServiceTest {
 
         assertNull(modificationTime);
     }
+
+    @Test
+    public void getForumImagesShouldReturnCachedImagesWithoutReadingComponent() {
+        ForumImages images = new ForumImages(new Date(42), Collections.<String, byte[]>emptyMap());
+        when(forumImagesCacheService.getImages()).thenReturn(images);
+
+        assertSame(componentService.getForumImages(), images);
+        verifyZeroInteractions(componentDao);
+        verify(forumImagesCacheService, never()).putImages(any(Component.class), any(Date.class), anyLong());
+    }
+
+    @Test
+    public void getForumImagesShouldLoadImagesFromComponentIfTheyAreNotCached() {
+        long lastModificationTime = 42;
+        ForumImages images = new ForumImages(new Date(), Collections.<String, byte[]>emptyMap());
+        when(forumImagesCacheService.getVersion()).thenReturn(7L);
+        when(componentDao.getComponent()).thenReturn(component);
+        when(component.getProperty(TransactionalComponentService.COMPONENT_INFO_CHANGE_DATE_PROPERTY))
+                .thenReturn(String.valueOf(lastModificationTime));
+        when(forumImagesCacheService.putImages(component, new Date(lastModificationTime), 7L)).thenReturn(images);
+
+        assertSame(componentService.getForumImages(), images);
+    }
 }
-    
@@ -18,14 +18,21 @@ import org.jtalks.common.model.entity.Component;
 import org.jtalks.jcommune.model.dao.ExternalLinkDao;
 import org.jtalks.jcommune.model.entity.ExternalLink;
 import org.jtalks.jcommune.service.ExternalLinkService;
+import org.jtalks.jcommune.service.nontransactional.BannerAndLinkCacheService;
 import org.mockito.Mock;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
+import java.util.List;
+
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
+import static org.testng.Assert.assertSame;
 
 /**
  * @author Alexandre Teterin
@@ -33,18 +40,35 @@ import static org.mockito.MockitoAnnotations.initMocks;
 public class TransactionalExternalLinkServiceTest {
     @Mock
     private ExternalLinkDao dao;
+    @Mock
+    private BannerAndLinkCacheService cacheService;
     private ExternalLinkService service;
 
     @BeforeMethod
     public void setUp() throws Exception {
         initMocks(this);
-        service = new TransactionalExternalLinkService(dao);
+        service = new TransactionalExternalLinkService(dao, cacheService);
     }
 
     @Test
     public void testGetLinks() throws Exception {
+        List<ExternalLink> links = Arrays.asList(new ExternalLink());
+        when(cacheService.getVersion()).thenReturn(3L);
+        when(dao.getAll()).thenReturn(links);
+
         service.getLinks();
+
         verify(dao).getAll();
+        verify(cacheService).putExternalLinks(links, 3L);
+    }
+
+    @Test
+    public void cachedLinksShouldBeReturnedWithoutQueryingDatabase() throws Exception {
+        List<ExternalLink> links = Arrays.asList(new ExternalLink());
+        when(cacheService.getExternalLinks()).thenReturn(links);
+
+        assertSame(service.getLinks(), links);
+        verify(dao, never()).getAll();
     }
 
     @Test
@@ -53,6 +77,7 @@ public class TransactionalExternalLinkServiceTest {
         Component component = new Component();
         service.saveLink(linkToSave, component);
         verify(dao).saveOrUpdate(linkToSave);
+        verify(cacheService).evictExternalLinks();
     }
 
     @Test
@@ -60,5 +85,6 @@ public class TransactionalExternalLinkServiceTest {
         Component component = new Component();
         service.deleteLink(1L, component);
         verify(dao).delete(eq(1L));
+        verify(cacheService).evictExternalLinks();
     }
 }
@@ -15,11 +15,14 @@
 package org.jtalks.jcommune.service.transactional;
 
 import org.joda.time.DateTime;
+import org.jtalks.jcommune.model.dao.ForumReadedMarkerDao;
 import org.jtalks.jcommune.model.dao.LastReadPostDao;
 import org.jtalks.jcommune.model.dao.BranchReadedMarkerDao;
-import org.jtalks.jcommune.model.dao.UserDao;
 import org.jtalks.jcommune.model.entity.*;
 import org.jtalks.jcommune.service.UserService;
+import org.jtalks.jcommune.service.nontransactional.LastReadPostCleanupService;
+import org.jtalks.jcommune.service.nontransactional.UserDataCacheService;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatcher;
 import org.mockito.Matchers;
 import org.mockito.Mock;
@@ -30,6 +33,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -47,9 +51,13 @@ public class TransactionalLastReadPostServiceTest {
     @Mock
     private UserService userService;
     @Mock
-    private UserDao userDao;
+    private ForumReadedMarkerDao forumReadedMarkerDao;
     @Mock
     private BranchReadedMarkerDao branchReadedMarkerDao;
+    @Mock
+    private LastReadPostCleanupService lastReadPostCleanupService;
+    @Mock
+    private UserDataCacheService userDataCacheService;
     //
     private TransactionalLastReadPostService lastReadPostService;
 
@@ -61,8 +69,10 @@ public class TransactionalLastReadPostServiceTest {
         lastReadPostService = new TransactionalLastReadPostService(
                 userService,
                 lastReadPostDao,
-                userDao,
-                branchReadedMarkerDao);
+                forumReadedMarkerDao,
+                branchReadedMarkerDao,
+                lastReadPostCleanupService,
+                userDataCacheService);
     }
 
     @Test
@@ -71,7 +81,7 @@ public class TransactionalLastReadPostServiceTest {
         when(lastReadPostDao.getLastReadPosts(user, Collections.<Topic>emptyList()))
                 .thenReturn(Collections.<LastReadPost>emptyList());
         DateTime forumMarkedAsReadDate = new DateTime().plusYears(1);
-        user.setAllForumMarkedAsReadTime(forumMarkedAsReadDate);
+        when(forumReadedMarkerDao.getMarkTime(user)).thenReturn(forumMarkedAsReadDate);
         when(userService.getCurrentUser()).thenReturn(user);
 
         List<Topic> result = lastReadPostService.fillLastReadPostForTopics(topicList);
@@ -83,7 +93,7 @@ public class TransactionalLastReadPostServiceTest {
     @Test
     public void userShouldSeeUpdatesWhenForumMarkedAsAllReadAndTopicsHaveModificationsAfter() {
         DateTime forumMarkedAsReadDate = new DateTime().minusYears(1);
-        user.setAllForumMarkedAsReadTime(forumMarkedAsReadDate);
+        when(forumReadedMarkerDao.getMarkTime(user)).thenReturn(forumMarkedAsReadDate);
         when(userService.getCurrentUser()).thenReturn(user);
         List<Topic> topics = ObjectsFactory.topics(user, 1);
         when(lastReadPostDao.getLastReadPosts(user, Collections.<Topic>emptyList()))
@@ -95,6 +105,28 @@ public class TransactionalLastReadPostServiceTest {
         assertTrue(result.get(0).isHasUpdates());
     }
 
+    @Test
+    public void userShouldNotSeeUpdatesWhenBranchMarkedAsReadAfterTopicsModifications() {
+        when(forumReadedMarkerDao.getMarkTime(user)).thenReturn(new DateTime().minusYears(1));
+        when(userService.getCurrentUser()).thenReturn(user);
+        List<Topic> topics = ObjectsFactory.topics(user, 2);
+        Branch branch = topics.get(0).getBranch();
+        topics.get(1).setBranch(branch);
+        BranchReadedMarker marker = new BranchReadedMarker(user, branch);
+        marker.setMarkTime(new DateTime().plusYears(1));
+        when(branchReadedMarkerDao.getMarkersFor(eq(user), anyCollectionOf(Branch.class)))
+                .thenReturn(Collections.singletonList(marker));
+        when(lastReadPostDao.getLastReadPosts(user, Collections.<Topic>emptyList()))
+                .thenReturn(Collections.<LastReadPost>emptyList());
+
+        List<Topic> result = lastReadPostService.fillLastReadPostForTopics(topics);
+
+        assertEquals(result.size(), 2);
+        assertFalse(result.get(0).isHasUpdates());
+        assertFalse(result.get(1).isHasUpdates());
+        verify(branchReadedMarkerDao, times(1)).getMarkersFor(eq(user), anyCollectionOf(Branch.class));
+    }
+
     @Test
     public void authenticatedUserShouldSeeReadTopicAsTopicWithoutUpdates() {
         List<Topic> topicList = ObjectsFactory.topics(user, 1);
@@ -139,7 +171,7 @@ public class TransactionalLastReadPostServiceTest {
     @Test
     public void updateLastReadPostToAuthUserWhenAllForumMarkedBefore() {
         Topic topic = this.createTestTopic();
-        user.setAllForumMarkedAsReadTime(topic.getModificationDate().minusMinutes(2));
+        when(forumReadedMarkerDao.getMarkTime(user)).thenReturn(topic.getModificationDate().minusMinutes(2));
         LastReadPost post = new LastReadPost(user, topic, topic.getLastPost().getCreationDate().minusMinutes(1));
         when(userService.getCurrentUser()).thenReturn(user);
         when(lastReadPostDao.getLastReadPost(user, topic)).thenReturn(post);
@@ -152,7 +184,7 @@ public class TransactionalLastReadPostServiceTest {
     @Test
     public void updateLastReadPostToAuthUserWhenAllForumMarkedNull() {
         Topic topic = this.createTestTopic();
-        user.setAllForumMarkedAsReadTime(null);
+        when(forumReadedMarkerDao.getMarkTime(user)).thenReturn(null);
         LastReadPost post = new LastReadPost(user, topic, topic.getLastPost().getCreationDate().minusMinutes(1));
         when(userService.getCurrentUser()).thenReturn(user);
         when(lastReadPostDao.getLastReadPost(user, topic)).thenReturn(post);
@@ -165,7 +197,7 @@ public class TransactionalLastReadPostServiceTest {
     @Test
     public void notUpdateLastReadPostToAuthUserWhenAllForumAfter() {
         Topic topic = this.createTestTopic();
-        user.setAllForumMarkedAsReadTime(topic.getModificationDate().plusSeconds(1));
+        when(forumReadedMarkerDao.getMarkTime(user)).thenReturn(topic.getModificationDate().plusSeconds(1));
         LastReadPost post = new LastReadPost(user, topic, new DateTime());
         when(userService.getCurrentUser()).thenReturn(user);
         when(lastReadPostDao.getLastReadPost(user, topic)).thenReturn(post);
@@ -281,14 +313,52 @@ public class TransactionalLastReadPostServiceTest {
     @Test
     public void markAllForumAsReadShouldRememberMarkDateAndClearLastReadPostsForUser() {
         JCUser user = new JCUser("user", "use@gmail.com", "gangam-style-password");
+        user.setId(42L);
         when(userService.getCurrentUser()).thenReturn(user);
 
         lastReadPostService.markAllForumAsReadForCurrentUser();
 
-        assertNotNull(user.getAllForumMarkedAsReadTime(), "Mark date should be remembered for user.");
-        verify(userDao).saveOrUpdate(user);
-        verify(lastReadPostDao).deleteLastReadPostsFor(user);
+        ArgumentCaptor<DateTime> markTime = ArgumentCaptor.forClass(DateTime.class);
+        verify(forumReadedMarkerDao).markForumAsRead(eq(user), markTime.capture());
+        assertNotNull(markTime.getValue(), "Mark date should be remembered for user.");
+        verify(lastReadPostCleanupService).deleteLastReadPostsCoveredByMark(42L, markTime.getValue());
+        verify(userDataCacheService).evictForumNeverMarkedAsReadBy(42L);
+        verifyZeroInteractions(lastReadPostDao);
+    }
+
+    @Test
+    public void markerShouldNotBeLookedUpForUserWhoNeverMarkedForumAsRead() {
+        user.setId(42L);
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(userDataCacheService.isForumNeverMarkedAsReadBy(42L)).thenReturn(true);
+        List<Topic> topics = ObjectsFactory.topics(user, 1);
+
+        lastReadPostService.fillLastReadPostForTopics(topics);
+        lastReadPostService.markTopicAsRead(topics.get(0));
+
+        verify(forumReadedMarkerDao, never()).getMarkTime(user);
+    }
+
+    @Test
+    public void absenceOfMarkerShouldBeRememberedAtVersionTakenBeforeLookup() {
+        user.setId(42L);
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(userDataCacheService.getVersion()).thenReturn(3L);
+
+        lastReadPostService.fillLastReadPostForTopics(ObjectsFactory.topics(user, 1));
+
+        verify(userDataCacheService).putForumNeverMarkedAsReadBy(42L, 3L);
+    }
+
+    @Test
+    public void existingMarkerShouldNotBeRememberedAsAbsent() {
+        user.setId(42L);
+        when(userService.getCurrentUser()).thenReturn(user);
+        when(forumReadedMarkerDao.getMarkTime(user)).thenReturn(new DateTime());
+
+        lastReadPostService.fillLastReadPostForTopics(ObjectsFactory.topics(user, 1));
 
+        verify(userDataCacheService, never()).putForumNeverMarkedAsReadBy(anyLong(), anyLong());
     }
 
     private Topic createTestTopic() {
@@ -18,25 +18,34 @@ import org.joda.time.DateTime;
 import org.jtalks.common.model.dao.Crud;
 import org.jtalks.common.model.dao.GroupDao;
 import org.jtalks.common.model.entity.User;
-import org.jtalks.common.model.permissions.JtalksPermission;
 import org.jtalks.common.security.SecurityService;
-import org.jtalks.common.security.acl.builders.CompoundAclBuilder;
+import org.jtalks.jcommune.model.dao.PollVoteDao;
+import org.jtalks.jcommune.model.entity.AnonymousUser;
 import org.jtalks.jcommune.model.entity.JCUser;
 import org.jtalks.jcommune.model.entity.Poll;
 import org.jtalks.jcommune.model.entity.PollItem;
+import org.jtalks.jcommune.model.entity.PollVote;
 import org.jtalks.jcommune.service.PollService;
 import org.jtalks.jcommune.service.UserService;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.access.AccessDeniedException;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
-import static org.jtalks.jcommune.service.TestUtils.mockAclBuilder;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * @author Anuar Nurmakanov
@@ -50,12 +59,12 @@ public class TransactionalPollServiceTest {
     @Mock
     private Crud<Poll> pollDao;
     @Mock
+    private PollVoteDao pollVoteDao;
+    @Mock
     private GroupDao groupDao;
     @Mock
     private SecurityService securityService;
     @Mock
-    private CompoundAclBuilder<User> aclBuilder;
-    @Mock
     private UserService userService;
     private JCUser jcUser;
 
@@ -63,13 +72,9 @@ public class TransactionalPollServiceTest {
     public void init() {
         MockitoAnnotations.initMocks(this);
         pollService = new TransactionalPollService(pollDao, groupDao, pollOptionDao,
-                securityService, userService);
-        aclBuilder = mockAclBuilder();
-        Mockito.when(aclBuilder.restrict(Mockito.any(JtalksPermission.class))).thenReturn(aclBuilder);
-        Mockito.when(aclBuilder.on(Mockito.any(Poll.class))).thenReturn(aclBuilder);
-        Mockito.when(securityService.<User>createAclBuilder()).thenReturn(aclBuilder);
+                pollVoteDao, securityService, userService);
         jcUser = new JCUser("name", "email", "password");
-        Mockito.when(userService.getCurrentUser()).thenReturn(jcUser);
+        when(userService.getCurrentUser()).thenReturn(jcUser);
     }
 
     @Test
@@ -77,13 +82,13 @@ public class TransactionalPollServiceTest {
         List<Long> pollOptionIds = Arrays.asList(1L);
         Poll poll = createPollWithOptions(POLL_ID, pollOptionIds, VOTES_COUNT, null);
 
-        Mockito.when(pollDao.get(POLL_ID)).thenReturn(poll);
+        when(pollDao.get(POLL_ID)).thenReturn(poll);
 
         Poll resultPoll = pollService.vote(POLL_ID, pollOptionIds);
-        PollItem resultPollOption = resultPoll.getPollItems().get(0);
 
-        Assert.assertEquals(resultPollOption.getVotesCount(), VOTES_COUNT + 1,
-                "Count of votes should be increased.");
+        Assert.assertSame(resultPoll, poll);
+        verify(pollVoteDao).saveOrUpdate(any(PollVote.class));
+        verify(pollVoteDao).increaseVotesCount(poll, pollOptionIds);
     }
 
     @Test
@@ -92,13 +97,12 @@ public class TransactionalPollServiceTest {
         DateTime endingDate = new DateTime(1999, 1, 1, 1, 1, 1, 1);
         Poll poll = createPollWithOptions(POLL_ID, pollOptionIds, VOTES_COUNT, endingDate);
 
-        Mockito.when(pollDao.get(POLL_ID)).thenReturn(poll);
+        when(pollDao.get(POLL_ID)).thenReturn(poll);
 
-        Poll resultPoll = pollService.vote(POLL_ID, pollOptionIds);
-        PollItem resultPollOption = resultPoll.getPollItems().get(0);
+        pollService.vote(POLL_ID, pollOptionIds);
 
-        Assert.assertEquals(resultPollOption.getVotesCount(), VOTES_COUNT,
-                "Count of votes should be the same.");
+        verify(pollVoteDao, never()).saveOrUpdate(any(PollVote.class));
+        verify(pollVoteDao, never()).increaseVotesCount(any(Poll.class), anyCollectionOf(Long.class));
     }
 
     @Test
@@ -106,14 +110,12 @@ public class TransactionalPollServiceTest {
         List<Long> pollOptionIds = Arrays.asList(1L, 5L, 9L);
         Poll poll = createPollWithOptions(POLL_ID, pollOptionIds, VOTES_COUNT, null);
 
-        Mockito.when(pollDao.get(Mockito.anyLong())).thenReturn(poll);
+        when(pollDao.get(Mockito.anyLong())).thenReturn(poll);
 
-        Poll resultPoll = pollService.vote(POLL_ID, pollOptionIds);
+        pollService.vote(POLL_ID, pollOptionIds);
 
-        for (PollItem option : resultPoll.getPollItems()) {
-            Assert.assertEquals(option.getVotesCount(), VOTES_COUNT + 1,
-                    "Count of votes should be increased.");
-        }
+        verify(pollVoteDao).saveOrUpdate(any(PollVote.class));
+        verify(pollVoteDao).increaseVotesCount(poll, pollOptionIds);
     }
 
     @Test
@@ -122,7 +124,7 @@ public class TransactionalPollServiceTest {
         DateTime endingDate = new DateTime(1999, 1, 1, 1, 1, 1, 1);
         Poll poll = createPollWithOptions(POLL_ID, pollOptionIds, VOTES_COUNT, endingDate);
 
-        Mockito.when(pollDao.get(Mockito.anyLong())).thenReturn(poll);
+        when(pollDao.get(Mockito.anyLong())).thenReturn(poll);
 
         Poll resultPoll = pollService.vote(POLL_ID, pollOptionIds);
 
@@ -130,25 +132,66 @@ public class TransactionalPollServiceTest {
             Assert.assertEquals(option.getVotesCount(), VOTES_COUNT,
                     "Count of votes should be the same.");
         }
+        verify(pollVoteDao, never()).increaseVotesCount(any(Poll.class), anyCollectionOf(Long.class));
     }
 
     @Test
     public void testAddIncorrectVotes() {
         List<Long> pollOptionIds = Arrays.asList(1L, 5L, 9L);
         List<Long> incorrectPollOptionIds = Arrays.asList(11L, 13L);
-        DateTime endingDate = new DateTime(1999, 1, 1, 1, 1, 1, 1);
-        Poll poll = createPollWithOptions(POLL_ID, pollOptionIds, VOTES_COUNT, endingDate);
+        Poll poll = createPollWithOptions(POLL_ID, pollOptionIds, VOTES_COUNT, null);
 
-        Mockito.when(pollDao.get(Mockito.anyLong())).thenReturn(poll);
+        when(pollDao.get(Mockito.anyLong())).thenReturn(poll);
 
-        Poll resultPoll = pollService.vote(POLL_ID, incorrectPollOptionIds);
+        pollService.vote(POLL_ID, incorrectPollOptionIds);
 
-        for (PollItem option : resultPoll.getPollItems()) {
-            Assert.assertEquals(option.getVotesCount(), VOTES_COUNT,
-                    "Count of votes should be the same.");
+        verify(pollVoteDao).increaseVotesCount(poll, Collections.<Long>emptyList());
+    }
+
+    @Test(expectedExceptions = AccessDeniedException.class)
+    public void testRevoteIsProhibited() {
+        List<Long> pollOptionIds = Arrays.asList(1L);
+        Poll poll = createPollWithOptions(POLL_ID, pollOptionIds, VOTES_COUNT, null);
+
+        when(pollDao.get(POLL_ID)).thenReturn(poll);
+        when(pollVoteDao.isVoted(poll, jcUser)).thenReturn(true);
+
+        pollService.vote(POLL_ID, pollOptionIds);
+    }
+
+    @Test
+    public void concurrentRevoteShouldBeProhibitedAsPlainRevote() {
+        List<Long> pollOptionIds = Arrays.asList(1L);
+        Poll poll = createPollWithOptions(POLL_ID, pollOptionIds, VOTES_COUNT, null);
+        when(pollDao.get(POLL_ID)).thenReturn(poll);
+        doThrow(new DataIntegrityViolationException("Duplicate vote"))
+                .when(pollVoteDao).saveOrUpdate(any(PollVote.class));
+
+        try {
+            pollService.vote(POLL_ID, pollOptionIds);
+            Assert.fail("Revote should be prohibited");
+        } catch (AccessDeniedException e) {
+            verify(pollVoteDao, never()).increaseVotesCount(any(Poll.class), anyCollectionOf(Long.class));
         }
     }
 
+    @Test
+    public void testIsVotedByCurrentUser() {
+        Poll poll = createPollWithOptions(POLL_ID, Arrays.asList(1L), VOTES_COUNT, null);
+        when(pollVoteDao.isVoted(poll, jcUser)).thenReturn(true);
+
+        Assert.assertTrue(pollService.isVotedByCurrentUser(poll));
+    }
+
+    @Test
+    public void testIsVotedByAnonymousUser() {
+        Poll poll = createPollWithOptions(POLL_ID, Arrays.asList(1L), VOTES_COUNT, null);
+        when(userService.getCurrentUser()).thenReturn(new AnonymousUser());
+
+        Assert.assertFalse(pollService.isVotedByCurrentUser(poll));
+        verify(pollVoteDao, never()).isVoted(any(Poll.class), any(JCUser.class));
+    }
+
     private Poll createPollWithOptions(Long pollId, List<Long> pollOptionIds,
                                        int initialVoteCount, DateTime endingDate) {
         Poll poll = new Poll("Poll");
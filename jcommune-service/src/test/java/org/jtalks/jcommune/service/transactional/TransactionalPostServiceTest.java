@@ -15,10 +15,10 @@
 package org.jtalks.jcommune.service.transactional;
 
 import org.jtalks.common.model.dao.Crud;
-import org.jtalks.common.model.dao.hibernate.GenericDao;
 import org.jtalks.common.model.permissions.BranchPermission;
-import org.jtalks.common.security.SecurityService;
 import org.jtalks.jcommune.model.dao.PostDao;
+import org.jtalks.jcommune.model.dao.PostDraftDao;
+import org.jtalks.jcommune.model.dao.PostVoteDao;
 import org.jtalks.jcommune.model.dao.TopicDao;
 import org.jtalks.jcommune.model.dto.PageRequest;
 import org.jtalks.jcommune.model.entity.*;
@@ -31,10 +31,14 @@ import org.jtalks.jcommune.service.BranchLastPostService;
 import org.jtalks.jcommune.service.PostService;
 import org.jtalks.jcommune.service.UserService;
 import org.jtalks.jcommune.plugin.api.exceptions.NotFoundException;
+import org.jtalks.jcommune.service.nontransactional.BranchStatisticsCacheService;
+import org.jtalks.jcommune.service.nontransactional.FeedCacheService;
 import org.jtalks.jcommune.service.nontransactional.MentionedUsers;
 import org.jtalks.jcommune.service.nontransactional.NotificationService;
+import org.jtalks.jcommune.service.nontransactional.PostDraftStore;
 import org.jtalks.jcommune.service.security.AclClassName;
 import org.jtalks.jcommune.service.security.PermissionService;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -79,8 +83,6 @@ public class TransactionalPostServiceTest {
     @Mock
     private PostDao postDao;
     @Mock
-    private SecurityService securityService;
-    @Mock
     private TopicDao topicDao;
     @Mock
     private UserService userService;
@@ -97,7 +99,15 @@ public class TransactionalPostServiceTest {
     @Mock
     private TopicPlugin topicPlugin;
     @Mock
-    private GenericDao<PostDraft> postDraftDao;
+    private PostDraftDao postDraftDao;
+    @Mock
+    private PostVoteDao postVoteDao;
+    @Mock
+    private PostDraftStore postDraftStore;
+    @Mock
+    private FeedCacheService feedCacheService;
+    @Mock
+    private BranchStatisticsCacheService branchStatisticsCacheService;
 
     private PostService postService;
 
@@ -116,13 +126,16 @@ public class TransactionalPostServiceTest {
         postService = new TransactionalPostService(
                 postDao,
                 topicDao,
-                securityService,
                 notificationService,
                 userService,
                 branchLastPostService,
                 permissionService,
                 pluginLoader,
-                postDraftDao);
+                postDraftDao,
+                postVoteDao,
+                postDraftStore,
+                feedCacheService,
+                branchStatisticsCacheService);
     }
 
     @Test
@@ -150,6 +163,8 @@ public class TransactionalPostServiceTest {
         String newBody = "new body";
         Topic topic = new Topic(user, "title");
         topic.setType(TopicTypeName.DISCUSSION.getName());
+        Branch branch = new Branch("branch", "branch description");
+        topic.setBranch(branch);
         Post post = new Post(user, "");
         topic.addPost(post);
         post.setId(POST_ID);
@@ -164,6 +179,7 @@ public class TransactionalPostServiceTest {
         verify(postDao).saveOrUpdate(post);
 
         verify(userService).notifyAndMarkNewlyMentionedUsers(post);
+        verify(feedCacheService).evict(branch);
     }
 
     @Test
@@ -211,7 +227,6 @@ public class TransactionalPostServiceTest {
         assertEquals(user.getPostCount(), 1);
         assertEquals(topic.getModificationDate(), topic.getFirstPost().getCreationDate());
         verify(topicDao).saveOrUpdate(topic);
-        verify(securityService).deleteFromAcl(postForDelete);
         verify(notificationService).subscribedEntityChanged(postForDelete);
     }
 
@@ -249,7 +264,6 @@ public class TransactionalPostServiceTest {
         assertEquals(user.getPostCount(), 1);
         assertEquals(topic.getModificationDate(), topic.getFirstPost().getCreationDate());
         verify(topicDao).saveOrUpdate(topic);
-        verify(securityService).deleteFromAcl(postForDelete);
         verify(notificationService).subscribedEntityChanged(postForDelete);
 
     }
@@ -272,6 +286,8 @@ public class TransactionalPostServiceTest {
 
         assertEquals(topic.getModificationDate(), post.getCreationDate());
         verify(branchLastPostService).refreshLastPostInBranch(branch);
+        verify(feedCacheService).evict(branch);
+        verify(branchStatisticsCacheService).evict(branch.getId());
     }
 
     @Test
@@ -663,12 +679,14 @@ public class TransactionalPostServiceTest {
         JCUser user = new JCUser("username", null, null);
 
         when(userService.getCurrentUser()).thenReturn(user);
+        when(postVoteDao.saveOrFlipVote(vote)).thenReturn(1);
 
-        Post result = postService.vote(post, vote);
+        postService.vote(post, vote);
 
-        assertTrue(result.getVotes().contains(vote));
-        verify(postDao).saveOrUpdate(post);
+        assertEquals(vote.getUser(), user);
+        assertEquals(vote.getPost(), post);
         verify(postDao).changeRating(1L, 1);
+        verify(postDao, never()).saveOrUpdate(post);
     }
 
     @Test
@@ -676,17 +694,14 @@ public class TransactionalPostServiceTest {
         Post post = new Post(null, null);
         post.setId(1L);
         JCUser user = new JCUser("username", null, null);
-        PostVote vote1 = new PostVote(user);
-        vote1.setVotedUp(false);
-        post.putVote(vote1);
-        PostVote vote2 = new PostVote();
-        vote2.setVotedUp(true);
+        PostVote vote = new PostVote();
+        vote.setVotedUp(true);
 
         when(userService.getCurrentUser()).thenReturn(user);
+        when(postVoteDao.saveOrFlipVote(vote)).thenReturn(2);
 
-        postService.vote(post, vote2);
+        postService.vote(post, vote);
 
-        verify(postDao).saveOrUpdate(post);
         verify(postDao).changeRating(1L, 2);
     }
 
@@ -699,12 +714,12 @@ public class TransactionalPostServiceTest {
         JCUser user = new JCUser("username", null, null);
 
         when(userService.getCurrentUser()).thenReturn(user);
+        when(postVoteDao.saveOrFlipVote(vote)).thenReturn(-1);
 
-        Post result = postService.vote(post, vote);
+        postService.vote(post, vote);
 
-        assertTrue(result.getVotes().contains(vote));
-        verify(postDao).saveOrUpdate(post);
         verify(postDao).changeRating(1L, -1);
+        verify(postDao, never()).saveOrUpdate(post);
     }
 
     @Test
@@ -712,17 +727,14 @@ public class TransactionalPostServiceTest {
         Post post = new Post(null, null);
         post.setId(1L);
         JCUser user = new JCUser("username", null, null);
-        PostVote vote1 = new PostVote(user);
-        vote1.setVotedUp(true);
-        post.putVote(vote1);
-        PostVote vote2 = new PostVote();
-        vote2.setVotedUp(false);
+        PostVote vote = new PostVote();
+        vote.setVotedUp(false);
 
         when(userService.getCurrentUser()).thenReturn(user);
+        when(postVoteDao.saveOrFlipVote(vote)).thenReturn(-2);
 
-        postService.vote(post, vote2);
+        postService.vote(post, vote);
 
-        verify(postDao).saveOrUpdate(post);
         verify(postDao).changeRating(1L, -2);
     }
 
@@ -733,46 +745,116 @@ public class TransactionalPostServiceTest {
         JCUser user = new JCUser("username", null, null);
         PostVote vote = new PostVote(user);
         vote.setVotedUp(true);
-        post.putVote(vote);
 
         when(userService.getCurrentUser()).thenReturn(user);
+        when(postVoteDao.saveOrFlipVote(vote)).thenReturn(0);
 
         postService.vote(post, vote);
+    }
+
+    @Test
+    public void getVotesOfCurrentUserShouldLookUpVotesOfAllPostsInOneCall() {
+        Post first = new Post(null, null);
+        first.setId(1L);
+        Post second = new Post(null, null);
+        second.setId(2L);
+        Map<Long, Boolean> votes = new HashMap<>();
+        votes.put(2L, false);
+        when(postVoteDao.getVotesOfUser(currentUser, Arrays.asList(1L, 2L))).thenReturn(votes);
 
+        Map<Long, Boolean> result = postService.getVotesOfCurrentUser(Arrays.asList(first, second));
+
+        assertEquals(result, votes);
     }
 
     @Test
-    public void saverOrUpdateDraftShouldCreateNewDraftIfUserStillHasNoDraftsInSpecifiedTopic() {
-        Topic topic = new Topic();
-        JCUser currentUser = new JCUser("username", null, null);
-        String content = "content";
+    public void getVotesOfCurrentUserShouldReturnEmptyMapForAnonymousUser() {
+        Post post = new Post(null, null);
+        post.setId(1L);
+        when(userService.getCurrentUser()).thenReturn(new AnonymousUser());
 
-        when(userService.getCurrentUser()).thenReturn(currentUser);
+        Map<Long, Boolean> result = postService.getVotesOfCurrentUser(Arrays.asList(post));
+
+        assertTrue(result.isEmpty());
+        verifyZeroInteractions(postVoteDao);
+    }
 
-        PostDraft draft = postService.saveOrUpdateDraft(topic, content);
+    @Test
+    public void getAnswersShouldRequestPageOfCurrentUserPageSize() {
+        Post question = new Post(null, null);
+        Page<Post> expectedPage = new PageImpl<>(Collections.<Post>emptyList());
+        currentUser.setPageSize(20);
+        when(postDao.getAnswers(Matchers.eq(question), Matchers.any(PageRequest.class))).thenReturn(expectedPage);
 
-        verify(topicDao).saveOrUpdate(topic);
-        assertEquals(draft.getContent(), content);
-        assertTrue(topic.getDrafts().contains(draft));
+        Page<Post> actualPage = postService.getAnswers(question, "2");
+
+        assertEquals(actualPage, expectedPage);
+        ArgumentCaptor<PageRequest> captor = ArgumentCaptor.forClass(PageRequest.class);
+        verify(postDao).getAnswers(Matchers.eq(question), captor.capture());
+        assertEquals(captor.getValue().getPageSize(), 20);
+        assertEquals(captor.getValue().getPageNumber(), 2);
+    }
+
+    @Test
+    public void calculatePageForAnswerShouldReturnFirstPageForQuestion() {
+        Topic topic = new Topic(null, "");
+        Post question = new Post(null, null);
+        question.setId(1L);
+        topic.addPost(question);
+        when(postDao.getFirstPost(topic)).thenReturn(question);
+
+        assertEquals(postService.calculatePageForAnswer(question), 1);
+        verify(postDao, never()).getCountAnswersRankedAbove(Matchers.any(Post.class), Matchers.any(Post.class));
+    }
+
+    @Test
+    public void calculatePageForAnswerShouldTakeIntoAccountAnswersRankedAbove() {
+        currentUser.setPageSize(2);
+        Topic topic = new Topic(null, "");
+        Post question = new Post(null, null);
+        question.setId(1L);
+        Post answer = new Post(null, null);
+        answer.setId(2L);
+        topic.addPost(question);
+        topic.addPost(answer);
+        when(postDao.getFirstPost(topic)).thenReturn(question);
+        when(postDao.getCountAnswersRankedAbove(question, answer)).thenReturn(4);
+
+        assertEquals(postService.calculatePageForAnswer(answer), 3);
     }
 
     @Test
-    public void saverOrUpdateDraftShouldUpdateDraftIfUserAlreadyHasDraftInSpecifiedTopic() {
+    public void saveOrUpdateDraftShouldSaveDraftInStore() {
         Topic topic = new Topic();
         JCUser currentUser = new JCUser("username", null, null);
         PostDraft draft = new PostDraft("content", currentUser);
-        topic.addDraft(draft);
-        String newContent = "Something amazing";
 
         when(userService.getCurrentUser()).thenReturn(currentUser);
+        when(postDraftStore.save(currentUser, topic, "content")).thenReturn(draft);
 
-        PostDraft result = postService.saveOrUpdateDraft(topic, newContent);
+        PostDraft result = postService.saveOrUpdateDraft(topic, "content");
 
-        verify(topicDao).saveOrUpdate(topic);
         assertEquals(result, draft);
-        assertEquals(result.getContent(), newContent);
-        assertTrue(topic.getDrafts().contains(result));
-        assertEquals(topic.getDrafts().size(), 1);
+        verify(topicDao, never()).saveOrUpdate(topic);
+    }
+
+    @Test
+    public void getDraftOfCurrentUserShouldReturnPendingDraftIfExists() {
+        Topic topic = new Topic();
+        topic.addDraft(new PostDraft("old content", currentUser));
+        PostDraft pending = new PostDraft("new content", currentUser);
+        when(postDraftStore.getPending(currentUser, topic)).thenReturn(pending);
+
+        assertEquals(postService.getDraftOfCurrentUser(topic), pending);
+    }
+
+    @Test
+    public void getDraftOfCurrentUserShouldReturnDraftOfTopicIfNoPendingDraft() {
+        Topic topic = new Topic();
+        PostDraft draft = new PostDraft("content", currentUser);
+        topic.addDraft(draft);
+
+        assertEquals(postService.getDraftOfCurrentUser(topic), draft);
     }
 
     @Test
@@ -810,6 +892,7 @@ public class TransactionalPostServiceTest {
         postService.deleteDraft(draft.getId());
 
         verify(topicDao).saveOrUpdate(draft.getTopic());
+        verify(postDraftStore).discard(currentUser, draft.getTopic());
         assertFalse(draft.getTopic().getPosts().contains(draft));
     }
 
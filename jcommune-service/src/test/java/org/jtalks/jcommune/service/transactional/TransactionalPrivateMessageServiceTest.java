@@ -38,10 +38,13 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.jtalks.jcommune.service.TestUtils.mockAclBuilder;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.never;
@@ -106,14 +109,85 @@ public class TransactionalPrivateMessageServiceTest {
         List<PrivateMessage> messages = Arrays.asList(new PrivateMessage(user, user,
                 "Message title", "Private message body"));
         Page<PrivateMessage> expectedPage = new PageImpl<>(messages);
-        when(pmDao.getAllForUser(eq(user), Matchers.<PageRequest>any())).thenReturn(expectedPage);
+        when(userDataCache.getPmFolderCountFor(USERNAME, INBOX)).thenReturn(null);
+        when(pmDao.getInboxCount(user)).thenReturn(1);
+        when(pmDao.getAllForUser(eq(user), Matchers.<PageRequest>any(), eq(1))).thenReturn(expectedPage);
 
-        Page<PrivateMessage> actual = pmService.getInboxForCurrentUser(pageNumber);
+        Page<PrivateMessage> actual = pmService.getInboxForCurrentUser(pageNumber, null);
 
-        verify(pmDao).getAllForUser(eq(user), Matchers.<PageRequest>any());
+        verify(pmDao).getAllForUser(eq(user), Matchers.<PageRequest>any(), eq(1));
+        verify(userDataCache).putPmFolderCount(USERNAME, INBOX, 1, 0L);
         assertEquals(expectedPage, actual);
     }
 
+    @Test
+    public void getInboxShouldNotCountMessagesIfCountIsCached() {
+        Page<PrivateMessage> expectedPage = new PageImpl<>(Collections.<PrivateMessage>emptyList());
+        when(userDataCache.getPmFolderCountFor(USERNAME, INBOX)).thenReturn(5);
+        when(pmDao.getAllForUser(eq(user), Matchers.<PageRequest>any(), eq(5))).thenReturn(expectedPage);
+
+        Page<PrivateMessage> actual = pmService.getInboxForCurrentUser("1", null);
+
+        assertEquals(actual, expectedPage);
+        verify(pmDao, never()).getInboxCount(user);
+        verify(userDataCache, never()).putPmFolderCount(anyString(), anyString(), anyInt(), anyLong());
+    }
+
+    @Test
+    public void getInboxShouldGetPageByKeysetIfLastMessageOfPreviousPageIsKnown() {
+        List<PrivateMessage> messages = Arrays.asList(new PrivateMessage(user, user, "title", "body"));
+        when(userDataCache.getPmFolderCountFor(USERNAME, INBOX)).thenReturn(100);
+        when(pmDao.getAllForUserOlderThan(user, 42L, user.getPageSize())).thenReturn(messages);
+
+        Page<PrivateMessage> actual = pmService.getInboxForCurrentUser("2", 42L);
+
+        assertEquals(actual.getContent(), messages);
+        assertEquals(actual.getTotalElements(), 100);
+        verify(pmDao, never()).getAllForUser(eq(user), Matchers.<PageRequest>any(), anyInt());
+    }
+
+    @Test
+    public void getInboxShouldGetPageByNumberIfMessageOfKeysetIsNotFound() {
+        Page<PrivateMessage> expectedPage = new PageImpl<>(Collections.<PrivateMessage>emptyList());
+        when(userDataCache.getPmFolderCountFor(USERNAME, INBOX)).thenReturn(100);
+        when(pmDao.getAllForUserOlderThan(user, 42L, user.getPageSize()))
+                .thenReturn(Collections.<PrivateMessage>emptyList());
+        when(pmDao.getAllForUser(eq(user), Matchers.<PageRequest>any(), eq(100))).thenReturn(expectedPage);
+
+        Page<PrivateMessage> actual = pmService.getInboxForCurrentUser("2", 42L);
+
+        assertEquals(actual, expectedPage);
+    }
+
+    @Test
+    public void testGetOutboxForCurrentUser() {
+        String pageNumber = "1";
+        List<PrivateMessage> messages = Arrays.asList(new PrivateMessage(user, user,
+                "Message title", "Private message body"));
+        Page<PrivateMessage> expectedPage = new PageImpl<>(messages);
+        when(userDataCache.getPmFolderCountFor(USERNAME, OUTBOX)).thenReturn(null);
+        when(pmDao.getOutboxCount(user)).thenReturn(1);
+        when(pmDao.getAllFromUser(eq(user), Matchers.<PageRequest>any(), eq(1))).thenReturn(expectedPage);
+
+        Page<PrivateMessage> actual = pmService.getOutboxForCurrentUser(pageNumber, null);
+
+        verify(pmDao).getAllFromUser(eq(user), Matchers.<PageRequest>any(), eq(1));
+        verify(userDataCache).putPmFolderCount(USERNAME, OUTBOX, 1, 0L);
+        assertEquals(expectedPage, actual);
+    }
+
+    @Test
+    public void getOutboxShouldGetPageByKeysetIfLastMessageOfPreviousPageIsKnown() {
+        List<PrivateMessage> messages = Arrays.asList(new PrivateMessage(user, user, "title", "body"));
+        when(userDataCache.getPmFolderCountFor(USERNAME, OUTBOX)).thenReturn(100);
+        when(pmDao.getAllFromUserOlderThan(user, 42L, user.getPageSize())).thenReturn(messages);
+
+        Page<PrivateMessage> actual = pmService.getOutboxForCurrentUser("2", 42L);
+
+        assertEquals(actual.getContent(), messages);
+        verify(pmDao, never()).getAllFromUser(eq(user), Matchers.<PageRequest>any(), anyInt());
+    }
+
     @Test
     public void testGetOutboxForCurrentUser() {
         String pageNumber = "1";
@@ -141,6 +215,8 @@ public class TransactionalPrivateMessageServiceTest {
         assertFalse(pm.isRead());
         assertEquals(pm.getStatus(), PrivateMessageStatus.SENT);
         verify(userDataCache).incrementNewMessageCountFor(USERNAME);
+        verify(userDataCache).addToPmFolderCountFor(USERNAME, INBOX, 1);
+        verify(userDataCache).addToPmFolderCountFor(USERNAME, OUTBOX, 1);
         verify(pmDao).saveOrUpdate(pm);
         verify(aclBuilder, times(2)).grant(GeneralPermission.READ);
         verify(propertyDao).getByName(PROPERTY_NAME);
@@ -172,14 +248,38 @@ public class TransactionalPrivateMessageServiceTest {
         List<PrivateMessage> messages = Arrays.asList(new PrivateMessage(user, user,
                 "Message title", "Private message body"));
         Page<PrivateMessage> expectedPage = new PageImpl<>(messages);
-        when(pmDao.getDraftsForUser(eq(user), Matchers.<PageRequest>any())).thenReturn(expectedPage);
+        when(userDataCache.getPmFolderCountFor(USERNAME, DRAFTS)).thenReturn(null);
+        when(pmDao.getDraftsCount(user)).thenReturn(1);
+        when(pmDao.getDraftsForUser(eq(user), Matchers.<PageRequest>any(), eq(1))).thenReturn(expectedPage);
 
-        Page<PrivateMessage> actual = pmService.getDraftsForCurrentUser(pageNumber);
+        Page<PrivateMessage> actual = pmService.getDraftsForCurrentUser(pageNumber, null);
 
-        verify(pmDao).getDraftsForUser(eq(user), Matchers.<PageRequest>any());
+        verify(pmDao).getDraftsForUser(eq(user), Matchers.<PageRequest>any(), eq(1));
+        verify(userDataCache).putPmFolderCount(USERNAME, DRAFTS, 1, 0L);
         assertEquals(expectedPage, actual);
     }
 
+    @Test
+    public void getDraftsShouldGetPageByKeysetIfLastMessageOfPreviousPageIsKnown() {
+        List<PrivateMessage> messages = Arrays.asList(new PrivateMessage(user, user, "title", "body"));
+        when(userDataCache.getPmFolderCountFor(USERNAME, DRAFTS)).thenReturn(100);
+        when(pmDao.getDraftsForUserOlderThan(user, 42L, user.getPageSize())).thenReturn(messages);
+
+        Page<PrivateMessage> actual = pmService.getDraftsForCurrentUser("2", 42L);
+
+        assertEquals(actual.getContent(), messages);
+        verify(pmDao, never()).getDraftsForUser(eq(user), Matchers.<PageRequest>any(), anyInt());
+    }
+
+    @Test
+    public void saveNewDraftShouldIncrementCountOfDrafts() throws NotFoundException {
+        when(securityService.<User>createAclBuilder()).thenReturn(aclBuilder);
+
+        pmService.saveDraft(0, JC_USER, "title", "body", user);
+
+        verify(userDataCache).addToPmFolderCountFor(USERNAME, DRAFTS, 1);
+    }
+
     @Test
     public void testSaveDraft() throws NotFoundException {
         JCUser recipient = new JCUser("name", "example@example.com", "pwd");
@@ -200,13 +300,14 @@ public class TransactionalPrivateMessageServiceTest {
         when(securityService.getCurrentUserUsername()).thenReturn(USERNAME);
         when(pmDao.getNewMessagesCountFor(USERNAME)).thenReturn(expectedPmCount);
         when(userDataCache.getNewPmCountFor(USERNAME)).thenReturn(null);
+        when(userDataCache.getVersion()).thenReturn(5L);
 
         int newPmCount = pmService.currentUserNewPmCount();
 
         assertEquals(newPmCount, expectedPmCount);
         verify(securityService).getCurrentUserUsername();
         verify(pmDao).getNewMessagesCountFor(USERNAME);
-        verify(userDataCache).putNewPmCount(USERNAME, newPmCount);
+        verify(userDataCache).putNewPmCount(USERNAME, newPmCount, 5L);
     }
 
     @Test
@@ -246,6 +347,7 @@ public class TransactionalPrivateMessageServiceTest {
         verify(userDataCache).incrementNewMessageCountFor(USERNAME);
         verify(pmDao).saveOrUpdate(pm);
         verify(securityService).deleteFromAcl(pm);
+        verify(userDataCache).addToPmFolderCountFor(USERNAME, DRAFTS, -1);
         verify(aclBuilder, times(2)).grant(GeneralPermission.READ);
         verify(propertyDao).getByName(PROPERTY_NAME);
         verify(mailService, times(1)).sendReceivedPrivateMessageNotification(JC_USER, pm);
@@ -366,108 +468,64 @@ public class TransactionalPrivateMessageServiceTest {
 
     @Test
     public void testDeleteDrafts() throws NotFoundException {
-        PrivateMessage message = new PrivateMessage(null, null, null, null);
-        message.setStatus(PrivateMessageStatus.DRAFT);
-
-        when(pmDao.get(1L)).thenReturn(message);
-        when(pmDao.get(2L)).thenReturn(message);
-        when(pmDao.isExist(1L)).thenReturn(true);
-        when(pmDao.isExist(2L)).thenReturn(true);
-
-        String resultSingle = pmService.delete(Arrays.asList(1L));
-
-        assertEquals(resultSingle, DRAFTS);
-        verify(pmDao).delete(any(PrivateMessage.class));
+        List<Long> ids = Arrays.asList(1L, 2L);
+        when(pmDao.deleteDrafts(user, ids)).thenReturn(2);
 
-        String resultMultiple = pmService.delete(Arrays.asList(1L, 2L));
+        String result = pmService.delete(ids);
 
-        assertEquals(resultMultiple, DRAFTS);
-        verify(pmDao, times(3)).delete(any(PrivateMessage.class));
+        assertEquals(result, DRAFTS);
+        verify(userDataCache).addToPmFolderCountFor(USERNAME, DRAFTS, -2);
+        verify(userDataCache, never()).addToPmFolderCountFor(USERNAME, INBOX, 0);
+        verify(userDataCache, never()).decrementNewMessageCountFor(anyString(), anyInt());
     }
 
     @Test
     public void testDeleteFromInbox() throws NotFoundException {
-        JCUser otherUser = new JCUser(USERNAME, null, null);
-
-        PrivateMessage message1 = new PrivateMessage(user, otherUser, null, null);
-        message1.setStatus(PrivateMessageStatus.SENT);
-
-        PrivateMessage message2 = new PrivateMessage(user, otherUser, null, null);
-        message2.setStatus(PrivateMessageStatus.SENT);
-
-        PrivateMessage message3 = new PrivateMessage(user, otherUser, null, null);
-        message3.setStatus(PrivateMessageStatus.DELETED_FROM_OUTBOX);
+        List<Long> ids = Arrays.asList(1L, 2L, 3L);
+        when(pmDao.getNewMessagesCount(user, ids)).thenReturn(2);
+        when(pmDao.deleteFromInbox(user, ids)).thenReturn(3);
 
+        String result = pmService.delete(ids);
 
-        when(pmDao.get(1L)).thenReturn(message1);
-        when(pmDao.get(2L)).thenReturn(message2);
-        when(pmDao.get(3L)).thenReturn(message3);
-        when(pmDao.isExist(1L)).thenReturn(true);
-        when(pmDao.isExist(2L)).thenReturn(true);
-        when(pmDao.isExist(3L)).thenReturn(true);
-
-        String resultSingle = pmService.delete(Arrays.asList(1L));
-
-        assertEquals(resultSingle, INBOX);
-        assertEquals(message1.getStatus(), PrivateMessageStatus.DELETED_FROM_INBOX);
-        verify(pmDao, never()).delete(any(PrivateMessage.class));
-
-        String resultMultiple = pmService.delete(Arrays.asList(2L, 3L));
-
-        assertEquals(resultMultiple, INBOX);
-        assertEquals(message2.getStatus(), PrivateMessageStatus.DELETED_FROM_INBOX);
-        verify(pmDao, times(1)).delete(any(PrivateMessage.class));
+        assertEquals(result, INBOX);
+        verify(userDataCache).addToPmFolderCountFor(USERNAME, INBOX, -3);
+        verify(userDataCache).decrementNewMessageCountFor(USERNAME, 2);
     }
 
     @Test
     public void testDeleteFromOutbox() throws NotFoundException {
-        JCUser otherUser = new JCUser(USERNAME, null, null);
-
-        PrivateMessage message1 = new PrivateMessage(otherUser, user, null, null);
-        message1.setStatus(PrivateMessageStatus.SENT);
-
-        PrivateMessage message2 = new PrivateMessage(otherUser, user, null, null);
-        message2.setStatus(PrivateMessageStatus.SENT);
+        List<Long> ids = Arrays.asList(1L, 2L, 3L);
+        when(pmDao.deleteFromOutbox(user, ids)).thenReturn(3);
 
-        PrivateMessage message3 = new PrivateMessage(otherUser, user, null, null);
-        message3.setStatus(PrivateMessageStatus.DELETED_FROM_INBOX);
+        String result = pmService.delete(ids);
 
-        when(pmDao.get(1L)).thenReturn(message1);
-        when(pmDao.get(2L)).thenReturn(message2);
-        when(pmDao.get(3L)).thenReturn(message3);
-        when(pmDao.isExist(1L)).thenReturn(true);
-        when(pmDao.isExist(2L)).thenReturn(true);
-        when(pmDao.isExist(3L)).thenReturn(true);
-
-        String resultSingle = pmService.delete(Arrays.asList(1L));
-
-        assertEquals(resultSingle, OUTBOX);
-        assertEquals(message1.getStatus(), PrivateMessageStatus.DELETED_FROM_OUTBOX);
-        verify(pmDao, never()).delete(any(PrivateMessage.class));
-
-        String resultMultiple = pmService.delete(Arrays.asList(2L, 3L));
-
-        assertEquals(resultMultiple, OUTBOX);
-        assertEquals(message2.getStatus(), PrivateMessageStatus.DELETED_FROM_OUTBOX);
-        verify(pmDao, times(1)).delete(any(PrivateMessage.class));
+        assertEquals(result, OUTBOX);
+        verify(userDataCache).addToPmFolderCountFor(USERNAME, OUTBOX, -3);
+        verify(userDataCache, never()).decrementNewMessageCountFor(anyString(), anyInt());
     }
 
     @Test(expectedExceptions = NotFoundException.class)
     public void testDeleteNotFound() throws NotFoundException {
-        PrivateMessage message1 = new PrivateMessage(user, user, null, null);
-        message1.setStatus(PrivateMessageStatus.DRAFT);
+        pmService.delete(Arrays.asList(1L, 1234L, 2L));
+    }
 
-        PrivateMessage message2 = new PrivateMessage(user, user, null, null);
-        message2.setStatus(PrivateMessageStatus.DRAFT);
+    @Test
+    public void markAsReadShouldDecrementCountOfNewMessagesByCountOfMarkedOnes() {
+        List<Long> ids = Arrays.asList(1L, 2L, 3L);
+        when(pmDao.markAsRead(user, ids)).thenReturn(2);
 
-        when(pmDao.get(1L)).thenReturn(message1);
-        when(pmDao.get(2L)).thenReturn(message2);
-        when(pmDao.isExist(1L)).thenReturn(true);
-        when(pmDao.isExist(2L)).thenReturn(true);
+        int marked = pmService.markAsRead(ids);
 
-        String result = pmService.delete(Arrays.asList(1L, 1234L, 2L));
-        assertEquals(result, DRAFTS);
-        verify(pmDao, times(2)).delete(any(PrivateMessage.class));
+        assertEquals(marked, 2);
+        verify(userDataCache).decrementNewMessageCountFor(USERNAME, 2);
+    }
+
+    @Test
+    public void markAsReadShouldNotChangeCountOfNewMessagesIfNothingWasMarked() {
+        List<Long> ids = Arrays.asList(1L, 2L);
+
+        assertEquals(pmService.markAsRead(ids), 0);
+        verify(userDataCache, never()).decrementNewMessageCountFor(anyString(), anyInt());
     }
 
     @Test
@@ -19,6 +19,7 @@ import org.jtalks.common.model.entity.Section;
 import org.jtalks.jcommune.model.dao.PostDao;
 import org.jtalks.jcommune.model.dao.SectionDao;
 import org.jtalks.jcommune.model.dao.TopicDao;
+import org.jtalks.jcommune.model.dto.ForumStructure;
 import org.jtalks.jcommune.model.entity.*;
 import org.jtalks.jcommune.service.BranchService;
 import org.jtalks.jcommune.service.SectionService;
@@ -33,6 +34,7 @@ import org.testng.annotations.Test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
 import static org.mockito.Mockito.*;
@@ -109,25 +111,28 @@ public class TransactionalSectionServiceTest {
     public void getAllAvailableSections() {
         JCUser user = ObjectsFactory.getDefaultUser();
         Topic topic = ObjectsFactory.getTopic(user, 1);
-        org.jtalks.jcommune.model.entity.Branch topicBranch = ObjectsFactory.getDefaultBranchWithTopic(100L, topic);
-        Section sectionWithAvaliableBranches = ObjectsFactory.getDefaultSectionWithBranches();
+        ObjectsFactory.getDefaultBranchWithTopic(100L, topic);
+
+        ForumStructure.SectionNode emptySection = new ForumStructure.SectionNode(1L, "empty",
+                Collections.<ForumStructure.BranchNode>emptyList());
+        ForumStructure.SectionNode sectionWithTopicBranch = new ForumStructure.SectionNode(2L, "topic",
+                Arrays.asList(new ForumStructure.BranchNode(100L, "topic branch")));
+        ForumStructure.SectionNode sectionWithHiddenBranch = new ForumStructure.SectionNode(3L, "hidden",
+                Arrays.asList(new ForumStructure.BranchNode(200L, "hidden branch")));
+        ForumStructure.SectionNode sectionWithAvailableBranches = new ForumStructure.SectionNode(4L, "available",
+                Arrays.asList(new ForumStructure.BranchNode(300L, "hidden branch"),
+                        new ForumStructure.BranchNode(400L, "available branch")));
+        ForumStructure structure = new ForumStructure(Arrays.asList(emptySection, sectionWithTopicBranch,
+                sectionWithHiddenBranch, sectionWithAvailableBranches));
 
-        List<Section> allSections = new ArrayList<>();
-        allSections.add(ObjectsFactory.getDefaultSection());
-        allSections.add(ObjectsFactory.getDefaultSectionWithBranch(topicBranch));
-        allSections.add(sectionWithAvaliableBranches);
-
-        List<Section> expectedSections = new ArrayList<>();
-        expectedSections.add(sectionWithAvaliableBranches);
-
-        when(sectionDao.getAll()).thenReturn(allSections);
         when(topicDao.get(TOPIC_ID)).thenReturn(topic);
-        when(userService.getCurrentUser()).thenReturn(user);
-        when(sectionDao.getCountAvailableBranches(user, new ArrayList<Branch>())).thenReturn(0L);
-        when(sectionDao.getCountAvailableBranches(user, sectionWithAvaliableBranches.getBranches())).thenReturn(3L);
+        when(branchService.getForumStructure()).thenReturn(structure);
+        when(branchService.getVisibleBranchIds()).thenReturn(new HashSet<>(Arrays.asList(100L, 400L)));
 
-        List<Section> actualSectionList = sectionService.getAllAvailableSections(TOPIC_ID);
-        assertEquals(actualSectionList, expectedSections, "Should return all available sections.");
+        List<ForumStructure.SectionNode> actualSectionList = sectionService.getAllAvailableSections(TOPIC_ID);
+        assertEquals(actualSectionList, Arrays.asList(sectionWithAvailableBranches),
+                "Should return all available sections.");
+        verify(sectionDao, never()).getAll();
     }
     
     @Test
@@ -141,68 +146,6 @@ public class TransactionalSectionServiceTest {
             .fillStatisticInfo(Mockito.anyListOf(Branch.class));
     }
     
-    @Test
-    public void testDeleteAllBranches() throws NotFoundException {
-        Section expectedSection = new Section(SECTION_NAME);
-        expectedSection.addOrUpdateBranch(new Branch(null, null));
-        expectedSection.addOrUpdateBranch(new Branch(null, null));
-        
-        when(sectionDao.isExist(SECTION_ID)).thenReturn(true);
-        when(sectionDao.get(SECTION_ID)).thenReturn(expectedSection);
-        
-        Section actualSection = sectionService.deleteAllTopicsInSection(SECTION_ID);
-        
-        assertEquals(actualSection, expectedSection, "Sections aren't equals");
-        verify(sectionDao).isExist(SECTION_ID);
-        verify(sectionDao).get(SECTION_ID);
-    }
-    
-    @Test
-    public void testDeleteAllBranchesInEmptySection() throws NotFoundException {
-        Section expectedSection = new Section(SECTION_NAME);
-        
-        when(sectionDao.isExist(SECTION_ID)).thenReturn(true);
-        when(sectionDao.get(SECTION_ID)).thenReturn(expectedSection);
-        
-        Section actualSection = sectionService.deleteAllTopicsInSection(SECTION_ID);
-        
-        assertEquals(actualSection, expectedSection, "Sections aren't equals");
-        verify(sectionDao).isExist(SECTION_ID);
-        verify(sectionDao).get(SECTION_ID);
-    }
-    
-    @Test(expectedExceptions=NotFoundException.class)
-    public void testDeleteAllBranchesWithIncorrectId() throws NotFoundException {
-        when(sectionDao.isExist(SECTION_ID)).thenReturn(false);
-
-        sectionService.deleteAllTopicsInSection(SECTION_ID);
-        assertTrue(false);
-    }
-
-    @Test
-    public void testDeleteAllTopics() throws NotFoundException {
-        Section expectedSection = new Section(SECTION_NAME);
-        expectedSection.setId(SECTION_ID);
-        when(sectionDao.getAll()).thenReturn(Collections.singletonList(expectedSection));
-        when(sectionDao.isExist(SECTION_ID)).thenReturn(true);
-        when(sectionDao.get(SECTION_ID)).thenReturn(expectedSection);
-
-        sectionService.deleteAllTopicsInForum();
-
-        verify(sectionDao).isExist(SECTION_ID);
-        verify(sectionDao).get(SECTION_ID);
-    }
-
-    @Test(expectedExceptions=NotFoundException.class)
-    public void testDeleteAllTopicsWithIncorrectId() throws NotFoundException {
-        Section section = new Section(SECTION_NAME);
-        section.setId(SECTION_ID);
-        when(sectionDao.isExist(SECTION_ID)).thenReturn(false);
-        when(sectionDao.getAll()).thenReturn(Collections.singletonList(section));
-
-        sectionService.deleteAllTopicsInForum();
-    }
-
     @Test(expectedExceptions = AccessDeniedException.class)
     public void testCheckAccessForVisibleException()throws AccessDeniedException{
         JCUser user = new JCUser(USER_NAME, EMAIL, USER_PASSWORD);
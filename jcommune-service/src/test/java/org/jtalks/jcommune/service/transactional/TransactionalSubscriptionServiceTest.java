@@ -16,21 +16,29 @@ package org.jtalks.jcommune.service.transactional;
 
 import org.jtalks.jcommune.model.dao.BranchDao;
 import org.jtalks.jcommune.model.dao.TopicDao;
+import org.jtalks.jcommune.model.dao.UserDao;
 import org.jtalks.jcommune.model.entity.Branch;
 import org.jtalks.jcommune.model.entity.JCUser;
+import org.jtalks.jcommune.model.entity.Post;
 import org.jtalks.jcommune.model.entity.Topic;
 import org.jtalks.jcommune.service.UserService;
 import org.mockito.Mock;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
-import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 
 /**
@@ -44,6 +52,8 @@ public class TransactionalSubscriptionServiceTest {
     private BranchDao branchDao;
     @Mock
     private TopicDao topicDao;
+    @Mock
+    private UserDao userDao;
 
     private TransactionalSubscriptionService service;
 
@@ -54,9 +64,11 @@ public class TransactionalSubscriptionServiceTest {
     @BeforeMethod
     public void setUp() {
         initMocks(this);
-        service = new TransactionalSubscriptionService(userService, branchDao, topicDao);
+        service = new TransactionalSubscriptionService(userService, branchDao, topicDao, userDao);
+        user.setId(7L);
         branch = new Branch("name", "description");
         topic = new Topic(user, "title");
+        branch.addTopic(topic);
         when(userService.getCurrentUser()).thenReturn(user);
     }
 
@@ -64,109 +76,146 @@ public class TransactionalSubscriptionServiceTest {
     public void testTopicSubscription() {
         service.toggleTopicSubscription(topic);
 
-        assertTrue(topic.getSubscribers().contains(user));
-        verify(topicDao).saveOrUpdate(topic);
+        verify(topicDao).addSubscriber(topic, user);
+        verify(topicDao, never()).saveOrUpdate(topic);
     }
 
     @Test
     public void testToggleBranchSubscription() {
         service.toggleBranchSubscription(branch);
 
-        assertTrue(branch.getSubscribers().contains(user));
+        verify(branchDao).addSubscriber(branch, user);
+        verify(branchDao, never()).saveOrUpdate(branch);
     }
 
     @Test
     public void testTopicUnsubscription() {
-        topic.getSubscribers().add(user);
+        when(topicDao.isSubscribed(topic, user)).thenReturn(true);
 
         service.toggleTopicSubscription(topic);
 
-        assertFalse(topic.getSubscribers().contains(user));
-        verify(topicDao).saveOrUpdate(topic);
+        verify(topicDao).removeSubscriber(topic, user);
+        verify(topicDao, never()).saveOrUpdate(topic);
     }
 
     @Test
     public void testToggleBranchUnsubscription() {
-        branch.getSubscribers().add(user);
+        when(branchDao.isSubscribed(branch, user)).thenReturn(true);
 
         service.toggleBranchSubscription(branch);
 
-        assertFalse(branch.getSubscribers().contains(user));
+        verify(branchDao).removeSubscriber(branch, user);
     }
 
     @Test
     public void testBranchUnsubscription() {
-        branch.getSubscribers().add(user);
-
         service.unsubscribeFromBranch(branch);
 
-        assertFalse(branch.getSubscribers().contains(user));
+        verify(branchDao).removeSubscriber(branch, user);
+        verify(branchDao, never()).saveOrUpdate(branch);
     }
 
     @Test
     public void testGetAllowedSubscribersForTopic() {
-        when(topicDao.getAllowedSubscribers(topic)).thenReturn(Collections.singleton(user));
-        assertTrue(service.getAllowedSubscribers(topic).contains(user));
-        verify(topicDao).getAllowedSubscribers(topic);
-    }
+        when(topicDao.getAllowedSubscriberIds(topic, branch, 0, 10)).thenReturn(Arrays.asList(user.getId()));
+        when(userDao.getRecipientsByIds(Arrays.asList(user.getId()))).thenReturn(Arrays.asList(user));
 
+        assertEquals(service.getAllowedSubscribers(topic, branch, 0, 10), Arrays.asList(user));
+    }
 
     @Test
     public void testGetAllowedSubscribersForBranch() {
-        when(branchDao.getAllowedSubscribers(branch)).thenReturn(Collections.singleton(user));
-        assertTrue(service.getAllowedSubscribers(branch).contains(user));
-        verify(branchDao).getAllowedSubscribers(branch);
+        when(branchDao.getAllowedSubscriberIds(branch, null, 5, 10)).thenReturn(Arrays.asList(user.getId()));
+        when(userDao.getRecipientsByIds(Arrays.asList(user.getId()))).thenReturn(Arrays.asList(user));
+
+        assertEquals(service.getAllowedSubscribers(branch, null, 5, 10), Arrays.asList(user));
+    }
+
+    @Test
+    public void getAllowedSubscribersShouldNotLoadUsersForEmptyPage() {
+        when(branchDao.getAllowedSubscriberIds(branch, null, 0, 10)).thenReturn(Collections.<Long>emptyList());
+
+        List<JCUser> subscribers = service.getAllowedSubscribers(branch, null, 0, 10);
+
+        assertTrue(subscribers.isEmpty());
+        verifyZeroInteractions(userDao);
+    }
+
+    @Test
+    public void getAllowedSubscribersForPostShouldReturnAuthorSubscribedToTopic() {
+        Post post = new Post(user, "content");
+        topic.addPost(post);
+        when(topicDao.getAllowedSubscriberIds(topic, null, user.getId() - 1, 1))
+                .thenReturn(Arrays.asList(user.getId()));
+        when(userDao.getRecipientsByIds(Arrays.asList(user.getId()))).thenReturn(Arrays.asList(user));
+
+        assertEquals(service.getAllowedSubscribers(post, null, 0, 10), Arrays.asList(user));
+    }
+
+    @Test
+    public void getAllowedSubscribersForPostShouldNotReturnAuthorNotSubscribedToTopic() {
+        Post post = new Post(user, "content");
+        topic.addPost(post);
+        when(topicDao.getAllowedSubscriberIds(topic, null, user.getId() - 1, 1)).thenReturn(Arrays.asList(100L));
+
+        assertTrue(service.getAllowedSubscribers(post, null, 0, 10).isEmpty());
+    }
+
+    @Test
+    public void getAllowedSubscribersForPostShouldReturnNothingAfterFirstPage() {
+        Post post = new Post(user, "content");
+        topic.addPost(post);
+
+        assertTrue(service.getAllowedSubscribers(post, null, user.getId(), 10).isEmpty());
+        verify(topicDao, never()).getAllowedSubscriberIds(any(Topic.class), any(Branch.class), anyLong(), anyInt());
     }
 
     @Test
     public void testToggleSubscriptionTopicCase() {
         service.toggleSubscription(topic);
 
-        assertTrue(topic.getSubscribers().contains(user));
-        verify(topicDao).saveOrUpdate(topic);
+        verify(topicDao).addSubscriber(topic, user);
     }
 
     @Test
     public void testToggleSubscriptionTopicAlreadySubscribedTopicCase() {
-        topic.getSubscribers().add(user);
+        when(topicDao.isSubscribed(topic, user)).thenReturn(true);
 
         service.toggleSubscription(topic);
 
-        assertFalse(topic.getSubscribers().contains(user));
-        verify(topicDao).saveOrUpdate(topic);
+        verify(topicDao).removeSubscriber(topic, user);
     }
 
     @Test
     public void testToggleSubscriptionBranchCase() {
         service.toggleSubscription(branch);
 
-        assertTrue(branch.getSubscribers().contains(user));
+        verify(branchDao).addSubscriber(branch, user);
     }
 
     @Test
     public void testToggleSubscriptionAlreadySubscribedBranchCase() {
-        branch.getSubscribers().add(user);
+        when(branchDao.isSubscribed(branch, user)).thenReturn(true);
 
         service.toggleSubscription(branch);
 
-        assertFalse(branch.getSubscribers().contains(user));
+        verify(branchDao).removeSubscriber(branch, user);
     }
 
     @Test
     public void testSubscribeIfUserIsNotSubscribedOnSubscriptionAwareEntity(){
         service.subscribe(topic);
 
-        assertTrue(topic.getSubscribers().contains(user));
-        verify(topicDao).saveOrUpdate(topic);
+        verify(topicDao).addSubscriber(topic, user);
     }
 
     @Test
     public void testSubscribeIfUserSubscribedOnSubscriptionAwareEntity(){
-        topic.getSubscribers().add(user);
+        when(topicDao.isSubscribed(topic, user)).thenReturn(true);
+
         service.subscribe(topic);
 
-        assertTrue(topic.getSubscribers().contains(user));
-        verify(topicDao,never()).saveOrUpdate(topic);
+        verify(topicDao, never()).addSubscriber(topic, user);
     }
 
 }
@@ -15,10 +15,6 @@
 package org.jtalks.jcommune.service.transactional;
 
 import org.joda.time.DateTime;
-import org.jtalks.common.model.entity.User;
-import org.jtalks.common.model.permissions.GeneralPermission;
-import org.jtalks.common.security.SecurityService;
-import org.jtalks.common.security.acl.builders.CompoundAclBuilder;
 import org.jtalks.common.service.security.SecurityContextFacade;
 import org.jtalks.jcommune.model.dao.BranchDao;
 import org.jtalks.jcommune.model.dao.PostDao;
@@ -27,8 +23,11 @@ import org.jtalks.jcommune.model.entity.*;
 import org.jtalks.jcommune.plugin.api.PluginLoader;
 import org.jtalks.jcommune.service.*;
 import org.jtalks.jcommune.plugin.api.exceptions.NotFoundException;
+import org.jtalks.jcommune.service.nontransactional.BranchStatisticsCacheService;
+import org.jtalks.jcommune.service.nontransactional.FeedCacheService;
 import org.jtalks.jcommune.service.nontransactional.MentionedUsers;
 import org.jtalks.jcommune.service.nontransactional.NotificationService;
+import org.jtalks.jcommune.service.nontransactional.PostDraftStore;
 import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -43,7 +42,6 @@ import org.testng.annotations.Test;
 
 import java.util.*;
 
-import static org.jtalks.jcommune.service.TestUtils.mockAclBuilder;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
 import static org.testng.Assert.*;
@@ -70,8 +68,6 @@ public class TransactionalTopicModificationServiceTest {
 
     private TopicModificationService topicService;
 
-    @Mock
-    private SecurityService securityService;
     @Mock
     private TopicDao topicDao;
     @Mock
@@ -104,16 +100,18 @@ public class TransactionalTopicModificationServiceTest {
     private PostDao postDao;
     @Mock
     private PluginLoader pluginLoader;
-
-    private CompoundAclBuilder<User> aclBuilder;
+    @Mock
+    private PostDraftStore postDraftStore;
+    @Mock
+    private FeedCacheService feedCacheService;
+    @Mock
+    private BranchStatisticsCacheService branchStatisticsCacheService;
 
     @BeforeMethod
     public void setUp() throws Exception {
         initMocks(this);
-        aclBuilder = mockAclBuilder();
         topicService = new TransactionalTopicModificationService(
                 topicDao,
-                securityService,
                 branchDao,
                 notificationService,
                 subscriptionService,
@@ -126,7 +124,10 @@ public class TransactionalTopicModificationServiceTest {
                 postDao,
                 topicFetchService,
                 topicDraftService,
-                pluginLoader);
+                pluginLoader,
+                postDraftStore,
+                feedCacheService,
+                branchStatisticsCacheService);
 
         user = new JCUser("username", "email@mail.com", "password");
         when(securityContextFacade.getContext()).thenReturn(securityContext);
@@ -235,10 +236,10 @@ public class TransactionalTopicModificationServiceTest {
         assertEquals(createdPost.getUserCreated(), user);
         assertEquals(user.getPostCount(), 1);
 
-        verify(aclBuilder).grant(GeneralPermission.WRITE);
-        verify(aclBuilder).to(user);
-        verify(aclBuilder).on(createdPost);
         verify(notificationService).subscribedEntityChanged(answeredTopic);
+        verify(postDraftStore).discard(user, answeredTopic);
+        verify(feedCacheService).evict(answeredTopic.getBranch());
+        verify(branchStatisticsCacheService).evict(answeredTopic.getBranch().getId());
     }
 
     @Test
@@ -272,7 +273,6 @@ public class TransactionalTopicModificationServiceTest {
                 .thenReturn(true);
         when(userService.getCurrentUser()).thenReturn(user);
         when(topicFetchService.getTopicSilently(TOPIC_ID)).thenReturn(answeredTopic);
-        when(securityService.<User>createAclBuilder()).thenReturn(aclBuilder);
 
         Post createdPost = topicService.replyToTopic(TOPIC_ID, ANSWER_BODY, BRANCH_ID);
 
@@ -280,9 +280,6 @@ public class TransactionalTopicModificationServiceTest {
         assertEquals(createdPost.getUserCreated(), user);
         assertEquals(user.getPostCount(), 1);
 
-        verify(aclBuilder).grant(GeneralPermission.WRITE);
-        verify(aclBuilder).to(user);
-        verify(aclBuilder).on(createdPost);
         verify(notificationService).subscribedEntityChanged(answeredTopic);
     }
 
@@ -356,7 +353,6 @@ public class TransactionalTopicModificationServiceTest {
         assertEquals(branch.getTopicCount(), 0);
         assertEquals(user.getPostCount(), 0);
         verify(branchDao).saveOrUpdate(branch);
-        verify(securityService).deleteFromAcl(Topic.class, TOPIC_ID);
         verify(notificationService).sendNotificationAboutRemovingTopic(topic);
     }
 
@@ -377,7 +373,8 @@ public class TransactionalTopicModificationServiceTest {
         assertEquals(branch.getTopicCount(), 0);
         assertEquals(user.getPostCount(), 0);
         verify(branchDao).saveOrUpdate(branch);
-        verify(securityService).deleteFromAcl(Topic.class, TOPIC_ID);
+        verify(feedCacheService).evict(branch);
+        verify(branchStatisticsCacheService).evict(branch.getId());
     }
 
     @Test
@@ -601,6 +598,9 @@ public class TransactionalTopicModificationServiceTest {
         assertEquals(targetBranch.getTopicCount(), 1);
         verify(branchDao).saveOrUpdate(targetBranch);
         verify(notificationService).sendNotificationAboutTopicMoved(topic);
+        verify(feedCacheService).evict(currentBranch);
+        verify(feedCacheService).evict(targetBranch);
+        verify(branchStatisticsCacheService).evict(currentBranch.getId(), targetBranch.getId());
     }
 
     @Test(expectedExceptions = NotFoundException.class)
@@ -635,7 +635,7 @@ public class TransactionalTopicModificationServiceTest {
         topicService.moveTopic(topic, BRANCH_ID);
 
         verify(branchLastPostService).refreshLastPostInBranch(currentBranch);
-        verify(branchLastPostService).refreshLastPostInBranch(targetBranch);
+        verify(branchLastPostService).updateLastPostInBranch(targetBranch, firstPost);
     }
 
     @Test
@@ -655,7 +655,7 @@ public class TransactionalTopicModificationServiceTest {
         topicService.moveTopic(topic, BRANCH_ID);
 
         verify(branchLastPostService, Mockito.never()).refreshLastPostInBranch(currentBranch);
-        verify(branchLastPostService).refreshLastPostInBranch(targetBranch);
+        verify(branchLastPostService).updateLastPostInBranch(targetBranch, firstPost);
     }
 
     @Test
@@ -695,14 +695,14 @@ public class TransactionalTopicModificationServiceTest {
 
     private void createTopicVerifications(Topic topic)
             throws NotFoundException {
-        verify(aclBuilder, times(2)).grant(GeneralPermission.WRITE);
         verify(notificationService).sendNotificationAboutTopicCreated(topic);
         verify(lastReadPostService).markTopicAsRead(topic);
+        verify(feedCacheService).evict(topic.getBranch());
+        verify(branchStatisticsCacheService).evict(topic.getBranch().getId());
     }
 
     private void createTopicStubs() throws NotFoundException {
         when(userService.getCurrentUser()).thenReturn(user);
-        when(securityService.<User>createAclBuilder()).thenReturn(aclBuilder);
     }
 
     private Branch createBranch() {
@@ -744,6 +744,5 @@ public class TransactionalTopicModificationServiceTest {
     private void replyTopicStubs(Topic answeredTopic) throws NotFoundException {
         when(userService.getCurrentUser()).thenReturn(user);
         when(topicFetchService.getTopicSilently(TOPIC_ID)).thenReturn(answeredTopic);
-        when(securityService.<User>createAclBuilder()).thenReturn(aclBuilder);
     }
 }
@@ -40,6 +40,7 @@ import org.jtalks.jcommune.service.nontransactional.Base64Wrapper;
 import org.jtalks.jcommune.service.nontransactional.EncryptionService;
 import org.jtalks.jcommune.service.nontransactional.MailService;
 import org.jtalks.jcommune.service.nontransactional.MentionedUsers;
+import org.jtalks.jcommune.service.nontransactional.SignatureCacheService;
 import org.jtalks.jcommune.service.security.AdministrationGroup;
 import org.jtalks.jcommune.service.util.AuthenticationStatus;
 import org.mockito.ArgumentCaptor;
@@ -120,6 +121,8 @@ public class TransactionalUserServiceTest {
     private PostDao postDao;
     @Mock
     private Authenticator authenticator;
+    @Mock
+    private SignatureCacheService signatureCacheService;
 
 
     @BeforeMethod
@@ -136,7 +139,7 @@ public class TransactionalUserServiceTest {
                 mailService,
                 base64Wrapper,
                 encryptionService,
-                postDao, authenticator);
+                postDao, authenticator, signatureCacheService);
     }
 
     @Test
@@ -172,6 +175,7 @@ public class TransactionalUserServiceTest {
                 new UserInfoContainer(FIRST_NAME, LAST_NAME, EMAIL, SIGNATURE, newAvatar, 50, "location"));
 
         verify(userDao).saveOrUpdate(user);
+        verify(signatureCacheService).evict(user.getId());
         assertUserProfileUpdated(editedUser);
     }
 
@@ -448,24 +452,6 @@ public class TransactionalUserServiceTest {
         assertFalse(group.getUsers().contains(user));
     }
 
-    @Test
-    public void testNonActivatedAccountExpiration() throws NotFoundException {
-        JCUser user1 = new JCUser(USERNAME, EMAIL, PASSWORD);
-        user1.setRegistrationDate(new DateTime());
-        JCUser user2 = new JCUser(USERNAME, EMAIL, PASSWORD);
-        user2.setRegistrationDate(new DateTime().minusHours(25));
-        JCUser user3 = new JCUser(USERNAME, EMAIL, PASSWORD);
-        user3.setRegistrationDate(new DateTime().minusHours(50));
-        List<JCUser> users = asList(user1, user2, user3);
-        when(userDao.getNonActivatedUsers()).thenReturn(users);
-
-        userService.deleteUnactivatedAccountsByTimer();
-
-        verify(userDao).delete(user2);
-        verify(userDao).delete(user3);
-        verify(userDao, never()).delete(user1);
-    }
-
     @Test
     public void testGetCurrentUser() {
         JCUser expected = user(USERNAME);
@@ -14,11 +14,12 @@
  */
 package org.jtalks.jcommune.web.controller;
 
+import org.apache.commons.lang.StringUtils;
 import org.joda.time.DateTime;
-import org.jtalks.common.model.entity.Component;
 import org.jtalks.jcommune.service.ComponentService;
+import org.jtalks.jcommune.service.dto.ForumImages;
 import org.jtalks.jcommune.service.exceptions.ImageProcessException;
-import org.jtalks.jcommune.service.nontransactional.Base64Wrapper;
+import org.jtalks.jcommune.service.nontransactional.ForumImagesCacheService;
 import org.jtalks.jcommune.service.transactional.TransactionalComponentService;
 import org.jtalks.jcommune.web.util.ImageControllerUtils;
 import org.slf4j.Logger;
@@ -44,12 +45,15 @@ import java.util.Map;
 @Controller
 public class AdministrationImagesController extends ImageUploadController {
 
+    static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(AdministrationImagesController.class);
 
     private final ImageControllerUtils logoControllerUtils;
     private final ImageControllerUtils favIconPngControllerUtils;
     private final ImageControllerUtils favIconIcoControllerUtils;
     private final ComponentService componentService;
+    private final ForumImagesCacheService forumImagesCacheService;
 
     /**
      * We need this start time because there might be case when time of the last modification
@@ -63,6 +67,7 @@ public class AdministrationImagesController extends ImageUploadController {
      * Creates instance of the service
      *
      * @param componentService          service to work with the forum component
+     * @param forumImagesCacheService   keeps decoded logo and icons to be served without a transaction
      * @param logoControllerUtils       utility object for logo converting functions
      * @param favIconPngControllerUtils utility object for fav icon converting (to PNG format) functions
      * @param favIconIcoControllerUtils utility object for fav icon converting (to ICO format) functions
@@ -70,6 +75,7 @@ public class AdministrationImagesController extends ImageUploadController {
      */
     @Autowired
     public AdministrationImagesController(ComponentService componentService,
+                                          ForumImagesCacheService forumImagesCacheService,
                                           @Qualifier("forumLogoControllerUtils")
                                           ImageControllerUtils logoControllerUtils,
                                           @Qualifier("favIconPngControllerUtils")
@@ -79,6 +85,7 @@ public class AdministrationImagesController extends ImageUploadController {
                                           MessageSource messageSource) {
         super(messageSource);
         this.componentService = componentService;
+        this.forumImagesCacheService = forumImagesCacheService;
         this.logoControllerUtils = logoControllerUtils;
         this.favIconIcoControllerUtils = favIconIcoControllerUtils;
         this.favIconPngControllerUtils = favIconPngControllerUtils;
@@ -95,8 +102,7 @@ public class AdministrationImagesController extends ImageUploadController {
      */
     @RequestMapping(value = "/admin/logo", method = RequestMethod.GET)
     public void getForumLogo(HttpServletRequest request, HttpServletResponse response) {
-        processImageRequest(request, response, TransactionalComponentService.LOGO_PROPERTY,
-                logoControllerUtils, "image/jpeg");
+        processImageRequest(request, response, TransactionalComponentService.LOGO_PROPERTY, "image/jpeg");
     }
 
     /**
@@ -162,7 +168,7 @@ public class AdministrationImagesController extends ImageUploadController {
     @RequestMapping(value = "/admin/icon/ico", method = RequestMethod.GET)
     public void getFavIconICO(HttpServletRequest request, HttpServletResponse response) {
         processImageRequest(request, response, TransactionalComponentService.COMPONENT_FAVICON_ICO_PARAM,
-                favIconIcoControllerUtils, "image/x-icon");
+                "image/x-icon");
     }
 
     /**
@@ -174,24 +180,26 @@ public class AdministrationImagesController extends ImageUploadController {
     @RequestMapping(value = "/admin/icon/png", method = RequestMethod.GET)
     public void getFavIconPNG(HttpServletRequest request, HttpServletResponse response) {
         processImageRequest(request, response, TransactionalComponentService.COMPONENT_FAVICON_PNG_PARAM,
-                favIconPngControllerUtils, "image/png");
+                "image/png");
     }
 
     private void processImageRequest(HttpServletRequest request, HttpServletResponse response,
-                                     String propertyName, ImageControllerUtils imageControllerUtils,
-                                     String contentType) {
-        Date forumModificationDate = componentService.getComponentModificationTime();
+                                     String propertyName, String contentType) {
+        ForumImages images = forumImagesCacheService.getImages();
+        if (images == null) {
+            images = componentService.getForumImages();
+        }
+        Date forumModificationDate = images.getModificationTime();
 
         if (forumModificationDate == null) {
             forumModificationDate = startTime;
         }
 
-        Date ifModifiedDate = getIfModifiedSinceDate(request.getHeader(IF_MODIFIED_SINCE_HEADER));
-
-        if (!forumModificationDate.after(ifModifiedDate)) {
+        String eTag = images.getETag(propertyName);
+        if (isNotModified(request, eTag, forumModificationDate)) {
             response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
         } else {
-            byte[] image = loadImageFromProperties(propertyName, imageControllerUtils);
+            byte[] image = images.getImage(propertyName);
             response.setContentType(contentType);
             response.setContentLength(image.length);
             try {
@@ -201,25 +209,39 @@ public class AdministrationImagesController extends ImageUploadController {
             }
         }
 
+        response.setHeader("ETag", eTag);
         setupAvatarHeaders(response, forumModificationDate);
     }
 
-    private byte[] loadImageFromProperties(String propertyName, ImageControllerUtils imageControllerUtils) {
-        Component forumComponent = componentService.getComponentOfForum();
-        String imageProperty = null;
-        if (forumComponent != null) {
-            imageProperty = forumComponent.getProperty(propertyName);
+    /**
+     * Checks conditional request headers. "If-None-Match" has precedence, "If-Modified-Since" is checked
+     * only if there is no ETag in the request.
+     */
+    private boolean isNotModified(HttpServletRequest request, String eTag, Date modificationDate) {
+        String ifNoneMatch = request.getHeader(IF_NONE_MATCH_HEADER);
+        if (ifNoneMatch != null) {
+            return matchesETag(ifNoneMatch, eTag);
         }
-        byte[] imageBytes = null;
+        Date ifModifiedDate = getIfModifiedSinceDate(request.getHeader(IF_MODIFIED_SINCE_HEADER));
+        return !modificationDate.after(ifModifiedDate);
+    }
 
-        if (imageProperty == null || imageProperty.isEmpty()) {
-            imageBytes = imageControllerUtils.getDefaultImage();
-        } else {
-            Base64Wrapper wrapper = new Base64Wrapper();
-            imageBytes = wrapper.decodeB64Bytes(imageProperty);
+    /**
+     * Checks whether "If-None-Match" header lists the given ETag or is "*" which matches any of them.
+     * Weak comparison is used, as the header requires, so "W/" prefix of the listed ETags is ignored.
+     *
+     * @param ifNoneMatch value of the header, comma separated list of ETags
+     * @param eTag        ETag of the current image
+     * @return true if the header matches the ETag
+     */
+    private boolean matchesETag(String ifNoneMatch, String eTag) {
+        for (String requestETag : ifNoneMatch.split(",")) {
+            String trimmed = StringUtils.removeStart(requestETag.trim(), "W/");
+            if (trimmed.equals("*") || trimmed.equals(eTag)) {
+                return true;
+            }
         }
-
-        return imageBytes;
+        return false;
     }
 
     /**
@@ -16,6 +16,7 @@
 package org.jtalks.jcommune.web.controller;
 
 import org.jtalks.common.service.security.SecurityContextFacade;
+import org.jtalks.jcommune.model.dto.ForumStructure;
 import org.jtalks.jcommune.model.entity.Branch;
 import org.jtalks.jcommune.model.entity.JCUser;
 import org.jtalks.jcommune.model.entity.Post;
@@ -45,9 +46,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import static ch.lambdaj.Lambda.on;
-import static ch.lambdaj.Lambda.project;
-
 /**
  * @author Vitaliy kravchenko
  * @author Kirill Afonin
@@ -256,7 +254,8 @@ public class BranchController {
     public BranchDto[] getBranchesFromSection(@PathVariable("currentTopicId") long currentTopicId,
                                               @PathVariable("sectionId") long sectionId) throws NotFoundException {
 
-        List<Branch> branches = branchService.getAvailableBranchesInSection(sectionId, currentTopicId);
+        List<ForumStructure.BranchNode> branches = branchService.getAvailableBranchesInSection(sectionId,
+                currentTopicId);
         return convertBranchesListToBranchDtoArray(branches);
     }
 
@@ -269,7 +268,7 @@ public class BranchController {
     @RequestMapping("/branches/json/{currentTopicId}")
     @ResponseBody
     public BranchDto[] getAllBranches(@PathVariable("currentTopicId") long currentTopicId) {
-        List<Branch> branches = branchService.getAllAvailableBranches(currentTopicId);
+        List<ForumStructure.BranchNode> branches = branchService.getAllAvailableBranches(currentTopicId);
         return convertBranchesListToBranchDtoArray(branches);
     }
 
@@ -279,11 +278,12 @@ public class BranchController {
      * @param branches branch list
      * @return branch dto array
      */
-    private BranchDto[] convertBranchesListToBranchDtoArray(List<Branch> branches) {
-        List<BranchDto> dtos = project(branches, BranchDto.class,
-                on(Branch.class).getId(),
-                on(Branch.class).getName());
-        return dtos.toArray(new BranchDto[dtos.size()]);
+    private BranchDto[] convertBranchesListToBranchDtoArray(List<ForumStructure.BranchNode> branches) {
+        BranchDto[] dtos = new BranchDto[branches.size()];
+        for (int i = 0; i < dtos.length; i++) {
+            dtos[i] = new BranchDto(branches.get(i).getId(), branches.get(i).getName());
+        }
+        return dtos;
     }
 
 
@@ -257,7 +257,7 @@ public class PostController {
         JCUser currentUser = userService.getCurrentUser();
         Topic topic = topicFetchService.get(topicId);
 
-        PostDraft draft = topic.getDraftForUser(currentUser);
+        PostDraft draft = postService.getDraftOfCurrentUser(topic);
         if (draft != null) {
             // If we create new dto object instead of using already existing
             // we lose error messages linked with it
@@ -20,6 +20,8 @@ import org.jtalks.jcommune.model.entity.PrivateMessageStatus;
 import org.jtalks.jcommune.service.PrivateMessageService;
 import org.jtalks.jcommune.service.UserService;
 import org.jtalks.jcommune.plugin.api.exceptions.NotFoundException;
+import org.jtalks.jcommune.plugin.api.web.dto.json.JsonResponse;
+import org.jtalks.jcommune.plugin.api.web.dto.json.JsonResponseStatus;
 import org.jtalks.jcommune.service.nontransactional.BBCodeService;
 import org.jtalks.jcommune.web.dto.PrivateMessageDraftDto;
 import org.jtalks.jcommune.web.dto.PrivateMessageDto;
@@ -49,6 +51,7 @@ import java.util.List;
 public class PrivateMessageController {
 
     public static final String PM_IDENTIFIERS = "pmIdentifiers";
+    public static final String OLDER_THAN = "olderThan";
     private PrivateMessageService pmService;
     private BBCodeService bbCodeService;
     private UserService userService;
@@ -87,13 +90,16 @@ public class PrivateMessageController {
     /**
      * Render the PM page with the list of incoming messages for the /inbox URI.
      *
-     * @param page the private message page number.
+     * @param page       the private message page number.
+     * @param olderThan  identifier of the last message of the previous page, if it's known the page is got
+     *                   by keyset instead of offset
      * @return {@code ModelAndView} with added {@link Page} instance with of private messages.
      */
     @RequestMapping(value = {"/inbox","/pm"}, method = RequestMethod.GET)
-    public ModelAndView inboxPage(@RequestParam(value = "page", defaultValue = "1", required = false) String page) {
+    public ModelAndView inboxPage(@RequestParam(value = "page", defaultValue = "1", required = false) String page,
+                                  @RequestParam(value = OLDER_THAN, required = false) Long olderThan) {
 
-        Page<PrivateMessage> inboxPage = pmService.getInboxForCurrentUser(page);
+        Page<PrivateMessage> inboxPage = pmService.getInboxForCurrentUser(page, olderThan);
 
         return new ModelAndView("pm/inbox")
                 .addObject("inboxPage", inboxPage);
@@ -102,12 +108,15 @@ public class PrivateMessageController {
     /**
      * Render the PM outbox page with the list of sent messages for the /outbox URI.
      *
-     * @param page the private message page number.
+     * @param page       the private message page number.
+     * @param olderThan  identifier of the last message of the previous page, if it's known the page is got
+     *                   by keyset instead of offset
      * @return {@code ModelAndView} with added {@link Page} instance with of private messages.
      */
     @RequestMapping(value = "/outbox", method = RequestMethod.GET)
-    public ModelAndView outboxPage(@RequestParam(value = "page", defaultValue = "1", required = false) String page) {
-        Page<PrivateMessage> outboxPage = pmService.getOutboxForCurrentUser(page);
+    public ModelAndView outboxPage(@RequestParam(value = "page", defaultValue = "1", required = false) String page,
+                                   @RequestParam(value = OLDER_THAN, required = false) Long olderThan) {
+        Page<PrivateMessage> outboxPage = pmService.getOutboxForCurrentUser(page, olderThan);
 
         return new ModelAndView("pm/outbox")
                 .addObject("outboxPage", outboxPage);
@@ -116,12 +125,15 @@ public class PrivateMessageController {
     /**
      * Render the PM draft page with the list of draft messages for the /outbox URI.
      *
-     * @param page the private message page number.
+     * @param page       the private message page number.
+     * @param olderThan  identifier of the last message of the previous page, if it's known the page is got
+     *                   by keyset instead of offset
      * @return {@code ModelAndView} with added {@link Page} instance with of private messages.
      */
     @RequestMapping(value = "/drafts", method = RequestMethod.GET)
-    public ModelAndView draftsPage(@RequestParam(value = "page", defaultValue = "1", required = false) String page) {
-        Page<PrivateMessage> draftsPage = pmService.getDraftsForCurrentUser(page);
+    public ModelAndView draftsPage(@RequestParam(value = "page", defaultValue = "1", required = false) String page,
+                                   @RequestParam(value = OLDER_THAN, required = false) Long olderThan) {
+        Page<PrivateMessage> draftsPage = pmService.getDraftsForCurrentUser(page, olderThan);
         return new ModelAndView("pm/drafts")
                 .addObject("draftsPage", draftsPage);
     }
@@ -283,4 +295,27 @@ public class PrivateMessageController {
         return "redirect:/" + url;
     }
 
+    /**
+     * Marks incoming private messages of the current user as read at once.
+     *
+     * @param ids Comma-separated identifiers of the private messages to mark
+     * @return redirect to inbox
+     */
+    @RequestMapping(value = "/pm/read", method = RequestMethod.POST)
+    public String markMessagesAsRead(@RequestParam(PM_IDENTIFIERS) List<Long> ids) {
+        pmService.markAsRead(ids);
+        return "redirect:/inbox";
+    }
+
+    /**
+     * Gets count of new private messages of the current user. Polled by the page to refresh
+     * the counter in the header without reloading the page.
+     *
+     * @return response with count of new private messages
+     */
+    @RequestMapping(value = "/pm/new/count", method = RequestMethod.GET)
+    @ResponseBody
+    public JsonResponse newMessagesCount() {
+        return new JsonResponse(JsonResponseStatus.SUCCESS, pmService.currentUserNewPmCount());
+    }
 }
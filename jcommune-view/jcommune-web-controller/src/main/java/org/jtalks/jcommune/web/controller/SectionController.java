@@ -15,7 +15,9 @@
 package org.jtalks.jcommune.web.controller;
 
 import org.jtalks.common.model.entity.Section;
+import org.jtalks.jcommune.model.dto.ForumStructure;
 import org.jtalks.jcommune.model.entity.Post;
+import org.jtalks.jcommune.service.BranchService;
 import org.jtalks.jcommune.service.SectionService;
 import org.jtalks.jcommune.plugin.api.exceptions.NotFoundException;
 import org.jtalks.jcommune.service.nontransactional.LocationService;
@@ -32,10 +34,9 @@ import org.springframework.web.servlet.ModelAndView;
 
 import javax.servlet.http.HttpSession;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-
-import static ch.lambdaj.Lambda.on;
-import static ch.lambdaj.Lambda.project;
+import java.util.Map;
 
 /**
  * Displays to user page contains section list with related branch lists
@@ -55,6 +56,7 @@ import static ch.lambdaj.Lambda.project;
 public class SectionController {
 
     private SectionService sectionService;
+    private BranchService branchService;
     private ForumStatisticsProvider forumStaticsProvider;
     private LocationService locationService;
 
@@ -64,14 +66,17 @@ public class SectionController {
      * Constructor creates MVC controller with specified SectionService
      *
      * @param sectionService       for all operations with sections
+     * @param branchService        for getting branches visible to current user
      * @param locationService      for tracking user's location on the forum
      * @param forumStaticsProvider for getting forum statistic information
      */
     @Autowired
     public SectionController(SectionService sectionService,
+                             BranchService branchService,
                              ForumStatisticsProvider forumStaticsProvider,
                              LocationService locationService) {
         this.sectionService = sectionService;
+        this.branchService = branchService;
         this.forumStaticsProvider = forumStaticsProvider;
         this.locationService = locationService;
     }
@@ -99,6 +104,7 @@ public class SectionController {
         sectionService.prepareSectionsForView(sections);
         return new ModelAndView("sectionList")
                 .addObject("sectionList", sections)
+                .addObject("visibleBranches", getVisibleBranches())
                 .addObject("messagesCount", forumStaticsProvider.getPostsOnForumCount())
                 .addObject("registeredUsersCount", forumStaticsProvider.getUsersCount())
                 .addObject("visitors", forumStaticsProvider.getOnlineUsersCount())
@@ -116,11 +122,25 @@ public class SectionController {
     @RequestMapping(value = "/sections/json/{currentTopicId}", method = RequestMethod.GET)
     @ResponseBody
     public SectionDto[] sectionList(@PathVariable("currentTopicId") long currentTopicId) {
-        List<Section> sections = sectionService.getAllAvailableSections(currentTopicId);
-        List<SectionDto> dtos = project(sections, SectionDto.class,
-                on(Section.class).getId(),
-                on(Section.class).getName());
-        return dtos.toArray(new SectionDto[dtos.size()]);
+        List<ForumStructure.SectionNode> sections = sectionService.getAllAvailableSections(currentTopicId);
+        SectionDto[] dtos = new SectionDto[sections.size()];
+        for (int i = 0; i < dtos.length; i++) {
+            dtos[i] = new SectionDto(sections.get(i).getId(), sections.get(i).getName());
+        }
+        return dtos;
+    }
+
+    /**
+     * Gets visibility of branches for current user in a form usable in JSP, where sets can't be queried.
+     *
+     * @return map with {@code true} values for ids of the branches current user can view
+     */
+    private Map<Long, Boolean> getVisibleBranches() {
+        Map<Long, Boolean> visibleBranches = new HashMap<>();
+        for (Long branchId : branchService.getVisibleBranchIds()) {
+            visibleBranches.put(branchId, Boolean.TRUE);
+        }
+        return visibleBranches;
     }
 
     /**
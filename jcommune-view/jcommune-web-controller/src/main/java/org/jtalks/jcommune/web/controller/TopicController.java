@@ -85,6 +85,7 @@ public class TopicController {
     private SessionRegistry sessionRegistry;
     private EntityToDtoConverter converter;
     private RetryTemplate retryTemplate;
+    private PollService pollService;
 
     /**
      * This method turns the trim binder on. Trim binder
@@ -113,6 +114,7 @@ public class TopicController {
      * @param locationService          to track user location on forum (what page he is viewing now)
      * @param sessionRegistry          to obtain list of users currently online
      * @param topicFetchService        to load topics from a database
+     * @param pollService              to check whether the current user has voted in the topic poll
      */
     @Autowired
     public TopicController(TopicModificationService topicModificationService,
@@ -126,7 +128,8 @@ public class TopicController {
                            TopicFetchService topicFetchService,
                            TopicDraftService topicDraftService,
                            EntityToDtoConverter converter,
-                           RetryTemplate retryTemplate) {
+                           RetryTemplate retryTemplate,
+                           PollService pollService) {
         this.topicModificationService = topicModificationService;
         this.postService = postService;
         this.branchService = branchService;
@@ -139,6 +142,7 @@ public class TopicController {
         this.topicDraftService = topicDraftService;
         this.converter = converter;
         this.retryTemplate = retryTemplate;
+        this.pollService = pollService;
     }
 
     /**
@@ -276,11 +280,12 @@ public class TopicController {
             return null;
         }
         PostDto postDto = new PostDto();
-        PostDraft draft = topic.getDraftForUser(currentUser);
+        PostDraft draft = postService.getDraftOfCurrentUser(topic);
         if (draft != null) {
             postDto = PostDto.getDtoFor(draft);
         }
         lastReadPostService.markTopicPageAsRead(topic, postsPage.getNumber());
+        boolean pollVoted = topic.getPoll() != null && pollService.isVotedByCurrentUser(topic.getPoll());
         return new ModelAndView("topic/postList")
                 .addObject("viewList", locationService.getUsersViewing(topic))
                 .addObject("usersOnline", sessionRegistry.getAllPrincipals())
@@ -288,6 +293,7 @@ public class TopicController {
                 .addObject("topic", topic)
                 .addObject(POST_DTO, postDto)
                 .addObject("subscribed", topic.getSubscribers().contains(currentUser))
+                .addObject("pollVoted", pollVoted)
                 .addObject(BREADCRUMB_LIST, breadcrumbBuilder.getForumBreadcrumb(topic));
     }
 
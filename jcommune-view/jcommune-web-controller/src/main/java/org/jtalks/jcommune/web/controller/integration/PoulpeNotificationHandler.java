@@ -16,9 +16,9 @@
 package org.jtalks.jcommune.web.controller.integration;
 
 import org.jtalks.common.model.entity.User;
-import org.jtalks.jcommune.service.BranchService;
-import org.jtalks.jcommune.service.SectionService;
 import org.jtalks.jcommune.service.UserService;
+import org.jtalks.jcommune.service.dto.TopicPurgeProgress;
+import org.jtalks.jcommune.service.nontransactional.TopicPurgeService;
 import org.jtalks.jcommune.plugin.api.exceptions.NotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -50,15 +50,12 @@ public class PoulpeNotificationHandler {
      */
     private static final String ADMIN_USERNAME = "admin";
 
-    private final BranchService branchService;
-    private final SectionService sectionService;
+    private final TopicPurgeService topicPurgeService;
     private final UserService userService;
 
     @Autowired
-    public PoulpeNotificationHandler(BranchService branchService, SectionService sectionService,
-                                     UserService userService) {
-        this.branchService = branchService;
-        this.sectionService = sectionService;
+    public PoulpeNotificationHandler(TopicPurgeService topicPurgeService, UserService userService) {
+        this.topicPurgeService = topicPurgeService;
         this.userService = userService;
     }
 
@@ -75,7 +72,7 @@ public class PoulpeNotificationHandler {
     public void deleteBranch(@PathVariable("branchId") long branchId,
                              @RequestParam(value = "password") String adminPassword) throws NotFoundException {
         assertAdminPasswordCorrect(adminPassword);
-        branchService.deleteAllTopics(branchId);
+        topicPurgeService.deleteAllTopicsInBranch(branchId);
     }
 
     /**
@@ -91,7 +88,7 @@ public class PoulpeNotificationHandler {
     public void deleteSection(@PathVariable("sectionId") long sectionId,
                               @RequestParam(value = "password") String adminPassword) throws NotFoundException {
         assertAdminPasswordCorrect(adminPassword);
-        sectionService.deleteAllTopicsInSection(sectionId);
+        topicPurgeService.deleteAllTopicsInSection(sectionId);
     }
 
     /**
@@ -105,7 +102,23 @@ public class PoulpeNotificationHandler {
     @ResponseBody
     public void deleteComponent(@RequestParam(value = "password") String adminPassword) throws NotFoundException {
         assertAdminPasswordCorrect(adminPassword);
-        sectionService.deleteAllTopicsInForum();
+        topicPurgeService.deleteAllTopicsInForum();
+    }
+
+    /**
+     * Returns progress of the latest removal of topics, so Poulpe can show it while a large branch, section or
+     * component is being cleaned.
+     *
+     * @param adminPassword password of admin
+     * @return number of topics to delete, number of already deleted ones and whether the removal is finished
+     * @throws NotFoundException if the password sent by Poulpe is blank or does not match the one in the database
+     */
+    @RequestMapping(value = "/topics/purge/progress", method = RequestMethod.GET)
+    @ResponseBody
+    public TopicPurgeProgress getPurgeProgress(@RequestParam(value = "password") String adminPassword)
+            throws NotFoundException {
+        assertAdminPasswordCorrect(adminPassword);
+        return topicPurgeService.getProgress();
     }
 
     /**
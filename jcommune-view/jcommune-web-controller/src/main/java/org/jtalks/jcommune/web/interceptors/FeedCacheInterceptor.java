@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.web.interceptors;
+
+import org.jtalks.common.service.security.SecurityContextFacade;
+import org.jtalks.jcommune.service.dto.CachedFeed;
+import org.jtalks.jcommune.service.nontransactional.FeedCacheService;
+import org.jtalks.jcommune.web.util.CachedFeedWriter;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Answers requests of RSS feeds from the feed cache, so feed readers polling the forum don't cause
+ * database queries while there are no new posts. Conditional requests are answered with
+ * "304 Not Modified" if the reader already has the cached feed. Interceptor chain is broken
+ * in both cases, so it should be the first interceptor for feed URLs.
+ * <p/>
+ * The feed is the one of the branch or of the section if there is such a path variable, otherwise it's
+ * the feed of the whole forum. If feed is not cached, the URL, visibility signature and the generation of
+ * the feed are put to the request, so the feed view could cache the rendered feed.
+ */
+public class FeedCacheInterceptor extends HandlerInterceptorAdapter {
+    public static final String FEED_URL_ATTRIBUTE = "feedCacheUrl";
+    public static final String FEED_VISIBILITY_ATTRIBUTE = "feedCacheVisibility";
+    public static final String FEED_GENERATION_ATTRIBUTE = "feedCacheGeneration";
+    static final String ANONYMOUS_VISIBILITY = "anonymous";
+    static final String USER_VISIBILITY_PREFIX = "user:";
+    static final String BRANCH_ID_VARIABLE = "branchId";
+    static final String SECTION_ID_VARIABLE = "sectionId";
+
+    private final FeedCacheService feedCacheService;
+    private final SecurityContextFacade securityContextFacade;
+
+    /**
+     * @param feedCacheService      cache of serialized feeds
+     * @param securityContextFacade to get the reader of the feed
+     */
+    public FeedCacheInterceptor(FeedCacheService feedCacheService, SecurityContextFacade securityContextFacade) {
+        this.feedCacheService = feedCacheService;
+        this.securityContextFacade = securityContextFacade;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws IOException {
+        String feedKey = getFeedKey(request);
+        if (feedKey == null) {
+            return true;
+        }
+        String url = getUrl(request);
+        String visibility = getVisibility();
+        String generation = feedCacheService.getGeneration(feedKey);
+        CachedFeed feed = feedCacheService.getFeed(generation, url, visibility);
+        if (feed != null) {
+            CachedFeedWriter.write(request, response, feed);
+            return false;
+        }
+        request.setAttribute(FEED_URL_ATTRIBUTE, url);
+        request.setAttribute(FEED_VISIBILITY_ATTRIBUTE, visibility);
+        request.setAttribute(FEED_GENERATION_ATTRIBUTE, generation);
+        return true;
+    }
+
+    /**
+     * Gets key of the requested feed from the path variables of the request
+     *
+     * @return key of the feed or null if id in the path is not a number, such a feed is not cached
+     */
+    @SuppressWarnings("unchecked")
+    private String getFeedKey(HttpServletRequest request) {
+        Map<String, String> variables = (Map<String, String>) request.getAttribute(
+                HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        try {
+            if (variables != null && variables.containsKey(BRANCH_ID_VARIABLE)) {
+                return FeedCacheService.getBranchFeed(Long.parseLong(variables.get(BRANCH_ID_VARIABLE)));
+            }
+            if (variables != null && variables.containsKey(SECTION_ID_VARIABLE)) {
+                return FeedCacheService.getSectionFeed(Long.parseLong(variables.get(SECTION_ID_VARIABLE)));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return FeedCacheService.FORUM_FEED;
+    }
+
+    /**
+     * Gets full URL of the feed, the host is a part of it since item links are built from it.
+     */
+    private String getUrl(HttpServletRequest request) {
+        String queryString = request.getQueryString();
+        StringBuffer url = request.getRequestURL();
+        return queryString == null ? url.toString() : url.append('?').append(queryString).toString();
+    }
+
+    /**
+     * Gets signature of the things the reader is allowed to see. Posts are filtered by permissions of
+     * the current user, so every registered user gets own feeds while all anonymous readers share them.
+     */
+    private String getVisibility() {
+        Authentication authentication = securityContextFacade.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return ANONYMOUS_VISIBILITY;
+        }
+        return USER_VISIBILITY_PREFIX + authentication.getName();
+    }
+}
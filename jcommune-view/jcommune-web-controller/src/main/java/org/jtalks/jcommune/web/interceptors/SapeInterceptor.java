@@ -14,11 +14,9 @@
  */
 package org.jtalks.jcommune.web.interceptors;
 
-import javasape.Sape;
-import javasape.SapePageLinks;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang.StringUtils;
 import org.jtalks.jcommune.model.entity.JCommuneProperty;
+import org.jtalks.jcommune.web.sape.SapeLinkCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.ClassPathResource;
@@ -31,23 +29,19 @@ import java.io.IOException;
 
 /**
  * <b>Objectives:</b> put some links to every page user views.<br/>
- * <b>Details: </b> initializes {@link javasape.Sape} object on application start. JavaSapeInterceptor sends request
- * to SAPE.ru  provider with specific account ID and sets sape content to parameters of each request.
+ * <b>Details: </b> sets SAPE.ru links of the page to parameters of each request. Links are taken from
+ * {@link SapeLinkCache} which loads them from SAPE server in background, so rendering of the page
+ * never waits for the link server.
  *
  * @author elepaeva
  * @see <a href="http://jira.jtalks.org/browse/JC-1254">Related JIRA ticket</a>
  */
 public class SapeInterceptor extends HandlerInterceptorAdapter {
     private final Logger logger = LoggerFactory.getLogger(SapeInterceptor.class);
-    private JCommuneProperty componentSapeAccountProperty;
     private JCommuneProperty componentSapeOnMainPageEnableProperty;
-    private JCommuneProperty componentSapeLinksCountProperty;
-    private JCommuneProperty componentSapeHostProperty;
-    private JCommuneProperty componentSapeTimeoutProperty;
     private JCommuneProperty componentSapeShowDummyLinksProperty;
     private JCommuneProperty componentSapeEnableServiceProperty;
-
-    private volatile Sape sape;
+    private SapeLinkCache sapeLinkCache;
 
     private String dummyLinks = "";
 
@@ -76,35 +70,15 @@ public class SapeInterceptor extends HandlerInterceptorAdapter {
             return;
         }
 
-        String sapeLinksAsString = "";
+        String sapeLinksAsString;
         if (componentSapeShowDummyLinksProperty.booleanValue()) {
             sapeLinksAsString = dummyLinks;
-        } else if (initSape()) {
-            SapePageLinks pageLinks = sape.getPageLinks(request.getRequestURI(), request.getCookies());
-            sapeLinksAsString = pageLinks.render();
+        } else {
+            sapeLinksAsString = sapeLinkCache.getLinks(request.getRequestURI(), request.getCookies());
         }
         modelAndView.addObject("sapeLinks", sapeLinksAsString);
     }
 
-    /**
-     * Initializes {@link javasape.Sape} object.
-     */
-    private boolean initSape() {
-        if (sape != null) {
-            return true;
-        }
-        String accountId = componentSapeAccountProperty.getValue();
-        String host = componentSapeHostProperty.getValue();
-        if (StringUtils.isBlank(accountId) || StringUtils.isBlank(host)) {
-            return false;
-        }
-        sape = new Sape(componentSapeAccountProperty.getValue(),
-                componentSapeHostProperty.getValue(),
-                Integer.parseInt(componentSapeTimeoutProperty.getValue()),
-                Integer.parseInt(componentSapeLinksCountProperty.getValue()));
-        return true;
-    }
-
     private void initDummyLinks() {
         String dummyLinksLocation = "/org/jtalks/jcommune/web/interceptors/DummySapeLinks.txt";
         try {
@@ -114,16 +88,6 @@ public class SapeInterceptor extends HandlerInterceptorAdapter {
         }
     }
 
-
-    /**
-     * Sets JavaSape account ID property
-     *
-     * @param componentSapeAccountProperty account ID
-     */
-    public void setComponentSapeAccountProperty(JCommuneProperty componentSapeAccountProperty) {
-        this.componentSapeAccountProperty = componentSapeAccountProperty;
-    }
-
     /**
      * Sets show javasape content on main page property
      *
@@ -134,34 +98,6 @@ public class SapeInterceptor extends HandlerInterceptorAdapter {
         this.componentSapeOnMainPageEnableProperty = componentSapeOnMainPageEnableProperty;
     }
 
-    /**
-     * Sets ape links count for one request to Sape service
-     *
-     * @param componentSapeLinksCountProperty
-     *         links count
-     */
-    public void setComponentSapeLinksCountProperty(JCommuneProperty componentSapeLinksCountProperty) {
-        this.componentSapeLinksCountProperty = componentSapeLinksCountProperty;
-    }
-
-    /**
-     * Sets current instance host
-     *
-     * @param componentSapeHostProperty host name
-     */
-    public void setComponentSapeHostProperty(JCommuneProperty componentSapeHostProperty) {
-        this.componentSapeHostProperty = componentSapeHostProperty;
-    }
-
-    /**
-     * Sets Sape request timeout
-     *
-     * @param componentSapeTimeoutProperty timeout
-     */
-    public void setComponentSapeTimeoutProperty(JCommuneProperty componentSapeTimeoutProperty) {
-        this.componentSapeTimeoutProperty = componentSapeTimeoutProperty;
-    }
-
     /**
      * Sets flag whether show dummy links for SAPE
      *
@@ -181,4 +117,13 @@ public class SapeInterceptor extends HandlerInterceptorAdapter {
     public void setComponentSapeEnableServiceProperty(JCommuneProperty componentSapeEnableServiceProperty) {
         this.componentSapeEnableServiceProperty = componentSapeEnableServiceProperty;
     }
+
+    /**
+     * Sets cache of SAPE links
+     *
+     * @param sapeLinkCache cache to get links of the page from
+     */
+    public void setSapeLinkCache(SapeLinkCache sapeLinkCache) {
+        this.sapeLinkCache = sapeLinkCache;
+    }
 }
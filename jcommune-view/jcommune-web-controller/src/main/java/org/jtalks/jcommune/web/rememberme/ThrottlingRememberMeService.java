@@ -25,6 +25,8 @@ import javax.servlet.http.HttpServletResponse;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Implements our custom Remember Me service to replace the Spring default one. This implementation removes Remember Me
@@ -36,11 +38,13 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class ThrottlingRememberMeService extends PersistentTokenBasedRememberMeServices {
     private final static String REMOVE_TOKEN_QUERY = "DELETE FROM persistent_logins WHERE series = ? AND token = ?";
-    // We should store a lot of tokens to prevent cache overflow
-    private static final int TOKEN_CACHE_MAX_SIZE = 100;
+    // We should store a lot of tokens to prevent cache overflow, tokens of series above the limit aren't cached
+    static final int TOKEN_CACHE_MAX_SIZE = 10000;
     private final RememberMeCookieDecoder rememberMeCookieDecoder;
     private final JdbcTemplate jdbcTemplate;
-    private final Map<String, CachedRememberMeTokenInfo> tokenCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CachedRememberMeTokenInfo> tokenCache = new ConcurrentHashMap<>();
+    // expired tokens are removed by one of the requests at most once per cached token validity time
+    private final AtomicLong nextEvictionTime = new AtomicLong();
     private PersistentTokenRepository tokenRepository = new InMemoryTokenRepositoryImpl();
     // 5 seconds should be enough for processing request and sending response to client
     private int cachedTokenValidityTime = 5 * 1000;
@@ -73,7 +77,6 @@ public class ThrottlingRememberMeService extends PersistentTokenBasedRememberMeS
             cancelCookie(request, response);
             jdbcTemplate.update(REMOVE_TOKEN_QUERY, seriesAndToken);
             tokenCache.remove(seriesAndToken[0]);
-            validateTokenCache();
         }
     }
 
@@ -84,6 +87,10 @@ public class ThrottlingRememberMeService extends PersistentTokenBasedRememberMeS
      * milliseconds and check token presence in cache before process authentication. If there is no equivalent token in
      * cache authentication performs normally. If equivalent present in cache we should not update token in database.
      * This approach can provide acceptable security level and prevent errors.
+     * <p/>
+     * Token is cached atomically, so of several parallel requests with the same cookie only one performs
+     * authentication and updates the token, others just use its result. It's true as well when the token cached
+     * for the series is not the presented one: only the request which replaced it performs authentication.
      * {@inheritDoc}
      * @see <a href="http://jira.jtalks.org/browse/JC-1743">JC-1743</a>
      * @see <a href="https://developers.google.com/chrome/whitepapers/prerender?csw=1">Page preloading in Google Chrome</a>
@@ -105,26 +112,26 @@ public class ThrottlingRememberMeService extends PersistentTokenBasedRememberMeS
             throw new RememberMeAuthenticationException("No persistent token found for series id: " + presentedSeries);
         }
 
-        UserDetails details = null;
+        UserDetails details;
+        /* IMPORTANT: We should store token in cache before calling <code>loginWithSpringSecurity</code> method.
+           Because execution of this method can take a long time.
+         */
+        CachedRememberMeTokenInfo tokenInfo = new CachedRememberMeTokenInfo(token.getTokenValue(),
+                System.currentTimeMillis());
+        CachedRememberMeTokenInfo cachedTokenInfo = cacheToken(presentedSeries, presentedToken, tokenInfo);
 
-        if (isTokenCached(presentedSeries, presentedToken)) {
-            tokenCache.remove(presentedSeries);
+        if (cachedTokenInfo != null) {
             details = getUserDetailsService().loadUserByUsername(token.getUsername());
             rewriteCookie(token, request, response);
         } else {
-            /* IMPORTANT: We should store token in cache before calling <code>loginWithSpringSecurity</code> method.
-               Because execution of this method can take a long time.
-             */
-            cacheToken(token);
             try {
                 details = loginWithSpringSecurity(cookieTokens, request, response);
             //We should remove token from cache if cookie really was stolen or other authentication error occurred
             } catch (RememberMeAuthenticationException ex) {
-                tokenCache.remove(token.getSeries());
+                tokenCache.remove(presentedSeries, tokenInfo);
                 throw ex;
             }
         }
-        validateTokenCache();
 
         return details;
     }
@@ -154,25 +161,54 @@ public class ThrottlingRememberMeService extends PersistentTokenBasedRememberMeS
     }
 
     /**
-     * Stores token in cache.
-     * @param token Token to be stored
+     * Stores token in cache unless valid presented token of the same series is cached already, e.g. by a parallel
+     * request. Cached token is replaced with compare-and-set, so if several requests find an expired or another
+     * token cached, only one of them replaces it. If the cache is full, the token isn't cached.
+     *
+     * @param series         series of the token
+     * @param presentedToken token presented in the cookie
+     * @param tokenInfo      token to be stored
+     * @return valid presented token of the series which was cached before or {@code null} if there was no such
+     *         token and the request should perform authentication
      * @see CachedRememberMeTokenInfo
      */
-    private void cacheToken(PersistentRememberMeToken token) {
-        if (tokenCache.size() >= TOKEN_CACHE_MAX_SIZE) {
-            validateTokenCache();
+    private CachedRememberMeTokenInfo cacheToken(String series, String presentedToken,
+                                                 CachedRememberMeTokenInfo tokenInfo) {
+        evictExpiredTokens();
+        while (true) {
+            CachedRememberMeTokenInfo cachedTokenInfo = tokenCache.get(series);
+            if (cachedTokenInfo == null) {
+                if (tokenCache.size() >= TOKEN_CACHE_MAX_SIZE) {
+                    return null;
+                }
+                cachedTokenInfo = tokenCache.putIfAbsent(series, tokenInfo);
+                if (cachedTokenInfo == null) {
+                    return null;
+                }
+            }
+            if (isTokenInfoValid(cachedTokenInfo) && presentedToken.equals(cachedTokenInfo.getValue())) {
+                return cachedTokenInfo;
+            }
+            if (tokenCache.replace(series, cachedTokenInfo, tokenInfo)) {
+                return null;
+            }
         }
-        CachedRememberMeTokenInfo tokenWrapper = new CachedRememberMeTokenInfo(token.getTokenValue(), System.currentTimeMillis());
-        tokenCache.put(token.getSeries(), tokenWrapper);
     }
 
     /**
      * Removes from cache tokens which were stored more than <link>CACHED_TOKEN_VALIDITY_TIME</link> milliseconds ago.
+     * Cache is scanned by only one request and at most once per <link>CACHED_TOKEN_VALIDITY_TIME</link>, so the cost
+     * of the scan is spread among all the requests performed during this time.
      */
-    private void validateTokenCache() {
-        for (Map.Entry<String, CachedRememberMeTokenInfo> entry: tokenCache.entrySet()) {
+    private void evictExpiredTokens() {
+        long now = System.currentTimeMillis();
+        long evictionTime = nextEvictionTime.get();
+        if (now < evictionTime || !nextEvictionTime.compareAndSet(evictionTime, now + cachedTokenValidityTime)) {
+            return;
+        }
+        for (Map.Entry<String, CachedRememberMeTokenInfo> entry : tokenCache.entrySet()) {
             if (!isTokenInfoValid(entry.getValue())) {
-                tokenCache.remove(entry.getKey());
+                tokenCache.remove(entry.getKey(), entry.getValue());
             }
         }
     }
@@ -185,25 +221,7 @@ public class ThrottlingRememberMeService extends PersistentTokenBasedRememberMeS
      * @see CachedRememberMeTokenInfo
      */
     private boolean isTokenInfoValid(CachedRememberMeTokenInfo tokenInfo) {
-        if ((System.currentTimeMillis() - tokenInfo.getCachingTime()) >= cachedTokenValidityTime) {
-            return false;
-        } else {
-            return true;
-        }
-    }
-
-    /**
-     * Checks if token with given series and value stored in cache
-     * @param series series to be checked
-     * @param value value to be checked
-     * @return <code>true</code> if token stored in cache< <code>false</code> otherwise.
-     */
-    private boolean isTokenCached(String series, String value) {
-        if (tokenCache.containsKey(series) && isTokenInfoValid(tokenCache.get(series))
-                && value.equals(tokenCache.get(series).getValue())) {
-            return true;
-        }
-        return false;
+        return (System.currentTimeMillis() - tokenInfo.getCachingTime()) < cachedTokenValidityTime;
     }
 
     /**
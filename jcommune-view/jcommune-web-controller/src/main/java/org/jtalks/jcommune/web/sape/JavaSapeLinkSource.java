@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.web.sape;
+
+import javasape.Sape;
+import org.apache.commons.lang.StringUtils;
+import org.jtalks.jcommune.model.entity.JCommuneProperty;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.servlet.http.Cookie;
+
+/**
+ * Loads links from SAPE.ru server using {@link javasape.Sape}. The client is recreated when
+ * account, host, timeout or links count are changed in forum configuration. Configuration is read in its own
+ * transaction as links are loaded outside of request threads.
+ */
+public class JavaSapeLinkSource implements SapeLinkSource {
+    private final JCommuneProperty componentSapeAccountProperty;
+    private final JCommuneProperty componentSapeHostProperty;
+    private final JCommuneProperty componentSapeTimeoutProperty;
+    private final JCommuneProperty componentSapeLinksCountProperty;
+    private final TransactionTemplate transactionTemplate;
+
+    private Sape sape;
+    private String sapeSettings;
+
+    /**
+     * @param componentSapeAccountProperty    SAPE account ID
+     * @param componentSapeHostProperty       host of current forum instance
+     * @param componentSapeTimeoutProperty    timeout of requests to SAPE server
+     * @param componentSapeLinksCountProperty links count for one request to SAPE server
+     * @param transactionManager              to read configuration outside of request threads
+     */
+    public JavaSapeLinkSource(JCommuneProperty componentSapeAccountProperty,
+                              JCommuneProperty componentSapeHostProperty,
+                              JCommuneProperty componentSapeTimeoutProperty,
+                              JCommuneProperty componentSapeLinksCountProperty,
+                              PlatformTransactionManager transactionManager) {
+        this.componentSapeAccountProperty = componentSapeAccountProperty;
+        this.componentSapeHostProperty = componentSapeHostProperty;
+        this.componentSapeTimeoutProperty = componentSapeTimeoutProperty;
+        this.componentSapeLinksCountProperty = componentSapeLinksCountProperty;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String loadLinks(String requestUri, Cookie[] cookies) {
+        Sape client = getSape();
+        if (client == null) {
+            return "";
+        }
+        return client.getPageLinks(requestUri, cookies).render();
+    }
+
+    /**
+     * Gets SAPE client for current configuration
+     *
+     * @return SAPE client or null if account or host are not configured
+     */
+    private Sape getSape() {
+        String[] settings = transactionTemplate.execute(new TransactionCallback<String[]>() {
+            @Override
+            public String[] doInTransaction(TransactionStatus status) {
+                return new String[]{componentSapeAccountProperty.getValue(), componentSapeHostProperty.getValue(),
+                        componentSapeTimeoutProperty.getValue(), componentSapeLinksCountProperty.getValue()};
+            }
+        });
+        String accountId = settings[0];
+        String host = settings[1];
+        if (StringUtils.isBlank(accountId) || StringUtils.isBlank(host)) {
+            return null;
+        }
+        String joinedSettings = StringUtils.join(settings, '|');
+        if (sape == null || !joinedSettings.equals(sapeSettings)) {
+            sape = new Sape(accountId, host, Integer.parseInt(settings[2]), Integer.parseInt(settings[3]));
+            sapeSettings = joinedSettings;
+        }
+        return sape;
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.web.sape;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.Cookie;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps SAPE links of recently viewed pages in memory, so pages are rendered without waiting for the link server.
+ * Links of a page viewed for the first time are loaded in background and the page gets no links till they are
+ * loaded. All cached links are reloaded periodically, links of pages which were not viewed since previous reload
+ * are dropped. If links can't be loaded, previously loaded ones are kept.
+ * <p/>
+ * The number of cached pages is limited, pages above the limit get no links till some cached pages are dropped.
+ * <p/>
+ * Requests of the SAPE robot which checks whether links are placed on the page bypass the cache: their links are
+ * loaded with request cookies while the page is rendered, so the robot gets the check code as before.
+ */
+public class SapeLinkCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SapeLinkCache.class);
+    /** cookie set by SAPE robot, SAPE client renders check code for requests having it */
+    static final String SAPE_ROBOT_COOKIE = "sape_cookie";
+    private static final Cookie[] NO_COOKIES = new Cookie[0];
+
+    private final ConcurrentMap<String, CachedLinks> links = new ConcurrentHashMap<>();
+    private final SapeLinkSource source;
+    private final int maxPages;
+    private final long refreshPeriodSeconds;
+    private volatile ScheduledExecutorService executor;
+
+    /**
+     * @param source               to load links from
+     * @param maxPages             max number of pages to keep links for
+     * @param refreshPeriodSeconds period of links reloading
+     */
+    public SapeLinkCache(SapeLinkSource source, int maxPages, long refreshPeriodSeconds) {
+        this.source = source;
+        this.maxPages = maxPages;
+        this.refreshPeriodSeconds = refreshPeriodSeconds;
+    }
+
+    /**
+     * Starts background reloading of links
+     */
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "sape-links-refresh");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                refresh();
+            }
+        }, refreshPeriodSeconds, refreshPeriodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops background reloading of links
+     */
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Gets links of the page without blocking, except for the requests of SAPE robot
+     *
+     * @param requestUri URI of the page
+     * @param cookies    cookies of the request, may be null
+     * @return cached links or empty string if links are not loaded yet
+     */
+    public String getLinks(final String requestUri, Cookie[] cookies) {
+        if (isSapeRobot(cookies)) {
+            return source.loadLinks(requestUri, cookies);
+        }
+        CachedLinks cached = links.get(requestUri);
+        if (cached != null) {
+            cached.viewed = true;
+            return cached.links;
+        }
+        if (links.size() < maxPages && links.putIfAbsent(requestUri, new CachedLinks("", true)) == null) {
+            loadInBackground(requestUri);
+        }
+        return "";
+    }
+
+    /**
+     * Reloads links of pages viewed since previous reload and drops links of other pages
+     */
+    public void refresh() {
+        for (Map.Entry<String, CachedLinks> entry : links.entrySet()) {
+            if (entry.getValue().viewed) {
+                load(entry.getKey());
+            } else {
+                links.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private boolean isSapeRobot(Cookie[] cookies) {
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (SAPE_ROBOT_COOKIE.equals(cookie.getName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void loadInBackground(final String requestUri) {
+        ScheduledExecutorService currentExecutor = executor;
+        if (currentExecutor == null) {
+            return;
+        }
+        try {
+            currentExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    load(requestUri);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("SAPE links of [{}] will not be loaded as cache is stopped", requestUri);
+        }
+    }
+
+    /**
+     * Loads links of the cached page, previously loaded links are kept if loading fails
+     *
+     * @param requestUri URI of the page
+     */
+    private void load(String requestUri) {
+        try {
+            links.replace(requestUri, new CachedLinks(source.loadLinks(requestUri, NO_COOKIES), false));
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not load SAPE links of [" + requestUri + "], cached links are kept", e);
+            CachedLinks cached = links.get(requestUri);
+            if (cached != null) {
+                cached.viewed = false;
+            }
+        }
+    }
+
+    /**
+     * Rendered links of the page
+     */
+    private static final class CachedLinks {
+        private final String links;
+        /** whether the page was viewed since links were loaded */
+        private volatile boolean viewed;
+
+        private CachedLinks(String links, boolean viewed) {
+            this.links = links;
+            this.viewed = viewed;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.web.sape;
+
+import javax.servlet.http.Cookie;
+
+/**
+ * Source of SAPE links. Loading may be slow as it could require a call to the remote link server,
+ * so it's done by {@link SapeLinkCache} in background only.
+ */
+public interface SapeLinkSource {
+
+    /**
+     * Loads rendered links for the page
+     *
+     * @param requestUri URI of the page links are shown on
+     * @param cookies    cookies of the request the page is shown for, SAPE client checks them to recognize
+     *                   the robot of the link server, empty array when links are loaded in background
+     * @return rendered links, empty string if there are no links for the page
+     *         or the source is not configured
+     */
+    String loadLinks(String requestUri, Cookie[] cookies);
+}
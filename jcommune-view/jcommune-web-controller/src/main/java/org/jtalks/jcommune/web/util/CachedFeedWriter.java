@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.web.util;
+
+import org.jtalks.jcommune.service.dto.CachedFeed;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Sends serialized RSS feeds with their validators, so feed readers can poll them by conditional requests
+ * and get "304 Not Modified" while there are no new posts.
+ */
+public final class CachedFeedWriter {
+    static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+    static final String IF_MODIFIED_SINCE_HEADER = "If-Modified-Since";
+
+    private CachedFeedWriter() {
+    }
+
+    /**
+     * Writes feed to the response or answers "304 Not Modified" if the reader already has it.
+     * Feed readers are asked to revalidate the feed every time they poll it.
+     *
+     * @param request  http request, its conditional headers are checked
+     * @param response http response
+     * @param feed     serialized feed
+     * @throws IOException if feed can't be written to the response
+     */
+    public static void write(HttpServletRequest request, HttpServletResponse response, CachedFeed feed)
+            throws IOException {
+        response.setHeader("ETag", feed.getETag());
+        response.setDateHeader("Last-Modified", feed.getLastModified());
+        response.setHeader("Cache-Control", "no-cache");
+        if (isNotModified(request, feed)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        } else {
+            response.setContentType(feed.getContentType());
+            response.setContentLength(feed.getBody().length);
+            response.getOutputStream().write(feed.getBody());
+        }
+    }
+
+    /**
+     * Checks conditional request headers. "If-None-Match" has precedence, "If-Modified-Since" is checked
+     * only if there is no ETag in the request. Dates of HTTP headers have precision of seconds.
+     */
+    private static boolean isNotModified(HttpServletRequest request, CachedFeed feed) {
+        String ifNoneMatch = request.getHeader(IF_NONE_MATCH_HEADER);
+        if (ifNoneMatch != null) {
+            return ifNoneMatch.contains(feed.getETag());
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader(IF_MODIFIED_SINCE_HEADER);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return ifModifiedSince >= 0 && feed.getLastModified() / 1000 * 1000 <= ifModifiedSince;
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.web.view;
+
+import org.jtalks.jcommune.service.dto.CachedFeed;
+import org.jtalks.jcommune.service.nontransactional.FeedCacheService;
+import org.jtalks.jcommune.web.interceptors.FeedCacheInterceptor;
+import org.jtalks.jcommune.web.util.CachedFeedWriter;
+import org.springframework.web.servlet.view.feed.AbstractRssFeedView;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+
+/**
+ * RSS feed view which renders the feed to memory instead of the response. Rendered feed is sent with
+ * validators taken from the newest item of the feed and is put to the feed cache if
+ * {@link FeedCacheInterceptor} prepared the request for it, so next requests of the feed are answered
+ * without building it again.
+ */
+public abstract class CachingRssFeedView extends AbstractRssFeedView {
+
+    private FeedCacheService feedCacheService;
+
+    /**
+     * @param feedCacheService cache to put rendered feeds to, feeds are not cached if it's not set
+     */
+    public void setFeedCacheService(FeedCacheService feedCacheService) {
+        this.feedCacheService = feedCacheService;
+    }
+
+    /**
+     * Renders feed to memory, caches it and sends it to the reader. Nothing is sent if the feed
+     * was not found and the reader was redirected to the error page.
+     *
+     * @param model    model of the feed
+     * @param request  http request
+     * @param response http response
+     * @throws Exception if feed can't be rendered
+     */
+    @Override
+    public void render(Map<String, ?> model, HttpServletRequest request, HttpServletResponse response)
+            throws Exception {
+        BufferingResponse bufferingResponse = new BufferingResponse(response);
+        super.render(model, request, bufferingResponse);
+        if (response.isCommitted()) {
+            return;
+        }
+        CachedFeed feed = new CachedFeed(bufferingResponse.getBody(), getContentType(), getLastModified(model));
+        String generation = (String) request.getAttribute(FeedCacheInterceptor.FEED_GENERATION_ATTRIBUTE);
+        if (feedCacheService != null && generation != null) {
+            feedCacheService.putFeed(generation,
+                    (String) request.getAttribute(FeedCacheInterceptor.FEED_URL_ATTRIBUTE),
+                    (String) request.getAttribute(FeedCacheInterceptor.FEED_VISIBILITY_ATTRIBUTE), feed);
+        }
+        CachedFeedWriter.write(request, response, feed);
+    }
+
+    /**
+     * Gets time of the newest item of the feed.
+     *
+     * @param model model of the feed
+     * @return time of the newest item in milliseconds or 0 if the feed is empty
+     */
+    protected abstract long getLastModified(Map<String, ?> model);
+
+    /**
+     * Response keeping written body in memory, all the other calls are passed to the real response.
+     */
+    private static class BufferingResponse extends HttpServletResponseWrapper {
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final ServletOutputStream outputStream = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                body.write(b, off, len);
+            }
+        };
+
+        BufferingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return outputStream;
+        }
+
+        @Override
+        public void flushBuffer() {
+        }
+
+        byte[] getBody() {
+            return body.toByteArray();
+        }
+    }
+}
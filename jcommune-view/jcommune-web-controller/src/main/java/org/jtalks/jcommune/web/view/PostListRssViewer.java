@@ -20,7 +20,6 @@ import com.sun.syndication.feed.rss.Content;
 import com.sun.syndication.feed.rss.Item;
 import org.jtalks.jcommune.model.entity.Branch;
 import org.jtalks.jcommune.model.entity.Post;
-import org.springframework.web.servlet.view.feed.AbstractRssFeedView;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -34,7 +33,7 @@ import java.util.Map;
  *
  * @author Andrei Alikov
  */
-public class PostListRssViewer extends AbstractRssFeedView {
+public class PostListRssViewer extends CachingRssFeedView {
 
     public static final String DEFAULT_FEED_TITLE = "";
     public static final String DEFAULT_FEED_DESCRIPTION = "";
@@ -102,6 +101,21 @@ public class PostListRssViewer extends AbstractRssFeedView {
         return items;
     }
 
+    /**
+     * Gets time of the newest post of the feed
+     *
+     * @param model RSS model
+     * @return time of the last change of the newest post in milliseconds or 0 if there are no posts
+     */
+    @Override
+    protected long getLastModified(Map<String, ?> model) {
+        long lastModified = 0;
+        for (Post post : (List<Post>) model.get("posts")) {
+            lastModified = Math.max(lastModified, post.getLastTouchedDate().getMillis());
+        }
+        return lastModified;
+    }
+
     /**
      * Creates feed item with information about the post
      *
@@ -22,7 +22,6 @@ import com.sun.syndication.feed.rss.Item;
 import org.jtalks.common.model.entity.Component;
 import org.jtalks.jcommune.model.entity.Topic;
 import org.jtalks.jcommune.web.util.RssUtils;
-import org.springframework.web.servlet.view.feed.AbstractRssFeedView;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -36,7 +35,7 @@ import java.util.Map;
  *
  * @author Andrey Kluev
  */
-public class RssViewer extends AbstractRssFeedView {
+public class RssViewer extends CachingRssFeedView {
 
     private static final String DEFAULT_FEED_TITLE = "";
     private static final String DEFAULT_FEED_DESCRIPTION = "";
@@ -97,6 +96,21 @@ public class RssViewer extends AbstractRssFeedView {
         return items;
     }
 
+    /**
+     * Gets time of the newest post of the feed
+     *
+     * @param newsComponents components of the RSS feed
+     * @return modification time of the latest updated topic in milliseconds or 0 if there are no topics
+     */
+    @Override
+    protected long getLastModified(Map<String, ?> newsComponents) {
+        long lastModified = 0;
+        for (Topic topic : (List<Topic>) newsComponents.get("topics")) {
+            lastModified = Math.max(lastModified, topic.getModificationDate().getMillis());
+        }
+        return lastModified;
+    }
+
     /**
      * Create news item
      *
@@ -18,8 +18,9 @@ package org.jtalks.jcommune.web.controller;
 import org.jtalks.common.model.entity.Component;
 import org.jtalks.common.model.entity.ComponentType;
 import org.jtalks.jcommune.service.ComponentService;
+import org.jtalks.jcommune.service.dto.ForumImages;
 import org.jtalks.jcommune.service.exceptions.ImageProcessException;
-import org.jtalks.jcommune.service.nontransactional.Base64Wrapper;
+import org.jtalks.jcommune.service.nontransactional.ForumImagesCacheService;
 import org.jtalks.jcommune.service.nontransactional.ImageService;
 import org.jtalks.jcommune.service.transactional.TransactionalComponentService;
 import org.jtalks.jcommune.web.util.ImageControllerUtils;
@@ -41,6 +42,7 @@ import java.io.IOException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
@@ -62,10 +64,15 @@ public class AdministrationImagesControllerTest {
             -82, 66, 96, -126
     };
     private static final String IMAGE_BYTE_ARRAY_IN_BASE_64_STRING = "it's dummy string";
+    private static final byte[] PNG_ICON = new byte[]{1, 2, 3};
+    private static final byte[] ICO_ICON = new byte[]{4, 5, 6};
 
     @Mock
     ComponentService componentService;
 
+    @Mock
+    ForumImagesCacheService forumImagesCacheService;
+
     @Mock
     MessageSource messageSource;
 
@@ -91,7 +98,8 @@ public class AdministrationImagesControllerTest {
         Component component = new Component("Forum", "Cool Forum", ComponentType.FORUM);
         component.setId(42);
 
-        administrationController = new AdministrationImagesController(componentService, logoControllerUtils,
+        administrationController = new AdministrationImagesController(componentService, forumImagesCacheService,
+                logoControllerUtils,
                 favIconPngControllerUtils, favIconIcoControllerUtils,
                 messageSource);
     }
@@ -130,29 +138,27 @@ public class AdministrationImagesControllerTest {
     @Test
     public void renderLogoShouldReturnModifiedLogoInResponse() throws IOException {
         MockHttpServletResponse response = new MockHttpServletResponse();
-        when(componentService.getComponentModificationTime()).thenReturn(new Date(1000));
+        ForumImages images = createImages(new Date(1000));
+        when(componentService.getForumImages()).thenReturn(images);
         MockHttpServletRequest request = new MockHttpServletRequest();
         request.addHeader(administrationController.IF_MODIFIED_SINCE_HEADER, new Date(0));
 
-        when(logoControllerUtils.getDefaultImage()).thenReturn(validImage);
-
         administrationController.getForumLogo(request, response);
 
         assertEquals(response.getContentType(), "image/jpeg");
         assertEquals(response.getContentLength(), validImage.length);
         assertEquals(response.getContentAsByteArray(), validImage);
+        assertEquals(response.getHeader("ETag"), images.getETag(TransactionalComponentService.LOGO_PROPERTY));
         checkResponse(response);
     }
 
     @Test
     public void renderLogoShouldNotReturnNotModifiedLogoInResponse() throws IOException {
         MockHttpServletResponse response = new MockHttpServletResponse();
-        when(componentService.getComponentModificationTime()).thenReturn(new Date(0));
+        when(componentService.getForumImages()).thenReturn(createImages(new Date(0)));
         MockHttpServletRequest request = new MockHttpServletRequest();
         request.addHeader(administrationController.IF_MODIFIED_SINCE_HEADER, new Date(1000));
 
-        when(logoControllerUtils.getDefaultImage()).thenReturn(validImage);
-
         administrationController.getForumLogo(request, response);
 
         assertEquals(response.getStatus(), HttpServletResponse.SC_NOT_MODIFIED);
@@ -161,256 +167,151 @@ public class AdministrationImagesControllerTest {
     }
 
     @Test
-    public void getForumLogoShouldReturnDefaultLogoWhenLogoPropertyIsEmpty() throws ImageProcessException {
-        Component forumComponent = new Component();
-        forumComponent.addProperty(TransactionalComponentService.LOGO_PROPERTY, "");
-        when(componentService.getComponentOfForum()).thenReturn(forumComponent);
-        when(componentService.getComponentModificationTime()).thenReturn(new Date());
-        when(logoControllerUtils.getDefaultImage()).thenReturn(validImage);
-
+    public void renderLogoShouldNotReturnLogoWithMatchingETag() throws IOException {
         MockHttpServletResponse response = new MockHttpServletResponse();
-        administrationController.getForumLogo(new MockHttpServletRequest(), response);
-
-        verify(logoControllerUtils).getDefaultImage();
-        assertEquals(response.getContentAsByteArray(), validImage);
-    }
-
-    @Test
-    public void getForumLogoShouldReturnDefaultLogoWhenLogoPropertyIsNull() throws ImageProcessException {
-        Component forumComponent = new Component();
-        when(componentService.getComponentOfForum()).thenReturn(forumComponent);
-        when(componentService.getComponentModificationTime()).thenReturn(new Date());
-        when(logoControllerUtils.getDefaultImage()).thenReturn(validImage);
+        ForumImages images = createImages(new Date(1000));
+        when(componentService.getForumImages()).thenReturn(images);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(AdministrationImagesController.IF_NONE_MATCH_HEADER,
+                images.getETag(TransactionalComponentService.LOGO_PROPERTY));
 
-        MockHttpServletResponse response = new MockHttpServletResponse();
-        administrationController.getForumLogo(new MockHttpServletRequest(), response);
+        administrationController.getForumLogo(request, response);
 
-        verify(logoControllerUtils).getDefaultImage();
-        assertEquals(response.getContentAsByteArray(), validImage);
+        assertEquals(response.getStatus(), HttpServletResponse.SC_NOT_MODIFIED);
+        assertEquals(response.getContentAsByteArray().length, 0);
     }
 
     @Test
-    public void getForumLogoShouldReturnDefaultLogoWhenNoComponent() throws ImageProcessException {
-        when(componentService.getComponentOfForum()).thenReturn(null);
-        when(componentService.getComponentModificationTime()).thenReturn(new Date());
-        when(logoControllerUtils.getDefaultImage()).thenReturn(validImage);
-
+    public void renderLogoShouldNotReturnLogoWithETagMatchingOneOfListed() throws IOException {
         MockHttpServletResponse response = new MockHttpServletResponse();
-        administrationController.getForumLogo(new MockHttpServletRequest(), response);
-
-        verify(logoControllerUtils).getDefaultImage();
-        assertEquals(response.getContentAsByteArray(), validImage);
-    }
-
-    @Test
-    public void getForumLogoShouldReturnPropertyLogoWhenPropertyExists() throws IOException, ImageProcessException {
-        Component forumComponent = new Component();
-
-        String logoProperty = "logo";
-        Base64Wrapper wrapper = new Base64Wrapper();
-        byte[] logoBytes = wrapper.decodeB64Bytes(logoProperty);
-
-        forumComponent.addProperty(TransactionalComponentService.LOGO_PROPERTY, logoProperty);
-        when(componentService.getComponentOfForum()).thenReturn(forumComponent);
-        when(componentService.getComponentModificationTime()).thenReturn(new Date());
+        ForumImages images = createImages(new Date(1000));
+        when(componentService.getForumImages()).thenReturn(images);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(AdministrationImagesController.IF_NONE_MATCH_HEADER,
+                "\"outdated\", W/" + images.getETag(TransactionalComponentService.LOGO_PROPERTY) + " ,\"other\"");
 
-        MockHttpServletResponse response = new MockHttpServletResponse();
-        administrationController.getForumLogo(new MockHttpServletRequest(), response);
+        administrationController.getForumLogo(request, response);
 
-        verify(logoControllerUtils, never()).getDefaultImage();
-        assertEquals(response.getContentAsByteArray(), logoBytes);
+        assertEquals(response.getStatus(), HttpServletResponse.SC_NOT_MODIFIED);
     }
 
-
     @Test
-    public void getFavIconPNGShouldReturnDefaultIconWhenIconPropertyIsEmpty() throws ImageProcessException {
-        Component forumComponent = new Component();
-        forumComponent.addProperty(TransactionalComponentService.COMPONENT_FAVICON_PNG_PARAM, "");
-        when(componentService.getComponentOfForum()).thenReturn(forumComponent);
-        when(componentService.getComponentModificationTime()).thenReturn(new Date());
-        when(favIconPngControllerUtils.getDefaultImage()).thenReturn(validImage);
-
+    public void renderLogoShouldNotReturnLogoWhenAnyETagMatches() throws IOException {
         MockHttpServletResponse response = new MockHttpServletResponse();
-        administrationController.getFavIconPNG(new MockHttpServletRequest(), response);
-
-        verify(favIconPngControllerUtils).getDefaultImage();
-        assertEquals(response.getContentAsByteArray(), validImage);
-    }
-
-    @Test
-    public void getFavIconPNGShouldReturnDefaultIconWhenIconPropertyIsNull() throws ImageProcessException {
-        Component forumComponent = new Component();
-        when(componentService.getComponentOfForum()).thenReturn(forumComponent);
-        when(componentService.getComponentModificationTime()).thenReturn(new Date());
-        when(favIconPngControllerUtils.getDefaultImage()).thenReturn(validImage);
+        when(componentService.getForumImages()).thenReturn(createImages(new Date(1000)));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(AdministrationImagesController.IF_NONE_MATCH_HEADER, "*");
 
-        MockHttpServletResponse response = new MockHttpServletResponse();
-        administrationController.getFavIconPNG(new MockHttpServletRequest(), response);
+        administrationController.getForumLogo(request, response);
 
-        verify(favIconPngControllerUtils).getDefaultImage();
-        assertEquals(response.getContentAsByteArray(), validImage);
+        assertEquals(response.getStatus(), HttpServletResponse.SC_NOT_MODIFIED);
     }
 
     @Test
-    public void getFavIconPNGShouldReturnDefaultIconWhenNoComponent() throws ImageProcessException {
-        when(componentService.getComponentOfForum()).thenReturn(null);
-        when(componentService.getComponentModificationTime()).thenReturn(new Date());
-        when(favIconPngControllerUtils.getDefaultImage()).thenReturn(validImage);
-
+    public void renderLogoShouldReturnLogoWhenETagOnlyContainsCurrentOne() throws IOException {
         MockHttpServletResponse response = new MockHttpServletResponse();
-        administrationController.getFavIconPNG(new MockHttpServletRequest(), response);
+        ForumImages images = createImages(new Date(1000));
+        when(componentService.getForumImages()).thenReturn(images);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        String eTag = images.getETag(TransactionalComponentService.LOGO_PROPERTY);
+        request.addHeader(AdministrationImagesController.IF_NONE_MATCH_HEADER, "W/" + eTag + "x");
+
+        administrationController.getForumLogo(request, response);
 
-        verify(favIconPngControllerUtils).getDefaultImage();
+        assertEquals(response.getStatus(), HttpServletResponse.SC_OK);
         assertEquals(response.getContentAsByteArray(), validImage);
     }
 
     @Test
-    public void getFavIconPNGLogoShouldReturnPropertyIconWhenPropertyExists() throws IOException, ImageProcessException {
-        Component forumComponent = new Component();
-
-        String logoProperty = "logo";
-        Base64Wrapper wrapper = new Base64Wrapper();
-        byte[] logoBytes = wrapper.decodeB64Bytes(logoProperty);
-
-        forumComponent.addProperty(TransactionalComponentService.COMPONENT_FAVICON_PNG_PARAM, logoProperty);
-        when(componentService.getComponentOfForum()).thenReturn(forumComponent);
-        when(componentService.getComponentModificationTime()).thenReturn(new Date());
-
+    public void renderLogoShouldReturnLogoWithNotMatchingETagEvenIfItIsNotModifiedSinceDate() throws IOException {
         MockHttpServletResponse response = new MockHttpServletResponse();
-        administrationController.getFavIconPNG(new MockHttpServletRequest(), response);
-
-        verify(favIconPngControllerUtils, never()).getDefaultImage();
-        assertEquals(response.getContentAsByteArray(), logoBytes);
-    }
-
-
-    @Test
-    public void getFavIconICOShouldReturnDefaultIconWhenIconPropertyIsEmpty() throws ImageProcessException {
-        Component forumComponent = new Component();
-        forumComponent.addProperty(TransactionalComponentService.COMPONENT_FAVICON_PNG_PARAM, "");
-        when(componentService.getComponentOfForum()).thenReturn(forumComponent);
-        when(componentService.getComponentModificationTime()).thenReturn(new Date());
-        when(favIconIcoControllerUtils.getDefaultImage()).thenReturn(validImage);
+        when(componentService.getForumImages()).thenReturn(createImages(new Date(0)));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(AdministrationImagesController.IF_NONE_MATCH_HEADER, "\"outdated\"");
+        request.addHeader(administrationController.IF_MODIFIED_SINCE_HEADER, new Date(1000));
 
-        MockHttpServletResponse response = new MockHttpServletResponse();
-        administrationController.getFavIconICO(new MockHttpServletRequest(), response);
+        administrationController.getForumLogo(request, response);
 
-        verify(favIconIcoControllerUtils).getDefaultImage();
+        assertEquals(response.getStatus(), HttpServletResponse.SC_OK);
         assertEquals(response.getContentAsByteArray(), validImage);
     }
 
     @Test
-    public void getFavIconICOShouldReturnDefaultIconWhenIconPropertyIsNull() throws ImageProcessException {
-        Component forumComponent = new Component();
-        when(componentService.getComponentOfForum()).thenReturn(forumComponent);
-        when(componentService.getComponentModificationTime()).thenReturn(new Date());
-        when(favIconIcoControllerUtils.getDefaultImage()).thenReturn(validImage);
+    public void getForumLogoShouldServeImagesFromSnapshotWithoutReadingComponent() {
+        when(forumImagesCacheService.getImages()).thenReturn(createImages(new Date()));
 
         MockHttpServletResponse response = new MockHttpServletResponse();
-        administrationController.getFavIconICO(new MockHttpServletRequest(), response);
+        administrationController.getForumLogo(new MockHttpServletRequest(), response);
 
-        verify(favIconIcoControllerUtils).getDefaultImage();
         assertEquals(response.getContentAsByteArray(), validImage);
+        verifyZeroInteractions(componentService);
     }
 
     @Test
-    public void getFavIconICOShouldReturnDefaultIconWhenNoComponent() throws ImageProcessException {
-        when(componentService.getComponentOfForum()).thenReturn(null);
-        when(componentService.getComponentModificationTime()).thenReturn(new Date());
-        when(favIconIcoControllerUtils.getDefaultImage()).thenReturn(validImage);
+    public void getForumLogoShouldLoadImagesIfTheyAreNotCached() {
+        when(componentService.getForumImages()).thenReturn(createImages(new Date()));
 
         MockHttpServletResponse response = new MockHttpServletResponse();
-        administrationController.getFavIconICO(new MockHttpServletRequest(), response);
+        administrationController.getForumLogo(new MockHttpServletRequest(), response);
 
-        verify(favIconIcoControllerUtils).getDefaultImage();
         assertEquals(response.getContentAsByteArray(), validImage);
+        verify(componentService).getForumImages();
     }
 
     @Test
-    public void getFavIconICOLogoShouldReturnPropertyIconWhenPropertyExists() throws IOException, ImageProcessException {
-        Component forumComponent = new Component();
-
-        String logoProperty = "logo";
-        Base64Wrapper wrapper = new Base64Wrapper();
-        byte[] logoBytes = wrapper.decodeB64Bytes(logoProperty);
-
-        forumComponent.addProperty(TransactionalComponentService.COMPONENT_FAVICON_ICO_PARAM, logoProperty);
-        when(componentService.getComponentOfForum()).thenReturn(forumComponent);
-        when(componentService.getComponentModificationTime()).thenReturn(new Date());
-
-        MockHttpServletResponse response = new MockHttpServletResponse();
-        administrationController.getFavIconICO(new MockHttpServletRequest(), response);
-
-        verify(favIconIcoControllerUtils, never()).getDefaultImage();
-        assertEquals(response.getContentAsByteArray(), logoBytes);
-    }
+    public void forumImagesShouldBeReturnedWithStartTimeWhenModificationTimeIsNotSet() {
+        when(componentService.getForumImages()).thenReturn(createImages(null));
 
-
-    @Test
-    public void iconPngRequestShouldReturnModifiedIconInResponse() throws IOException {
         MockHttpServletResponse response = new MockHttpServletResponse();
-        when(componentService.getComponentModificationTime()).thenReturn(new Date(1000));
-        MockHttpServletRequest request = new MockHttpServletRequest();
-        request.addHeader(administrationController.IF_MODIFIED_SINCE_HEADER, new Date(0));
-
-        when(favIconPngControllerUtils.getDefaultImage()).thenReturn(validImage);
-
-        administrationController.getFavIconPNG(request, response);
+        administrationController.getForumLogo(new MockHttpServletRequest(), response);
 
-        assertEquals(response.getContentType(), "image/png");
-        assertEquals(response.getContentLength(), validImage.length);
         assertEquals(response.getContentAsByteArray(), validImage);
         checkResponse(response);
     }
 
     @Test
-    public void iconPngRequestShouldNotReturnModifiedIconInResponse() throws IOException {
-        MockHttpServletResponse response = new MockHttpServletResponse();
-        when(componentService.getComponentModificationTime()).thenReturn(new Date(0));
-        MockHttpServletRequest request = new MockHttpServletRequest();
-        request.addHeader(administrationController.IF_MODIFIED_SINCE_HEADER, new Date(1000));
+    public void getFavIconPNGShouldReturnPngIconFromSnapshot() {
+        when(componentService.getForumImages()).thenReturn(createImages(new Date()));
 
-        when(favIconPngControllerUtils.getDefaultImage()).thenReturn(validImage);
-
-        administrationController.getFavIconPNG(request, response);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        administrationController.getFavIconPNG(new MockHttpServletRequest(), response);
 
-        assertEquals(response.getStatus(), HttpServletResponse.SC_NOT_MODIFIED);
-        assertNotSame(response.getContentAsByteArray(), validImage);
+        assertEquals(response.getContentType(), "image/png");
+        assertEquals(response.getContentAsByteArray(), PNG_ICON);
         checkResponse(response);
     }
 
     @Test
-    public void iconIcoRequestShouldReturnModifiedIconInResponse() throws IOException {
-        MockHttpServletResponse response = new MockHttpServletResponse();
-        when(componentService.getComponentModificationTime()).thenReturn(new Date(1000));
-        MockHttpServletRequest request = new MockHttpServletRequest();
-        request.addHeader(administrationController.IF_MODIFIED_SINCE_HEADER, new Date(0));
+    public void getFavIconICOShouldReturnIcoIconFromSnapshot() {
+        when(componentService.getForumImages()).thenReturn(createImages(new Date()));
 
-        when(favIconIcoControllerUtils.getDefaultImage()).thenReturn(validImage);
-
-        administrationController.getFavIconICO(request, response);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        administrationController.getFavIconICO(new MockHttpServletRequest(), response);
 
         assertEquals(response.getContentType(), "image/x-icon");
-        assertEquals(response.getContentLength(), validImage.length);
-        assertEquals(response.getContentAsByteArray(), validImage);
+        assertEquals(response.getContentAsByteArray(), ICO_ICON);
         checkResponse(response);
     }
 
     @Test
-    public void iconIcoRequestShouldNotReturnModifiedIconInResponse() throws IOException {
+    public void iconRequestShouldNotReturnNotModifiedIconInResponse() throws IOException {
         MockHttpServletResponse response = new MockHttpServletResponse();
-        when(componentService.getComponentModificationTime()).thenReturn(new Date(0));
+        when(componentService.getForumImages()).thenReturn(createImages(new Date(0)));
         MockHttpServletRequest request = new MockHttpServletRequest();
         request.addHeader(administrationController.IF_MODIFIED_SINCE_HEADER, new Date(1000));
 
-        when(favIconIcoControllerUtils.getDefaultImage()).thenReturn(validImage);
-
         administrationController.getFavIconICO(request, response);
 
         assertEquals(response.getStatus(), HttpServletResponse.SC_NOT_MODIFIED);
-        assertNotSame(response.getContentAsByteArray(), validImage);
         checkResponse(response);
+    }
 
+    private ForumImages createImages(Date modificationTime) {
+        Map<String, byte[]> images = new HashMap<>();
+        images.put(TransactionalComponentService.LOGO_PROPERTY, validImage);
+        images.put(TransactionalComponentService.COMPONENT_FAVICON_PNG_PARAM, PNG_ICON);
+        images.put(TransactionalComponentService.COMPONENT_FAVICON_ICO_PARAM, ICO_ICON);
+        return new ForumImages(modificationTime, images);
     }
 
     private void checkResponse(MockHttpServletResponse response) {
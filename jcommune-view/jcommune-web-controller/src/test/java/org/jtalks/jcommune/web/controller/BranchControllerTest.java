@@ -15,6 +15,7 @@
 package org.jtalks.jcommune.web.controller;
 
 import org.jtalks.common.service.security.SecurityContextFacade;
+import org.jtalks.jcommune.model.dto.ForumStructure;
 import org.jtalks.jcommune.model.entity.Branch;
 import org.jtalks.jcommune.model.entity.JCUser;
 import org.jtalks.jcommune.model.entity.Topic;
@@ -210,9 +211,9 @@ public class BranchControllerTest {
     @Test
     public void testGetBranchesFromSection() throws NotFoundException {
         long sectionId = 1L;
-        List<Branch> branches = new ArrayList<>();
+        List<ForumStructure.BranchNode> branches = new ArrayList<>();
         Branch branch = createDefaultBranch();
-        branches.add(branch);
+        branches.add(new ForumStructure.BranchNode(branch.getId(), branch.getName()));
         when(branchService.getAvailableBranchesInSection(sectionId,
                 branch.getTopics().get(0).getId())).thenReturn(branches);
 
@@ -225,9 +226,9 @@ public class BranchControllerTest {
 
     @Test
     public void testGetAllBranches() throws NotFoundException {
-        List<Branch> branches = new ArrayList<>();
+        List<ForumStructure.BranchNode> branches = new ArrayList<>();
         Branch branch = createDefaultBranch();
-        branches.add(branch);
+        branches.add(new ForumStructure.BranchNode(branch.getId(), branch.getName()));
         when(branchService.getAllAvailableBranches(branch.getTopics().get(0).getId())).thenReturn(branches);
 
         BranchDto[] branchDtoArray = controller.getAllBranches(branch.getTopics().get(0).getId());
@@ -22,6 +22,8 @@ import org.jtalks.jcommune.model.entity.PrivateMessageStatus;
 import org.jtalks.jcommune.service.PrivateMessageService;
 import org.jtalks.jcommune.service.UserService;
 import org.jtalks.jcommune.plugin.api.exceptions.NotFoundException;
+import org.jtalks.jcommune.plugin.api.web.dto.json.JsonResponse;
+import org.jtalks.jcommune.plugin.api.web.dto.json.JsonResponseStatus;
 import org.jtalks.jcommune.service.nontransactional.BBCodeService;
 import org.jtalks.jcommune.web.dto.PrivateMessageDraftDto;
 import org.jtalks.jcommune.web.dto.PrivateMessageDto;
@@ -42,6 +44,7 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.mockito.Matchers.any;
@@ -100,11 +103,11 @@ public class PrivateMessageControllerTest {
                 "Message title", "Private message body"));
         Page<PrivateMessage> expectedPage = new PageImpl<>(messages);
 
-        when(pmService.getInboxForCurrentUser(page)).thenReturn(expectedPage);
+        when(pmService.getInboxForCurrentUser(page, null)).thenReturn(expectedPage);
         when(userService.getCurrentUser()).thenReturn(JC_USER);
 
         //invoke the object under test
-        ModelAndView mav = controller.inboxPage(page);
+        ModelAndView mav = controller.inboxPage(page, null);
 
         //check expectations
         verify(pmService).getInboxForCurrentUser(page);
@@ -121,11 +124,11 @@ public class PrivateMessageControllerTest {
                 "Message title", "Private message body"));
         Page<PrivateMessage> expectedPage = new PageImpl<>(messages);
 
-        when(pmService.getOutboxForCurrentUser(page)).thenReturn(expectedPage);
+        when(pmService.getOutboxForCurrentUser(page, null)).thenReturn(expectedPage);
         when(userService.getCurrentUser()).thenReturn(JC_USER);
 
         //invoke the object under test
-        ModelAndView mav = controller.outboxPage(page);
+        ModelAndView mav = controller.outboxPage(page, null);
 
         //check expectations
         verify(pmService).getOutboxForCurrentUser(page);
@@ -141,10 +144,10 @@ public class PrivateMessageControllerTest {
                 "Message title", "Private message body"));
         Page<PrivateMessage> expectedPage = new PageImpl<>(messages);
 
-        when(pmService.getDraftsForCurrentUser(page)).thenReturn(expectedPage);
+        when(pmService.getDraftsForCurrentUser(page, null)).thenReturn(expectedPage);
 
         //invoke the object under test
-        ModelAndView mav = controller.draftsPage(page);
+        ModelAndView mav = controller.draftsPage(page, null);
 
         //check expectations
         verify(pmService).getDraftsForCurrentUser(page);
@@ -153,6 +156,17 @@ public class PrivateMessageControllerTest {
         assertModelAttributeAvailable(mav, "draftsPage");
     }
 
+    @Test
+    public void inboxPageShouldBeGotByKeysetIfLastMessageOfPreviousPageIsKnown() {
+        Page<PrivateMessage> expectedPage = new PageImpl<>(Collections.<PrivateMessage>emptyList());
+        when(pmService.getInboxForCurrentUser("2", 42L)).thenReturn(expectedPage);
+
+        ModelAndView mav = controller.inboxPage("2", 42L);
+
+        verify(pmService).getInboxForCurrentUser("2", 42L);
+        assertModelAttributeAvailable(mav, "inboxPage");
+    }
+
     @Test
     public void newPmPage() throws NotFoundException {
         when(userService.getCurrentUser()).thenReturn(JC_USER);
@@ -424,6 +438,26 @@ public class PrivateMessageControllerTest {
         assertEquals(result, "redirect:/aaa");
     }
 
+    @Test
+    public void markMessagesAsReadShouldMarkAllOfThemAndRedirectToInbox() {
+        List<Long> pmIds = Arrays.asList(1L, 2L);
+
+        String result = controller.markMessagesAsRead(pmIds);
+
+        verify(pmService).markAsRead(pmIds);
+        assertEquals(result, "redirect:/inbox");
+    }
+
+    @Test
+    public void newMessagesCountShouldReturnCountOfCurrentUser() {
+        when(pmService.currentUserNewPmCount()).thenReturn(3);
+
+        JsonResponse response = controller.newMessagesCount();
+
+        assertEquals(response.getStatus(), JsonResponseStatus.SUCCESS);
+        assertEquals(response.getResult(), 3);
+    }
+
     private PrivateMessageDto getPrivateMessageDto() {
         PrivateMessageDto dto = new PrivateMessageDto();
         dto.setBody("body");
@@ -15,6 +15,8 @@
 package org.jtalks.jcommune.web.controller;
 
 import org.jtalks.common.model.entity.Section;
+import org.jtalks.jcommune.model.dto.ForumStructure;
+import org.jtalks.jcommune.service.BranchService;
 import org.jtalks.jcommune.service.SectionService;
 import org.jtalks.jcommune.plugin.api.exceptions.NotFoundException;
 import org.jtalks.jcommune.service.nontransactional.LocationService;
@@ -27,12 +29,12 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import javax.servlet.http.HttpSession;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.ModelAndViewAssert.*;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 /**
  * @author Max Malakhov
@@ -42,6 +44,7 @@ import static org.testng.Assert.assertEquals;
  */
 public class SectionControllerTest {
     private SectionService sectionService;
+    private BranchService branchService;
     private SectionController controller;
     private BreadcrumbBuilder breadcrumbBuilder;
     private ForumStatisticsProvider statisticsProvider;
@@ -50,12 +53,14 @@ public class SectionControllerTest {
     @BeforeMethod
     public void init() {
         sectionService = mock(SectionService.class);
+        branchService = mock(BranchService.class);
         breadcrumbBuilder = mock(BreadcrumbBuilder.class);
         statisticsProvider = mock(ForumStatisticsProvider.class);
         locationServiceImpl = mock(LocationService.class);
         
         controller = new SectionController( 
                 sectionService,
+                branchService,
                 statisticsProvider,
                 locationServiceImpl);
     }
@@ -64,6 +69,7 @@ public class SectionControllerTest {
     public void testDisplayAllSections() {
         //set expectations
         when(sectionService.getAll()).thenReturn(new ArrayList<Section>());
+        when(branchService.getVisibleBranchIds()).thenReturn(new HashSet<>(Arrays.asList(1L, 2L)));
 
         //invoke the object under test
         ModelAndView mav = controller.sectionList(mock(HttpSession.class));
@@ -84,6 +90,10 @@ public class SectionControllerTest {
         assertModelAttributeAvailable(mav, "usersRegistered");
         assertModelAttributeAvailable(mav, "visitorsRegistered");
         assertModelAttributeAvailable(mav, "visitorsGuests");
+        Map<Long, Boolean> visibleBranches = assertAndReturnModelAttributeOfType(mav, "visibleBranches", Map.class);
+        assertEquals(visibleBranches.size(), 2);
+        assertTrue(visibleBranches.get(1L));
+        assertTrue(visibleBranches.get(2L));
     }
 
     @Test
@@ -128,12 +138,11 @@ public class SectionControllerTest {
 
     @Test
     public void testSectionList() {
-        List<Section> sections = new ArrayList<>();
         long sectionId = 1L;
         long topicId = 1L;
-        Section section = new Section("section name");
-        section.setId(sectionId);
-        sections.add(section);
+        ForumStructure.SectionNode section = new ForumStructure.SectionNode(sectionId, "section name",
+                Collections.<ForumStructure.BranchNode>emptyList());
+        List<ForumStructure.SectionNode> sections = Arrays.asList(section);
         when(sectionService.getAllAvailableSections(topicId)).thenReturn(sections);
         SectionDto[] sectionDtoArray = controller.sectionList(topicId);
 
@@ -89,6 +89,8 @@ public class TopicControllerTest {
     private LastReadPostService lastReadPostService;
     @Mock
     private EntityToDtoConverter converter;
+    @Mock
+    private PollService pollService;
 
     private TopicController controller;
     @Mock
@@ -113,7 +115,8 @@ public class TopicControllerTest {
                 topicFetchService,
                 topicDraftService,
                 converter,
-                retryTemplate);
+                retryTemplate,
+                pollService);
     }
 
     @BeforeMethod
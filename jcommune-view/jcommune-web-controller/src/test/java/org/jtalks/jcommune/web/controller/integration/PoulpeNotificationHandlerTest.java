@@ -21,9 +21,9 @@ import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.assertEquals;
 
 import org.jtalks.common.model.entity.User;
-import org.jtalks.jcommune.service.BranchService;
-import org.jtalks.jcommune.service.SectionService;
 import org.jtalks.jcommune.service.UserService;
+import org.jtalks.jcommune.service.dto.TopicPurgeProgress;
+import org.jtalks.jcommune.service.nontransactional.TopicPurgeService;
 import org.jtalks.jcommune.plugin.api.exceptions.NotFoundException;
 import org.mockito.Mock;
 import org.springframework.web.servlet.ModelAndView;
@@ -36,9 +36,7 @@ public class PoulpeNotificationHandlerTest {
     private static final long SECTION_ID = 1L;
 
     @Mock
-    private BranchService branchService;
-    @Mock
-    private SectionService sectionService;
+    private TopicPurgeService topicPurgeService;
     @Mock
     private UserService userService;
 
@@ -47,7 +45,7 @@ public class PoulpeNotificationHandlerTest {
     @BeforeMethod
     public void setUp() throws Exception {
         initMocks(this);
-        controller = new PoulpeNotificationHandler(branchService, sectionService, userService);
+        controller = new PoulpeNotificationHandler(topicPurgeService, userService);
     }
 
     @Test
@@ -55,7 +53,7 @@ public class PoulpeNotificationHandlerTest {
         doReturn(userWithPassword("password")).when(userService).getCommonUserByUsername("admin");
         controller.deleteBranch(BRANCH_ID, "password");
 
-        verify(branchService).deleteAllTopics(BRANCH_ID);
+        verify(topicPurgeService).deleteAllTopicsInBranch(BRANCH_ID);
     }
 
     @Test(expectedExceptions = IllegalArgumentException.class)
@@ -77,7 +75,7 @@ public class PoulpeNotificationHandlerTest {
     @Test(expectedExceptions = NotFoundException.class)
     public void testDeleteBranchIncorrectId() throws NotFoundException {
         doReturn(userWithPassword("password")).when(userService).getCommonUserByUsername("admin");
-        when(branchService.deleteAllTopics(anyLong())).thenThrow(new NotFoundException());
+        doThrow(new NotFoundException()).when(topicPurgeService).deleteAllTopicsInBranch(anyLong());
         controller.deleteBranch(BRANCH_ID, "password");
     }
 
@@ -86,13 +84,13 @@ public class PoulpeNotificationHandlerTest {
         doReturn(userWithPassword("password")).when(userService).getCommonUserByUsername("admin");
         controller.deleteSection(SECTION_ID, "password");
 
-        verify(sectionService).deleteAllTopicsInSection(SECTION_ID);
+        verify(topicPurgeService).deleteAllTopicsInSection(SECTION_ID);
     }
 
     @Test(expectedExceptions = NotFoundException.class)
     public void testDeleteSectionIncorrectId() throws NotFoundException {
         doReturn(userWithPassword("password")).when(userService).getCommonUserByUsername("admin");
-        when(sectionService.deleteAllTopicsInSection(anyLong())).thenThrow(new NotFoundException());
+        doThrow(new NotFoundException()).when(topicPurgeService).deleteAllTopicsInSection(anyLong());
         controller.deleteSection(SECTION_ID, "password");
 
         assertTrue(false);
@@ -103,17 +101,32 @@ public class PoulpeNotificationHandlerTest {
         doReturn(userWithPassword("password")).when(userService).getCommonUserByUsername("admin");
         controller.deleteComponent("password");
 
-        verify(sectionService).deleteAllTopicsInForum();
+        verify(topicPurgeService).deleteAllTopicsInForum();
     }
 
     @Test(expectedExceptions = NotFoundException.class)
     public void testDeleteComponentFail() throws NotFoundException {
         doReturn(userWithPassword("password")).when(userService).getCommonUserByUsername("admin");
-        doThrow(new NotFoundException()).when(sectionService).deleteAllTopicsInForum();
+        doThrow(new NotFoundException()).when(topicPurgeService).deleteAllTopicsInForum();
 
         controller.deleteComponent("password");
     }
 
+    @Test
+    public void testGetPurgeProgress() throws NotFoundException {
+        doReturn(userWithPassword("password")).when(userService).getCommonUserByUsername("admin");
+        TopicPurgeProgress progress = new TopicPurgeProgress(10);
+        when(topicPurgeService.getProgress()).thenReturn(progress);
+
+        assertEquals(controller.getPurgeProgress("password"), progress);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void getPurgeProgressShouldThrowIfWrongPasswordWasSentByPoulpe() throws NotFoundException {
+        doReturn(userWithPassword("correct password")).when(userService).getCommonUserByUsername("admin");
+        controller.getPurgeProgress("wrong password");
+    }
+
     @Test
     public void testHandleAllExceptions() {
         Exception exception = new Exception("Some message");
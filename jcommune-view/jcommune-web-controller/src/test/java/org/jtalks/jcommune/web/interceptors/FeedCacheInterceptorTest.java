@@ -0,0 +1,164 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.web.interceptors;
+
+import org.jtalks.common.service.security.SecurityContextFacade;
+import org.jtalks.jcommune.service.dto.CachedFeed;
+import org.jtalks.jcommune.service.nontransactional.FeedCacheService;
+import org.mockito.Mock;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.web.servlet.HandlerMapping;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.Collections;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.testng.Assert.*;
+
+public class FeedCacheInterceptorTest {
+    private static final String URL = "http://localhost:8080/topics/recent.rss";
+    private static final String GENERATION = "forum#1";
+
+    @Mock
+    private FeedCacheService feedCacheService;
+    @Mock
+    private SecurityContextFacade securityContextFacade;
+
+    private SecurityContext securityContext = new SecurityContextImpl();
+    private FeedCacheInterceptor interceptor;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private CachedFeed feed = new CachedFeed("<rss/>".getBytes(), "application/rss+xml", 1000000L);
+
+    @BeforeMethod
+    public void init() {
+        initMocks(this);
+        when(securityContextFacade.getContext()).thenReturn(securityContext);
+        interceptor = new FeedCacheInterceptor(feedCacheService, securityContextFacade);
+        request = new MockHttpServletRequest("GET", "/topics/recent.rss");
+        request.setServerPort(8080);
+        response = new MockHttpServletResponse();
+        when(feedCacheService.getGeneration(FeedCacheService.FORUM_FEED)).thenReturn(GENERATION);
+    }
+
+    @Test
+    public void cachedFeedShouldBeSentWithoutCallingHandler() throws Exception {
+        when(feedCacheService.getFeed(GENERATION, URL, FeedCacheInterceptor.ANONYMOUS_VISIBILITY)).thenReturn(feed);
+
+        assertFalse(interceptor.preHandle(request, response, null));
+
+        assertEquals(response.getContentAsByteArray(), feed.getBody());
+        assertEquals(response.getHeader("ETag"), feed.getETag());
+    }
+
+    @Test
+    public void cachedFeedWithMatchingETagShouldNotBeSent() throws Exception {
+        when(feedCacheService.getFeed(GENERATION, URL, FeedCacheInterceptor.ANONYMOUS_VISIBILITY)).thenReturn(feed);
+        request.addHeader("If-None-Match", feed.getETag());
+
+        assertFalse(interceptor.preHandle(request, response, null));
+
+        assertEquals(response.getStatus(), HttpServletResponse.SC_NOT_MODIFIED);
+        assertEquals(response.getContentAsByteArray().length, 0);
+    }
+
+    @Test
+    public void cachedFeedNotModifiedSinceRequestedDateShouldNotBeSent() throws Exception {
+        when(feedCacheService.getFeed(GENERATION, URL, FeedCacheInterceptor.ANONYMOUS_VISIBILITY)).thenReturn(feed);
+        request.addHeader("If-Modified-Since", feed.getLastModified());
+
+        interceptor.preHandle(request, response, null);
+
+        assertEquals(response.getStatus(), HttpServletResponse.SC_NOT_MODIFIED);
+    }
+
+    @Test
+    public void cachedFeedModifiedSinceRequestedDateShouldBeSent() throws Exception {
+        when(feedCacheService.getFeed(GENERATION, URL, FeedCacheInterceptor.ANONYMOUS_VISIBILITY)).thenReturn(feed);
+        request.addHeader("If-Modified-Since", feed.getLastModified() - 1000);
+
+        interceptor.preHandle(request, response, null);
+
+        assertEquals(response.getStatus(), HttpServletResponse.SC_OK);
+        assertEquals(response.getContentAsByteArray(), feed.getBody());
+    }
+
+    @Test
+    public void requestShouldBePreparedForCachingIfFeedIsNotCached() throws Exception {
+        request.setQueryString("page=2");
+        securityContext.setAuthentication(new AnonymousAuthenticationToken("key", "anonymousUser",
+                AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS")));
+
+        assertTrue(interceptor.preHandle(request, response, null));
+
+        assertEquals(request.getAttribute(FeedCacheInterceptor.FEED_URL_ATTRIBUTE), URL + "?page=2");
+        assertEquals(request.getAttribute(FeedCacheInterceptor.FEED_VISIBILITY_ATTRIBUTE),
+                FeedCacheInterceptor.ANONYMOUS_VISIBILITY);
+        assertEquals(request.getAttribute(FeedCacheInterceptor.FEED_GENERATION_ATTRIBUTE), GENERATION);
+    }
+
+    @Test
+    public void feedOfBranchShouldBeTakenFromGenerationOfTheBranch() throws Exception {
+        request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE,
+                Collections.singletonMap(FeedCacheInterceptor.BRANCH_ID_VARIABLE, "7"));
+        when(feedCacheService.getGeneration(FeedCacheService.getBranchFeed(7))).thenReturn("branch:7#1");
+        when(feedCacheService.getFeed("branch:7#1", URL, FeedCacheInterceptor.ANONYMOUS_VISIBILITY)).thenReturn(feed);
+
+        assertFalse(interceptor.preHandle(request, response, null));
+    }
+
+    @Test
+    public void feedOfSectionShouldBeTakenFromGenerationOfTheSection() throws Exception {
+        request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE,
+                Collections.singletonMap(FeedCacheInterceptor.SECTION_ID_VARIABLE, "3"));
+
+        interceptor.preHandle(request, response, null);
+
+        verify(feedCacheService).getGeneration(FeedCacheService.getSectionFeed(3));
+    }
+
+    @Test
+    public void feedWithNotNumericIdShouldNotBeCached() throws Exception {
+        request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE,
+                Collections.singletonMap(FeedCacheInterceptor.BRANCH_ID_VARIABLE, "abc"));
+
+        assertTrue(interceptor.preHandle(request, response, null));
+
+        verifyZeroInteractions(feedCacheService);
+        assertNull(request.getAttribute(FeedCacheInterceptor.FEED_GENERATION_ATTRIBUTE));
+    }
+
+    @Test
+    public void registeredUserShouldGetOwnFeeds() throws Exception {
+        securityContext.setAuthentication(new UsernamePasswordAuthenticationToken("user", "password",
+                AuthorityUtils.createAuthorityList("ROLE_USER")));
+
+        interceptor.preHandle(request, response, null);
+
+        verify(feedCacheService).getFeed(URL, FeedCacheInterceptor.USER_VISIBILITY_PREFIX + "user");
+        verify(feedCacheService, never())
+                .getFeed(anyString(), anyString(), eq(FeedCacheInterceptor.ANONYMOUS_VISIBILITY));
+    }
+}
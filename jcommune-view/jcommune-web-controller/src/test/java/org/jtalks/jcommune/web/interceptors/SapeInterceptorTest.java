@@ -15,14 +15,81 @@
 package org.jtalks.jcommune.web.interceptors;
 
 import org.apache.commons.io.IOUtils;
+import org.jtalks.jcommune.model.entity.JCommuneProperty;
+import org.jtalks.jcommune.web.sape.SapeLinkCache;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.ModelAndView;
+import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import javax.servlet.http.Cookie;
 import java.io.IOException;
 
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.unitils.reflectionassert.ReflectionAssert.assertPropertyReflectionEquals;
 
 /** @author stanislav bashkirtsev */
 public class SapeInterceptorTest {
+    private JCommuneProperty enableServiceProperty = JCommuneProperty.CMP_SAPE_ENABLED;
+    private JCommuneProperty showDummyLinksProperty = JCommuneProperty.CMP_SAPE_SHOW_DUMMY_LINKS;
+    private JCommuneProperty onMainPageEnableProperty = JCommuneProperty.CMP_SAPE_ON_MAIN_PAGE_ENABLE;
+    private SapeLinkCache sapeLinkCache;
+    private SapeInterceptor interceptor;
+
+    @BeforeMethod
+    public void setUp() {
+        enableServiceProperty.setDefaultValue("true");
+        showDummyLinksProperty.setDefaultValue("false");
+        onMainPageEnableProperty.setDefaultValue("true");
+        sapeLinkCache = mock(SapeLinkCache.class);
+        interceptor = new SapeInterceptor();
+        interceptor.setComponentSapeEnableServiceProperty(enableServiceProperty);
+        interceptor.setComponentSapeShowDummyLinksProperty(showDummyLinksProperty);
+        interceptor.setComponentSapeOnMainPageEnableProperty(onMainPageEnableProperty);
+        interceptor.setSapeLinkCache(sapeLinkCache);
+    }
+
+    @Test
+    public void linksShouldBeTakenFromCache() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/topics/1");
+        Cookie[] cookies = {new Cookie("sape_cookie", "account")};
+        request.setCookies(cookies);
+        when(sapeLinkCache.getLinks("/topics/1", cookies)).thenReturn("links");
+        ModelAndView mav = new ModelAndView("topic/postList");
+
+        interceptor.postHandle(request, new MockHttpServletResponse(), null, mav);
+
+        assertEquals(mav.getModel().get("sapeLinks"), "links");
+    }
+
+    @Test
+    public void linksShouldNotBeAddedIfServiceIsDisabled() throws Exception {
+        enableServiceProperty.setDefaultValue("false");
+        ModelAndView mav = new ModelAndView("topic/postList");
+
+        interceptor.postHandle(new MockHttpServletRequest("GET", "/topics/1"), new MockHttpServletResponse(),
+                null, mav);
+
+        assertFalse(mav.getModel().containsKey("sapeLinks"));
+        verifyZeroInteractions(sapeLinkCache);
+    }
+
+    @Test
+    public void dummyLinksShouldNotBeTakenFromCache() throws Exception {
+        showDummyLinksProperty.setDefaultValue("true");
+        ModelAndView mav = new ModelAndView("topic/postList");
+
+        interceptor.postHandle(new MockHttpServletRequest("GET", "/topics/1"), new MockHttpServletResponse(),
+                null, mav);
+
+        assertEquals(mav.getModel().get("sapeLinks"),
+                fileContent("/org/jtalks/jcommune/web/interceptors/DummySapeLinks.txt"));
+        verifyZeroInteractions(sapeLinkCache);
+    }
+
     @Test
     public void constructorInitsDummyLinks() throws Exception {
         assertPropertyReflectionEquals("dummyLinks",
@@ -18,6 +18,8 @@ import org.mockito.Mock;
 import org.mockito.Spy;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.web.authentication.rememberme.CookieTheftException;
+import org.springframework.security.web.authentication.rememberme.InMemoryTokenRepositoryImpl;
 import org.springframework.security.web.authentication.rememberme.PersistentRememberMeToken;
 import org.springframework.security.web.authentication.rememberme.PersistentTokenRepository;
 import org.testng.annotations.BeforeMethod;
@@ -25,10 +27,22 @@ import org.testng.annotations.Test;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
 
 /**
  *
@@ -90,4 +104,131 @@ public class ThrottlingRememberMeServiceTest {
         verify(services, times(2)).loginWithSpringSecurity(eq(new String[]{PRESENTED_SERIES, PRESENTED_TOKEN}),
                 any(HttpServletRequest.class), any(HttpServletResponse.class));
     }
+
+    @Test
+    public void cachedTokenShouldBeUsedByAllSequentRequestsWithinValidityTime() {
+        services.setCachedTokenValidityTime(5000);
+        for (int i = 0; i < 3; i++) {
+            services.processAutoLoginCookie(new String[]{PRESENTED_SERIES, PRESENTED_TOKEN}, null, null);
+        }
+        verify(services, times(1)).loginWithSpringSecurity(eq(new String[]{PRESENTED_SERIES, PRESENTED_TOKEN}),
+                any(HttpServletRequest.class), any(HttpServletResponse.class));
+        verify(services, times(2)).rewriteCookie(eq(token), any(HttpServletRequest.class),
+                any(HttpServletResponse.class));
+    }
+
+    @Test
+    public void tokenShouldBeRemovedFromCacheIfAuthenticationFailed() {
+        services.setCachedTokenValidityTime(5000);
+        doThrow(new CookieTheftException("stolen")).doReturn(details).when(services).loginWithSpringSecurity(
+                any(String[].class), any(HttpServletRequest.class), any(HttpServletResponse.class));
+        try {
+            services.processAutoLoginCookie(new String[]{PRESENTED_SERIES, PRESENTED_TOKEN}, null, null);
+            fail("Authentication error should be rethrown");
+        } catch (CookieTheftException e) {
+            services.processAutoLoginCookie(new String[]{PRESENTED_SERIES, PRESENTED_TOKEN}, null, null);
+        }
+        verify(services, times(2)).loginWithSpringSecurity(eq(new String[]{PRESENTED_SERIES, PRESENTED_TOKEN}),
+                any(HttpServletRequest.class), any(HttpServletResponse.class));
+    }
+
+    @Test
+    public void parallelRequestsWithTheSameSeriesShouldUpdateTokenOnlyOnce() throws Exception {
+        AtomicInteger logins = new AtomicInteger();
+        AtomicInteger rewrittenCookies = new AtomicInteger();
+        InMemoryTokenRepositoryImpl repository = new InMemoryTokenRepositoryImpl();
+        repository.createNewToken(token);
+        ThrottlingRememberMeService service = createCountingService(repository, logins, rewrittenCookies);
+
+        int requests = 20;
+        processInParallel(service, PRESENTED_TOKEN, requests);
+
+        assertEquals(logins.get(), 1);
+        assertEquals(rewrittenCookies.get(), requests - 1);
+    }
+
+    @Test
+    public void parallelRequestsWithAnotherTokenThanCachedOneShouldUpdateTokenOnlyOnce() throws Exception {
+        AtomicInteger logins = new AtomicInteger();
+        AtomicInteger rewrittenCookies = new AtomicInteger();
+        InMemoryTokenRepositoryImpl repository = new InMemoryTokenRepositoryImpl();
+        repository.createNewToken(token);
+        ThrottlingRememberMeService service = createCountingService(repository, logins, rewrittenCookies);
+        service.processAutoLoginCookie(new String[]{PRESENTED_SERIES, PRESENTED_TOKEN}, null, null);
+        String newToken = "hL0QmBAt2Eq5EP1I5pFrcg==";
+        repository.updateToken(PRESENTED_SERIES, newToken, new Date());
+
+        int requests = 20;
+        processInParallel(service, newToken, requests);
+
+        assertEquals(logins.get(), 2);
+        assertEquals(rewrittenCookies.get(), requests - 1);
+    }
+
+    /**
+     * Creates service counting logins and rewritten cookies. Mocks aren't used, they aren't safe to be called
+     * from several threads.
+     */
+    private ThrottlingRememberMeService createCountingService(PersistentTokenRepository repository,
+                                                              final AtomicInteger logins,
+                                                              final AtomicInteger rewrittenCookies)
+            throws Exception {
+        ThrottlingRememberMeService service = new ThrottlingRememberMeService(null, null) {
+            @Override
+            UserDetails loginWithSpringSecurity(String[] cookieTokens, HttpServletRequest request,
+                                                HttpServletResponse response) {
+                logins.incrementAndGet();
+                try {
+                    // authentication is slow, so other requests come while it's in progress
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return details;
+            }
+
+            @Override
+            void rewriteCookie(PersistentRememberMeToken token, HttpServletRequest request,
+                               HttpServletResponse response) {
+                rewrittenCookies.incrementAndGet();
+            }
+        };
+        service.setTokenRepository(repository);
+        service.setUserDetailsService(new UserDetailsService() {
+            @Override
+            public UserDetails loadUserByUsername(String username) {
+                return details;
+            }
+        });
+        service.setCachedTokenValidityTime(5000);
+        return service;
+    }
+
+    /**
+     * Performs requests with the same cookie at once and checks all of them are authenticated.
+     */
+    private void processInParallel(final ThrottlingRememberMeService service, final String presentedToken,
+                                   int requests) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        List<Future<UserDetails>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < requests; i++) {
+                results.add(executor.submit(new Callable<UserDetails>() {
+                    @Override
+                    public UserDetails call() throws Exception {
+                        start.await();
+                        return service.processAutoLoginCookie(new String[]{PRESENTED_SERIES, presentedToken},
+                                null, null);
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<UserDetails> result : results) {
+                assertSame(result.get(10, TimeUnit.SECONDS), details);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.web.sape;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+
+import javax.servlet.http.Cookie;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * Local stand-in of SAPE server which takes links from properties file where key is URI of the page.
+ * Counts loads, so tests can check when links were loaded.
+ */
+public class FileSapeLinkSource implements SapeLinkSource {
+    static final String DEFAULT_LOCATION = "/org/jtalks/jcommune/web/sape/SapeLinks.properties";
+
+    private final Properties links;
+    private volatile int loadsCount;
+
+    public FileSapeLinkSource(String location) throws IOException {
+        links = PropertiesLoaderUtils.loadProperties(new ClassPathResource(location));
+    }
+
+    @Override
+    public String loadLinks(String requestUri, Cookie[] cookies) {
+        loadsCount++;
+        return links.getProperty(requestUri, "");
+    }
+
+    public int getLoadsCount() {
+        return loadsCount;
+    }
+}
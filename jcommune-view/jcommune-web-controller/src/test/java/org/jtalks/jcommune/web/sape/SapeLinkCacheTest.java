@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2011  JTalks.org Team
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.jtalks.jcommune.web.sape;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.servlet.http.Cookie;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+
+public class SapeLinkCacheTest {
+    private static final String FIRST_PAGE = "/topics/1";
+    private static final String SECOND_PAGE = "/topics/2";
+    private static final String FIRST_LINKS = "<a href=\"http://example.com/first\">first</a>";
+    private static final String SECOND_LINKS = "<a href=\"http://example.com/second\">second</a>";
+    private static final Cookie[] NO_COOKIES = new Cookie[0];
+
+    private FileSapeLinkSource source;
+    private SapeLinkCache cache;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        source = new FileSapeLinkSource(FileSapeLinkSource.DEFAULT_LOCATION);
+        cache = new SapeLinkCache(source, 10, 600);
+    }
+
+    @Test
+    public void firstViewOfPageShouldNotWaitForLinks() {
+        assertEquals(cache.getLinks(FIRST_PAGE, NO_COOKIES), "");
+        assertEquals(source.getLoadsCount(), 0);
+    }
+
+    @Test
+    public void linksShouldBeServedFromMemoryAfterRefresh() {
+        cache.getLinks(FIRST_PAGE, NO_COOKIES);
+        cache.refresh();
+
+        assertEquals(cache.getLinks(FIRST_PAGE, NO_COOKIES), FIRST_LINKS);
+        assertEquals(cache.getLinks(FIRST_PAGE, NO_COOKIES), FIRST_LINKS);
+        assertEquals(source.getLoadsCount(), 1);
+    }
+
+    @Test
+    public void linksOfPagesNotViewedSinceRefreshShouldBeDropped() {
+        cache.getLinks(FIRST_PAGE, NO_COOKIES);
+        cache.getLinks(SECOND_PAGE, NO_COOKIES);
+        cache.refresh();
+        cache.getLinks(FIRST_PAGE, NO_COOKIES);
+
+        cache.refresh();
+
+        assertEquals(source.getLoadsCount(), 3);
+        assertEquals(cache.getLinks(FIRST_PAGE, NO_COOKIES), FIRST_LINKS);
+        assertEquals(cache.getLinks(SECOND_PAGE, NO_COOKIES), "");
+    }
+
+    @Test
+    public void pagesAboveLimitShouldGetNoLinks() {
+        cache = new SapeLinkCache(source, 1, 600);
+        cache.getLinks(FIRST_PAGE, NO_COOKIES);
+        cache.getLinks(SECOND_PAGE, NO_COOKIES);
+
+        cache.refresh();
+
+        assertEquals(cache.getLinks(FIRST_PAGE, NO_COOKIES), FIRST_LINKS);
+        assertEquals(cache.getLinks(SECOND_PAGE, NO_COOKIES), "");
+        assertEquals(source.getLoadsCount(), 1);
+    }
+
+    @Test
+    public void previouslyLoadedLinksShouldBeKeptIfLinkServerFails() {
+        SapeLinkSource failingSource = mock(SapeLinkSource.class);
+        when(failingSource.loadLinks(eq(FIRST_PAGE), any(Cookie[].class))).thenReturn(FIRST_LINKS).thenThrow(new RuntimeException());
+        cache = new SapeLinkCache(failingSource, 10, 600);
+        cache.getLinks(FIRST_PAGE, NO_COOKIES);
+        cache.refresh();
+        cache.getLinks(FIRST_PAGE, NO_COOKIES);
+
+        cache.refresh();
+
+        assertEquals(cache.getLinks(FIRST_PAGE, NO_COOKIES), FIRST_LINKS);
+    }
+
+    @Test
+    public void requestsOfSapeRobotShouldGetLinksLoadedWithTheirCookies() {
+        SapeLinkSource robotCheckingSource = mock(SapeLinkSource.class);
+        Cookie[] cookies = {new Cookie(SapeLinkCache.SAPE_ROBOT_COOKIE, "account")};
+        when(robotCheckingSource.loadLinks(FIRST_PAGE, cookies)).thenReturn(FIRST_LINKS);
+        cache = new SapeLinkCache(robotCheckingSource, 10, 600);
+
+        assertEquals(cache.getLinks(FIRST_PAGE, cookies), FIRST_LINKS);
+        cache.refresh();
+        verify(robotCheckingSource).loadLinks(FIRST_PAGE, cookies);
+        verifyNoMoreInteractions(robotCheckingSource);
+    }
+
+    @Test
+    public void cachedLinksShouldBeServedWhenRequestHasNoCookies() {
+        cache.getLinks(FIRST_PAGE, null);
+        cache.refresh();
+
+        assertEquals(cache.getLinks(FIRST_PAGE, null), FIRST_LINKS);
+        assertEquals(source.getLoadsCount(), 1);
+    }
+
+    @Test
+    public void linksOfNewPageShouldBeLoadedInBackgroundWhenStarted() throws Exception {
+        cache.start();
+        try {
+            String links = cache.getLinks(SECOND_PAGE, NO_COOKIES);
+            for (int i = 0; i < 100 && links.isEmpty(); i++) {
+                Thread.sleep(10);
+                links = cache.getLinks(SECOND_PAGE, NO_COOKIES);
+            }
+
+            assertEquals(links, SECOND_LINKS);
+            assertEquals(source.getLoadsCount(), 1);
+        } finally {
+            cache.stop();
+        }
+    }
+}
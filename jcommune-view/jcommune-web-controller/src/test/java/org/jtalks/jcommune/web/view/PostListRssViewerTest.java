@@ -20,15 +20,24 @@ import com.sun.syndication.feed.rss.Item;
 import org.jtalks.jcommune.model.entity.JCUser;
 import org.jtalks.jcommune.model.entity.Post;
 import org.jtalks.jcommune.model.entity.Topic;
+import org.jtalks.jcommune.service.dto.CachedFeed;
+import org.jtalks.jcommune.service.nontransactional.FeedCacheService;
+import org.jtalks.jcommune.web.interceptors.FeedCacheInterceptor;
+import org.mockito.ArgumentCaptor;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.*;
 
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
@@ -42,6 +51,7 @@ public class PostListRssViewerTest {
     @BeforeMethod
     public void setUp() {
         postListRssViewer = new PostListRssViewer();
+        postListRssViewer.setContentType("application/rss+xml;charset=UTF-8");
     }
 
     @Test
@@ -219,6 +229,83 @@ public class PostListRssViewerTest {
         assertEquals(result.get(1).getPubDate(), post2.getCreationDate().toDate());
     }
 
+    @Test
+    public void renderShouldSendFeedWithValidatorsOfTheNewestPost() throws Exception {
+        List<Post> posts = createPosts();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        postListRssViewer.render(createModel(posts), getMockRequest(), response);
+
+        assertTrue(response.getContentAsString().contains("my topic"));
+        assertEquals(response.getHeaderValue("Last-Modified"), posts.get(1).getLastTouchedDate().getMillis());
+        assertTrue(response.getHeader("ETag") != null);
+    }
+
+    @Test
+    public void renderShouldCacheFeedIfRequestIsPreparedForCaching() throws Exception {
+        FeedCacheService feedCacheService = mock(FeedCacheService.class);
+        postListRssViewer.setFeedCacheService(feedCacheService);
+        MockHttpServletRequest request = (MockHttpServletRequest) getMockRequest();
+        request.setAttribute(FeedCacheInterceptor.FEED_URL_ATTRIBUTE, "url");
+        request.setAttribute(FeedCacheInterceptor.FEED_VISIBILITY_ATTRIBUTE, "anonymous");
+        request.setAttribute(FeedCacheInterceptor.FEED_GENERATION_ATTRIBUTE, "forum#1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        postListRssViewer.render(createModel(createPosts()), request, response);
+
+        ArgumentCaptor<CachedFeed> feed = ArgumentCaptor.forClass(CachedFeed.class);
+        verify(feedCacheService).putFeed(eq("forum#1"), eq("url"), eq("anonymous"), feed.capture());
+        assertEquals(feed.getValue().getBody(), response.getContentAsByteArray());
+    }
+
+    @Test
+    public void renderShouldNotSendFeedIfReaderHasIt() throws Exception {
+        List<Post> posts = createPosts();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        postListRssViewer.render(createModel(posts), getMockRequest(), response);
+        MockHttpServletRequest request = (MockHttpServletRequest) getMockRequest();
+        request.addHeader("If-None-Match", response.getHeader("ETag"));
+        response = new MockHttpServletResponse();
+
+        postListRssViewer.render(createModel(posts), request, response);
+
+        assertEquals(response.getStatus(), HttpServletResponse.SC_NOT_MODIFIED);
+        assertEquals(response.getContentAsByteArray().length, 0);
+    }
+
+    @Test
+    public void renderShouldNotCacheFeedIfThereIsNoPostList() throws Exception {
+        FeedCacheService feedCacheService = mock(FeedCacheService.class);
+        postListRssViewer.setFeedCacheService(feedCacheService);
+        MockHttpServletRequest request = (MockHttpServletRequest) getMockRequest();
+        request.setAttribute(FeedCacheInterceptor.FEED_GENERATION_ATTRIBUTE, "forum#1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        postListRssViewer.render(new HashMap<String, Object>(), request, response);
+
+        assertEquals(response.getStatus(), 302);
+        verifyZeroInteractions(feedCacheService);
+    }
+
+    private List<Post> createPosts() {
+        JCUser user = new JCUser("user1", "mymail@email.mydomain", "qwerty");
+        Topic topic = new Topic(user, "my topic");
+        Post post = new Post(user, "Texty text!");
+        post.setId(1);
+        Post post2 = new Post(user, "Reply to texty text");
+        post2.setId(3);
+        post2.updateModificationDate();
+        topic.addPost(post);
+        topic.addPost(post2);
+        return Arrays.asList(post, post2);
+    }
+
+    private Map<String, Object> createModel(List<Post> posts) {
+        Map<String, Object> model = new HashMap<>();
+        model.put("posts", posts);
+        return model;
+    }
+
     private HttpServletRequest getMockRequest() {
         MockHttpServletRequest request = new MockHttpServletRequest();
         request.setServerName("localhost");
@@ -20,6 +20,7 @@ import javax.servlet.jsp.tagext.Tag;
 import javax.servlet.jsp.tagext.TagSupport;
 
 import org.jtalks.common.service.security.SecurityContextFacade;
+import org.jtalks.jcommune.plugin.api.web.util.BranchPermissionsCache;
 import org.springframework.security.access.PermissionEvaluator;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.context.WebApplicationContext;
@@ -35,6 +36,10 @@ import org.springframework.web.context.support.WebApplicationContextUtils;
  *      <br>&nbsp;&nbsp;&nbsp;&nbsp;Some jsp code<br>
  *  &lt;/jtalks:haspermission&gt;
  *  </code>
+ * <br>
+ * Branch permissions are evaluated once per branch and request, all the other
+ * tags on the page read them from request attribute
+ * (see {@link BranchPermissionsCache}).
  * 
  * @author Vyacheslav Mishcheryakov
  */
@@ -92,7 +97,8 @@ public class HasPermission extends TagSupport {
             return Tag.SKIP_BODY;
         }
         
-        if (aclEvaluator.hasPermission(authentication, targetId, targetType, permission)) {
+        if (BranchPermissionsCache.hasPermission(pageContext.getRequest(), aclEvaluator, authentication,
+                targetId, targetType, permission)) {
             return Tag.EVAL_BODY_INCLUDE;
         }
 
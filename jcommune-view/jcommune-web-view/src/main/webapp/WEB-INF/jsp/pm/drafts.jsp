@@ -19,6 +19,7 @@
 <%@ taglib prefix="c" uri="http://java.sun.com/jstl/core_rt" %>
 <%@ taglib prefix="jtalks" uri="http://www.jtalks.org/tags" %>
 <%@ taglib prefix="form" uri="http://www.springframework.org/tags/form" %>
+<%@ taglib prefix="fn" uri="http://java.sun.com/jsp/jstl/functions" %>
 <head>
   <title>
     <c:out value="${cmpTitlePrefix}"/>
@@ -27,12 +28,18 @@
 </head>
 <body>
 <div class="container">
+  <%-- Link to the next page passes the last message of this one, so the next page is got by keyset --%>
+  <jsp:useBean id="nextPageParams" class="java.util.HashMap"/>
+  <c:if test="${!(empty draftsPage.content)}">
+    <c:set var="lastPmId"><c:out value="${draftsPage.content[fn:length(draftsPage.content) - 1].id}"/></c:set>
+    <c:set target="${nextPageParams}" property="olderThan" value="${lastPmId}"/>
+  </c:if>
   <%-- Start of pagination --%>
   <div class="row-fluid upper-pagination forum-pagination-container">
     <div class="span11">
       <div class="pagination pull-right forum-pagination">
         <ul>
-          <jtalks:pagination uri="" page="${draftsPage}" numberLink="3"/>
+          <jtalks:pagination uri="" page="${draftsPage}" numberLink="3" nextPageParams="${nextPageParams}"/>
         </ul>
       </div>
     </div>
@@ -131,7 +138,7 @@
     <div class="span11">
       <div class="pagination pull-right forum-pagination">
         <ul>
-          <jtalks:pagination uri="" page="${draftsPage}" numberLink="3"/>
+          <jtalks:pagination uri="" page="${draftsPage}" numberLink="3" nextPageParams="${nextPageParams}"/>
         </ul>
       </div>
     </div>
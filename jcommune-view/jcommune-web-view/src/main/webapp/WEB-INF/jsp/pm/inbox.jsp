@@ -19,6 +19,7 @@
 <%@ taglib prefix="c" uri="http://java.sun.com/jstl/core_rt" %>
 <%@ taglib prefix="jtalks" uri="http://www.jtalks.org/tags" %>
 <%@ taglib prefix="form" uri="http://www.springframework.org/tags/form" %>
+<%@ taglib prefix="fn" uri="http://java.sun.com/jsp/jstl/functions" %>
 <head>
   <title>
     <c:out value="${cmpTitlePrefix}"/>
@@ -27,12 +28,18 @@
 </head>
 <body>
 <div class="container">
+  <%-- Link to the next page passes the last message of this one, so the next page is got by keyset --%>
+  <jsp:useBean id="nextPageParams" class="java.util.HashMap"/>
+  <c:if test="${!(empty inboxPage.content)}">
+    <c:set var="lastPmId"><c:out value="${inboxPage.content[fn:length(inboxPage.content) - 1].id}"/></c:set>
+    <c:set target="${nextPageParams}" property="olderThan" value="${lastPmId}"/>
+  </c:if>
   <%-- Start of pagination --%>
   <div class="row-fluid upper-pagination forum-pagination-container">
     <div class="span11">
       <div class="pagination pull-right forum-pagination">
         <ul>
-          <jtalks:pagination uri="" page="${inboxPage}" numberLink="3"/>
+          <jtalks:pagination uri="" page="${inboxPage}" numberLink="3" nextPageParams="${nextPageParams}"/>
         </ul>
       </div>
     </div>
@@ -55,6 +62,14 @@
         </a>
         <form:form id="deleteForm" method="DELETE"/>
       </div>
+      <div class="pm_buttons">
+        <a class="btn" id="markCheckedPMRead"
+           href="${pageContext.request.contextPath}/pm/read">
+          <i class="icon-ok"></i>
+          <spring:message code="label.pm.mark_read"/>
+        </a>
+        <form:form id="markReadForm" method="POST"/>
+      </div>
 
       <table class="table table-bordered table-condensed">
         <thead>
@@ -126,7 +141,7 @@
     <div class="span11">
       <div class="pagination pull-right forum-pagination">
         <ul>
-          <jtalks:pagination uri="" page="${inboxPage}" numberLink="3"/>
+          <jtalks:pagination uri="" page="${inboxPage}" numberLink="3" nextPageParams="${nextPageParams}"/>
         </ul>
       </div>
     </div>
@@ -93,7 +93,7 @@
                     </div>
                 </div>
                 <div class="pm-text-box">
-                    <jtalks:postContent text="${pm.body}" signature="${pm.userFrom.signature}"/>
+                    <jtalks:postContent text="${pm.body}" author="${pm.userFrom}"/>
                 </div>
             </div>
 
@@ -71,7 +71,7 @@
     </c:if>
 
     <c:forEach var="section" items="${sectionList}">
-      <jtalks:isSectionVisible section="${section}">
+      <jtalks:isSectionVisible section="${section}" visibleBranches="${visibleBranches}">
         <tr>
           <td colspan="${colspanOfSectionName}" class="table-title">
             <h2 class="h-nostyle">
@@ -81,9 +81,9 @@
         </tr>
         <c:forEach var="branch" items="${section.branches}" varStatus="i">
           <c:set var="isBranchVisible" value="false"/>
-          <jtalks:hasPermission targetId='${branch.id}' targetType='BRANCH' permission='BranchPermission.VIEW_TOPICS'>
+          <c:if test="${visibleBranches[branch.id]}">
             <c:set var="isBranchVisible" value="true"/>
-          </jtalks:hasPermission>
+          </c:if>
           <c:if test="${sessionScope.adminMode == true}">
             <c:set var="isBranchVisible" value="true"/>
           </c:if>
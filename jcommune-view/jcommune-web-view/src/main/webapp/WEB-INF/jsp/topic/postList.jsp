@@ -95,7 +95,7 @@
 <c:if test="${topic.poll != null}">
   <div class="row well poll">
     <div class="span4  poll-row">
-      <jtalks:poll poll="${topic.poll}"/>
+      <jtalks:poll poll="${topic.poll}" voted="${pollVoted}"/>
     </div>
   </div>
 </c:if>
@@ -311,7 +311,7 @@
     </td>
     <td class='post-content-td'>
       <jtalks:postContent text="${post.postContent}"
-                          signature="${post.userCreated.signature}"/>
+                          author="${post.userCreated}"/>
     </td>
   </tr>
   <tr class="post-header">
@@ -15,16 +15,30 @@
 
 function deleteMessages(identifiers) {
     // add identifiers of the checked private messages for deletion
+    appendIdentifiers($('#deleteForm'), identifiers);
+}
+
+function appendIdentifiers(form, identifiers) {
     $('[name=pmIdentifiers]').remove();
 
-    var deleteForm = $('#deleteForm');
     var field = '<input type="hidden" name="pmIdentifiers" value="%value%">';
     for (i = 0; i < identifiers.length; i++) {
         var actualField = field.replace('%value%', identifiers[i]);
-        deleteForm.append(actualField);
+        form.append(actualField);
     }
 }
 
+/**
+ * Collects identifiers of the checked private messages
+ */
+function checkedIdentifiers() {
+    var identifiers = [];
+    $.each($(".check"), function (index, value) {
+        identifiers[index] = value.id;
+    });
+    return identifiers;
+}
+
 /**
  * Edits the selected message. This function performs edit action
  * if and only if exactly
@@ -53,6 +67,7 @@ function toggleButtonEnabled(id, isEnabled) {
 function updateButtonsState() {
     numberOfSelectedMessages = $('.checker:checked').length;
     toggleButtonEnabled('#deleteCheckedPM', numberOfSelectedMessages > 0);
+    toggleButtonEnabled('#markCheckedPMRead', numberOfSelectedMessages > 0);
     toggleButtonEnabled('#editCheckedPM', numberOfSelectedMessages == 1);
 }
 
@@ -105,6 +120,18 @@ $(document).ready(function () {
             }
         });
     });
+    // mark all the checked private messages as read by one request
+    $('#markCheckedPMRead').click(function (e) {
+        e.preventDefault();
+        var identifiers = checkedIdentifiers();
+        if (identifiers.length > 0) {
+            var markReadForm = $('#markReadForm');
+            appendIdentifiers(markReadForm, identifiers);
+            markReadForm[0].action = $(this)[0].href;
+            markReadForm[0].submit();
+        }
+    });
+
     // get private message identifier
     $('#deleteOnePM').each(function () {
         $(this).click(function (e) {
@@ -21,4 +21,23 @@ jQuery(document).ready(function(){
     
     // remove selected local from language selector
     jQuery('#lang-' + $localeCode).remove();
-});
\ No newline at end of file
+
+    // refresh new private messages count without page reload, only for logged in users
+    if (jQuery('.test-pm-count').length > 0) {
+        setInterval(refreshNewPmCount, 60000);
+    }
+});
+
+function refreshNewPmCount() {
+    jQuery.ajax({
+        url: $root + '/pm/new/count',
+        type: 'GET',
+        cache: false,
+        dataType: 'json',
+        success: function (response) {
+            if (response.status == 'SUCCESS') {
+                jQuery('.test-pm-count').text(response.result);
+            }
+        }
+    });
+}
\ No newline at end of file